@@ -0,0 +1,55 @@
+package com.geraldsaccount.neuefische_todo.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.geraldsaccount.neuefische_todo.service.IdService;
+import com.geraldsaccount.neuefische_todo.service.TimeOrderedIdService;
+import com.geraldsaccount.neuefische_todo.service.UUIDService;
+
+/**
+ * Id generation on one thread and on several threads at once, which is where
+ * a shared random source starts to contend.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IdServiceBenchmark {
+	private final IdService uuid = new UUIDService();
+	private final IdService timeOrdered = new TimeOrderedIdService();
+
+	@Benchmark
+	public String uuid() {
+		return uuid.generateId();
+	}
+
+	@Benchmark
+	@Threads(8)
+	public String uuidContended() {
+		return uuid.generateId();
+	}
+
+	@Benchmark
+	public String timeOrdered() {
+		return timeOrdered.generateId();
+	}
+
+	@Benchmark
+	@Threads(8)
+	public String timeOrderedContended() {
+		return timeOrdered.generateId();
+	}
+}
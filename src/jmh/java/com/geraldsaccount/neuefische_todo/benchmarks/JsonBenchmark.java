@@ -0,0 +1,123 @@
+package com.geraldsaccount.neuefische_todo.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.geraldsaccount.neuefische_todo.model.openai.OpenAiResponse;
+import com.geraldsaccount.neuefische_todo.model.tasks.Task;
+import com.geraldsaccount.neuefische_todo.model.tasks.TaskStatus;
+
+/**
+ * Jackson with the defaults Spring Boot uses: writing a list of tasks as
+ * {@code GET /api/todo} does, and reading an OpenAI response that carries the
+ * fields the client ignores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonBenchmark {
+	private static final String OPENAI_RESPONSE = """
+			{
+			  "id": "resp_67ccd2bed1ec8190b14f964abc0542670bb6a6b452d3795b",
+			  "object": "response",
+			  "created_at": 1741476542,
+			  "status": "completed",
+			  "error": null,
+			  "incomplete_details": null,
+			  "instructions": "Correct the following text for spelling and grammar. Only return the corrected text.",
+			  "max_output_tokens": null,
+			  "model": "gpt-4.1-2025-04-14",
+			  "output": [
+			    {
+			      "type": "message",
+			      "id": "msg_67ccd2bf17f0819081ff3bb2cf6508e60bb6a6b452d3795b",
+			      "status": "completed",
+			      "role": "assistant",
+			      "content": [
+			        {
+			          "type": "output_text",
+			          "text": "Buy milk and bread on the way home.",
+			          "annotations": []
+			        }
+			      ]
+			    }
+			  ],
+			  "parallel_tool_calls": true,
+			  "previous_response_id": null,
+			  "reasoning": { "effort": null, "summary": null },
+			  "store": true,
+			  "temperature": 1.0,
+			  "text": { "format": { "type": "text" } },
+			  "tool_choice": "auto",
+			  "tools": [],
+			  "top_p": 1.0,
+			  "truncation": "disabled",
+			  "usage": {
+			    "input_tokens": 36,
+			    "input_tokens_details": { "cached_tokens": 0 },
+			    "output_tokens": 10,
+			    "output_tokens_details": { "reasoning_tokens": 0 },
+			    "total_tokens": 46
+			  },
+			  "user": null,
+			  "metadata": {}
+			}
+			""";
+
+	@Param({ "20", "1000" })
+	private int tasks;
+
+	private ObjectWriter taskListWriter;
+	private ObjectReader responseReader;
+	private List<Task> taskList;
+	private byte[] response;
+
+	@Setup
+	public void setUp() {
+		ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().build();
+		taskListWriter = mapper.writerFor(new TypeReference<List<Task>>() {
+		});
+		responseReader = mapper.readerFor(OpenAiResponse.class);
+		taskList = new ArrayList<>(tasks);
+		TaskStatus[] statuses = TaskStatus.values();
+		for (int i = 0; i < tasks; i++) {
+			taskList.add(new Task("T" + i, "Task number " + i + " with a typical description",
+					statuses[i % statuses.length], (long) i));
+		}
+		response = OPENAI_RESPONSE.getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Benchmark
+	public byte[] writeTasks() throws JsonProcessingException {
+		return taskListWriter.writeValueAsBytes(taskList);
+	}
+
+	@Benchmark
+	public OpenAiResponse readOpenAiResponse() throws IOException {
+		return responseReader.readValue(response);
+	}
+}
@@ -0,0 +1,77 @@
+package com.geraldsaccount.neuefische_todo.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import com.geraldsaccount.neuefische_todo.model.tasks.Task;
+import com.geraldsaccount.neuefische_todo.model.tasks.TaskStatus;
+import com.geraldsaccount.neuefische_todo.model.undo.UndoActionType;
+import com.geraldsaccount.neuefische_todo.model.undo.UndoSnapshot;
+import com.geraldsaccount.neuefische_todo.model.undo.UpdateTaskAction;
+
+/**
+ * Cost of recording a status toggle in the undo history: the patch based
+ * {@link UpdateTaskAction} against a snapshot of the full task before and
+ * after. Run with the gc profiler to compare allocations, the returned value
+ * is the size of the undo log entry in bytes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UndoActionBenchmark {
+	@Param({ "100", "10000" })
+	private int descriptionLength;
+
+	private MappingMongoConverter converter;
+	private DocumentCodec codec;
+	private Task before;
+	private Task after;
+
+	@Setup
+	public void setUp() {
+		MongoMappingContext mappingContext = new MongoMappingContext();
+		converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+		converter.afterPropertiesSet();
+		codec = new DocumentCodec();
+		before = new Task("T1", "x".repeat(descriptionLength), TaskStatus.OPEN, 0L);
+		// a separate copy, as it arrives from a request body
+		after = new Task("T1", new String(before.description()), TaskStatus.DONE, 1L);
+	}
+
+	@Benchmark
+	public int patch() {
+		return logEntrySize(new UpdateTaskAction(null, after, before).snapshot());
+	}
+
+	@Benchmark
+	public int fullSnapshot() {
+		return logEntrySize(new UndoSnapshot(UndoActionType.UPDATE, List.of(before), List.of(after)));
+	}
+
+	private int logEntrySize(UndoSnapshot snapshot) {
+		Document document = new Document();
+		converter.write(snapshot, document);
+		return new RawBsonDocument(document, codec).getByteBuffer().remaining();
+	}
+}
@@ -0,0 +1,85 @@
+package com.geraldsaccount.neuefische_todo.benchmarks;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.geraldsaccount.neuefische_todo.model.tasks.Task;
+import com.geraldsaccount.neuefische_todo.model.undo.RedoNotPossibleException;
+import com.geraldsaccount.neuefische_todo.model.undo.UndoNotPossibleException;
+import com.geraldsaccount.neuefische_todo.model.undo.UndoSnapshot;
+import com.geraldsaccount.neuefische_todo.model.undo.UndoableAction;
+import com.geraldsaccount.neuefische_todo.service.CurrentUser;
+import com.geraldsaccount.neuefische_todo.service.InMemoryUndoHistory;
+import com.geraldsaccount.neuefische_todo.service.TaskService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * {@link TaskService#addCommand}, {@link TaskService#undo} and
+ * {@link TaskService#redo} against a history that is already full, so every
+ * push overwrites the oldest action. The actions do not write anything, only
+ * the history and the service around it are measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UndoHistoryBenchmark {
+	private static final UndoableAction NO_OP = new UndoableAction() {
+		@Override
+		public Optional<Task> undo() {
+			return Optional.empty();
+		}
+
+		@Override
+		public Optional<Task> redo() {
+			return Optional.empty();
+		}
+
+		@Override
+		public UndoSnapshot snapshot() {
+			return null;
+		}
+	};
+
+	@Param({ "100", "10000", "1000000" })
+	private int historySize;
+
+	private TaskService service;
+
+	@Setup
+	public void setUp() {
+		service = new TaskService(null, null, null,
+				new InMemoryUndoHistory(historySize, Duration.ofDays(1)), new CurrentUser(), new SimpleMeterRegistry());
+		for (int i = 0; i < historySize; i++) {
+			service.addCommand(NO_OP);
+		}
+	}
+
+	@Benchmark
+	public void addCommand() {
+		service.addCommand(NO_OP);
+	}
+
+	@Benchmark
+	public void undoRedo() throws UndoNotPossibleException, RedoNotPossibleException {
+		// as a pair the history stays full for the next invocation
+		service.undo();
+		service.redo();
+	}
+}
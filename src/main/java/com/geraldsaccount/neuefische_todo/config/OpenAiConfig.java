@@ -0,0 +1,36 @@
+package com.geraldsaccount.neuefische_todo.config;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.geraldsaccount.neuefische_todo.service.AdaptiveConcurrencyLimiter;
+import com.geraldsaccount.neuefische_todo.service.CircuitBreaker;
+
+@Configuration
+public class OpenAiConfig {
+
+	@Bean
+	public CircuitBreaker openAiCircuitBreaker(
+			@Value("${servers.openai.circuit-breaker.window-size:20}") int windowSize,
+			@Value("${servers.openai.circuit-breaker.minimum-calls:10}") int minimumCalls,
+			@Value("${servers.openai.circuit-breaker.failure-rate-threshold:0.5}") double failureRateThreshold,
+			@Value("${servers.openai.circuit-breaker.open-duration:30s}") Duration openDuration,
+			@Value("${servers.openai.circuit-breaker.half-open-calls:3}") int halfOpenCalls) {
+		return new CircuitBreaker("openai", windowSize, minimumCalls, failureRateThreshold,
+				openDuration, halfOpenCalls);
+	}
+
+	@Bean
+	public AdaptiveConcurrencyLimiter openAiConcurrencyLimiter(
+			@Value("${servers.openai.concurrency.initial-limit:8}") int initialLimit,
+			@Value("${servers.openai.concurrency.min-limit:1}") int minLimit,
+			@Value("${servers.openai.concurrency.max-limit:64}") int maxLimit,
+			@Value("${servers.openai.concurrency.latency-threshold:3s}") Duration latencyThreshold,
+			@Value("${servers.openai.concurrency.backoff-ratio:0.9}") double backoffRatio) {
+		return new AdaptiveConcurrencyLimiter("openai", initialLimit, minLimit, maxLimit,
+				latencyThreshold, backoffRatio);
+	}
+}
@@ -0,0 +1,221 @@
+package com.geraldsaccount.neuefische_todo.controller;
+
+import java.util.List;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.geraldsaccount.neuefische_todo.model.corrections.CorrectionStatusDTO;
+import com.geraldsaccount.neuefische_todo.model.error.ErrorDTO;
+import com.geraldsaccount.neuefische_todo.model.tasks.Task;
+import com.geraldsaccount.neuefische_todo.model.tasks.TaskStatus;
+import com.geraldsaccount.neuefische_todo.model.tasks.dto.BatchItemResultDTO;
+import com.geraldsaccount.neuefische_todo.model.tasks.dto.BatchOperationDTO;
+import com.geraldsaccount.neuefische_todo.model.tasks.dto.TaskChangesDTO;
+import com.geraldsaccount.neuefische_todo.model.tasks.dto.TaskDTO;
+import com.geraldsaccount.neuefische_todo.model.tasks.dto.TaskPageDTO;
+import com.geraldsaccount.neuefische_todo.model.tasks.dto.TaskSummaryDTO;
+import com.geraldsaccount.neuefische_todo.model.undo.RedoNotPossibleException;
+import com.geraldsaccount.neuefische_todo.model.undo.UndoNotPossibleException;
+import com.geraldsaccount.neuefische_todo.service.ChangeTokenExpiredException;
+import com.geraldsaccount.neuefische_todo.service.CurrentUser;
+import com.geraldsaccount.neuefische_todo.service.ReactiveTaskEventStream;
+import com.geraldsaccount.neuefische_todo.service.ReactiveTaskExportService;
+import com.geraldsaccount.neuefische_todo.service.ReactiveTaskService;
+import com.geraldsaccount.neuefische_todo.service.TaskChangeService;
+import com.geraldsaccount.neuefische_todo.service.TodoNotFoundException;
+import com.geraldsaccount.neuefische_todo.service.TodoVersionConflictException;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * WebFlux version of {@link TaskController} with the same contract, served
+ * with the "reactive" profile.
+ */
+@RestController
+@RequestMapping("/api/todo")
+@Profile("reactive")
+public class ReactiveTaskController {
+	private final ReactiveTaskService service;
+	private final ReactiveTaskExportService exportService;
+	private final ReactiveTaskEventStream eventStream;
+
+	public ReactiveTaskController(ReactiveTaskService service, ReactiveTaskExportService exportService,
+			ReactiveTaskEventStream eventStream) {
+		this.service = service;
+		this.exportService = exportService;
+		this.eventStream = eventStream;
+	}
+
+	@GetMapping
+	public Mono<ResponseEntity<List<Task>>> getTasks(
+			@RequestHeader(value = CurrentUser.TENANT_HEADER, required = false) String tenant) {
+		return Mono.defer(() -> {
+			String changeToken = service.currentChangeToken();
+			// a matching If-None-Match is answered with 304 before the body is written
+			return service.getTasks(CurrentUser.resolveTenant(tenant)).collectList()
+					.map(tasks -> ResponseEntity.ok()
+							.eTag(TaskETags.of(tasks))
+							.header(TaskChangeService.TOKEN_HEADER, changeToken)
+							.body(tasks));
+		});
+	}
+
+	@GetMapping("/changes")
+	public Mono<TaskChangesDTO> getChanges(@RequestParam String since, @RequestParam(required = false) Integer limit,
+			@RequestHeader(value = CurrentUser.TENANT_HEADER, required = false) String tenant) {
+		return service.getChanges(CurrentUser.resolveTenant(tenant), since, limit);
+	}
+
+	@GetMapping("/search")
+	public Mono<List<Task>> search(@RequestParam String q, @RequestParam(required = false) Integer limit,
+			@RequestHeader(value = CurrentUser.TENANT_HEADER, required = false) String tenant) {
+		return service.search(CurrentUser.resolveTenant(tenant), q, limit);
+	}
+
+	@GetMapping("/summary")
+	public Mono<TaskSummaryDTO> getSummary(@RequestHeader(value = CurrentUser.TENANT_HEADER, required = false) String tenant) {
+		return service.getSummary(CurrentUser.resolveTenant(tenant));
+	}
+
+	@GetMapping("/page")
+	public Mono<TaskPageDTO> getTaskPage(@RequestParam(required = false) String cursor,
+			@RequestParam(required = false) Integer limit,
+			@RequestParam(required = false) TaskStatus status,
+			@RequestParam(required = false) String prefix,
+			@RequestHeader(value = CurrentUser.TENANT_HEADER, required = false) String tenant) {
+		return service.getTaskPage(CurrentUser.resolveTenant(tenant), cursor, limit, status, prefix);
+	}
+
+	@GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+	public ResponseEntity<Flux<DataBuffer>> exportTasks(@RequestParam(required = false) String after,
+			@RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+			@RequestHeader(value = CurrentUser.TENANT_HEADER, required = false) String tenant) {
+		boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+		ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+				.contentType(MediaType.APPLICATION_NDJSON)
+				.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+		if (gzip) {
+			response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+		}
+		return response.body(exportService.export(CurrentUser.resolveTenant(tenant), after, gzip)
+				.<DataBuffer>map(DefaultDataBufferFactory.sharedInstance::wrap));
+	}
+
+	@GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+	public Flux<ServerSentEvent<Object>> streamTaskEvents(
+			@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+			@RequestHeader(value = CurrentUser.TENANT_HEADER, required = false) String tenant) {
+		return eventStream.subscribe(lastEventId, CurrentUser.resolveTenant(tenant));
+	}
+
+	@GetMapping("/{id}")
+	public Mono<ResponseEntity<Task>> getById(@PathVariable String id,
+			@RequestHeader(value = CurrentUser.TENANT_HEADER, required = false) String tenant) {
+		return service.getById(id, CurrentUser.resolveTenant(tenant))
+				.map(task -> ResponseEntity.ok().eTag(TaskETags.of(task)).body(task));
+	}
+
+	@GetMapping("/{id}/correction")
+	public Mono<CorrectionStatusDTO> getCorrectionStatus(@PathVariable String id,
+			@RequestHeader(value = CurrentUser.TENANT_HEADER, required = false) String tenant) {
+		return service.getCorrectionStatus(id, CurrentUser.resolveTenant(tenant));
+	}
+
+	@PostMapping
+	@ResponseStatus(HttpStatus.CREATED)
+	public Mono<Task> postTask(@RequestBody TaskDTO dto,
+			@RequestHeader(value = CurrentUser.HEADER, required = false) String user,
+			@RequestHeader(value = CurrentUser.TENANT_HEADER, required = false) String tenant) {
+		return service.createTask(dto, CurrentUser.resolve(user), CurrentUser.resolveTenant(tenant));
+	}
+
+	@PostMapping("/batch")
+	public Mono<List<BatchItemResultDTO>> postBatch(@RequestBody List<BatchOperationDTO> operations,
+			@RequestHeader(value = CurrentUser.HEADER, required = false) String user,
+			@RequestHeader(value = CurrentUser.TENANT_HEADER, required = false) String tenant) {
+		return service.applyBatch(operations, CurrentUser.resolve(user), CurrentUser.resolveTenant(tenant));
+	}
+
+	@PutMapping("/{id}")
+	public Mono<ResponseEntity<Task>> putUpdateTask(@PathVariable String id, @RequestBody Task requestedTask,
+			@RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+			@RequestHeader(value = CurrentUser.HEADER, required = false) String user,
+			@RequestHeader(value = CurrentUser.TENANT_HEADER, required = false) String tenant) {
+		return service.updateTask(id, requestedTask, TaskETags.versionsOf(ifMatch), CurrentUser.resolve(user),
+				CurrentUser.resolveTenant(tenant))
+				.map(updated -> ResponseEntity.ok().eTag(TaskETags.of(updated)).body(updated));
+	}
+
+	@DeleteMapping("/{id}")
+	public Mono<ResponseEntity<Void>> deleteTask(@PathVariable String id,
+			@RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+			@RequestHeader(value = CurrentUser.HEADER, required = false) String user,
+			@RequestHeader(value = CurrentUser.TENANT_HEADER, required = false) String tenant) {
+		return service.delete(id, TaskETags.versionsOf(ifMatch), CurrentUser.resolve(user), CurrentUser.resolveTenant(tenant))
+				.then(Mono.just(ResponseEntity.noContent().<Void>build()));
+	}
+
+	@PutMapping("/undo")
+	public Mono<ResponseEntity<Void>> undo(@RequestHeader(value = CurrentUser.HEADER, required = false) String user,
+			@RequestHeader(value = CurrentUser.TENANT_HEADER, required = false) String tenant) {
+		return service.undo(CurrentUser.resolve(user), CurrentUser.resolveTenant(tenant))
+				.then(Mono.just(ResponseEntity.ok().<Void>build()));
+	}
+
+	@PutMapping("/redo")
+	public Mono<ResponseEntity<Void>> redo(@RequestHeader(value = CurrentUser.HEADER, required = false) String user,
+			@RequestHeader(value = CurrentUser.TENANT_HEADER, required = false) String tenant) {
+		return service.redo(CurrentUser.resolve(user), CurrentUser.resolveTenant(tenant))
+				.then(Mono.just(ResponseEntity.ok().<Void>build()));
+	}
+
+	@ExceptionHandler(TodoNotFoundException.class)
+	@ResponseStatus(HttpStatus.NOT_FOUND)
+	public ErrorDTO handleTodoNotFoundException(TodoNotFoundException e) {
+		return new ErrorDTO(HttpStatus.NOT_FOUND, e.getMessage());
+	}
+
+	@ExceptionHandler(ChangeTokenExpiredException.class)
+	@ResponseStatus(HttpStatus.GONE)
+	public ErrorDTO handleChangeTokenExpiredException(ChangeTokenExpiredException e) {
+		return new ErrorDTO(HttpStatus.GONE, e.getMessage());
+	}
+
+	@ExceptionHandler(TodoVersionConflictException.class)
+	@ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+	public ErrorDTO handleTodoVersionConflictException(TodoVersionConflictException e) {
+		return new ErrorDTO(HttpStatus.PRECONDITION_FAILED, e.getMessage());
+	}
+
+	@ExceptionHandler(UndoNotPossibleException.class)
+	@ResponseStatus(HttpStatus.BAD_REQUEST)
+	public ErrorDTO handleUndoException(UndoNotPossibleException e) {
+		return new ErrorDTO(HttpStatus.BAD_REQUEST, e.getMessage());
+	}
+
+	@ExceptionHandler(RedoNotPossibleException.class)
+	@ResponseStatus(HttpStatus.BAD_REQUEST)
+	public ErrorDTO handleRedoException(RedoNotPossibleException e) {
+		return new ErrorDTO(HttpStatus.BAD_REQUEST, e.getMessage());
+	}
+}
@@ -0,0 +1,90 @@
+package com.geraldsaccount.neuefische_todo.controller;
+
+import java.time.Duration;
+import java.util.Locale;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.geraldsaccount.neuefische_todo.service.StaticAssets;
+
+/**
+ * Serves the frontend from {@link StaticAssets} in place of Spring's resource
+ * handler, so compressed variants are never computed per request.
+ * <p>
+ * Paths below {@code /api} are left to the API controllers, so that an unknown
+ * API path or a wrong method is answered the same as without a frontend.
+ */
+@RestController
+@Profile("!reactive")
+public class StaticAssetController {
+	private static final String INDEX = "/index.html";
+	private static final CacheControl IMMUTABLE = CacheControl.maxAge(Duration.ofDays(365))
+			.cachePublic()
+			.immutable();
+
+	private final StaticAssets assets;
+
+	public StaticAssetController(StaticAssets assets) {
+		this.assets = assets;
+	}
+
+	@GetMapping({ "/", "/{root:(?!api$).+}/{*rest}" })
+	public ResponseEntity<byte[]> getAsset(@PathVariable(required = false) String root,
+			@PathVariable(required = false) String rest,
+			@RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+		StaticAssets.Asset asset = assets.get(root == null ? INDEX : "/" + root + rest).orElse(null);
+		if (asset == null) {
+			return ResponseEntity.notFound().build();
+		}
+
+		ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+				.contentType(asset.mediaType())
+				.cacheControl(asset.hashed() ? IMMUTABLE : CacheControl.noCache());
+		if (asset.compressed()) {
+			response.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+			if (accepts(acceptEncoding, "gzip")) {
+				return encoded(response, asset, "gzip", asset.gzip());
+			}
+		}
+		// a matching If-None-Match is answered with 304 before the body is written
+		return response.eTag(asset.eTag()).body(asset.identity());
+	}
+
+	private static ResponseEntity<byte[]> encoded(ResponseEntity.BodyBuilder response, StaticAssets.Asset asset,
+			String coding, byte[] body) {
+		// every encoding is its own representation and needs its own strong ETag
+		String eTag = asset.eTag().substring(0, asset.eTag().length() - 1) + "-" + coding + "\"";
+		return response.eTag(eTag).header(HttpHeaders.CONTENT_ENCODING, coding).body(body);
+	}
+
+	/**
+	 * Whether {@code coding} is listed in an Accept-Encoding header without
+	 * {@code q=0}.
+	 */
+	static boolean accepts(String acceptEncoding, String coding) {
+		if (acceptEncoding == null) {
+			return false;
+		}
+		for (String entry : acceptEncoding.toLowerCase(Locale.ROOT).split(",")) {
+			String[] parts = entry.split(";");
+			if (!parts[0].trim().equals(coding)) {
+				continue;
+			}
+			for (int i = 1; i < parts.length; i++) {
+				String parameter = parts[i].replace(" ", "");
+				if (parameter.startsWith("q=") && parameter.substring(2).matches("0(\\.0*)?")) {
+					return false;
+				}
+			}
+			return true;
+		}
+		return false;
+	}
+}
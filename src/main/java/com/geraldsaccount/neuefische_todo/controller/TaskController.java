@@ -1,8 +1,12 @@
 package com.geraldsaccount.neuefische_todo.controller;
 
 import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -11,37 +15,132 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.geraldsaccount.neuefische_todo.model.corrections.CorrectionStatusDTO;
 import com.geraldsaccount.neuefische_todo.model.error.ErrorDTO;
 import com.geraldsaccount.neuefische_todo.model.tasks.Task;
+import com.geraldsaccount.neuefische_todo.model.tasks.TaskStatus;
+import com.geraldsaccount.neuefische_todo.model.tasks.dto.BatchItemResultDTO;
+import com.geraldsaccount.neuefische_todo.model.tasks.dto.BatchOperationDTO;
+import com.geraldsaccount.neuefische_todo.model.tasks.dto.TaskChangesDTO;
 import com.geraldsaccount.neuefische_todo.model.tasks.dto.TaskDTO;
+import com.geraldsaccount.neuefische_todo.model.tasks.dto.TaskPageDTO;
+import com.geraldsaccount.neuefische_todo.model.tasks.dto.TaskSummaryDTO;
 import com.geraldsaccount.neuefische_todo.model.undo.RedoNotPossibleException;
 import com.geraldsaccount.neuefische_todo.model.undo.UndoNotPossibleException;
+import com.geraldsaccount.neuefische_todo.service.ChangeTokenExpiredException;
+import com.geraldsaccount.neuefische_todo.service.CurrentUser;
+import com.geraldsaccount.neuefische_todo.service.TaskChangeService;
+import com.geraldsaccount.neuefische_todo.service.TaskEventBus;
+import com.geraldsaccount.neuefische_todo.service.TaskExportService;
+import com.geraldsaccount.neuefische_todo.service.TaskSearchService;
 import com.geraldsaccount.neuefische_todo.service.TaskService;
 import com.geraldsaccount.neuefische_todo.service.TodoNotFoundException;
+import com.geraldsaccount.neuefische_todo.service.TodoVersionConflictException;
 
 @RestController
 @RequestMapping("/api/todo")
+@Profile("!reactive")
 public class TaskController {
 	private final TaskService service;
+	private final TaskExportService exportService;
+	private final TaskEventBus eventBus;
+	private final TaskChangeService changeService;
+	private final TaskSearchService searchService;
+	private final CurrentUser currentUser;
 
-	public TaskController(TaskService service) {
+	public TaskController(TaskService service, TaskExportService exportService, TaskEventBus eventBus,
+			TaskChangeService changeService, TaskSearchService searchService, CurrentUser currentUser) {
 		this.service = service;
+		this.exportService = exportService;
+		this.eventBus = eventBus;
+		this.changeService = changeService;
+		this.searchService = searchService;
+		this.currentUser = currentUser;
 	}
 
 	@GetMapping
 	@SuppressWarnings("unused")
 	private ResponseEntity<List<Task>> getTasks() {
+		String changeToken = changeService.currentToken();
 		List<Task> tasks = service.getTasks();
-		return ResponseEntity.ok(tasks);
+		// a matching If-None-Match is answered with 304 before the body is written
+		return ResponseEntity.ok()
+				.eTag(TaskETags.of(tasks))
+				.header(TaskChangeService.TOKEN_HEADER, changeToken)
+				.body(tasks);
+	}
+
+	@GetMapping("/changes")
+	public TaskChangesDTO getChanges(@RequestParam String since, @RequestParam(required = false) Integer limit)
+			throws ChangeTokenExpiredException {
+		return changeService.getChanges(currentUser.tenant(), since, limit);
+	}
+
+	@GetMapping("/search")
+	public List<Task> search(@RequestParam String q, @RequestParam(required = false) Integer limit) {
+		return searchService.search(currentUser.tenant(), q, limit);
+	}
+
+	@GetMapping("/summary")
+	public TaskSummaryDTO getSummary() {
+		return service.getSummary();
+	}
+
+	@GetMapping("/page")
+	public TaskPageDTO getTaskPage(@RequestParam(required = false) String cursor,
+			@RequestParam(required = false) Integer limit,
+			@RequestParam(required = false) TaskStatus status,
+			@RequestParam(required = false) String prefix) {
+		return service.getTaskPage(cursor, limit, status, prefix);
+	}
+
+	@GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+	public ResponseEntity<StreamingResponseBody> exportTasks(@RequestParam(required = false) String after,
+			@RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+			@RequestHeader(value = CurrentUser.TENANT_HEADER, required = false) String tenant) {
+		// the body is written after the request thread has returned
+		String resolved = CurrentUser.resolveTenant(tenant);
+		boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+		ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+				.contentType(MediaType.APPLICATION_NDJSON)
+				.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+		if (!gzip) {
+			return response.body(out -> exportService.export(resolved, after, out));
+		}
+		return response
+				.header(HttpHeaders.CONTENT_ENCODING, "gzip")
+				.body(out -> {
+					GZIPOutputStream compressed = new GZIPOutputStream(out, 8192);
+					exportService.export(resolved, after, compressed);
+					compressed.finish();
+				});
+	}
+
+	@GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+	public SseEmitter streamTaskEvents(
+			@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+			@RequestHeader(value = CurrentUser.TENANT_HEADER, required = false) String tenant) {
+		// events are sent after the request thread has returned
+		return eventBus.subscribe(lastEventId, CurrentUser.resolveTenant(tenant));
 	}
 
 	@GetMapping("/{id}")
-	public Task getById(@PathVariable String id) throws TodoNotFoundException {
-		return service.getById(id);
+	public ResponseEntity<Task> getById(@PathVariable String id) throws TodoNotFoundException {
+		Task task = service.getById(id);
+		return ResponseEntity.ok().eTag(TaskETags.of(task)).body(task);
+	}
+
+	@GetMapping("/{id}/correction")
+	public CorrectionStatusDTO getCorrectionStatus(@PathVariable String id) throws TodoNotFoundException {
+		return service.getCorrectionStatus(id);
 	}
 
 	@PostMapping
@@ -51,15 +150,25 @@ public class TaskController {
 		return service.createTask(dto);
 	}
 
+	@PostMapping("/batch")
+	public List<BatchItemResultDTO> postBatch(@RequestBody List<BatchOperationDTO> operations)
+			throws IllegalArgumentException {
+		return service.applyBatch(operations);
+	}
+
 	@PutMapping("/{id}")
-	public Task putUpdateTask(@PathVariable String id, @RequestBody Task requestedTask)
-			throws TodoNotFoundException, IllegalArgumentException {
-		return service.updateTask(id, requestedTask);
+	public ResponseEntity<Task> putUpdateTask(@PathVariable String id, @RequestBody Task requestedTask,
+			@RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch)
+			throws TodoNotFoundException, TodoVersionConflictException, IllegalArgumentException {
+		Task updated = service.updateTask(id, requestedTask, TaskETags.versionsOf(ifMatch));
+		return ResponseEntity.ok().eTag(TaskETags.of(updated)).body(updated);
 	}
 
 	@DeleteMapping("/{id}")
-	public ResponseEntity<Void> deleteTask(@PathVariable String id) throws TodoNotFoundException {
-		service.delete(id);
+	public ResponseEntity<Void> deleteTask(@PathVariable String id,
+			@RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch)
+			throws TodoNotFoundException, TodoVersionConflictException {
+		service.delete(id, TaskETags.versionsOf(ifMatch));
 		return ResponseEntity.noContent().build();
 	}
 
@@ -69,6 +178,18 @@ public class TaskController {
 		return new ErrorDTO(HttpStatus.NOT_FOUND, e.getMessage());
 	}
 
+	@ExceptionHandler(ChangeTokenExpiredException.class)
+	@ResponseStatus(HttpStatus.GONE)
+	public ErrorDTO handleChangeTokenExpiredException(ChangeTokenExpiredException e) {
+		return new ErrorDTO(HttpStatus.GONE, e.getMessage());
+	}
+
+	@ExceptionHandler(TodoVersionConflictException.class)
+	@ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+	public ErrorDTO handleTodoVersionConflictException(TodoVersionConflictException e) {
+		return new ErrorDTO(HttpStatus.PRECONDITION_FAILED, e.getMessage());
+	}
+
 	@PutMapping("/undo")
 	public ResponseEntity<Void> undo() throws UndoNotPossibleException {
 		service.undo();
@@ -0,0 +1,76 @@
+package com.geraldsaccount.neuefische_todo.controller;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+
+import com.geraldsaccount.neuefische_todo.model.tasks.Task;
+
+/**
+ * Strong ETags for tasks. A single task is tagged with its version, a list of
+ * tasks with a hash over the ids and versions it contains. Tasks stored before
+ * versioning are given version 0 on start by {@code TaskVersionBackfill}, a
+ * task without a version still falls back to a hash of its content, which no
+ * If-Match can name.
+ */
+final class TaskETags {
+	private TaskETags() {
+	}
+
+	static String of(Task task) {
+		if (task.version() != null) {
+			return "\"" + task.version() + "\"";
+		}
+		return "\"h" + hash(List.of(task)) + "\"";
+	}
+
+	static String of(List<Task> tasks) {
+		return "\"c" + hash(tasks) + "\"";
+	}
+
+	/**
+	 * Parses an If-Match header into the task versions it accepts.
+	 *
+	 * @return null if any version is accepted, otherwise the accepted versions,
+	 *         which may be empty if none of the tags can match
+	 */
+	static List<Long> versionsOf(String ifMatch) {
+		if (ifMatch == null || ifMatch.isBlank() || ifMatch.strip().equals("*")) {
+			return null;
+		}
+		List<Long> versions = new ArrayList<>();
+		for (String tag : ifMatch.split(",")) {
+			tag = tag.strip();
+			// weak tags never match an If-Match, they do not start with a quote
+			if (tag.length() > 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+				try {
+					versions.add(Long.parseLong(tag.substring(1, tag.length() - 1)));
+				} catch (NumberFormatException e) {
+					// not a version tag, cannot match
+				}
+			}
+		}
+		return versions;
+	}
+
+	private static String hash(List<Task> tasks) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			for (Task task : tasks) {
+				digest.update(String.valueOf(task.id()).getBytes(StandardCharsets.UTF_8));
+				digest.update((byte) 0);
+				String state = task.version() != null
+						? task.version().toString()
+						: task.status() + ":" + task.description();
+				digest.update(state.getBytes(StandardCharsets.UTF_8));
+				digest.update((byte) 0);
+			}
+			return HexFormat.of().formatHex(digest.digest(), 0, 16);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not available", e);
+		}
+	}
+}
@@ -0,0 +1,15 @@
+package com.geraldsaccount.neuefische_todo.model.corrections;
+
+import java.time.Instant;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+@Document("corrections")
+public record CachedCorrection(
+		@Id String key,
+		String correction,
+		@Indexed(expireAfter = "0s") Instant expiresAt) {
+
+}
@@ -0,0 +1,5 @@
+package com.geraldsaccount.neuefische_todo.model.corrections;
+
+public record CorrectionCacheStats(long hits, long misses, long evictions, int size) {
+
+}
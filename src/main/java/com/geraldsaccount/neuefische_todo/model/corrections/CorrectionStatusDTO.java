@@ -0,0 +1,5 @@
+package com.geraldsaccount.neuefische_todo.model.corrections;
+
+public record CorrectionStatusDTO(String taskId, boolean pending) {
+
+}
@@ -6,4 +6,8 @@ public class OpenAiException extends Exception {
 		super(message);
 	}
 
+	public OpenAiException(String message, Throwable cause) {
+		super(message, cause);
+	}
+
 }
@@ -9,9 +9,10 @@ public record OpenAiResponse(String id,
 		String error,
 		String incompleteDetails,
 		String instructions,
-		List<OpenAiOutput> output) {
+		List<OpenAiOutput> output,
+		OpenAiUsage usage) {
 	public OpenAiResponse(String status, String instructions, List<OpenAiOutput> output) {
-		this("O1", "object", 1, status, null, null, instructions, output);
+		this("O1", "object", 1, status, null, null, instructions, output, null);
 	}
 
 	public static OpenAiResponse ofResponse(String message) {
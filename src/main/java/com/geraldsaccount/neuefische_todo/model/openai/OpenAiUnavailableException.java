@@ -0,0 +1,9 @@
+package com.geraldsaccount.neuefische_todo.model.openai;
+
+public class OpenAiUnavailableException extends OpenAiException {
+
+	public OpenAiUnavailableException(String message) {
+		super(message);
+	}
+
+}
@@ -0,0 +1,7 @@
+package com.geraldsaccount.neuefische_todo.model.openai;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public record OpenAiUsage(@JsonProperty("input_tokens") long inputTokens,
+		@JsonProperty("output_tokens") long outputTokens) {
+}
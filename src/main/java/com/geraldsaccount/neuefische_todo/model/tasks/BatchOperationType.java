@@ -0,0 +1,7 @@
+package com.geraldsaccount.neuefische_todo.model.tasks;
+
+public enum BatchOperationType {
+	CREATE,
+	UPDATE,
+	DELETE;
+}
@@ -1,14 +1,56 @@
 package com.geraldsaccount.neuefische_todo.model.tasks;
 
+import org.springframework.data.annotation.PersistenceCreator;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.geraldsaccount.neuefische_todo.model.tasks.dto.TaskDTO;
 
 import lombok.With;
 
+/**
+ * A todo. {@code version} is increased by every write and is exposed to
+ * clients as the task's ETag. The document also carries the change sequence of
+ * its last write, which is not mapped here.
+ * <p>
+ * Every task belongs to a {@code tenant}, which is never sent to or taken from
+ * clients. Tasks stored before tenants existed have none and belong to
+ * {@value #DEFAULT_TENANT}. All indexes start with the tenant, so a tenant's
+ * queries only read its own part of each index, and {@code {tenant: 1, _id: 1}}
+ * is the shard key. There is no index on the description: pages are sorted
+ * by id, and a range on the description ahead of the id in an index would
+ * make every page with a prefix filter sort in memory.
+ *
+ * @see com.geraldsaccount.neuefische_todo.repository.ChangeSequence
+ */
 @With
 @Document("tasks")
-public record Task(String id, String description, TaskStatus status) {
+@CompoundIndex(name = "tenant_id", def = "{'tenant': 1, '_id': 1}")
+@CompoundIndex(name = "tenant_status_id", def = "{'tenant': 1, 'status': 1, '_id': 1}")
+@CompoundIndex(name = "tenant_changeSeq_id", def = "{'tenant': 1, 'changeSeq': 1, '_id': 1}")
+public record Task(String id, String description, TaskStatus status,
+		@Version @JsonInclude(JsonInclude.Include.NON_NULL) Long version,
+		@JsonIgnore String tenant) {
+	public static final String DEFAULT_TENANT = "default";
+
+	@PersistenceCreator
+	public Task {
+		if (tenant == null) {
+			tenant = DEFAULT_TENANT;
+		}
+	}
+
+	public Task(String id, String description, TaskStatus status, Long version) {
+		this(id, description, status, version, null);
+	}
+
+	public Task(String id, String description, TaskStatus status) {
+		this(id, description, status, null, null);
+	}
+
 	public static Task of(TaskDTO dto) {
 		return new Task("", dto.description(), dto.status());
 	}
@@ -0,0 +1,11 @@
+package com.geraldsaccount.neuefische_todo.model.tasks;
+
+/**
+ * A task as of its last change, {@code task} is null if it was deleted.
+ */
+public record TaskChange(long changeSeq, String id, Task task) {
+
+	public boolean deleted() {
+		return task == null;
+	}
+}
@@ -0,0 +1,7 @@
+package com.geraldsaccount.neuefische_todo.model.tasks;
+
+public enum TaskEventType {
+	CREATED,
+	UPDATED,
+	DELETED
+}
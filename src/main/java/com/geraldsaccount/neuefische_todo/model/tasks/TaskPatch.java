@@ -0,0 +1,22 @@
+package com.geraldsaccount.neuefische_todo.model.tasks;
+
+import java.util.Objects;
+
+/**
+ * The fields of a task that change, fields that stay the same are null.
+ */
+public record TaskPatch(String description, TaskStatus status) {
+
+	/**
+	 * @return the fields of {@code to} that differ from {@code from}
+	 */
+	public static TaskPatch between(Task from, Task to) {
+		return new TaskPatch(
+				Objects.equals(from.description(), to.description()) ? null : to.description(),
+				from.status() == to.status() ? null : to.status());
+	}
+
+	public boolean isEmpty() {
+		return description == null && status == null;
+	}
+}
@@ -0,0 +1,21 @@
+package com.geraldsaccount.neuefische_todo.model.tasks;
+
+import java.time.Instant;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Marks a deleted task for clients that sync changes, until it expires.
+ */
+@Document("task_tombstones")
+@CompoundIndex(name = "tenant_changeSeq_id", def = "{'tenant': 1, 'changeSeq': 1, '_id': 1}")
+public record TaskTombstone(
+		@Id String id,
+		String tenant,
+		long changeSeq,
+		@Indexed(expireAfter = "0s") Instant expiresAt) {
+
+}
@@ -0,0 +1,11 @@
+package com.geraldsaccount.neuefische_todo.model.tasks.dto;
+
+import org.springframework.http.HttpStatus;
+
+public record BatchItemResultDTO(int index, String id, HttpStatus status, String message) {
+
+	public BatchItemResultDTO(int index, String id, HttpStatus status) {
+		this(index, id, status, null);
+	}
+
+}
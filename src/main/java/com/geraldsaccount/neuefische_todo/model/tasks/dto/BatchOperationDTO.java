@@ -0,0 +1,8 @@
+package com.geraldsaccount.neuefische_todo.model.tasks.dto;
+
+import com.geraldsaccount.neuefische_todo.model.tasks.BatchOperationType;
+import com.geraldsaccount.neuefische_todo.model.tasks.TaskStatus;
+
+public record BatchOperationDTO(BatchOperationType type, String id, String description, TaskStatus status) {
+
+}
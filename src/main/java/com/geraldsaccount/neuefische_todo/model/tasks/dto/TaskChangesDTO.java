@@ -0,0 +1,13 @@
+package com.geraldsaccount.neuefische_todo.model.tasks.dto;
+
+import java.util.List;
+
+import com.geraldsaccount.neuefische_todo.model.tasks.Task;
+
+/**
+ * Tasks created or updated and ids of tasks deleted since a change token.
+ * {@code more} is set if further changes are waiting after {@code token}.
+ */
+public record TaskChangesDTO(List<Task> changed, List<String> deleted, String token, boolean more) {
+
+}
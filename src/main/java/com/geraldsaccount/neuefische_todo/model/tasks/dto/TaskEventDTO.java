@@ -0,0 +1,19 @@
+package com.geraldsaccount.neuefische_todo.model.tasks.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.geraldsaccount.neuefische_todo.model.tasks.Task;
+import com.geraldsaccount.neuefische_todo.model.tasks.TaskEventType;
+
+/**
+ * A change of a single task. {@code task} is the state after the change, it is
+ * null for deletes and for bulk updates whose resulting version is unknown.
+ * {@code tenant} is only used to route the event and is null if it is not
+ * known, such events reach no subscriber.
+ */
+public record TaskEventDTO(TaskEventType type, String id, Task task, @JsonIgnore String tenant) {
+
+	public TaskEventDTO(TaskEventType type, String id, Task task) {
+		this(type, id, task, task == null ? null : task.tenant());
+	}
+
+}
@@ -0,0 +1,9 @@
+package com.geraldsaccount.neuefische_todo.model.tasks.dto;
+
+import java.util.List;
+
+import com.geraldsaccount.neuefische_todo.model.tasks.Task;
+
+public record TaskPageDTO(List<Task> tasks, String nextCursor) {
+
+}
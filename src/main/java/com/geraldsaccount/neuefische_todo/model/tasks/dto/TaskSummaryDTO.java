@@ -0,0 +1,13 @@
+package com.geraldsaccount.neuefische_todo.model.tasks.dto;
+
+import java.util.Map;
+
+import com.geraldsaccount.neuefische_todo.model.tasks.TaskStatus;
+
+/**
+ * Number of tasks in total and per status, every status is listed even
+ * without tasks.
+ */
+public record TaskSummaryDTO(long total, Map<TaskStatus, Long> byStatus) {
+
+}
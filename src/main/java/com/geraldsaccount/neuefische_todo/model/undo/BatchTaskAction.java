@@ -0,0 +1,51 @@
+package com.geraldsaccount.neuefische_todo.model.undo;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import com.geraldsaccount.neuefische_todo.model.tasks.Task;
+import com.geraldsaccount.neuefische_todo.repository.TaskRepo;
+
+public class BatchTaskAction implements UndoableAction {
+	private final TaskRepo repo;
+	private final List<Task> created;
+	private final List<Task> updatedBefore;
+	private final List<Task> updatedAfter;
+	private final List<Task> deleted;
+
+	/**
+	 * @param created       the tasks the batch created
+	 * @param updatedBefore state of the updated tasks before the batch
+	 * @param updatedAfter  state of the updated tasks after the batch
+	 * @param deleted       state of the deleted tasks before the batch
+	 */
+	public BatchTaskAction(TaskRepo repo, List<Task> created, List<Task> updatedBefore,
+			List<Task> updatedAfter, List<Task> deleted) {
+		this.repo = repo;
+		this.created = created;
+		this.updatedBefore = updatedBefore;
+		this.updatedAfter = updatedAfter;
+		this.deleted = deleted;
+	}
+
+	@Override
+	public Optional<Task> undo() {
+		repo.bulkWrite(deleted, updatedBefore, created.stream().map(Task::id).toList());
+		return Optional.empty();
+	}
+
+	@Override
+	public Optional<Task> redo() {
+		repo.bulkWrite(created, updatedAfter, deleted.stream().map(Task::id).toList());
+		return Optional.empty();
+	}
+
+	@Override
+	public UndoSnapshot snapshot() {
+		return new UndoSnapshot(UndoActionType.BATCH,
+				Stream.concat(updatedBefore.stream(), deleted.stream()).toList(),
+				Stream.concat(created.stream(), updatedAfter.stream()).toList());
+	}
+
+}
@@ -1,5 +1,6 @@
 package com.geraldsaccount.neuefische_todo.model.undo;
 
+import java.util.List;
 import java.util.Optional;
 
 import com.geraldsaccount.neuefische_todo.model.tasks.Task;
@@ -22,8 +23,13 @@ public class CreateTaskAction implements UndoableAction {
 
 	@Override
 	public Optional<Task> redo() {
-		repo.save(task);
+		repo.restore(task);
 		return Optional.of(task);
 	}
 
+	@Override
+	public UndoSnapshot snapshot() {
+		return new UndoSnapshot(UndoActionType.CREATE, List.of(), List.of(task));
+	}
+
 }
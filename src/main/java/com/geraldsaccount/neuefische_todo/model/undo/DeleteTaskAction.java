@@ -1,5 +1,6 @@
 package com.geraldsaccount.neuefische_todo.model.undo;
 
+import java.util.List;
 import java.util.Optional;
 
 import com.geraldsaccount.neuefische_todo.model.tasks.Task;
@@ -16,7 +17,7 @@ public class DeleteTaskAction implements UndoableAction {
 
 	@Override
 	public Optional<Task> undo() {
-		repo.save(task);
+		repo.restore(task);
 		return Optional.of(task);
 	}
 
@@ -26,4 +27,9 @@ public class DeleteTaskAction implements UndoableAction {
 		return Optional.empty();
 	}
 
+	@Override
+	public UndoSnapshot snapshot() {
+		return new UndoSnapshot(UndoActionType.DELETE, List.of(task), List.of());
+	}
+
 }
@@ -0,0 +1,8 @@
+package com.geraldsaccount.neuefische_todo.model.undo;
+
+public enum UndoActionType {
+	CREATE,
+	UPDATE,
+	DELETE,
+	BATCH
+}
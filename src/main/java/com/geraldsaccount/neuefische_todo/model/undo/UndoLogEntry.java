@@ -0,0 +1,24 @@
+package com.geraldsaccount.neuefische_todo.model.undo;
+
+import java.util.List;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import com.geraldsaccount.neuefische_todo.model.tasks.Task;
+
+/**
+ * One action in the persistent undo log. Entries are never removed, when a
+ * redo tail is dropped a later entry reuses the {@code seq} with a higher
+ * {@code push}. The only change is marking the entry of a push that lost
+ * against a concurrent one as abandoned.
+ */
+@Document(UndoLogEntry.COLLECTION)
+public record UndoLogEntry(@Id String id, String user, long seq, long push,
+		UndoActionType type, List<Task> before, List<Task> after) {
+	public static final String COLLECTION = "undo_log";
+
+	public UndoSnapshot snapshot() {
+		return new UndoSnapshot(type, before, after);
+	}
+}
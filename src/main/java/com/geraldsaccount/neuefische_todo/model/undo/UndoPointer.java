@@ -0,0 +1,16 @@
+package com.geraldsaccount.neuefische_todo.model.undo;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Position of a user in the persistent undo log. Entries {@code floor + 1} to
+ * {@code cursor} can be undone, entries up to {@code head} redone.
+ * {@code pushes} counts every action ever pushed. {@code current} is the
+ * snapshot of entry {@code cursor} and {@code undone} the one of entry
+ * {@code cursor + 1}, each null when only the log has it.
+ */
+@Document("undo_pointers")
+public record UndoPointer(@Id String user, long cursor, long head, long floor, long pushes,
+		UndoSnapshot current, UndoSnapshot undone) {
+}
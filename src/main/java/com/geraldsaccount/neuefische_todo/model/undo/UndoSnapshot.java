@@ -0,0 +1,39 @@
+package com.geraldsaccount.neuefische_todo.model.undo;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import com.geraldsaccount.neuefische_todo.model.tasks.Task;
+import com.geraldsaccount.neuefische_todo.model.tasks.TaskPatch;
+import com.geraldsaccount.neuefische_todo.repository.TaskRepo;
+
+/**
+ * Plain data form of an {@link UndoableAction}: the tasks it touched as they
+ * were before and after it. A task only in {@code after} was created, one only
+ * in {@code before} was deleted. Updates only carry the fields they changed.
+ */
+public record UndoSnapshot(UndoActionType type, List<Task> before, List<Task> after) {
+
+	public UndoableAction toAction(TaskRepo repo) {
+		return switch (type) {
+			case CREATE -> new CreateTaskAction(repo, after.getFirst());
+			case UPDATE -> new UpdateTaskAction(repo, before.getFirst().id(),
+					new TaskPatch(before.getFirst().description(), before.getFirst().status()),
+					new TaskPatch(after.getFirst().description(), after.getFirst().status()));
+			case DELETE -> new DeleteTaskAction(repo, before.getFirst());
+			case BATCH -> {
+				Map<String, Task> beforeById = before.stream()
+						.collect(Collectors.toMap(Task::id, Function.identity()));
+				Map<String, Task> afterById = after.stream()
+						.collect(Collectors.toMap(Task::id, Function.identity()));
+				yield new BatchTaskAction(repo,
+						after.stream().filter(t -> !beforeById.containsKey(t.id())).toList(),
+						before.stream().filter(t -> afterById.containsKey(t.id())).toList(),
+						after.stream().filter(t -> beforeById.containsKey(t.id())).toList(),
+						before.stream().filter(t -> !afterById.containsKey(t.id())).toList());
+			}
+		};
+	}
+}
@@ -8,4 +8,6 @@ public interface UndoableAction {
 	Optional<Task> undo();
 
 	Optional<Task> redo();
+
+	UndoSnapshot snapshot();
 }
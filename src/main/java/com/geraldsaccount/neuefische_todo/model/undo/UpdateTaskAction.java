@@ -1,31 +1,56 @@
 package com.geraldsaccount.neuefische_todo.model.undo;
 
+import java.util.List;
 import java.util.Optional;
 
 import com.geraldsaccount.neuefische_todo.model.tasks.Task;
+import com.geraldsaccount.neuefische_todo.model.tasks.TaskPatch;
 import com.geraldsaccount.neuefische_todo.repository.TaskRepo;
 
+/**
+ * Keeps only the fields an update changed, so toggling the status of a task
+ * does not hold on to two copies of its description.
+ */
 public class UpdateTaskAction implements UndoableAction {
 	private final TaskRepo repo;
-	private final Task before;
-	private final Task after;
+	private final String id;
+	private final TaskPatch undoPatch;
+	private final TaskPatch redoPatch;
 
 	public UpdateTaskAction(TaskRepo repo, Task after, Task before) {
+		this(repo, after.id(), TaskPatch.between(after, before), TaskPatch.between(before, after));
+	}
+
+	public UpdateTaskAction(TaskRepo repo, String id, TaskPatch undoPatch, TaskPatch redoPatch) {
 		this.repo = repo;
-		this.after = after;
-		this.before = before;
+		this.id = id;
+		this.undoPatch = undoPatch;
+		this.redoPatch = redoPatch;
 	}
 
 	@Override
 	public Optional<Task> undo() {
-		repo.save(before);
-		return Optional.of(before);
+		return apply(undoPatch);
 	}
 
 	@Override
 	public Optional<Task> redo() {
-		repo.save(after);
-		return Optional.of(after);
+		return apply(redoPatch);
+	}
+
+	private Optional<Task> apply(TaskPatch patch) {
+		if (patch.isEmpty()) {
+			return Optional.empty();
+		}
+		return repo.applyPatch(id, patch);
+	}
+
+	@Override
+	public UndoSnapshot snapshot() {
+		// unchanged fields stay null and are not written to the undo log
+		return new UndoSnapshot(UndoActionType.UPDATE,
+				List.of(new Task(id, undoPatch.description(), undoPatch.status())),
+				List.of(new Task(id, redoPatch.description(), redoPatch.status())));
 	}
 
 }
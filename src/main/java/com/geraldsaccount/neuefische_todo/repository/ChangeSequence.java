@@ -0,0 +1,97 @@
+package com.geraldsaccount.neuefische_todo.repository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.core.mapping.event.BeforeSaveCallback;
+import org.springframework.data.mongodb.core.mapping.event.ReactiveBeforeSaveCallback;
+import org.springframework.stereotype.Component;
+
+import com.geraldsaccount.neuefische_todo.model.tasks.Task;
+import com.geraldsaccount.neuefische_todo.model.tasks.TaskTombstone;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Hands out the change sequence that every task write stores in the
+ * {@value #FIELD} field of the task document and every delete in its
+ * {@link TaskTombstone}. A sequence is the Unix milliseconds shifted by 12
+ * bits plus a counter, so it is strictly increasing within a process and
+ * comparable to a point in time across replicas.
+ * <p>
+ * Saves and inserts are stamped here, updates set the field themselves.
+ * Tombstones expire after {@code retention}, changes older than that can no
+ * longer be synced.
+ */
+@Component
+public class ChangeSequence implements BeforeSaveCallback<Task> {
+	public static final String FIELD = "changeSeq";
+	private static final int COUNTER_BITS = 12;
+
+	// milliseconds << COUNTER_BITS | counter of the last sequence
+	private final AtomicLong last = new AtomicLong();
+	private final Duration retention;
+
+	public ChangeSequence(@Value("${tasks.changes.retention:7d}") Duration retention) {
+		this.retention = retention;
+	}
+
+	public long next() {
+		long now = at(Instant.now());
+		while (true) {
+			long previous = last.get();
+			// an exhausted counter carries into the milliseconds, the clock catches up again
+			long next = Math.max(now, previous + 1);
+			if (last.compareAndSet(previous, next)) {
+				return next;
+			}
+		}
+	}
+
+	/**
+	 * The smallest sequence handed out at {@code instant}.
+	 */
+	public static long at(Instant instant) {
+		return instant.toEpochMilli() << COUNTER_BITS;
+	}
+
+	/**
+	 * The oldest sequence that changes can still be synced from.
+	 */
+	public long oldest() {
+		return at(Instant.now().minus(retention));
+	}
+
+	public TaskTombstone tombstone(String id, String tenant) {
+		return new TaskTombstone(id, tenant, next(), Instant.now().plus(retention));
+	}
+
+	@Override
+	public Task onBeforeSave(Task task, Document document, String collection) {
+		document.put(FIELD, next());
+		return task;
+	}
+
+	/**
+	 * Stamps the saves of the reactive repository.
+	 */
+	@Component
+	@Profile("reactive")
+	static class Reactive implements ReactiveBeforeSaveCallback<Task> {
+		private final ChangeSequence sequence;
+
+		Reactive(ChangeSequence sequence) {
+			this.sequence = sequence;
+		}
+
+		@Override
+		public Mono<Task> onBeforeSave(Task task, Document document, String collection) {
+			document.put(FIELD, sequence.next());
+			return Mono.just(task);
+		}
+	}
+}
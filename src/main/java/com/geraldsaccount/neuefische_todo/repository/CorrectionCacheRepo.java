@@ -0,0 +1,11 @@
+package com.geraldsaccount.neuefische_todo.repository;
+
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import com.geraldsaccount.neuefische_todo.model.corrections.CachedCorrection;
+
+@Repository
+public interface CorrectionCacheRepo extends MongoRepository<CachedCorrection, String> {
+
+}
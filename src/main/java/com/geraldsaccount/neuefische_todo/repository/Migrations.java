@@ -0,0 +1,40 @@
+package com.geraldsaccount.neuefische_todo.repository;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+import java.time.Instant;
+
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+/**
+ * Records the one-shot data migrations that have completed in the
+ * {@value #COLLECTION} collection, one document per migration id, so that
+ * they do not scan their collection again on every start. Replicas starting
+ * at the same time may both run a migration, which therefore has to be
+ * idempotent.
+ */
+@Component
+public class Migrations {
+	static final String COLLECTION = "migrations";
+
+	private final MongoTemplate template;
+
+	public Migrations(MongoTemplate template) {
+		this.template = template;
+	}
+
+	/**
+	 * Runs {@code migration} unless it completed before. It is only recorded
+	 * once it returns, a failed migration runs again on the next start.
+	 */
+	void runOnce(String id, Runnable migration) {
+		if (template.exists(query(where("_id").is(id)), COLLECTION)) {
+			return;
+		}
+		migration.run();
+		template.upsert(query(where("_id").is(id)), Update.update("completedAt", Instant.now()), COLLECTION);
+	}
+}
@@ -0,0 +1,26 @@
+package com.geraldsaccount.neuefische_todo.repository;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+
+import com.geraldsaccount.neuefische_todo.model.tasks.Task;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking counterpart of {@link TaskRepo} for the reactive profile.
+ */
+@Repository
+@Profile("reactive")
+public interface ReactiveTaskRepo extends ReactiveMongoRepository<Task, String>, ReactiveTaskRepoCustom {
+	// implemented by ReactiveTaskRepoCustomImpl so that these writes publish events as well
+	@Override
+	<S extends Task> Mono<S> save(S task);
+
+	@Override
+	Mono<Void> deleteById(String id);
+
+	Flux<Task> findByTenant(String tenant);
+}
@@ -0,0 +1,45 @@
+package com.geraldsaccount.neuefische_todo.repository;
+
+import java.util.Collection;
+
+import com.geraldsaccount.neuefische_todo.model.tasks.Task;
+import com.geraldsaccount.neuefische_todo.model.tasks.TaskStatus;
+import com.geraldsaccount.neuefische_todo.model.tasks.dto.TaskEventDTO;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * The writes of {@link TaskRepoCustom} that the reactive task API needs. Like
+ * there, every write publishes a {@link TaskEventDTO} application event.
+ */
+public interface ReactiveTaskRepoCustom {
+	<S extends Task> Mono<S> save(S task);
+
+	Mono<Void> deleteById(String id);
+
+	/**
+	 * @see TaskRepoCustom#updateDescriptionIfUnchanged
+	 */
+	Mono<Boolean> updateDescriptionIfUnchanged(String id, String expectedDescription, String newDescription);
+
+	/**
+	 * @see TaskRepoCustom#updateReturningPrevious
+	 */
+	Mono<Task> updateReturningPrevious(Task task, Collection<Long> expectedVersions);
+
+	/**
+	 * @see TaskRepoCustom#deleteReturningPrevious
+	 */
+	Mono<Task> deleteReturningPrevious(String tenant, String id, Collection<Long> expectedVersions);
+
+	/**
+	 * @see TaskRepoCustom#findPage
+	 */
+	Flux<Task> findPage(String tenant, String afterId, TaskStatus status, String descriptionPrefix, int limit);
+
+	/**
+	 * @see TaskRepoCustom#streamAfter
+	 */
+	Flux<Task> streamAfter(String tenant, String afterId, int batchSize);
+}
@@ -0,0 +1,130 @@
+package com.geraldsaccount.neuefische_todo.repository;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+import java.util.Collection;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.geraldsaccount.neuefische_todo.model.tasks.Task;
+import com.geraldsaccount.neuefische_todo.model.tasks.TaskEventType;
+import com.geraldsaccount.neuefische_todo.model.tasks.TaskStatus;
+import com.geraldsaccount.neuefische_todo.model.tasks.dto.TaskEventDTO;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+public class ReactiveTaskRepoCustomImpl implements ReactiveTaskRepoCustom {
+	private static final FindAndModifyOptions RETURN_NEW = FindAndModifyOptions.options().returnNew(true);
+
+	private final ReactiveMongoTemplate template;
+	private final ApplicationEventPublisher events;
+	private final ChangeSequence sequence;
+	private final TaskCounters counters;
+
+	public ReactiveTaskRepoCustomImpl(ReactiveMongoTemplate template, ApplicationEventPublisher events,
+			ChangeSequence sequence, TaskCounters counters, ObjectProvider<TaskCache> cache) {
+		// the writes below go straight to Mongo, a task cache would keep serving what they replaced
+		if (cache.getIfAvailable() != null) {
+			throw new IllegalStateException("tasks.cache.enabled is not supported with the reactive profile");
+		}
+		this.template = template;
+		this.events = events;
+		this.sequence = sequence;
+		this.counters = counters;
+	}
+
+	@Override
+	public <S extends Task> Mono<S> save(S task) {
+		// the reactive service saves only new tasks, changes go through updateReturningPrevious
+		Mono<S> saved = task.version() == null
+				? template.save(task).flatMap(created -> count(created.tenant(), null, created.status())
+						.thenReturn(created))
+				: replace(task);
+		return saved
+				.doOnNext(stored -> publish(task.version() == null ? TaskEventType.CREATED : TaskEventType.UPDATED,
+						stored));
+	}
+
+	@SuppressWarnings("unchecked")
+	private <S extends Task> Mono<S> replace(S task) {
+		S next = (S) task.withVersion(task.version() + 1);
+		return template.findAndReplace(TaskRepoCustomImpl.versioned(task), next)
+				.switchIfEmpty(Mono.error(() -> TaskRepoCustomImpl.versionConflict(task)))
+				.flatMap(previous -> count(next.tenant(), previous.status(), next.status()))
+				.thenReturn(next);
+	}
+
+	@Override
+	public Mono<Void> deleteById(String id) {
+		return template.findAndRemove(query(where("id").is(id)), Task.class)
+				.flatMap(this::deleted)
+				.then();
+	}
+
+	@Override
+	public Mono<Boolean> updateDescriptionIfUnchanged(String id, String expectedDescription, String newDescription) {
+		return template.findAndModify(
+				query(where("id").is(id).and("description").is(expectedDescription)),
+				Update.update("description", newDescription).inc("version", 1)
+						.set(ChangeSequence.FIELD, sequence.next()),
+				RETURN_NEW,
+				Task.class)
+				.doOnNext(updated -> publish(TaskEventType.UPDATED, updated))
+				.hasElement();
+	}
+
+	@Override
+	public Mono<Task> updateReturningPrevious(Task task, Collection<Long> expectedVersions) {
+		return template.findAndModify(
+				TaskRepoCustomImpl.byIdAndVersion(task.tenant(), task.id(), expectedVersions),
+				TaskRepoCustomImpl.overwrite(task, sequence.next()),
+				Task.class)
+				.flatMap(previous -> count(task.tenant(), previous.status(), task.status()).thenReturn(previous))
+				.doOnNext(previous -> publish(TaskEventType.UPDATED,
+						task.withVersion(previous.version() == null ? 1 : previous.version() + 1)));
+	}
+
+	@Override
+	public Mono<Task> deleteReturningPrevious(String tenant, String id, Collection<Long> expectedVersions) {
+		return template.findAndRemove(TaskRepoCustomImpl.byIdAndVersion(tenant, id, expectedVersions), Task.class)
+				.flatMap(this::deleted);
+	}
+
+	@Override
+	public Flux<Task> findPage(String tenant, String afterId, TaskStatus status, String descriptionPrefix,
+			int limit) {
+		return template.find(TaskRepoCustomImpl.pageQuery(tenant, afterId, status, descriptionPrefix, limit),
+				Task.class);
+	}
+
+	@Override
+	public Flux<Task> streamAfter(String tenant, String afterId, int batchSize) {
+		// the reactive driver requests further batches only as the subscriber asks for them
+		return template.find(TaskRepoCustomImpl.afterQuery(tenant, afterId, batchSize), Task.class);
+	}
+
+	private Mono<Task> deleted(Task deleted) {
+		return count(deleted.tenant(), deleted.status(), null)
+				.then(template.save(sequence.tombstone(deleted.id(), deleted.tenant())))
+				.thenReturn(deleted)
+				.doOnNext(task -> events.publishEvent(
+						new TaskEventDTO(TaskEventType.DELETED, task.id(), null, task.tenant())));
+	}
+
+	// the counters are written with the blocking template
+	private Mono<Void> count(String tenant, TaskStatus from, TaskStatus to) {
+		return Mono.<Void>fromRunnable(() -> counters.move(tenant, from, to))
+				.subscribeOn(Schedulers.boundedElastic());
+	}
+
+	private void publish(TaskEventType type, Task task) {
+		events.publishEvent(new TaskEventDTO(type, task.id(), task));
+	}
+}
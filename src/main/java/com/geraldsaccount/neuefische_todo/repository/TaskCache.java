@@ -0,0 +1,1002 @@
+package com.geraldsaccount.neuefische_todo.repository;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.CollectionOptions;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import com.geraldsaccount.neuefische_todo.model.tasks.Task;
+import com.geraldsaccount.neuefische_todo.model.tasks.TaskPatch;
+import com.geraldsaccount.neuefische_todo.model.tasks.TaskStatus;
+import com.mongodb.CursorType;
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Sorts;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * In-process copy of the tasks with Mongo as the backing store. A tenant's
+ * tasks are read the first time one of its lists or pages is requested and
+ * are then indexed by id and status, so that pages are served from memory
+ * without looking at other tenants' tasks. Tasks asked for by id are read on
+ * their own. Mongo is read outside the lock, so a tenant that is being loaded
+ * does not hold up any other request.
+ * <p>
+ * Writes only change the copy and mark the task dirty. Several writes to one
+ * task are coalesced and flushed as one unordered bulk write every
+ * {@code flushInterval}, when {@code flushBatchSize} tasks are dirty and on
+ * shutdown. Each flushed write only applies to the version it was made on; a
+ * write that another replica overtook is dropped, counted and the task is
+ * read again. Writes with expected versions, as sent with {@code If-Match},
+ * go to Mongo right away, so their condition is checked against every
+ * replica's writes.
+ * <p>
+ * After every flush the written ids and their tenants are appended to the
+ * capped {@value #INVALIDATIONS} collection. Every replica tails it and drops
+ * the tasks other replicas wrote, they are read again from Mongo on the next
+ * access.
+ */
+@Component
+@ConditionalOnProperty(name = "tasks.cache.enabled", havingValue = "true")
+public class TaskCache implements MeterBinder {
+	private static final Logger log = LoggerFactory.getLogger(TaskCache.class);
+
+	public static final String INVALIDATIONS = "task_invalidations";
+	// tailing restarts this far before the last seen invalidation, ids are generated on the writing replica
+	private static final long CLOCK_SKEW_MILLIS = 5000;
+
+	private final MongoTemplate template;
+	private final ChangeSequence sequence;
+	private final Duration flushInterval;
+	private final int flushBatchSize;
+	private final String node = UUID.randomUUID().toString();
+	private final ScheduledExecutorService flusher;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final TreeMap<String, Task> byId = new TreeMap<>();
+	private final Map<String, Partition> byTenant = new HashMap<>();
+	// tenants whose every task is in byId, unless it is stale
+	private final Set<String> loaded = new HashSet<>();
+	// tenant -> ids of loaded tenants another replica wrote since they were read
+	private final Map<String, Set<String>> stale = new HashMap<>();
+	// reads of Mongo that are running outside the lock
+	private final List<Read> reads = new ArrayList<>();
+	// id -> write to flush, after is null to delete
+	private LinkedHashMap<String, Write> dirty = new LinkedHashMap<>();
+	// writes of the flush that is running
+	private Map<String, Write> inFlight = Map.of();
+	// in-flight id -> tenant another replica wrote, dropped once the flush is done
+	private final Map<String, String> invalidatedInFlight = new HashMap<>();
+	private long oldestDirtyNanos;
+
+	// flushes must not overtake each other, or an older state could win
+	private final ReentrantLock flushLock = new ReentrantLock();
+	private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder flushed = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+	private final LongAdder conflicts = new LongAdder();
+
+	private volatile boolean running;
+	private Thread listener;
+
+	/**
+	 * A task before and after a write, {@code before} is null for an insert and
+	 * {@code after} for a delete.
+	 */
+	record Write(Task before, Task after) {
+		String id() {
+			return before != null ? before.id() : after.id();
+		}
+
+		String tenant() {
+			return before != null ? before.tenant() : after.tenant();
+		}
+	}
+
+	/**
+	 * The ids of one tenant's tasks, in id order.
+	 */
+	private record Partition(TreeSet<String> ids, Map<TaskStatus, TreeSet<String>> byStatus) {
+		Partition() {
+			this(new TreeSet<>(), new EnumMap<>(TaskStatus.class));
+		}
+
+		boolean isEmpty() {
+			return ids.isEmpty();
+		}
+	}
+
+	/**
+	 * A read of Mongo that runs outside the lock: tasks by id if {@code tenant}
+	 * is null, else the given stale ids of {@code tenant} or, without ids, all of
+	 * its tasks. Collects the invalidations that arrive while it runs, as its
+	 * result may be older than them.
+	 */
+	private static final class Read {
+		final String tenant;
+		final List<String> ids;
+		// id -> tenant, null if the invalidation did not say
+		final Map<String, String> invalidated = new HashMap<>();
+
+		Read(String tenant, List<String> ids) {
+			this.tenant = tenant;
+			this.ids = ids;
+		}
+
+		List<Task> run(MongoTemplate template) {
+			Query query = ids != null ? query(where("id").in(ids)) : query(TaskRepoCustomImpl.byTenant(tenant));
+			return template.find(query, Task.class);
+		}
+	}
+
+	public TaskCache(MongoTemplate template, ChangeSequence sequence,
+			@Value("${tasks.cache.flush-interval:200ms}") Duration flushInterval,
+			@Value("${tasks.cache.flush-batch-size:1000}") int flushBatchSize,
+			@Value("${tasks.cache.invalidation-log-size-bytes:1048576}") long invalidationLogSizeBytes) {
+		this.template = template;
+		this.sequence = sequence;
+		this.flushInterval = flushInterval;
+		this.flushBatchSize = flushBatchSize;
+		createInvalidationLog(invalidationLogSizeBytes);
+		flusher = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("task-cache-flush-"));
+	}
+
+	/**
+	 * Starts flushing and tailing the invalidations of other replicas.
+	 */
+	@PostConstruct
+	void start() {
+		flusher.scheduleWithFixedDelay(this::flushQuietly, flushInterval.toMillis(), flushInterval.toMillis(),
+				TimeUnit.MILLISECONDS);
+		running = true;
+		listener = new Thread(this::listen, "task-cache-invalidations");
+		listener.setDaemon(true);
+		listener.start();
+	}
+
+	private void createInvalidationLog(long sizeBytes) {
+		if (!template.collectionExists(INVALIDATIONS)) {
+			try {
+				template.createCollection(INVALIDATIONS, CollectionOptions.empty().capped().size(sizeBytes));
+			} catch (DataAccessException e) {
+				// another replica created it in the meantime
+				log.debug("Could not create task invalidation log: {}", e.getMessage());
+			}
+		}
+	}
+
+	// region reads
+	Optional<Task> get(String id) {
+		return withLoaded(null, id == null ? List.of() : List.of(id), () -> Optional.ofNullable(byId.get(id)));
+	}
+
+	List<Task> getAll(Collection<String> ids) {
+		return withLoaded(null, ids, () -> {
+			List<Task> found = new ArrayList<>();
+			for (String id : ids) {
+				Task task = byId.get(id);
+				if (task != null) {
+					found.add(task);
+				}
+			}
+			return found;
+		});
+	}
+
+	/**
+	 * All tasks of {@code tenant} with an id greater than {@code afterId} in id
+	 * order.
+	 */
+	List<Task> after(String tenant, String afterId) {
+		return page(tenant, afterId, null, null, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Same result as {@link TaskRepoCustom#findPage}.
+	 */
+	List<Task> page(String tenant, String afterId, TaskStatus status, String descriptionPrefix, int limit) {
+		return withLoaded(tenant, List.of(), () -> {
+			Partition partition = byTenant.getOrDefault(tenant, new Partition());
+			TreeSet<String> candidates = status == null
+					? partition.ids()
+					: partition.byStatus().getOrDefault(status, new TreeSet<>());
+			Iterable<String> ids = afterId == null ? candidates : candidates.tailSet(afterId, false);
+			List<Task> page = new ArrayList<>(Math.min(limit, 64));
+			for (String id : ids) {
+				if (page.size() >= limit) {
+					break;
+				}
+				Task task = byId.get(id);
+				if (descriptionPrefix == null || descriptionPrefix.isEmpty()
+						|| (task.description() != null && task.description().startsWith(descriptionPrefix))) {
+					page.add(task);
+				}
+			}
+			return page;
+		});
+	}
+
+	/**
+	 * Runs {@code operation} under the lock once the tasks with the given ids
+	 * and, unless it is null, every task of {@code tenant} are in memory or
+	 * known not to exist. Whatever is missing is read from Mongo outside the
+	 * lock first. Counts a hit if nothing had to be read.
+	 */
+	private <T> T withLoaded(String tenant, Collection<String> ids, Supplier<T> operation) {
+		Read read = null;
+		List<Task> found = List.of();
+		// ids a read of this call did not find
+		Set<String> absent = new HashSet<>();
+		while (true) {
+			lock.lock();
+			try {
+				if (read != null) {
+					reads.remove(read);
+					install(read, found, absent);
+				}
+				Read next = missing(tenant, ids, absent);
+				if (next == null) {
+					(read == null ? hits : misses).increment();
+					return operation.get();
+				}
+				read = next;
+				reads.add(read);
+			} finally {
+				lock.unlock();
+			}
+			try {
+				found = read.run(template);
+			} catch (RuntimeException e) {
+				lock.lock();
+				try {
+					reads.remove(read);
+				} finally {
+					lock.unlock();
+				}
+				throw e;
+			}
+		}
+	}
+
+	private Read missing(String tenant, Collection<String> ids, Set<String> absent) {
+		List<String> unknown = ids.stream()
+				.filter(id -> !isKnown(id) && !absent.contains(id))
+				.distinct()
+				.toList();
+		if (!unknown.isEmpty()) {
+			return new Read(null, unknown);
+		}
+		if (tenant == null) {
+			return null;
+		}
+		if (!loaded.contains(tenant)) {
+			return new Read(tenant, null);
+		}
+		Set<String> staleIds = stale.get(tenant);
+		return staleIds == null || staleIds.isEmpty() ? null : new Read(tenant, List.copyOf(staleIds));
+	}
+
+	/**
+	 * Whether this replica has the current state of a task, which may be that it
+	 * was deleted.
+	 */
+	private boolean isKnown(String id) {
+		return byId.containsKey(id) || dirty.containsKey(id) || inFlight.containsKey(id);
+	}
+
+	/**
+	 * Adds what a read found, except tasks that were written here or invalidated
+	 * while it ran.
+	 */
+	private void install(Read read, List<Task> found, Set<String> absent) {
+		Set<String> foundIds = new HashSet<>();
+		for (Task task : found) {
+			foundIds.add(task.id());
+			if (read.invalidated.containsKey(task.id())) {
+				markStale(task.id(), task.tenant());
+			} else if (!isKnown(task.id())) {
+				put(task);
+				unmarkStale(task.tenant(), task.id());
+			}
+		}
+		if (read.ids == null) {
+			loaded.add(read.tenant);
+			Set<String> staleIds = stale.get(read.tenant);
+			if (staleIds != null) {
+				// the read saw them, unless they changed again while it ran
+				staleIds.retainAll(read.invalidated.keySet());
+			}
+			read.invalidated.forEach((id, tenant) -> {
+				if (tenant == null || tenant.equals(read.tenant)) {
+					markStale(id, read.tenant);
+				}
+			});
+			return;
+		}
+		for (String id : read.ids) {
+			if (foundIds.contains(id) || read.invalidated.containsKey(id)) {
+				continue;
+			}
+			if (read.tenant == null) {
+				absent.add(id);
+			} else {
+				unmarkStale(read.tenant, id);
+			}
+		}
+	}
+
+	private void markStale(String id, String tenant) {
+		if (loaded.contains(tenant)) {
+			stale.computeIfAbsent(tenant, t -> new HashSet<>()).add(id);
+		}
+	}
+
+	private void unmarkStale(String tenant, String id) {
+		Set<String> staleIds = stale.get(tenant);
+		if (staleIds != null) {
+			staleIds.remove(id);
+		}
+	}
+	// endregion
+
+	// region writes
+	/**
+	 * Inserts a task without version, or replaces it if it still has the given
+	 * version, like {@link MongoTemplate#save} does for versioned entities.
+	 */
+	Write save(Task task) {
+		return withLoaded(null, List.of(task.id()), () -> {
+			Task current = byId.get(task.id());
+			if (task.version() == null) {
+				if (current != null) {
+					throw new DuplicateKeyException("Task with id " + task.id() + " already exists.");
+				}
+				return write(null, task.withVersion(0L));
+			}
+			if (current == null || !task.version().equals(current.version())) {
+				throw new OptimisticLockingFailureException(
+						"Task with id " + task.id() + " is not at version " + task.version() + ".");
+			}
+			return write(current, task.withVersion(task.version() + 1));
+		});
+	}
+
+	/**
+	 * Deletes a task, only if it belongs to {@code tenant} and its version is one
+	 * of {@code expectedVersions}, unless those are null.
+	 */
+	Write delete(String tenant, String id, Collection<Long> expectedVersions) {
+		if (expectedVersions != null) {
+			return writeThrough(tenant, id, expectedVersions, null);
+		}
+		return withLoaded(null, List.of(id), () -> deleteLoaded(tenant, id, expectedVersions));
+	}
+
+	private Write deleteLoaded(String tenant, String id, Collection<Long> expectedVersions) {
+		Task current = byId.get(id);
+		if (current == null || !matches(current, tenant, expectedVersions)) {
+			return null;
+		}
+		return write(current, null);
+	}
+
+	/**
+	 * Deletes every task, flushing first so that no write is left to recreate
+	 * one.
+	 */
+	void deleteAll() {
+		flushLock.lock();
+		try {
+			flush();
+			Query existing = new Query();
+			existing.fields().include("tenant");
+			List<Task> deleted = template.find(existing, Task.class);
+			template.remove(new Query(), Task.class);
+			lock.lock();
+			try {
+				for (String id : new ArrayList<>(byId.keySet())) {
+					if (!dirty.containsKey(id)) {
+						remove(id);
+					}
+				}
+				loaded.clear();
+				stale.clear();
+			} finally {
+				lock.unlock();
+			}
+			if (!deleted.isEmpty()) {
+				publishInvalidation(deleted.stream().map(Task::id).toList(),
+						deleted.stream().map(Task::tenant).toList());
+			}
+		} finally {
+			flushLock.unlock();
+		}
+	}
+
+	Write updateDescriptionIfUnchanged(String id, String expectedDescription, String newDescription) {
+		return withLoaded(null, List.of(id), () -> {
+			Task current = byId.get(id);
+			if (current == null || !Objects.equals(current.description(), expectedDescription)) {
+				return null;
+			}
+			return write(current, current.withDescription(newDescription).withVersion(next(current)));
+		});
+	}
+
+	/**
+	 * Overwrites description and status and increases the version, only if the
+	 * task belongs to {@code tenant} and its version is one of
+	 * {@code expectedVersions}, unless those are null.
+	 */
+	Write overwrite(String tenant, Task task, Collection<Long> expectedVersions) {
+		if (expectedVersions != null) {
+			return writeThrough(tenant, task.id(), expectedVersions, task);
+		}
+		return withLoaded(null, List.of(task.id()), () -> overwriteLoaded(tenant, task, expectedVersions));
+	}
+
+	private Write overwriteLoaded(String tenant, Task task, Collection<Long> expectedVersions) {
+		Task current = byId.get(task.id());
+		if (current == null || !matches(current, tenant, expectedVersions)) {
+			return null;
+		}
+		return write(current, current
+				.withDescription(task.description())
+				.withStatus(task.status())
+				.withVersion(next(current)));
+	}
+
+	Write applyPatch(String id, TaskPatch patch) {
+		return withLoaded(null, List.of(id), () -> {
+			Task current = byId.get(id);
+			if (current == null) {
+				return null;
+			}
+			Task patched = current.withVersion(next(current));
+			if (patch.description() != null) {
+				patched = patched.withDescription(patch.description());
+			}
+			if (patch.status() != null) {
+				patched = patched.withStatus(patch.status());
+			}
+			return write(current, patched);
+		});
+	}
+
+	/**
+	 * Same semantics as {@link TaskRepoCustom#restore}.
+	 */
+	Write restore(Task task) {
+		return withLoaded(null, List.of(task.id()), () -> {
+			Task current = byId.get(task.id());
+			if (current == null) {
+				return write(null, task);
+			}
+			return write(current, current
+					.withDescription(task.description())
+					.withStatus(task.status())
+					.withVersion(next(current)));
+		});
+	}
+
+	/**
+	 * Same semantics as {@link TaskRepoCustom#bulkWrite}, applied to the copy.
+	 */
+	Map<String, String> bulkWrite(Collection<Task> inserts, Collection<Task> updates, Collection<String> deletions) {
+		List<String> ids = new ArrayList<>();
+		inserts.forEach(task -> ids.add(task.id()));
+		updates.forEach(task -> ids.add(task.id()));
+		ids.addAll(deletions);
+		return withLoaded(null, ids, () -> {
+			Map<String, String> errors = new HashMap<>();
+			for (Task task : inserts) {
+				if (byId.containsKey(task.id())) {
+					errors.put(task.id(), "Task with id " + task.id() + " already exists.");
+				} else {
+					write(null, task.version() == null ? task.withVersion(0L) : task);
+				}
+			}
+			// like an unmatched updateOne, an update of a missing task is not an error
+			updates.forEach(task -> overwriteLoaded(null, task, null));
+			deletions.forEach(id -> deleteLoaded(null, id, null));
+			return errors;
+		});
+	}
+
+	/**
+	 * Overwrites description and status of a task, or deletes it if
+	 * {@code task} is null, directly in Mongo. The version condition is then
+	 * checked against what every replica wrote rather than this replica's copy,
+	 * which may not have seen another replica's write yet.
+	 */
+	private Write writeThrough(String tenant, String id, Collection<Long> expectedVersions, Task task) {
+		flushLock.lock();
+		try {
+			// Mongo has to hold this replica's writes before it can check the condition
+			flush();
+			Query condition = TaskRepoCustomImpl.byIdAndVersion(tenant, id, expectedVersions);
+			Task before = task == null
+					? template.findAndRemove(condition, Task.class)
+					: template.findAndModify(condition, TaskRepoCustomImpl.overwrite(task, sequence.next()),
+							Task.class);
+			Task after = before == null || task == null ? null
+					: before.withDescription(task.description())
+							.withStatus(task.status())
+							.withVersion(next(before));
+			lock.lock();
+			try {
+				if (!dirty.containsKey(id)) {
+					Task dropped = byId.get(id);
+					remove(id);
+					if (before == null) {
+						// the copy may be the one that missed a write
+						if (dropped != null) {
+							markStale(id, dropped.tenant());
+						}
+					} else if (after != null) {
+						put(after);
+					}
+				}
+			} finally {
+				lock.unlock();
+			}
+			if (before == null) {
+				return null;
+			}
+			publishInvalidation(List.of(id), List.of(before.tenant()));
+			return new Write(before, after);
+		} finally {
+			flushLock.unlock();
+		}
+	}
+
+	private static boolean matches(Task task, String tenant, Collection<Long> expectedVersions) {
+		return (tenant == null || tenant.equals(task.tenant()))
+				&& (expectedVersions == null || expectedVersions.contains(task.version()));
+	}
+
+	private static long next(Task task) {
+		return task.version() == null ? 1 : task.version() + 1;
+	}
+
+	private Write write(Task before, Task after) {
+		Write write = new Write(before, after);
+		remove(write.id());
+		if (after != null) {
+			put(after);
+		}
+		if (dirty.isEmpty()) {
+			oldestDirtyNanos = System.nanoTime();
+		}
+		// several writes flush as one, from the first state to the last
+		dirty.merge(write.id(), write, TaskCache::coalesce);
+		if (dirty.size() >= flushBatchSize && flushScheduled.compareAndSet(false, true)) {
+			flusher.execute(() -> {
+				flushScheduled.set(false);
+				flushQuietly();
+			});
+		}
+		return write;
+	}
+
+	/**
+	 * One write with the effect of {@code first} followed by {@code last}, null
+	 * if together they change nothing in Mongo.
+	 */
+	private static Write coalesce(Write first, Write last) {
+		if (first.before() == null && last.after() == null) {
+			return null;
+		}
+		return new Write(first.before(), last.after());
+	}
+
+	private void put(Task task) {
+		byId.put(task.id(), task);
+		Partition partition = byTenant.computeIfAbsent(task.tenant(), t -> new Partition());
+		partition.ids().add(task.id());
+		if (task.status() != null) {
+			partition.byStatus().computeIfAbsent(task.status(), s -> new TreeSet<>()).add(task.id());
+		}
+	}
+
+	private void remove(String id) {
+		Task removed = byId.remove(id);
+		if (removed == null) {
+			return;
+		}
+		Partition partition = byTenant.get(removed.tenant());
+		partition.ids().remove(id);
+		if (removed.status() != null) {
+			partition.byStatus().get(removed.status()).remove(id);
+		}
+		if (partition.isEmpty()) {
+			byTenant.remove(removed.tenant());
+		}
+	}
+	// endregion
+
+	// region flushing
+	private void flushQuietly() {
+		try {
+			flush();
+		} catch (RuntimeException e) {
+			log.warn("Could not flush task cache: {}", e.getMessage());
+		}
+	}
+
+	/**
+	 * Writes every dirty task to Mongo. Writes that fail stay dirty unless the
+	 * task was written again in the meantime.
+	 */
+	public void flush() {
+		flushLock.lock();
+		try {
+			LinkedHashMap<String, Write> batch;
+			lock.lock();
+			try {
+				if (dirty.isEmpty()) {
+					return;
+				}
+				batch = dirty;
+				dirty = new LinkedHashMap<>();
+				inFlight = batch;
+			} finally {
+				lock.unlock();
+			}
+
+			List<String> ids = new ArrayList<>(batch.keySet());
+			Set<String> failedIds = new HashSet<>();
+			Set<String> conflictIds = new HashSet<>();
+			BulkWriteResult result = null;
+			try {
+				BulkOperations operations = template.bulkOps(BulkMode.UNORDERED, Task.class);
+				for (Write write : batch.values()) {
+					if (write.before() == null) {
+						// fails on an id another replica inserted
+						operations.insert(write.after());
+					} else if (write.after() == null) {
+						operations.remove(expected(write.before()));
+					} else {
+						// a task at another version makes the upsert fail on its id
+						operations.replaceOne(expected(write.before()), write.after(),
+								FindAndReplaceOptions.options().upsert());
+					}
+				}
+				result = operations.execute();
+			} catch (BulkOperationException e) {
+				result = e.getResult();
+				for (BulkWriteError error : e.getErrors()) {
+					String id = ids.get(error.getIndex());
+					if (ErrorCategory.fromErrorCode(error.getCode()) == ErrorCategory.DUPLICATE_KEY) {
+						conflictIds.add(id);
+					} else {
+						failedIds.add(id);
+					}
+				}
+				if (!failedIds.isEmpty()) {
+					log.warn("Could not flush {} of {} tasks: {}", failedIds.size(), ids.size(),
+							e.getErrors().getFirst().getMessage());
+				}
+			} catch (DataAccessException | MongoException e) {
+				failedIds.addAll(ids);
+				log.warn("Could not flush {} tasks, retrying: {}", ids.size(), e.getMessage());
+			}
+			if (result != null) {
+				try {
+					conflictIds.addAll(conflicts(batch, ids, result, failedIds, conflictIds));
+				} catch (DataAccessException | MongoException e) {
+					log.warn("Could not check flushed tasks for conflicts: {}", e.getMessage());
+				}
+			}
+			if (!conflictIds.isEmpty()) {
+				log.warn("Dropped {} task writes that another replica overtook: {}", conflictIds.size(), conflictIds);
+			}
+
+			lock.lock();
+			try {
+				for (String id : conflictIds) {
+					// Mongo keeps the other replica's write, later writes here were built on ours
+					dirty.remove(id);
+					remove(id);
+					markStale(id, batch.get(id).tenant());
+				}
+				for (String id : failedIds) {
+					if (dirty.isEmpty()) {
+						oldestDirtyNanos = System.nanoTime();
+					}
+					// a later write goes on from the state Mongo still has
+					Write later = dirty.remove(id);
+					Write retry = later == null ? batch.get(id) : coalesce(batch.get(id), later);
+					if (retry != null) {
+						dirty.put(id, retry);
+					}
+				}
+				inFlight = Map.of();
+				// only Mongo knows which of the two writes came last
+				invalidatedInFlight.forEach((id, tenant) -> {
+					if (!dirty.containsKey(id)) {
+						Task dropped = byId.get(id);
+						remove(id);
+						markStale(id, dropped != null ? dropped.tenant() : tenant);
+					}
+				});
+				invalidatedInFlight.clear();
+			} finally {
+				lock.unlock();
+			}
+			failed.add(failedIds.size());
+			conflicts.add(conflictIds.size());
+			flushed.add(ids.size() - failedIds.size() - conflictIds.size());
+
+			List<Write> written = batch.values().stream()
+					.filter(write -> !failedIds.contains(write.id()) && !conflictIds.contains(write.id()))
+					.toList();
+			if (!written.isEmpty()) {
+				publishInvalidation(written.stream().map(Write::id).toList(),
+						written.stream().map(Write::tenant).toList());
+			}
+		} finally {
+			flushLock.unlock();
+		}
+	}
+
+	/**
+	 * Matches a task only at the version this replica last read or wrote.
+	 */
+	private static Query expected(Task before) {
+		return query(where("id").is(before.id()).and("version").is(before.version()));
+	}
+
+	/**
+	 * The writes of a flush that another replica overtook without the bulk write
+	 * reporting an error: updates of a task that was deleted in the meantime,
+	 * which the upsert inserted again and which are removed here, and deletes of
+	 * a task that was updated in the meantime.
+	 */
+	private Set<String> conflicts(Map<String, Write> batch, List<String> ids, BulkWriteResult result,
+			Set<String> failedIds, Set<String> conflictIds) {
+		Set<String> overtaken = new HashSet<>();
+		for (BulkWriteUpsert upsert : result.getUpserts()) {
+			Write write = batch.get(ids.get(upsert.getIndex()));
+			overtaken.add(write.id());
+			template.remove(expected(write.after()), Task.class);
+		}
+		List<String> deletes = batch.values().stream()
+				.filter(write -> write.after() == null)
+				.map(Write::id)
+				.filter(id -> !failedIds.contains(id) && !conflictIds.contains(id))
+				.toList();
+		if (result.getDeletedCount() < deletes.size()) {
+			Query remaining = query(where("id").in(deletes));
+			remaining.fields().include("id");
+			template.find(remaining, Task.class).forEach(task -> overtaken.add(task.id()));
+		}
+		return overtaken;
+	}
+
+	private void publishInvalidation(List<String> ids, List<String> tenants) {
+		try {
+			template.getCollection(INVALIDATIONS)
+					.insertOne(new Document("node", node).append("ids", ids).append("tenants", tenants));
+		} catch (DataAccessException | MongoException e) {
+			log.warn("Could not publish task invalidation: {}", e.getMessage());
+		}
+	}
+
+	/**
+	 * Seconds since the oldest write that has not reached Mongo yet.
+	 */
+	double flushLagSeconds() {
+		lock.lock();
+		try {
+			return dirty.isEmpty() ? 0 : (System.nanoTime() - oldestDirtyNanos) / 1e9;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	int dirtyCount() {
+		lock.lock();
+		try {
+			return dirty.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+	// endregion
+
+	// region invalidation
+	private void listen() {
+		ObjectId newest = newestInvalidation();
+		long since = newest == null ? System.currentTimeMillis() : newest.getDate().getTime();
+		while (running) {
+			// invalidations seen twice only cost a read
+			ObjectId from = new ObjectId(new Date(since - CLOCK_SKEW_MILLIS), 0);
+			try (MongoCursor<Document> cursor = template.getCollection(INVALIDATIONS)
+					.find(Filters.gt("_id", from))
+					.cursorType(CursorType.TailableAwait)
+					.maxAwaitTime(1, TimeUnit.SECONDS)
+					.cursor()) {
+				while (running) {
+					Document invalidation = cursor.tryNext();
+					if (invalidation == null) {
+						if (cursor.getServerCursor() == null) {
+							// a tailable cursor without any match is closed right away
+							break;
+						}
+						continue;
+					}
+					since = Math.max(since, invalidation.getObjectId("_id").getDate().getTime());
+					if (!node.equals(invalidation.getString("node"))) {
+						invalidate(invalidation.getList("ids", String.class),
+								invalidation.getList("tenants", String.class));
+					}
+				}
+			} catch (DataAccessException | MongoException | IllegalStateException e) {
+				if (!running) {
+					return;
+				}
+				log.warn("Task invalidation cursor failed, reopening: {}", e.getMessage());
+			}
+			sleepBeforeRetry();
+		}
+	}
+
+	private ObjectId newestInvalidation() {
+		try {
+			Document newest = template.getCollection(INVALIDATIONS).find()
+					.sort(Sorts.descending("$natural"))
+					.limit(1)
+					.first();
+			return newest == null ? null : newest.getObjectId("_id");
+		} catch (DataAccessException | MongoException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Drops tasks another replica wrote.
+	 *
+	 * @param tenants the tenant of each id, null if the replica did not say
+	 */
+	void invalidate(List<String> ids, List<String> tenants) {
+		lock.lock();
+		try {
+			for (int i = 0; i < ids.size(); i++) {
+				String id = ids.get(i);
+				String tenant = tenants == null ? null : tenants.get(i);
+				for (Read read : reads) {
+					read.invalidated.put(id, tenant);
+				}
+				if (dirty.containsKey(id)) {
+					// our own unflushed write wins, it will overwrite the other one
+					continue;
+				}
+				if (inFlight.containsKey(id)) {
+					// dropping it now would let a read miss our write that is about to land
+					invalidatedInFlight.put(id, tenant);
+					continue;
+				}
+				Task dropped = byId.get(id);
+				remove(id);
+				if (dropped != null) {
+					markStale(id, dropped.tenant());
+				} else if (tenant != null) {
+					markStale(id, tenant);
+				} else {
+					// a new task of an unknown tenant, no loaded tenant can be trusted to be complete
+					loaded.clear();
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void sleepBeforeRetry() {
+		try {
+			Thread.sleep(500);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			running = false;
+		}
+	}
+	// endregion
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		FunctionCounter.builder("tasks.cache.hits", hits, LongAdder::sum)
+				.description("Task reads served from memory")
+				.register(registry);
+		FunctionCounter.builder("tasks.cache.misses", misses, LongAdder::sum)
+				.description("Task reads that had to go to Mongo")
+				.register(registry);
+		Gauge.builder("tasks.cache.hit.ratio", this, cache -> {
+			double total = cache.hits.sum() + cache.misses.sum();
+			return total == 0 ? 1 : cache.hits.sum() / total;
+		}).register(registry);
+		FunctionCounter.builder("tasks.cache.flushed", flushed, LongAdder::sum)
+				.description("Task writes flushed to Mongo")
+				.register(registry);
+		FunctionCounter.builder("tasks.cache.flush.failures", failed, LongAdder::sum)
+				.description("Task writes that failed to flush and were retried")
+				.register(registry);
+		FunctionCounter.builder("tasks.cache.flush.conflicts", conflicts, LongAdder::sum)
+				.description("Task writes dropped because another replica wrote the task first")
+				.register(registry);
+		Gauge.builder("tasks.cache.flush.lag", this, TaskCache::flushLagSeconds)
+				.description("Age of the oldest write that has not reached Mongo")
+				.baseUnit("seconds")
+				.register(registry);
+		Gauge.builder("tasks.cache.dirty", this, TaskCache::dirtyCount)
+				.description("Tasks waiting to be flushed")
+				.register(registry);
+	}
+
+	@PreDestroy
+	void shutdown() throws InterruptedException {
+		running = false;
+		flusher.shutdown();
+		flusher.awaitTermination(5, TimeUnit.SECONDS);
+		flush();
+		if (listener != null) {
+			listener.join(TimeUnit.SECONDS.toMillis(2));
+		}
+	}
+}
@@ -0,0 +1,312 @@
+package com.geraldsaccount.neuefische_todo.repository;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import com.geraldsaccount.neuefische_todo.model.tasks.Task;
+import com.geraldsaccount.neuefische_todo.model.tasks.TaskStatus;
+import com.mongodb.MongoException;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Number of tasks per tenant and status, kept in one document per tenant in
+ * the {@value #COLLECTION} collection that every task write changes with
+ * {@code $inc}, so a summary never counts tasks. Each document also holds a
+ * sequence that every change increases.
+ * <p>
+ * The last known counts are kept in memory. This node's own writes update them
+ * right away, writes of other replicas are read every {@code refreshInterval}.
+ * Every {@code reconcileInterval} the counts are compared with the tasks and
+ * repaired. A tenant's repair only applies if no write to it happened while
+ * the tasks were counted, otherwise the next run tries again.
+ */
+@Component
+public class TaskCounters implements MeterBinder {
+	private static final Logger log = LoggerFactory.getLogger(TaskCounters.class);
+
+	public static final String COLLECTION = "task_counters";
+	private static final String SEQ = "seq";
+	private static final int RECONCILE_ATTEMPTS = 3;
+	private static final FindAndModifyOptions RETURN_NEW = FindAndModifyOptions.options().returnNew(true);
+	private static final FindAndModifyOptions UPSERT = FindAndModifyOptions.options().upsert(true).returnNew(true);
+
+	private final MongoTemplate template;
+	// null unless tasks.cache.enabled is set
+	private final TaskCache cache;
+	private final Duration refreshInterval;
+	private final Duration reconcileInterval;
+	private final ScheduledExecutorService scheduler;
+
+	// tenant -> counts
+	private final Map<String, Counts> counts = new ConcurrentHashMap<>();
+	private volatile boolean forceReconcile;
+
+	private record Counts(long seq, Map<TaskStatus, Long> byStatus) {
+	}
+
+	public TaskCounters(MongoTemplate template, ObjectProvider<TaskCache> cache,
+			@Value("${tasks.counters.refresh-interval:5s}") Duration refreshInterval,
+			@Value("${tasks.counters.reconcile-interval:10m}") Duration reconcileInterval) {
+		this.template = template;
+		this.cache = cache.getIfAvailable();
+		this.refreshInterval = refreshInterval;
+		this.reconcileInterval = reconcileInterval;
+		scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("task-counters-"));
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void start() {
+		scheduler.execute(this::initialize);
+		scheduler.scheduleWithFixedDelay(this::refresh, refreshInterval.toMillis(), refreshInterval.toMillis(),
+				TimeUnit.MILLISECONDS);
+		scheduler.scheduleWithFixedDelay(this::reconcile, reconcileInterval.toMillis(),
+				reconcileInterval.toMillis(), TimeUnit.MILLISECONDS);
+	}
+
+	void initialize() {
+		refresh();
+		if (counts.isEmpty() || forceReconcile) {
+			// nothing counted yet, the tasks may predate the counters
+			forceReconcile = false;
+			reconcile();
+		}
+	}
+
+	/**
+	 * Makes the start reconcile even if counters exist, for when counters were
+	 * dropped that other tenants' counters do not replace.
+	 */
+	void reconcileOnStart() {
+		forceReconcile = true;
+	}
+
+	/**
+	 * The last known number of tasks per status of a tenant, without statuses
+	 * that have no tasks.
+	 */
+	public Map<TaskStatus, Long> byStatus(String tenant) {
+		Counts tenantCounts = counts.get(tenant);
+		return tenantCounts == null ? Map.of() : tenantCounts.byStatus();
+	}
+
+	/**
+	 * Counts a task of {@code tenant} that changed from status {@code from} to
+	 * {@code to}, null stands for a task that did not or no longer exists.
+	 */
+	public void move(String tenant, TaskStatus from, TaskStatus to) {
+		if (from == to) {
+			return;
+		}
+		Map<TaskStatus, Long> deltas = new EnumMap<>(TaskStatus.class);
+		if (from != null) {
+			deltas.put(from, -1L);
+		}
+		if (to != null) {
+			deltas.put(to, 1L);
+		}
+		add(tenant, deltas);
+	}
+
+	public void add(String tenant, Map<TaskStatus, Long> deltas) {
+		Update update = new Update().inc(SEQ, 1);
+		boolean changed = false;
+		for (Map.Entry<TaskStatus, Long> delta : deltas.entrySet()) {
+			if (delta.getValue() != 0) {
+				update.inc(delta.getKey().name(), delta.getValue());
+				changed = true;
+			}
+		}
+		if (!changed) {
+			return;
+		}
+		try {
+			accept(template.findAndModify(byId(tenant), update, UPSERT, Document.class, COLLECTION));
+		} catch (DataAccessException | MongoException e) {
+			// the task write went through, the next reconciliation repairs the count
+			log.warn("Could not update task counters of {}: {}", tenant, e.getMessage());
+		}
+	}
+
+	/**
+	 * Drops the counts of every tenant, for when all tasks were removed.
+	 */
+	public void reset() {
+		template.remove(new Query(), COLLECTION);
+		counts.clear();
+	}
+
+	void refresh() {
+		try {
+			template.findAll(Document.class, COLLECTION).forEach(this::accept);
+		} catch (DataAccessException | MongoException e) {
+			log.warn("Could not read task counters: {}", e.getMessage());
+		}
+	}
+
+	/**
+	 * Counts the tasks per tenant and status and overwrites the counters with
+	 * the result.
+	 *
+	 * @return false if writes kept changing the counters of a tenant while
+	 *         counting
+	 */
+	boolean reconcile() {
+		try {
+			Set<String> pending = null;
+			for (int attempt = 0; attempt < RECONCILE_ATTEMPTS; attempt++) {
+				if (cache != null) {
+					// writes waiting in the cache are already counted
+					cache.flush();
+				}
+				Map<String, Document> before = new HashMap<>();
+				template.findAll(Document.class, COLLECTION).forEach(d -> before.put(d.getString("_id"), d));
+				Map<String, Map<TaskStatus, Long>> actual = countTasks();
+
+				Set<String> tenants = new HashSet<>(before.keySet());
+				tenants.addAll(actual.keySet());
+				if (pending != null) {
+					tenants.retainAll(pending);
+				}
+				pending = new HashSet<>();
+				for (String tenant : tenants) {
+					if (!repair(tenant, before.get(tenant), actual.getOrDefault(tenant, Map.of()))) {
+						pending.add(tenant);
+					}
+				}
+				if (pending.isEmpty()) {
+					return true;
+				}
+			}
+			log.debug("Task counters of {} kept changing, reconciling again in {}", pending, reconcileInterval);
+		} catch (DataAccessException | MongoException e) {
+			log.warn("Could not reconcile task counters: {}", e.getMessage());
+		}
+		return false;
+	}
+
+	private Map<String, Map<TaskStatus, Long>> countTasks() {
+		Aggregation aggregation = Aggregation.newAggregation(
+				Aggregation.group("tenant", "status").count().as("count"));
+		Map<String, Map<TaskStatus, Long>> actual = new HashMap<>();
+		for (Document group : template.aggregate(aggregation, Task.class, Document.class)) {
+			Document key = group.get("_id", Document.class);
+			String status = key.getString("status");
+			if (status == null) {
+				continue;
+			}
+			// tasks stored before tenants existed have none
+			String tenant = key.getString("tenant") == null ? Task.DEFAULT_TENANT : key.getString("tenant");
+			actual.computeIfAbsent(tenant, t -> new EnumMap<>(TaskStatus.class))
+					.merge(TaskStatus.valueOf(status), group.get("count", Number.class).longValue(), Long::sum);
+		}
+		return actual;
+	}
+
+	/**
+	 * @return false if the counters of the tenant changed since {@code before}
+	 *         was read
+	 */
+	private boolean repair(String tenant, Document before, Map<TaskStatus, Long> actual) {
+		long seq = before == null ? 0 : before.get(SEQ, Number.class).longValue();
+		Document after;
+		try {
+			after = template.findAndModify(byId(tenant).addCriteria(where(SEQ).is(seq)), set(actual),
+					before == null ? UPSERT : RETURN_NEW, Document.class, COLLECTION);
+		} catch (DuplicateKeyException e) {
+			// the upsert lost against a write that created the counters
+			return false;
+		}
+		if (after == null) {
+			return false;
+		}
+		accept(after);
+		Map<TaskStatus, Long> counted = before == null ? Map.of() : toCounts(before).byStatus();
+		if (!counted.equals(toCounts(after).byStatus())) {
+			log.info("Repaired task counters of {} from {} to {}", tenant, counted, actual);
+		}
+		return true;
+	}
+
+	private static Query byId(String tenant) {
+		return query(where("_id").is(tenant));
+	}
+
+	private static Update set(Map<TaskStatus, Long> byStatus) {
+		Update update = new Update().inc(SEQ, 1);
+		for (TaskStatus status : TaskStatus.values()) {
+			update.set(status.name(), byStatus.getOrDefault(status, 0L));
+		}
+		return update;
+	}
+
+	private void accept(Document document) {
+		Counts next = toCounts(document);
+		// answers of concurrent writes can arrive out of order
+		counts.merge(document.getString("_id"), next,
+				(current, candidate) -> candidate.seq() > current.seq() ? candidate : current);
+	}
+
+	private static Counts toCounts(Document document) {
+		Map<TaskStatus, Long> byStatus = new EnumMap<>(TaskStatus.class);
+		for (TaskStatus status : TaskStatus.values()) {
+			Number count = document.get(status.name(), Number.class);
+			if (count != null && count.longValue() != 0) {
+				byStatus.put(status, count.longValue());
+			}
+		}
+		return new Counts(document.get(SEQ, Number.class).longValue(), Collections.unmodifiableMap(byStatus));
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		// summed over tenants, a tenant tag would grow without bound
+		for (TaskStatus status : TaskStatus.values()) {
+			Gauge.builder("tasks", this, counters -> counters.counts.values().stream()
+					.mapToLong(c -> c.byStatus().getOrDefault(status, 0L))
+					.sum())
+					.description("Number of tasks")
+					.tag("status", status.name())
+					.register(registry);
+		}
+	}
+
+	@PreDestroy
+	void shutdown() throws InterruptedException {
+		scheduler.shutdownNow();
+		scheduler.awaitTermination(5, TimeUnit.SECONDS);
+	}
+}
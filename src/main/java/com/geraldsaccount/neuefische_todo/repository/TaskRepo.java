@@ -1,11 +1,38 @@
 package com.geraldsaccount.neuefische_todo.repository;
 
+import java.util.List;
+import java.util.Optional;
+
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
 import com.geraldsaccount.neuefische_todo.model.tasks.Task;
 
 @Repository
-public interface TaskRepo extends MongoRepository<Task, String> {
+public interface TaskRepo extends MongoRepository<Task, String>, TaskRepoCustom {
+	// implemented by TaskRepoCustomImpl so that these writes publish events as well
+	@Override
+	<S extends Task> S save(S task);
+
+	@Override
+	<S extends Task> List<S> saveAll(Iterable<S> tasks);
+
+	@Override
+	void deleteById(String id);
+
+	@Override
+	void deleteAll();
+
+	// implemented by TaskRepoCustomImpl so that these reads can be served by the TaskCache
+	@Override
+	Optional<Task> findById(String id);
+
+	@Override
+	boolean existsById(String id);
+
+	@Override
+	List<Task> findAll();
 
+	@Override
+	List<Task> findAllById(Iterable<String> ids);
 }
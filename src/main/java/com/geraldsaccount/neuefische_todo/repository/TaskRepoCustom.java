@@ -0,0 +1,146 @@
+package com.geraldsaccount.neuefische_todo.repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import com.geraldsaccount.neuefische_todo.model.tasks.Task;
+import com.geraldsaccount.neuefische_todo.model.tasks.TaskChange;
+import com.geraldsaccount.neuefische_todo.model.tasks.TaskPatch;
+import com.geraldsaccount.neuefische_todo.model.tasks.TaskStatus;
+import com.geraldsaccount.neuefische_todo.model.tasks.dto.TaskEventDTO;
+
+/**
+ * Task writes that go beyond plain CRUD. Every write in here, including the
+ * overridden {@link #save} and {@link #deleteById}, publishes a
+ * {@link TaskEventDTO} application event and updates the
+ * {@link TaskCounters}, deletes leave a tombstone for {@link #findChanges}.
+ * <p>
+ * Queries take the tenant whose tasks they read. Writes by id do not, task ids
+ * are unique across tenants and the service checks the tenant before it hands
+ * an id to them. Only the writes that take client input directly are limited
+ * to a tenant.
+ * <p>
+ * The CRUD methods are redeclared here as well so that they are served by the
+ * {@link TaskCache} when it is enabled.
+ */
+public interface TaskRepoCustom {
+	<S extends Task> S save(S task);
+
+	<S extends Task> List<S> saveAll(Iterable<S> tasks);
+
+	void deleteById(String id);
+
+	/**
+	 * Removes every task without publishing events, meant to reset the
+	 * collection.
+	 */
+	void deleteAll();
+
+	Optional<Task> findById(String id);
+
+	boolean existsById(String id);
+
+	List<Task> findAll();
+
+	List<Task> findAllByTenant(String tenant);
+
+	List<Task> findAllById(Iterable<String> ids);
+
+	/**
+	 * Replaces the description of a task only if it still equals the expected
+	 * value, so that a late correction never overwrites a newer user edit. The
+	 * version is increased like on every other write.
+	 *
+	 * @return true if the task was updated
+	 */
+	boolean updateDescriptionIfUnchanged(String id, String expectedDescription, String newDescription);
+
+	/**
+	 * Atomically overwrites description and status of an existing task of the
+	 * same tenant and increases its version. If {@code expectedVersions} is not
+	 * null the task is only updated while its version is one of them.
+	 *
+	 * @return the task as it was before the update, empty if it does not exist or
+	 *         has another version
+	 */
+	Optional<Task> updateReturningPrevious(Task task, Collection<Long> expectedVersions);
+
+	/**
+	 * Atomically deletes a task of {@code tenant}. If {@code expectedVersions} is
+	 * not null the task is only deleted while its version is one of them.
+	 *
+	 * @return the deleted task, empty if it did not exist or has another version
+	 */
+	Optional<Task> deleteReturningPrevious(String tenant, String id, Collection<Long> expectedVersions);
+
+	/**
+	 * Sets only the non-null fields of {@code patch} and increases the version.
+	 *
+	 * @return the task after the update, empty if it does not exist
+	 */
+	Optional<Task> applyPatch(String id, TaskPatch patch);
+
+	/**
+	 * Brings a task back to the given description and status, whatever version
+	 * it is at. A task that no longer exists is inserted with the version of the
+	 * given snapshot, an existing one gets a new version.
+	 */
+	void restore(Task task);
+
+	/**
+	 * Returns up to {@code limit} tasks of {@code tenant} with an id greater than
+	 * {@code afterId}, ordered by id. {@code status} and
+	 * {@code descriptionPrefix} are optional filters.
+	 */
+	List<Task> findPage(String tenant, String afterId, TaskStatus status, String descriptionPrefix, int limit);
+
+	/**
+	 * Streams all tasks of {@code tenant} with an id greater than {@code afterId}
+	 * in id order, fetching {@code batchSize} documents per cursor round trip.
+	 * The stream has to be closed by the caller.
+	 */
+	Stream<Task> streamAfter(String tenant, String afterId, int batchSize);
+
+	/**
+	 * Streams the tasks of every tenant in no particular order, like
+	 * {@link #streamAfter}.
+	 */
+	Stream<Task> streamAll(int batchSize);
+
+	/**
+	 * Returns up to {@code limit} changes of {@code tenant} ordered by change
+	 * sequence and id, starting after sequence {@code since} and id
+	 * {@code afterId}, or after every change of {@code since} if
+	 * {@code afterId} is null, up to sequence {@code until}. A task deleted and
+	 * created again can appear twice.
+	 *
+	 * @see ChangeSequence
+	 */
+	List<TaskChange> findChanges(String tenant, long since, String afterId, long until, int limit);
+
+	/**
+	 * Returns up to {@code limit} tasks of {@code tenant} whose description
+	 * contains a word of {@code query}, by Mongo text score. Needs a text index on the
+	 * description.
+	 */
+	List<Task> searchText(String tenant, String query, int limit);
+
+	/**
+	 * Returns the number of tasks of {@code tenant} per status without counting
+	 * them, statuses without tasks are left out.
+	 *
+	 * @see TaskCounters
+	 */
+	Map<TaskStatus, Long> countByStatus(String tenant);
+
+	/**
+	 * Inserts, updates and deletes tasks in one unordered bulk write. Updates
+	 * overwrite description and status and increase the version.
+	 *
+	 * @return error messages of the writes that failed, keyed by task id
+	 */
+	Map<String, String> bulkWrite(Collection<Task> inserts, Collection<Task> updates, Collection<String> deletions);
+}
@@ -0,0 +1,566 @@
+package com.geraldsaccount.neuefische_todo.repository;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Sort;
+import org.bson.Document;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.TextCriteria;
+import org.springframework.data.mongodb.core.query.TextQuery;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.geraldsaccount.neuefische_todo.model.tasks.Task;
+import com.geraldsaccount.neuefische_todo.model.tasks.TaskChange;
+import com.geraldsaccount.neuefische_todo.model.tasks.TaskEventType;
+import com.geraldsaccount.neuefische_todo.model.tasks.TaskPatch;
+import com.geraldsaccount.neuefische_todo.model.tasks.TaskStatus;
+import com.geraldsaccount.neuefische_todo.model.tasks.TaskTombstone;
+import com.geraldsaccount.neuefische_todo.model.tasks.dto.TaskEventDTO;
+import com.mongodb.bulk.BulkWriteError;
+
+public class TaskRepoCustomImpl implements TaskRepoCustom {
+	private static final FindAndModifyOptions RETURN_NEW = FindAndModifyOptions.options().returnNew(true);
+
+	private final MongoTemplate template;
+	private final ApplicationEventPublisher events;
+	private final ChangeSequence sequence;
+	private final TaskCounters counters;
+	// null unless tasks.cache.enabled is set
+	private final TaskCache cache;
+
+	public TaskRepoCustomImpl(MongoTemplate template, ApplicationEventPublisher events, ChangeSequence sequence,
+			TaskCounters counters, ObjectProvider<TaskCache> cache) {
+		this.template = template;
+		this.events = events;
+		this.sequence = sequence;
+		this.counters = counters;
+		this.cache = cache.getIfAvailable();
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <S extends Task> S save(S task) {
+		S saved;
+		if (cache != null) {
+			TaskCache.Write write = cache.save(task);
+			saved = (S) write.after();
+			counters.move(saved.tenant(), statusOf(write.before()), saved.status());
+		} else if (task.version() == null) {
+			// fails on an existing id
+			saved = template.save(task);
+			counters.move(saved.tenant(), null, saved.status());
+		} else {
+			// replaced and read in one step, so no other write falls between them
+			saved = (S) task.withVersion(task.version() + 1);
+			Task previous = template.findAndReplace(versioned(task), saved);
+			if (previous == null) {
+				throw versionConflict(task);
+			}
+			counters.move(saved.tenant(), previous.status(), saved.status());
+		}
+		publish(task.version() == null ? TaskEventType.CREATED : TaskEventType.UPDATED, saved);
+		return saved;
+	}
+
+	@Override
+	public <S extends Task> List<S> saveAll(Iterable<S> tasks) {
+		List<S> saved = new ArrayList<>();
+		tasks.forEach(task -> saved.add(save(task)));
+		return saved;
+	}
+
+	@Override
+	public void deleteById(String id) {
+		Task deleted;
+		if (cache != null) {
+			TaskCache.Write write = cache.delete(null, id, null);
+			deleted = write == null ? null : write.before();
+		} else {
+			deleted = template.findAndRemove(query(where("id").is(id)), Task.class);
+		}
+		if (deleted != null) {
+			counters.move(deleted.tenant(), deleted.status(), null);
+			deleted(List.of(deleted));
+		}
+	}
+
+	@Override
+	public void deleteAll() {
+		if (cache != null) {
+			cache.deleteAll();
+		} else {
+			template.remove(new Query(), Task.class);
+		}
+		template.remove(new Query(), TaskTombstone.class);
+		counters.reset();
+	}
+
+	@Override
+	public Optional<Task> findById(String id) {
+		return cache != null ? cache.get(id) : Optional.ofNullable(template.findById(id, Task.class));
+	}
+
+	@Override
+	public boolean existsById(String id) {
+		return cache != null ? cache.get(id).isPresent() : template.exists(query(where("id").is(id)), Task.class);
+	}
+
+	@Override
+	public List<Task> findAll() {
+		if (cache != null) {
+			// the cache only holds the tenants in use, every tenant is only in Mongo
+			cache.flush();
+		}
+		return template.findAll(Task.class);
+	}
+
+	@Override
+	public List<Task> findAllByTenant(String tenant) {
+		return cache != null ? cache.after(tenant, null) : template.find(query(byTenant(tenant)), Task.class);
+	}
+
+	@Override
+	public List<Task> findAllById(Iterable<String> ids) {
+		List<String> idList = new ArrayList<>();
+		ids.forEach(idList::add);
+		return cache != null ? cache.getAll(idList) : template.find(query(where("id").in(idList)), Task.class);
+	}
+
+	@Override
+	public boolean updateDescriptionIfUnchanged(String id, String expectedDescription, String newDescription) {
+		if (cache != null) {
+			TaskCache.Write write = cache.updateDescriptionIfUnchanged(id, expectedDescription, newDescription);
+			if (write != null) {
+				publish(TaskEventType.UPDATED, write.after());
+			}
+			return write != null;
+		}
+		Task updated = template.findAndModify(
+				query(where("id").is(id).and("description").is(expectedDescription)),
+				Update.update("description", newDescription).inc("version", 1)
+						.set(ChangeSequence.FIELD, sequence.next()),
+				RETURN_NEW,
+				Task.class);
+		if (updated == null) {
+			return false;
+		}
+		publish(TaskEventType.UPDATED, updated);
+		return true;
+	}
+
+	@Override
+	public Optional<Task> updateReturningPrevious(Task task, Collection<Long> expectedVersions) {
+		if (cache != null) {
+			TaskCache.Write write = cache.overwrite(task.tenant(), task, expectedVersions);
+			if (write == null) {
+				return Optional.empty();
+			}
+			counters.move(task.tenant(), write.before().status(), write.after().status());
+			publish(TaskEventType.UPDATED, write.after());
+			return Optional.of(write.before());
+		}
+		Task previous = template.findAndModify(
+				byIdAndVersion(task.tenant(), task.id(), expectedVersions),
+				overwrite(task, sequence.next()),
+				Task.class);
+		if (previous != null) {
+			counters.move(task.tenant(), previous.status(), task.status());
+			publish(TaskEventType.UPDATED, task.withVersion(previous.version() == null ? 1 : previous.version() + 1));
+		}
+		return Optional.ofNullable(previous);
+	}
+
+	@Override
+	public Optional<Task> deleteReturningPrevious(String tenant, String id, Collection<Long> expectedVersions) {
+		Task deleted;
+		if (cache != null) {
+			TaskCache.Write write = cache.delete(tenant, id, expectedVersions);
+			deleted = write == null ? null : write.before();
+		} else {
+			deleted = template.findAndRemove(byIdAndVersion(tenant, id, expectedVersions), Task.class);
+		}
+		if (deleted != null) {
+			counters.move(deleted.tenant(), deleted.status(), null);
+			deleted(List.of(deleted));
+		}
+		return Optional.ofNullable(deleted);
+	}
+
+	@Override
+	public Optional<Task> applyPatch(String id, TaskPatch patch) {
+		if (cache != null) {
+			TaskCache.Write write = cache.applyPatch(id, patch);
+			if (write == null) {
+				return Optional.empty();
+			}
+			counters.move(write.after().tenant(), write.before().status(), write.after().status());
+			publish(TaskEventType.UPDATED, write.after());
+			return Optional.of(write.after());
+		}
+		Update update = new Update().inc("version", 1).set(ChangeSequence.FIELD, sequence.next());
+		if (patch.description() != null) {
+			update.set("description", patch.description());
+		}
+		if (patch.status() != null) {
+			update.set("status", patch.status());
+		}
+		// the previous status is needed for the counters, the patched task follows from it
+		Task previous = template.findAndModify(query(where("id").is(id)), update, Task.class);
+		if (previous == null) {
+			return Optional.empty();
+		}
+		Task updated = previous.withVersion(previous.version() == null ? 1 : previous.version() + 1);
+		if (patch.description() != null) {
+			updated = updated.withDescription(patch.description());
+		}
+		if (patch.status() != null) {
+			updated = updated.withStatus(patch.status());
+		}
+		counters.move(updated.tenant(), previous.status(), updated.status());
+		publish(TaskEventType.UPDATED, updated);
+		return Optional.of(updated);
+	}
+
+	@Override
+	public void restore(Task task) {
+		if (cache != null) {
+			TaskCache.Write write = cache.restore(task);
+			counters.move(write.after().tenant(), statusOf(write.before()), write.after().status());
+			publish(write.before() == null ? TaskEventType.CREATED : TaskEventType.UPDATED, write.after());
+			return;
+		}
+		if (overwriteExisting(task)) {
+			return;
+		}
+		try {
+			publish(TaskEventType.CREATED, template.insert(task));
+			counters.move(task.tenant(), null, task.status());
+		} catch (DuplicateKeyException e) {
+			// recreated concurrently, the content still has to win
+			overwriteExisting(task);
+		}
+	}
+
+	/**
+	 * Overwrites description and status of a task if it exists.
+	 *
+	 * @return false if there is no task to overwrite
+	 */
+	private boolean overwriteExisting(Task task) {
+		Task previous = template.findAndModify(query(where("id").is(task.id())), overwrite(task, sequence.next()),
+				Task.class);
+		if (previous == null) {
+			return false;
+		}
+		counters.move(previous.tenant(), previous.status(), task.status());
+		publish(TaskEventType.UPDATED, previous
+				.withDescription(task.description())
+				.withStatus(task.status())
+				.withVersion(previous.version() == null ? 1 : previous.version() + 1));
+		return true;
+	}
+
+	private static TaskStatus statusOf(Task task) {
+		return task == null ? null : task.status();
+	}
+
+	private void publish(TaskEventType type, Task task) {
+		events.publishEvent(new TaskEventDTO(type, task.id(), task));
+	}
+
+	/**
+	 * Tombstones and publishes deleted tasks, the caller counts them.
+	 */
+	private void deleted(Collection<Task> tasks) {
+		if (tasks.isEmpty()) {
+			return;
+		}
+		BulkOperations operations = template.bulkOps(BulkMode.UNORDERED, TaskTombstone.class);
+		for (Task task : tasks) {
+			operations.replaceOne(query(where("id").is(task.id())), sequence.tombstone(task.id(), task.tenant()),
+					FindAndReplaceOptions.options().upsert());
+		}
+		operations.execute();
+		for (Task task : tasks) {
+			events.publishEvent(new TaskEventDTO(TaskEventType.DELETED, task.id(), null, task.tenant()));
+		}
+	}
+
+	static Criteria byTenant(String tenant) {
+		return where("tenant").is(tenant);
+	}
+
+	/**
+	 * Matches a task by id, of {@code tenant} and with one of
+	 * {@code expectedVersions} unless those are null.
+	 */
+	static Query byIdAndVersion(String tenant, String id, Collection<Long> expectedVersions) {
+		Criteria criteria = where("id").is(id);
+		if (tenant != null) {
+			criteria = criteria.and("tenant").is(tenant);
+		}
+		if (expectedVersions != null) {
+			criteria = criteria.and("version").in(expectedVersions);
+		}
+		return query(criteria);
+	}
+
+	/**
+	 * Matches the stored state a versioned save of {@code task} replaces.
+	 */
+	static Query versioned(Task task) {
+		return query(where("id").is(task.id()).and("version").is(task.version()));
+	}
+
+	static OptimisticLockingFailureException versionConflict(Task task) {
+		return new OptimisticLockingFailureException(
+				"Task with id " + task.id() + " is not at version " + task.version() + ".");
+	}
+
+	static Update overwrite(Task task, long changeSeq) {
+		return new Update()
+				.set("description", task.description())
+				.set("status", task.status())
+				.inc("version", 1)
+				.set(ChangeSequence.FIELD, changeSeq);
+	}
+
+	@Override
+	public List<Task> findPage(String tenant, String afterId, TaskStatus status, String descriptionPrefix,
+			int limit) {
+		if (cache != null) {
+			return cache.page(tenant, afterId, status, descriptionPrefix, limit);
+		}
+		return template.find(pageQuery(tenant, afterId, status, descriptionPrefix, limit), Task.class);
+	}
+
+	@Override
+	public Stream<Task> streamAfter(String tenant, String afterId, int batchSize) {
+		if (cache != null) {
+			return cache.after(tenant, afterId).stream();
+		}
+		return template.stream(afterQuery(tenant, afterId, batchSize), Task.class);
+	}
+
+	@Override
+	public Stream<Task> streamAll(int batchSize) {
+		if (cache != null) {
+			cache.flush();
+		}
+		return template.stream(new Query().cursorBatchSize(batchSize), Task.class);
+	}
+
+	static Query pageQuery(String tenant, String afterId, TaskStatus status, String descriptionPrefix, int limit) {
+		Criteria criteria = byTenant(tenant);
+		if (afterId != null) {
+			criteria = criteria.and("id").gt(afterId);
+		}
+		if (status != null) {
+			criteria = criteria.and("status").is(status);
+		}
+		if (descriptionPrefix != null && !descriptionPrefix.isEmpty()) {
+			// filtered while walking tenant_id or tenant_status_id in id order, so the limit ends the scan
+			criteria = criteria.and("description")
+					.gte(descriptionPrefix)
+					.lt(descriptionPrefix + Character.toString(Character.MAX_CODE_POINT));
+		}
+		return new Query(criteria)
+				.with(Sort.by(Sort.Direction.ASC, "id"))
+				.limit(limit);
+	}
+
+	@Override
+	public List<TaskChange> findChanges(String tenant, long since, String afterId, long until, int limit) {
+		if (cache != null) {
+			// unflushed writes have no change sequence yet
+			cache.flush();
+		}
+		Query query = changesQuery(tenant, since, afterId, until, limit);
+		List<TaskChange> changes = new ArrayList<>();
+		for (Document document : template.find(query, Document.class, template.getCollectionName(Task.class))) {
+			Task task = template.getConverter().read(Task.class, document);
+			changes.add(new TaskChange(document.getLong(ChangeSequence.FIELD), task.id(), task));
+		}
+		for (TaskTombstone tombstone : template.find(query, TaskTombstone.class)) {
+			changes.add(new TaskChange(tombstone.changeSeq(), tombstone.id(), null));
+		}
+		changes.sort(Comparator.comparingLong(TaskChange::changeSeq).thenComparing(TaskChange::id));
+		return changes.size() > limit ? changes.subList(0, limit) : changes;
+	}
+
+	static Query changesQuery(String tenant, long since, String afterId, long until, int limit) {
+		Criteria criteria = byTenant(tenant);
+		if (afterId == null) {
+			criteria = criteria.and(ChangeSequence.FIELD).gt(since).lte(until);
+		} else {
+			// the rest of since, then everything after it
+			criteria = criteria.and(ChangeSequence.FIELD).gte(since).lte(until)
+					.orOperator(where(ChangeSequence.FIELD).gt(since), where("id").gt(afterId));
+		}
+		return new Query(criteria)
+				.with(Sort.by(Sort.Direction.ASC, ChangeSequence.FIELD, "id"))
+				.limit(limit);
+	}
+
+	static Query afterQuery(String tenant, String afterId, int batchSize) {
+		Criteria criteria = byTenant(tenant);
+		return new Query(afterId == null ? criteria : criteria.and("id").gt(afterId))
+				.with(Sort.by(Sort.Direction.ASC, "id"))
+				.cursorBatchSize(batchSize);
+	}
+
+	@Override
+	public List<Task> searchText(String tenant, String query, int limit) {
+		if (cache != null) {
+			// the text index only knows flushed writes
+			cache.flush();
+		}
+		return template.find(TextQuery.queryText(TextCriteria.forDefaultLanguage().matching(query))
+				.sortByScore()
+				.limit(limit)
+				.addCriteria(byTenant(tenant)), Task.class);
+	}
+
+	@Override
+	public Map<TaskStatus, Long> countByStatus(String tenant) {
+		return counters.byStatus(tenant);
+	}
+
+	@Override
+	public Map<String, String> bulkWrite(Collection<Task> inserts, Collection<Task> updates,
+			Collection<String> deletions) {
+		if (inserts.isEmpty() && updates.isEmpty() && deletions.isEmpty()) {
+			return Map.of();
+		}
+
+		List<String> existing = new ArrayList<>(updates.size() + deletions.size());
+		updates.forEach(task -> existing.add(task.id()));
+		existing.addAll(deletions);
+		Map<String, Task> previous = tenantsAndStatusesOf(existing);
+
+		Map<String, String> failed = cache != null
+				? cache.bulkWrite(inserts, updates, deletions)
+				: bulkWriteToMongo(inserts, updates, deletions);
+		List<Task> deleted = deletions.stream()
+				.filter(id -> !failed.containsKey(id) && previous.containsKey(id))
+				.map(previous::get)
+				.toList();
+		countChanges(previous, failed, inserts, updates, deleted).forEach(counters::add);
+
+		inserts.stream()
+				.filter(task -> !failed.containsKey(task.id()))
+				.forEach(task -> publish(TaskEventType.CREATED, task));
+		// the version an update ended up with is not known without reading it back
+		updates.stream()
+				.filter(task -> !failed.containsKey(task.id()) && previous.containsKey(task.id()))
+				.forEach(task -> events.publishEvent(new TaskEventDTO(TaskEventType.UPDATED, task.id(), null,
+						previous.get(task.id()).tenant())));
+		deleted(deleted);
+		return failed;
+	}
+
+	/**
+	 * Tasks with only tenant and status read, by id.
+	 */
+	private Map<String, Task> tenantsAndStatusesOf(Collection<String> ids) {
+		if (ids.isEmpty()) {
+			return Map.of();
+		}
+		List<Task> tasks;
+		if (cache != null) {
+			tasks = cache.getAll(ids);
+		} else {
+			Query query = query(where("id").in(ids));
+			query.fields().include("tenant", "status");
+			tasks = template.find(query, Task.class);
+		}
+		Map<String, Task> found = new HashMap<>();
+		tasks.forEach(task -> found.put(task.id(), task));
+		return found;
+	}
+
+	/**
+	 * Sums up how the successful writes of a bulk write changed the number of
+	 * tasks per tenant and status, so that each tenant's counters are updated
+	 * once. Updates of tasks that did not exist before change nothing.
+	 *
+	 * @param deleted the tasks the bulk write removed, as they were before
+	 */
+	static Map<String, Map<TaskStatus, Long>> countChanges(Map<String, Task> previous, Map<String, String> failed,
+			Collection<Task> inserts, Collection<Task> updates, Collection<Task> deleted) {
+		Map<String, Map<TaskStatus, Long>> deltas = new HashMap<>();
+		for (Task task : inserts) {
+			if (!failed.containsKey(task.id())) {
+				count(deltas, task.tenant(), task.status(), 1);
+			}
+		}
+		for (Task task : updates) {
+			Task before = previous.get(task.id());
+			if (!failed.containsKey(task.id()) && before != null) {
+				count(deltas, before.tenant(), before.status(), -1);
+				count(deltas, before.tenant(), task.status(), 1);
+			}
+		}
+		for (Task task : deleted) {
+			count(deltas, task.tenant(), task.status(), -1);
+		}
+		return deltas;
+	}
+
+	private static void count(Map<String, Map<TaskStatus, Long>> deltas, String tenant, TaskStatus status,
+			long delta) {
+		if (status != null) {
+			deltas.computeIfAbsent(tenant, t -> new EnumMap<>(TaskStatus.class)).merge(status, delta, Long::sum);
+		}
+	}
+
+	private Map<String, String> bulkWriteToMongo(Collection<Task> inserts, Collection<Task> updates,
+			Collection<String> deletions) {
+		BulkOperations operations = template.bulkOps(BulkMode.UNORDERED, Task.class);
+		List<String> ids = new ArrayList<>(inserts.size() + updates.size() + deletions.size());
+		for (Task task : inserts) {
+			operations.insert(task);
+			ids.add(task.id());
+		}
+		for (Task task : updates) {
+			operations.updateOne(query(where("id").is(task.id())), overwrite(task, sequence.next()));
+			ids.add(task.id());
+		}
+		for (String id : deletions) {
+			operations.remove(query(where("id").is(id)));
+			ids.add(id);
+		}
+
+		Map<String, String> failed = new HashMap<>();
+		try {
+			operations.execute();
+		} catch (BulkOperationException e) {
+			for (BulkWriteError error : e.getErrors()) {
+				failed.put(ids.get(error.getIndex()), error.getMessage());
+			}
+		}
+		return failed;
+	}
+}
@@ -0,0 +1,47 @@
+package com.geraldsaccount.neuefische_todo.repository;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import com.geraldsaccount.neuefische_todo.model.tasks.Task;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Gives tasks stored before versioning version 0, so that their ETag is a
+ * version an If-Match can name instead of a content hash. Runs once, before
+ * the application serves requests, see {@link Migrations}.
+ */
+@Component
+public class TaskVersionBackfill {
+	private static final Logger log = LoggerFactory.getLogger(TaskVersionBackfill.class);
+
+	static final String MIGRATION = "task-versions";
+
+	private final MongoTemplate template;
+	private final Migrations migrations;
+
+	public TaskVersionBackfill(MongoTemplate template, Migrations migrations) {
+		this.template = template;
+		this.migrations = migrations;
+	}
+
+	@PostConstruct
+	void backfill() {
+		migrations.runOnce(MIGRATION, this::migrate);
+	}
+
+	void migrate() {
+		long modified = template.updateMulti(query(where("version").exists(false)),
+				Update.update("version", 0L), Task.class).getModifiedCount();
+		if (modified > 0) {
+			log.info("Set version 0 on {} tasks stored before versioning", modified);
+		}
+	}
+}
@@ -0,0 +1,61 @@
+package com.geraldsaccount.neuefische_todo.repository;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import com.geraldsaccount.neuefische_todo.model.tasks.Task;
+import com.geraldsaccount.neuefische_todo.model.tasks.TaskTombstone;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Moves tasks and tombstones stored before tenants existed to
+ * {@value Task#DEFAULT_TENANT}, so that the tenant-scoped queries find them.
+ * The single counters document of that time would be read as a tenant named
+ * after its id, it is removed and the counters are reconciled on start.
+ * Runs once, before the application serves requests, see {@link Migrations}.
+ */
+@Component
+public class TenantBackfill {
+	private static final Logger log = LoggerFactory.getLogger(TenantBackfill.class);
+
+	static final String LEGACY_COUNTERS_ID = "status";
+	static final String MIGRATION = "task-tenants";
+
+	private final MongoTemplate template;
+	private final TaskCounters counters;
+	private final Migrations migrations;
+
+	public TenantBackfill(MongoTemplate template, TaskCounters counters, Migrations migrations) {
+		this.template = template;
+		this.counters = counters;
+		this.migrations = migrations;
+	}
+
+	@PostConstruct
+	void backfill() {
+		migrations.runOnce(MIGRATION, this::migrate);
+	}
+
+	void migrate() {
+		for (Class<?> type : new Class<?>[] { Task.class, TaskTombstone.class }) {
+			long modified = template.updateMulti(query(where("tenant").exists(false)),
+					Update.update("tenant", Task.DEFAULT_TENANT), type).getModifiedCount();
+			if (modified > 0) {
+				log.info("Moved {} {} documents to tenant {}", modified, type.getSimpleName(), Task.DEFAULT_TENANT);
+			}
+		}
+
+		if (template.remove(query(where("_id").is(LEGACY_COUNTERS_ID)), TaskCounters.COLLECTION)
+				.getDeletedCount() > 0) {
+			log.info("Removed the task counters stored before tenants existed");
+			counters.reconcileOnStart();
+		}
+	}
+}
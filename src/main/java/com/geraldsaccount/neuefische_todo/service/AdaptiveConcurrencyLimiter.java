@@ -0,0 +1,105 @@
+package com.geraldsaccount.neuefische_todo.service;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * AIMD concurrency limit. The limit grows by one while calls are fast and the
+ * limit is actually used, and shrinks multiplicatively when a call fails or
+ * takes longer than {@code latencyThreshold}. Calls above the limit are
+ * rejected instead of queued.
+ */
+public class AdaptiveConcurrencyLimiter implements MeterBinder {
+	private final String name;
+	private final int minLimit;
+	private final int maxLimit;
+	private final long latencyThresholdNanos;
+	private final double backoffRatio;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private double limit;
+	private int inFlight;
+
+	private final LongAdder rejected = new LongAdder();
+
+	public AdaptiveConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit,
+			Duration latencyThreshold, double backoffRatio) {
+		this.name = name;
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		this.latencyThresholdNanos = latencyThreshold.toNanos();
+		this.backoffRatio = backoffRatio;
+		this.limit = Math.clamp(initialLimit, minLimit, maxLimit);
+	}
+
+	public boolean tryAcquire() {
+		lock.lock();
+		try {
+			if (inFlight >= (int) limit) {
+				rejected.increment();
+				return false;
+			}
+			inFlight++;
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public void release(long latencyNanos, boolean failed) {
+		lock.lock();
+		try {
+			boolean saturated = inFlight * 2 >= limit;
+			inFlight--;
+			if (failed || latencyNanos > latencyThresholdNanos) {
+				limit = Math.max(minLimit, limit * backoffRatio);
+			} else if (saturated) {
+				limit = Math.min(maxLimit, limit + 1);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public int getLimit() {
+		lock.lock();
+		try {
+			return (int) limit;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public int getInFlight() {
+		lock.lock();
+		try {
+			return inFlight;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public long getRejectedCalls() {
+		return rejected.sum();
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		Gauge.builder("concurrency.limit", this, AdaptiveConcurrencyLimiter::getLimit)
+				.tag("name", name)
+				.register(registry);
+		Gauge.builder("concurrency.inflight", this, AdaptiveConcurrencyLimiter::getInFlight)
+				.tag("name", name)
+				.register(registry);
+		FunctionCounter.builder("concurrency.rejected", rejected, LongAdder::sum)
+				.description("Calls rejected because the concurrency limit was reached")
+				.tag("name", name)
+				.register(registry);
+	}
+}
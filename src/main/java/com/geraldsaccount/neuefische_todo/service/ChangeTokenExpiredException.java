@@ -0,0 +1,13 @@
+package com.geraldsaccount.neuefische_todo.service;
+
+/**
+ * The changes since a token are no longer known, the client has to load all
+ * tasks again.
+ */
+public class ChangeTokenExpiredException extends Exception {
+
+	public ChangeTokenExpiredException(String message) {
+		super(message);
+	}
+
+}
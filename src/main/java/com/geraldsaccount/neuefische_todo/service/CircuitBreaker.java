@@ -0,0 +1,195 @@
+package com.geraldsaccount.neuefische_todo.service;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Count based circuit breaker. Opens when the failure rate over the last
+ * {@code windowSize} calls exceeds the threshold, rejects calls while open and
+ * lets a few trial calls through once {@code openDuration} has passed.
+ */
+public class CircuitBreaker implements MeterBinder {
+	private static final Logger log = LoggerFactory.getLogger(CircuitBreaker.class);
+
+	private final String name;
+	private final int minimumCalls;
+	private final double failureRateThreshold;
+	private final long openDurationNanos;
+	private final int halfOpenCalls;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final boolean[] window;
+	private int windowIndex;
+	private int recordedCalls;
+	private int failedCalls;
+
+	private CircuitState state = CircuitState.CLOSED;
+	private long openedAt;
+	private int halfOpenPermits;
+	private int halfOpenSuccesses;
+
+	private final Map<CircuitState, LongAdder> transitions = new EnumMap<>(CircuitState.class);
+	private final LongAdder rejected = new LongAdder();
+
+	public CircuitBreaker(String name, int windowSize, int minimumCalls, double failureRateThreshold,
+			Duration openDuration, int halfOpenCalls) {
+		this.name = name;
+		this.window = new boolean[windowSize];
+		this.minimumCalls = Math.min(minimumCalls, windowSize);
+		this.failureRateThreshold = failureRateThreshold;
+		this.openDurationNanos = openDuration.toNanos();
+		this.halfOpenCalls = halfOpenCalls;
+		for (CircuitState s : CircuitState.values()) {
+			transitions.put(s, new LongAdder());
+		}
+	}
+
+	public boolean tryAcquire() {
+		lock.lock();
+		try {
+			if (state == CircuitState.OPEN && System.nanoTime() - openedAt >= openDurationNanos) {
+				transitionTo(CircuitState.HALF_OPEN);
+			}
+			boolean permitted = switch (state) {
+				case CLOSED -> true;
+				case OPEN -> false;
+				case HALF_OPEN -> {
+					if (halfOpenPermits == 0) {
+						yield false;
+					}
+					halfOpenPermits--;
+					yield true;
+				}
+			};
+			if (!permitted) {
+				rejected.increment();
+			}
+			return permitted;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Gives back a permit that was acquired but not used for a call, so that it
+	 * counts neither as success nor as failure.
+	 */
+	public void release() {
+		lock.lock();
+		try {
+			if (state == CircuitState.HALF_OPEN && halfOpenPermits < halfOpenCalls - halfOpenSuccesses) {
+				halfOpenPermits++;
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public void onSuccess() {
+		lock.lock();
+		try {
+			if (state == CircuitState.HALF_OPEN) {
+				if (++halfOpenSuccesses >= halfOpenCalls) {
+					transitionTo(CircuitState.CLOSED);
+				}
+			} else if (state == CircuitState.CLOSED) {
+				record(false);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public void onFailure() {
+		lock.lock();
+		try {
+			if (state == CircuitState.HALF_OPEN) {
+				transitionTo(CircuitState.OPEN);
+			} else if (state == CircuitState.CLOSED) {
+				record(true);
+				if (recordedCalls >= minimumCalls
+						&& (double) failedCalls / recordedCalls >= failureRateThreshold) {
+					transitionTo(CircuitState.OPEN);
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public CircuitState getState() {
+		lock.lock();
+		try {
+			return state;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public long getRejectedCalls() {
+		return rejected.sum();
+	}
+
+	private void record(boolean failed) {
+		if (recordedCalls == window.length) {
+			if (window[windowIndex]) {
+				failedCalls--;
+			}
+		} else {
+			recordedCalls++;
+		}
+		window[windowIndex] = failed;
+		if (failed) {
+			failedCalls++;
+		}
+		windowIndex = (windowIndex + 1) % window.length;
+	}
+
+	private void transitionTo(CircuitState next) {
+		log.info("Circuit breaker '{}' changed from {} to {}", name, state, next);
+		state = next;
+		transitions.get(next).increment();
+		switch (next) {
+			case OPEN -> openedAt = System.nanoTime();
+			case HALF_OPEN -> {
+				halfOpenPermits = halfOpenCalls;
+				halfOpenSuccesses = 0;
+			}
+			case CLOSED -> {
+				windowIndex = 0;
+				recordedCalls = 0;
+				failedCalls = 0;
+			}
+		}
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		for (CircuitState s : CircuitState.values()) {
+			FunctionCounter.builder("circuitbreaker.transitions", transitions.get(s), LongAdder::sum)
+					.description("Number of times the circuit breaker entered a state")
+					.tag("name", name)
+					.tag("state", s.name().toLowerCase())
+					.register(registry);
+			Gauge.builder("circuitbreaker.state", this, breaker -> breaker.getState() == s ? 1 : 0)
+					.tag("name", name)
+					.tag("state", s.name().toLowerCase())
+					.register(registry);
+		}
+		FunctionCounter.builder("circuitbreaker.rejected", rejected, LongAdder::sum)
+				.description("Calls rejected because the circuit breaker was open")
+				.tag("name", name)
+				.register(registry);
+	}
+}
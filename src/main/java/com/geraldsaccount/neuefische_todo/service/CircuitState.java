@@ -0,0 +1,7 @@
+package com.geraldsaccount.neuefische_todo.service;
+
+public enum CircuitState {
+	CLOSED,
+	OPEN,
+	HALF_OPEN;
+}
@@ -0,0 +1,205 @@
+package com.geraldsaccount.neuefische_todo.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.geraldsaccount.neuefische_todo.model.openai.OpenAiException;
+import com.geraldsaccount.neuefische_todo.model.openai.OpenAiRequest;
+import com.geraldsaccount.neuefische_todo.model.openai.OpenAiUnavailableException;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Collects corrections for up to {@code maxSize} items or {@code window} and
+ * sends them to OpenAI as one JSON array. If the answer cannot be mapped back
+ * to the individual inputs, every item is corrected on its own instead, unless
+ * the circuit breaker opened meanwhile.
+ * <p>
+ * The scheduler thread only times the windows. Batches and single fallback
+ * requests are sent from {@code senders} threads, in virtual-thread mode from
+ * a virtual thread each; the concurrency limiter in {@link OpenAiClient} bounds
+ * what reaches OpenAI.
+ */
+@Service
+public class CorrectionBatcher {
+	private static final Logger log = LoggerFactory.getLogger(CorrectionBatcher.class);
+
+	public static final String BATCH_INSTRUCTIONS = "Correct every string in the following JSON array for spelling and grammar. "
+			+ "Only return a JSON array of the corrected strings, in the same order and with the same length.";
+
+	private final OpenAiClient client;
+	private final ObjectMapper mapper;
+	private final int maxSize;
+	private final long windowMillis;
+	private final ScheduledThreadPoolExecutor executor;
+	private final ExecutorService senders;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private List<PendingCorrection> batch = new ArrayList<>();
+
+	private record PendingCorrection(String input, CompletableFuture<String> result) {
+	}
+
+	public CorrectionBatcher(OpenAiClient client, ObjectMapper mapper,
+			@Value("${corrections.batch.max-size:16}") int maxSize,
+			@Value("${corrections.batch.window-ms:20}") long windowMillis,
+			@Value("${corrections.batch.senders:2}") int senders,
+			@Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+		this.client = client;
+		this.mapper = mapper;
+		this.maxSize = maxSize;
+		this.windowMillis = windowMillis;
+		executor = new ScheduledThreadPoolExecutor(1, new CustomizableThreadFactory("correction-batch-"));
+		executor.setRemoveOnCancelPolicy(true);
+		this.senders = virtualThreads
+				? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("correction-sender-", 0).factory())
+				: Executors.newFixedThreadPool(senders, new CustomizableThreadFactory("correction-sender-"));
+	}
+
+	public String correct(String input) throws OpenAiException {
+		if (maxSize <= 1) {
+			return requestSingle(input);
+		}
+		try {
+			return submit(input).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new OpenAiException("Interrupted while waiting for correction");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof OpenAiException cause) {
+				throw cause;
+			}
+			throw new OpenAiException(e.getCause().getMessage());
+		}
+	}
+
+	public CompletableFuture<String> submit(String input) {
+		PendingCorrection pending = new PendingCorrection(input, new CompletableFuture<>());
+		List<PendingCorrection> full = null;
+		lock.lock();
+		try {
+			batch.add(pending);
+			if (batch.size() >= maxSize) {
+				full = takeBatch();
+			} else if (batch.size() == 1) {
+				List<PendingCorrection> opened = batch;
+				executor.schedule(() -> flush(opened), windowMillis, TimeUnit.MILLISECONDS);
+			}
+		} finally {
+			lock.unlock();
+		}
+		if (full != null) {
+			List<PendingCorrection> toSend = full;
+			senders.execute(() -> send(toSend));
+		}
+		return pending.result();
+	}
+
+	private void flush(List<PendingCorrection> opened) {
+		List<PendingCorrection> toSend = null;
+		lock.lock();
+		try {
+			// the batch may already have been sent because it filled up
+			if (batch == opened) {
+				toSend = takeBatch();
+			}
+		} finally {
+			lock.unlock();
+		}
+		if (toSend != null) {
+			List<PendingCorrection> items = toSend;
+			senders.execute(() -> send(items));
+		}
+	}
+
+	private List<PendingCorrection> takeBatch() {
+		List<PendingCorrection> taken = batch;
+		batch = new ArrayList<>();
+		return taken;
+	}
+
+	private void send(List<PendingCorrection> items) {
+		if (items.size() == 1) {
+			sendSingle(items.getFirst());
+			return;
+		}
+		try {
+			List<String> inputs = items.stream().map(PendingCorrection::input).toList();
+			String output = client.respond(new OpenAiRequest(CorrectionService.MODEL, BATCH_INSTRUCTIONS,
+					mapper.writeValueAsString(inputs)));
+			List<String> corrections = parse(output);
+			if (corrections.size() == items.size() && !corrections.contains(null)) {
+				for (int i = 0; i < items.size(); i++) {
+					items.get(i).result().complete(corrections.get(i));
+				}
+				return;
+			}
+			log.debug("Batch answer had {} items instead of {}, correcting one by one",
+					corrections.size(), items.size());
+		} catch (OpenAiUnavailableException e) {
+			// falling back would only hit the same limit once per item
+			items.forEach(item -> item.result().completeExceptionally(e));
+			return;
+		} catch (JsonProcessingException e) {
+			log.debug("Could not parse batch answer, correcting one by one: {}", e.getMessage());
+		} catch (OpenAiException | RuntimeException e) {
+			log.debug("Batch request failed, correcting one by one: {}", e.getMessage());
+		}
+		if (!client.isAvailable()) {
+			// every single request would be rejected as well
+			OpenAiUnavailableException unavailable = new OpenAiUnavailableException("OpenAI is currently unavailable.");
+			items.forEach(item -> item.result().completeExceptionally(unavailable));
+			return;
+		}
+		items.forEach(item -> senders.execute(() -> sendSingle(item)));
+	}
+
+	private List<String> parse(String output) throws JsonProcessingException {
+		if (output == null) {
+			return List.of();
+		}
+		return mapper.readValue(output.strip(), new TypeReference<List<String>>() {
+		});
+	}
+
+	private void sendSingle(PendingCorrection item) {
+		try {
+			item.result().complete(requestSingle(item.input()));
+		} catch (OpenAiException | RuntimeException e) {
+			item.result().completeExceptionally(e);
+		}
+	}
+
+	private String requestSingle(String input) throws OpenAiException {
+		return client.respond(new OpenAiRequest(CorrectionService.MODEL, CorrectionService.INSTRUCTIONS, input));
+	}
+
+	@PreDestroy
+	void shutdown() {
+		executor.shutdownNow();
+		senders.shutdownNow();
+		lock.lock();
+		try {
+			takeBatch().forEach(p -> p.result().completeExceptionally(
+					new OpenAiException("Correction batcher was shut down")));
+		} finally {
+			lock.unlock();
+		}
+	}
+}
@@ -0,0 +1,289 @@
+package com.geraldsaccount.neuefische_todo.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import com.geraldsaccount.neuefische_todo.model.corrections.CachedCorrection;
+import com.geraldsaccount.neuefische_todo.model.corrections.CorrectionCacheStats;
+import com.geraldsaccount.neuefische_todo.model.openai.OpenAiException;
+import com.geraldsaccount.neuefische_todo.repository.CorrectionCacheRepo;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Bounded LRU cache for corrections, keyed by a hash of the normalized input,
+ * the model and the instructions. Concurrent lookups of the same key share a
+ * single upstream call.
+ * <p>
+ * Only the key is normalized: on a miss the loader gets the input as it was
+ * typed, and that correction is served for every input with the same key.
+ */
+@Component
+public class CorrectionCache implements MeterBinder {
+	private static final Logger log = LoggerFactory.getLogger(CorrectionCache.class);
+	private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+	private final CorrectionCacheRepo repo;
+	private final int maxSize;
+	private final Duration ttl;
+	private final boolean persistent;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final LinkedHashMap<String, Entry> entries;
+	private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	private record Entry(String value, Instant expiresAt) {
+	}
+
+	public CorrectionCache(CorrectionCacheRepo repo,
+			@Value("${corrections.cache.max-size:10000}") int maxSize,
+			@Value("${corrections.cache.ttl:24h}") Duration ttl,
+			@Value("${corrections.cache.persistent:false}") boolean persistent) {
+		this.repo = repo;
+		this.maxSize = maxSize;
+		this.ttl = ttl;
+		this.persistent = persistent;
+		entries = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+				if (size() > CorrectionCache.this.maxSize) {
+					evictions.increment();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	public String get(String input, String model, String instructions, CorrectionLoader loader)
+			throws OpenAiException {
+		String key = key(normalize(input), model, instructions);
+
+		Optional<String> cached = lookup(key);
+		if (cached.isPresent()) {
+			hits.increment();
+			return cached.get();
+		}
+
+		CompletableFuture<String> own = new CompletableFuture<>();
+		CompletableFuture<String> shared = inFlight.putIfAbsent(key, own);
+		if (shared != null) {
+			hits.increment();
+			return await(shared);
+		}
+
+		misses.increment();
+		try {
+			String value = loadPersisted(key).orElse(null);
+			if (value == null) {
+				value = loader.load(input);
+				if (value == null) {
+					throw new OpenAiException("OpenAi response did not contain text.");
+				}
+				persist(key, value);
+			}
+			store(key, value);
+			own.complete(value);
+			return value;
+		} catch (OpenAiException | RuntimeException e) {
+			own.completeExceptionally(e);
+			throw e;
+		} finally {
+			inFlight.remove(key, own);
+		}
+	}
+
+	/**
+	 * Non-blocking variant of {@link #get} for the reactive stack. Only the
+	 * in-memory entries are used, the persistent layer is read with blocking
+	 * calls.
+	 */
+	public CompletableFuture<String> getAsync(String input, String model, String instructions,
+			Function<String, CompletableFuture<String>> loader) {
+		String key = key(normalize(input), model, instructions);
+
+		Optional<String> cached = lookup(key);
+		if (cached.isPresent()) {
+			hits.increment();
+			return CompletableFuture.completedFuture(cached.get());
+		}
+
+		CompletableFuture<String> own = new CompletableFuture<>();
+		CompletableFuture<String> shared = inFlight.putIfAbsent(key, own);
+		if (shared != null) {
+			hits.increment();
+			return shared;
+		}
+
+		misses.increment();
+		CompletableFuture<String> loaded;
+		try {
+			loaded = loader.apply(input);
+		} catch (RuntimeException e) {
+			loaded = CompletableFuture.failedFuture(e);
+		}
+		loaded.whenComplete((value, error) -> {
+			if (error != null) {
+				own.completeExceptionally(error);
+			} else if (value == null) {
+				own.completeExceptionally(new OpenAiException("OpenAi response did not contain text."));
+			} else {
+				store(key, value);
+				own.complete(value);
+			}
+			inFlight.remove(key, own);
+		});
+		return own;
+	}
+
+	public CorrectionCacheStats stats() {
+		lock.lock();
+		try {
+			return new CorrectionCacheStats(hits.sum(), misses.sum(), evictions.sum(), entries.size());
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		FunctionCounter.builder("corrections.cache.hits", hits, LongAdder::sum)
+				.description("Corrections served from the cache")
+				.register(registry);
+		FunctionCounter.builder("corrections.cache.misses", misses, LongAdder::sum)
+				.description("Corrections that had to be requested from OpenAI")
+				.register(registry);
+		FunctionCounter.builder("corrections.cache.evictions", evictions, LongAdder::sum)
+				.description("Corrections removed because of size or age")
+				.register(registry);
+		Gauge.builder("corrections.cache.size", this, cache -> cache.stats().size())
+				.register(registry);
+	}
+
+	static String normalize(String input) {
+		String composed = Normalizer.normalize(input, Normalizer.Form.NFC);
+		return WHITESPACE.matcher(composed.strip()).replaceAll(" ");
+	}
+
+	static String key(String normalizedInput, String model, String instructions) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			for (String part : new String[] { model, instructions, normalizedInput }) {
+				digest.update(part.getBytes(StandardCharsets.UTF_8));
+				digest.update((byte) 0);
+			}
+			return HexFormat.of().formatHex(digest.digest());
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not available", e);
+		}
+	}
+
+	private Optional<String> lookup(String key) {
+		lock.lock();
+		try {
+			Entry entry = entries.get(key);
+			if (entry == null) {
+				return Optional.empty();
+			}
+			if (entry.expiresAt().isBefore(Instant.now())) {
+				entries.remove(key);
+				evictions.increment();
+				return Optional.empty();
+			}
+			return Optional.of(entry.value());
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void store(String key, String value) {
+		lock.lock();
+		try {
+			entries.put(key, new Entry(value, Instant.now().plus(ttl)));
+			purgeExpired();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	// entries are in access order, so expired ones tend to collect at the head
+	private void purgeExpired() {
+		Instant now = Instant.now();
+		Iterator<Entry> iterator = entries.values().iterator();
+		while (iterator.hasNext()) {
+			if (!iterator.next().expiresAt().isBefore(now)) {
+				return;
+			}
+			iterator.remove();
+			evictions.increment();
+		}
+	}
+
+	private Optional<String> loadPersisted(String key) {
+		if (!persistent) {
+			return Optional.empty();
+		}
+		try {
+			return repo.findById(key)
+					.filter(c -> c.expiresAt().isAfter(Instant.now()))
+					.map(CachedCorrection::correction);
+		} catch (DataAccessException e) {
+			log.warn("Could not read persisted correction: {}", e.getMessage());
+			return Optional.empty();
+		}
+	}
+
+	private void persist(String key, String value) {
+		if (!persistent) {
+			return;
+		}
+		try {
+			repo.save(new CachedCorrection(key, value, Instant.now().plus(ttl)));
+		} catch (DataAccessException e) {
+			log.warn("Could not persist correction: {}", e.getMessage());
+		}
+	}
+
+	private static String await(CompletableFuture<String> future) throws OpenAiException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new OpenAiException("Interrupted while waiting for correction");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof OpenAiException cause) {
+				throw cause;
+			}
+			throw new OpenAiException(e.getCause().getMessage());
+		}
+	}
+}
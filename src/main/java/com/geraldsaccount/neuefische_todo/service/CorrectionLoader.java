@@ -0,0 +1,8 @@
+package com.geraldsaccount.neuefische_todo.service;
+
+import com.geraldsaccount.neuefische_todo.model.openai.OpenAiException;
+
+@FunctionalInterface
+public interface CorrectionLoader {
+	String load(String input) throws OpenAiException;
+}
@@ -0,0 +1,172 @@
+package com.geraldsaccount.neuefische_todo.service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import com.geraldsaccount.neuefische_todo.model.openai.OpenAiException;
+import com.geraldsaccount.neuefische_todo.model.openai.OpenAiUnavailableException;
+import com.geraldsaccount.neuefische_todo.model.tasks.Task;
+import com.geraldsaccount.neuefische_todo.repository.TaskRepo;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Runs spelling corrections in the background so that writes do not wait for
+ * OpenAI. A corrected description is only applied if the task still carries
+ * the description the correction was requested for.
+ * <p>
+ * With {@code spring.threads.virtual.enabled} every correction gets its own
+ * virtual thread. Waiting for OpenAI then no longer ties up a pooled thread,
+ * so far more corrections can wait for a batch at once; semaphores take over
+ * the bounds the pool and its queue used to enforce.
+ * <p>
+ * The many corrections of a batch write do not go through the queue, which is
+ * sized for single writes. They are handed to the {@link CorrectionBatcher}
+ * right away and wait for OpenAI without holding a thread.
+ */
+@Service
+public class CorrectionScheduler {
+	private static final Logger log = LoggerFactory.getLogger(CorrectionScheduler.class);
+
+	private final CorrectionService correctionService;
+	private final TaskRepo repo;
+	private final ExecutorService executor;
+	// only set in virtual-thread mode, where the executor itself is unbounded
+	private final Semaphore admitted;
+	private final Semaphore running;
+
+	// task id -> description that is currently being corrected
+	private final Map<String, String> pending = new ConcurrentHashMap<>();
+
+	public CorrectionScheduler(CorrectionService correctionService, TaskRepo repo,
+			@Value("${corrections.async.threads:16}") int threads,
+			@Value("${corrections.async.queue-capacity:1000}") int queueCapacity,
+			@Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+			@Value("${corrections.async.virtual-concurrency:256}") int virtualConcurrency) {
+		this.correctionService = correctionService;
+		this.repo = repo;
+		if (virtualThreads) {
+			executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("correction-", 0).factory());
+			admitted = new Semaphore(virtualConcurrency + queueCapacity);
+			running = new Semaphore(virtualConcurrency);
+		} else {
+			ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads,
+					60, TimeUnit.SECONDS,
+					new ArrayBlockingQueue<>(queueCapacity),
+					new CustomizableThreadFactory("correction-"));
+			pool.allowCoreThreadTimeOut(true);
+			executor = pool;
+			admitted = null;
+			running = null;
+		}
+	}
+
+	public void schedule(Task task) {
+		String id = task.id();
+		String raw = task.description();
+		pending.put(id, raw);
+		if (admitted != null && !admitted.tryAcquire()) {
+			pending.remove(id, raw);
+			log.warn("Correction queue is full, skipping correction of task {}", id);
+			return;
+		}
+		try {
+			executor.execute(admitted == null ? () -> correct(id, raw) : () -> correctBounded(id, raw));
+		} catch (RejectedExecutionException e) {
+			if (admitted != null) {
+				admitted.release();
+			}
+			pending.remove(id, raw);
+			log.warn("Correction queue is full, skipping correction of task {}", id);
+		}
+	}
+
+	public void scheduleAll(List<Task> tasks) {
+		for (Task task : tasks) {
+			String id = task.id();
+			String raw = task.description();
+			pending.put(id, raw);
+			// completes on a batch sender thread
+			correctionService.correctAsync(raw).whenComplete((corrected, error) -> {
+				try {
+					if (error == null) {
+						apply(id, raw, corrected);
+					} else {
+						failed(id, error instanceof CompletionException wrapped ? wrapped.getCause() : error);
+					}
+				} catch (RuntimeException e) {
+					failed(id, e);
+				} finally {
+					pending.remove(id, raw);
+				}
+			});
+		}
+	}
+
+	public boolean isPending(String id) {
+		return pending.containsKey(id);
+	}
+
+	private void correctBounded(String id, String raw) {
+		try {
+			running.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			pending.remove(id, raw);
+			admitted.release();
+			return;
+		}
+		try {
+			correct(id, raw);
+		} finally {
+			running.release();
+			admitted.release();
+		}
+	}
+
+	private void correct(String id, String raw) {
+		try {
+			apply(id, raw, correctionService.getCorrectedText(raw));
+		} catch (OpenAiException | RuntimeException e) {
+			failed(id, e);
+		} finally {
+			pending.remove(id, raw);
+		}
+	}
+
+	private void apply(String id, String raw, String corrected) {
+		if (corrected != null && !corrected.isBlank() && !corrected.equals(raw)
+				&& !repo.updateDescriptionIfUnchanged(id, raw, corrected)) {
+			log.debug("Task {} changed while being corrected, discarding correction", id);
+		}
+	}
+
+	private static void failed(String id, Throwable error) {
+		if (error instanceof OpenAiUnavailableException) {
+			log.debug("Skipping correction of task {}: {}", id, error.getMessage());
+		} else {
+			log.warn("Could not correct task {}: {}", id, error.getMessage());
+		}
+	}
+
+	@PreDestroy
+	void shutdown() throws InterruptedException {
+		executor.shutdown();
+		executor.awaitTermination(5, TimeUnit.SECONDS);
+	}
+}
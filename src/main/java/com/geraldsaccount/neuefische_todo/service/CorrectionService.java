@@ -1,57 +1,94 @@
 package com.geraldsaccount.neuefische_todo.service;
 
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.ParameterizedTypeReference;
-import org.springframework.http.MediaType;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestClient;
 
 import com.geraldsaccount.neuefische_todo.model.openai.OpenAiException;
-import com.geraldsaccount.neuefische_todo.model.openai.OpenAiOutput;
-import com.geraldsaccount.neuefische_todo.model.openai.OpenAiRequest;
-import com.geraldsaccount.neuefische_todo.model.openai.OpenAiResponse;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 
 @Service
 public class CorrectionService {
-	private final RestClient client;
+	private final CorrectionCache cache;
+	private final CorrectionBatcher batcher;
+	private final MeterRegistry registry;
+	private final DistributionSummary inputChars;
+	private final DistributionSummary outputChars;
+	private final Timer succeeded;
+	// by exception, registered on first use
+	private final Map<String, Timer> failedTimers = new ConcurrentHashMap<>();
+	private final Map<String, Counter> failures = new ConcurrentHashMap<>();
 
-	public static final String REQUEST_URI = "/v1/responses";
+	public static final String MODEL = "gpt-4.1";
+	public static final String INSTRUCTIONS = "Correct the following text for spelling and grammar. Only return the corrected text.";
 
-	public CorrectionService(RestClient.Builder builder,
-			@Value("${servers.openai.url}") String baseUrl,
-			@Value("${servers.openai.key}") String key) {
-		client = builder
-				.baseUrl(baseUrl)
-				.defaultHeader("Authorization", "Bearer " + key)
-				.build();
+	public CorrectionService(CorrectionCache cache, CorrectionBatcher batcher, MeterRegistry registry) {
+		this.cache = cache;
+		this.batcher = batcher;
+		this.registry = registry;
+		inputChars = DistributionSummary.builder("corrections.chars")
+				.description("Length of corrected texts")
+				.baseUnit("chars")
+				.tag("direction", "input")
+				.register(registry);
+		outputChars = DistributionSummary.builder("corrections.chars")
+				.description("Length of corrected texts")
+				.baseUnit("chars")
+				.tag("direction", "output")
+				.register(registry);
+		succeeded = timer("none");
 	}
 
 	public String getCorrectedText(String input) throws OpenAiException {
-		OpenAiRequest request = new OpenAiRequest("gpt-4.1",
-				"Correct the following text for spelling and grammar. Only return the corrected text.",
-				input);
-		OpenAiResponse response = client.post()
-				.uri(REQUEST_URI)
-				.contentType(MediaType.APPLICATION_JSON)
-				.body(request)
-				.retrieve()
-				.body(new ParameterizedTypeReference<>() {
-				});
-		if (response == null) {
-			throw new OpenAiException("Did not retrieve response from OpenAI");
+		Timer.Sample sample = Timer.start(registry);
+		try {
+			String corrected = cache.get(input, MODEL, INSTRUCTIONS, batcher::correct);
+			record(sample, input, corrected, null);
+			return corrected;
+		} catch (OpenAiException | RuntimeException e) {
+			record(sample, input, null, e);
+			throw e;
 		}
+	}
 
-		if (!response.status().equals("completed")
-				|| response.output() == null || response.output().isEmpty()) {
-			throw new OpenAiException(response.error());
-		}
+	/**
+	 * Non-blocking variant of {@link #getCorrectedText} that waits for its
+	 * batch without holding a thread. Only the in-memory cache entries are used.
+	 */
+	public CompletableFuture<String> correctAsync(String input) {
+		Timer.Sample sample = Timer.start(registry);
+		return cache.getAsync(input, MODEL, INSTRUCTIONS, batcher::submit)
+				.whenComplete((corrected, error) -> record(sample, input, corrected,
+						error instanceof CompletionException wrapped ? wrapped.getCause() : error));
+	}
 
-		OpenAiOutput output = response.output().getFirst();
-		if (!output.status().equals("completed") ||
-				output.content() == null || output.content().isEmpty()) {
-			throw new OpenAiException("OpenAi response output was not completed.");
+	private void record(Timer.Sample sample, String input, String corrected, Throwable error) {
+		if (error == null) {
+			inputChars.record(input.length());
+			outputChars.record(corrected.length());
+			sample.stop(succeeded);
+			return;
 		}
+		String exception = error.getClass().getSimpleName();
+		failures.computeIfAbsent(exception, cause -> Counter.builder("corrections.failures")
+				.description("Corrections that failed, by cause")
+				.tag("cause", cause)
+				.register(registry))
+				.increment();
+		sample.stop(failedTimers.computeIfAbsent(exception, this::timer));
+	}
 
-		return output.content().getFirst().text();
+	private Timer timer(String exception) {
+		return Timer.builder("corrections")
+				.description("Duration of corrections, including cache hits")
+				.tag("exception", exception)
+				.register(registry);
 	}
 }
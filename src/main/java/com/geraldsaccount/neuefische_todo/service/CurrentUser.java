@@ -0,0 +1,79 @@
+package com.geraldsaccount.neuefische_todo.service;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import com.geraldsaccount.neuefische_todo.model.tasks.Task;
+
+/**
+ * Resolves the user of the current request from the {@value #HEADER} header
+ * and its tenant from the {@value #TENANT_HEADER} header. Requests without
+ * them, and calls outside of a request, belong to {@value #ANONYMOUS} and
+ * {@value Task#DEFAULT_TENANT}.
+ */
+@Component
+public class CurrentUser {
+	public static final String HEADER = "X-User-Id";
+	public static final String TENANT_HEADER = "X-Tenant-Id";
+	public static final String ANONYMOUS = "anonymous";
+	public static final int MAX_LENGTH = 128;
+
+	public String get() {
+		return resolve(header(HEADER));
+	}
+
+	public String tenant() {
+		return resolveTenant(header(TENANT_HEADER));
+	}
+
+	/**
+	 * The undo history key of the current request's user within its tenant.
+	 */
+	public String historyKey() {
+		return historyKey(tenant(), get());
+	}
+
+	/**
+	 * Users are only unique within a tenant, so the undo history is kept per
+	 * tenant and user.
+	 */
+	public static String historyKey(String tenant, String user) {
+		return tenant + ":" + user;
+	}
+
+	private static String header(String name) {
+		RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+		if (!(attributes instanceof ServletRequestAttributes servletAttributes)) {
+			return null;
+		}
+		return servletAttributes.getRequest().getHeader(name);
+	}
+
+	/**
+	 * Resolves the user from a {@value #HEADER} header value, for callers that
+	 * read the header themselves.
+	 */
+	public static String resolve(String user) {
+		return resolve(user, HEADER, ANONYMOUS);
+	}
+
+	/**
+	 * Resolves the tenant from a {@value #TENANT_HEADER} header value, for
+	 * callers that read the header themselves.
+	 */
+	public static String resolveTenant(String tenant) {
+		return resolve(tenant, TENANT_HEADER, Task.DEFAULT_TENANT);
+	}
+
+	private static String resolve(String value, String header, String fallback) {
+		if (value == null || value.isBlank()) {
+			return fallback;
+		}
+		if (value.length() > MAX_LENGTH) {
+			throw new IllegalArgumentException("Invalid " + header + " header.");
+		}
+		return value.strip();
+	}
+}
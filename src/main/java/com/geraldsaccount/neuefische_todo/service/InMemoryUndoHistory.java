@@ -0,0 +1,210 @@
+package com.geraldsaccount.neuefische_todo.service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.geraldsaccount.neuefische_todo.model.undo.RedoNotPossibleException;
+import com.geraldsaccount.neuefische_todo.model.undo.UndoNotPossibleException;
+import com.geraldsaccount.neuefische_todo.model.undo.UndoableAction;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Keeps the last {@code capacity} actions of every user in a ring buffer.
+ * Each user's ring has its own lock, so users never contend with each other.
+ * Histories that have not been touched for {@code idleTimeout} are dropped.
+ */
+@Component
+@ConditionalOnProperty(name = "undo.history.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryUndoHistory implements UndoHistory, MeterBinder {
+	private final int capacity;
+	private final long idleTimeoutNanos;
+
+	private final Map<String, Ring> rings = new ConcurrentHashMap<>();
+	private final AtomicLong lastSweep = new AtomicLong(System.nanoTime());
+	// actions in all rings, kept up to date so that scrapes do not lock every ring
+	private final AtomicLong actions = new AtomicLong();
+
+	public InMemoryUndoHistory(@Value("${undo.history.capacity:100}") int capacity,
+			@Value("${undo.history.idle-timeout:30m}") Duration idleTimeout) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Undo history capacity must be at least 1.");
+		}
+		this.capacity = capacity;
+		idleTimeoutNanos = idleTimeout.toNanos();
+	}
+
+	@Override
+	public void push(String user, UndoableAction action) {
+		sweepIfDue();
+		while (true) {
+			Ring ring = rings.computeIfAbsent(user, u -> new Ring(capacity));
+			ring.lock.lock();
+			try {
+				// evicted between lookup and lock, start over with a fresh ring
+				if (!ring.evicted) {
+					int before = ring.size;
+					ring.push(action);
+					actions.addAndGet(ring.size - before);
+					return;
+				}
+			} finally {
+				ring.lock.unlock();
+			}
+		}
+	}
+
+	@Override
+	public UndoableAction undo(String user) throws UndoNotPossibleException {
+		Ring ring = rings.get(user);
+		UndoableAction action = null;
+		if (ring != null) {
+			ring.lock.lock();
+			try {
+				action = ring.evicted ? null : ring.undo();
+			} finally {
+				ring.lock.unlock();
+			}
+		}
+		if (action == null) {
+			throw new UndoNotPossibleException("No action left to undo.");
+		}
+		return action;
+	}
+
+	@Override
+	public UndoableAction redo(String user) throws RedoNotPossibleException {
+		Ring ring = rings.get(user);
+		UndoableAction action = null;
+		if (ring != null) {
+			ring.lock.lock();
+			try {
+				action = ring.evicted ? null : ring.redo();
+			} finally {
+				ring.lock.unlock();
+			}
+		}
+		if (action == null) {
+			throw new RedoNotPossibleException("No action left to redo.");
+		}
+		return action;
+	}
+
+	int size(String user) {
+		Ring ring = rings.get(user);
+		if (ring == null) {
+			return 0;
+		}
+		ring.lock.lock();
+		try {
+			return ring.size;
+		} finally {
+			ring.lock.unlock();
+		}
+	}
+
+	int users() {
+		return rings.size();
+	}
+
+	long actions() {
+		return actions.get();
+	}
+
+	private void sweepIfDue() {
+		long now = System.nanoTime();
+		long last = lastSweep.get();
+		// at most one sweep per half timeout, and only one thread does it
+		if (now - last >= idleTimeoutNanos / 2 && lastSweep.compareAndSet(last, now)) {
+			evictIdle();
+		}
+	}
+
+	void evictIdle() {
+		long now = System.nanoTime();
+		for (Ring ring : rings.values()) {
+			if (now - ring.lastAccess < idleTimeoutNanos || !ring.lock.tryLock()) {
+				continue;
+			}
+			try {
+				if (now - ring.lastAccess >= idleTimeoutNanos) {
+					ring.evicted = true;
+					rings.values().remove(ring);
+					actions.addAndGet(-ring.size);
+				}
+			} finally {
+				ring.lock.unlock();
+			}
+		}
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		Gauge.builder("undo.history.users", rings, Map::size)
+				.description("Users with an undo history")
+				.register(registry);
+		Gauge.builder("undo.history.actions", actions, AtomicLong::get)
+				.description("Actions kept in all undo histories")
+				.register(registry);
+	}
+
+	/**
+	 * Fixed-size history. The {@code cursor} actions after {@code start} can be
+	 * undone, the ones up to {@code size} can be redone. Pushing past the
+	 * capacity overwrites the oldest action.
+	 */
+	private static final class Ring {
+		private final ReentrantLock lock = new ReentrantLock();
+		private final UndoableAction[] actions;
+		private int start;
+		private int size;
+		private int cursor;
+		private volatile long lastAccess = System.nanoTime();
+		private boolean evicted;
+
+		private Ring(int capacity) {
+			actions = new UndoableAction[capacity];
+		}
+
+		private void push(UndoableAction action) {
+			lastAccess = System.nanoTime();
+			// dropping the redo tail only moves the end, the slots are overwritten later
+			size = cursor;
+			if (size == actions.length) {
+				start = (start + 1) % actions.length;
+				size--;
+			}
+			actions[(start + size) % actions.length] = action;
+			size++;
+			cursor = size;
+		}
+
+		private UndoableAction undo() {
+			lastAccess = System.nanoTime();
+			if (cursor == 0) {
+				return null;
+			}
+			cursor--;
+			return actions[(start + cursor) % actions.length];
+		}
+
+		private UndoableAction redo() {
+			lastAccess = System.nanoTime();
+			if (cursor == size) {
+				return null;
+			}
+			UndoableAction action = actions[(start + cursor) % actions.length];
+			cursor++;
+			return action;
+		}
+	}
+}
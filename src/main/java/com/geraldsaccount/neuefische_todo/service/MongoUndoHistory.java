@@ -0,0 +1,207 @@
+package com.geraldsaccount.neuefische_todo.service;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.CollectionOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.aggregation.ArithmeticOperators;
+import org.springframework.data.mongodb.core.aggregation.ComparisonOperators;
+import org.springframework.data.mongodb.core.aggregation.Fields;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import com.geraldsaccount.neuefische_todo.model.undo.RedoNotPossibleException;
+import com.geraldsaccount.neuefische_todo.model.undo.UndoLogEntry;
+import com.geraldsaccount.neuefische_todo.model.undo.UndoNotPossibleException;
+import com.geraldsaccount.neuefische_todo.model.undo.UndoPointer;
+import com.geraldsaccount.neuefische_todo.model.undo.UndoSnapshot;
+import com.geraldsaccount.neuefische_todo.model.undo.UndoableAction;
+import com.geraldsaccount.neuefische_todo.repository.TaskRepo;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Undo history shared by all replicas. Actions are appended to a capped
+ * collection, each user's position is a pointer document that is moved with a
+ * single atomic update. Pushing after an undo just moves the pointer back, the
+ * dropped redo tail stays in the log until the capped collection overwrites
+ * it.
+ * <p>
+ * A push writes its entry at the position it is going to take first and then
+ * moves the pointer only if no other push or undo moved it meanwhile, so the
+ * pointer never points at a missing entry or at the older entry of a dropped
+ * redo tail. The entry of a push that lost is marked {@link #ABANDONED} and
+ * the push is retried. An entry left behind by a replica that failed before
+ * moving the pointer is taken over by the next push at that position, which
+ * is newer.
+ * <p>
+ * The pointer also keeps the snapshots of the entry at its cursor and of the
+ * entry undone last, so a single undo and the redo after it take one
+ * findAndModify. Only an undo past the entry the pointer knows reads the log,
+ * an update cannot look up another collection.
+ */
+@Component
+@ConditionalOnProperty(name = "undo.history.store", havingValue = "mongo")
+public class MongoUndoHistory implements UndoHistory, MeterBinder {
+	private static final Logger log = LoggerFactory.getLogger(MongoUndoHistory.class);
+
+	// push of an entry whose pointer move lost, below every real push
+	static final long ABANDONED = -1;
+
+	private final MongoTemplate template;
+	private final TaskRepo repo;
+	private final int capacity;
+
+	public MongoUndoHistory(MongoTemplate template, TaskRepo repo,
+			@Value("${undo.history.capacity:100}") int capacity,
+			@Value("${undo.history.mongo.log-size-bytes:67108864}") long logSizeBytes) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Undo history capacity must be at least 1.");
+		}
+		this.template = template;
+		this.repo = repo;
+		this.capacity = capacity;
+		createLog(logSizeBytes);
+	}
+
+	private void createLog(long sizeBytes) {
+		if (!template.collectionExists(UndoLogEntry.COLLECTION)) {
+			try {
+				template.createCollection(UndoLogEntry.COLLECTION, CollectionOptions.empty().capped().size(sizeBytes));
+			} catch (DataAccessException e) {
+				// another replica created it in the meantime
+				log.debug("Could not create undo log: {}", e.getMessage());
+			}
+		}
+		template.indexOps(UndoLogEntry.COLLECTION).ensureIndex(new Index()
+				.on("user", Sort.Direction.ASC)
+				.on("seq", Sort.Direction.ASC)
+				.on("push", Sort.Direction.DESC)
+				.named("user_seq_push"));
+	}
+
+	@Override
+	public void push(String user, UndoableAction action) {
+		UndoSnapshot snapshot = action.snapshot();
+		while (true) {
+			UndoPointer current = template.findOne(query(where("user").is(user)), UndoPointer.class);
+			long seq = current == null ? 1 : current.cursor() + 1;
+			long push = current == null ? 1 : current.pushes() + 1;
+			UndoLogEntry entry = template.insert(new UndoLogEntry(new ObjectId().toHexString(), user, seq, push,
+					snapshot.type(), snapshot.before(), snapshot.after()));
+			if (movePointer(user, current, seq, push, snapshot)) {
+				return;
+			}
+			// same size, so the capped collection allows the update
+			template.updateFirst(query(where("id").is(entry.id())), new Update().set("push", ABANDONED),
+					UndoLogEntry.class);
+		}
+	}
+
+	/**
+	 * Moves cursor and head to {@code seq}, older entries beyond the capacity
+	 * fall below the floor.
+	 *
+	 * @return false if the pointer is no longer {@code current}
+	 */
+	private boolean movePointer(String user, UndoPointer current, long seq, long push, UndoSnapshot snapshot) {
+		long floor = Math.max(0, seq - capacity);
+		if (current == null) {
+			try {
+				template.insert(new UndoPointer(user, seq, seq, floor, push, snapshot, null));
+				return true;
+			} catch (DuplicateKeyException e) {
+				return false;
+			}
+		}
+		return template.updateFirst(
+				query(where("user").is(user).and("cursor").is(current.cursor()).and("pushes").is(current.pushes())),
+				new Update().set("cursor", seq).set("head", seq).max("floor", floor).set("pushes", push)
+						.set("current", snapshot).unset("undone"),
+				UndoPointer.class).getModifiedCount() > 0;
+	}
+
+	@Override
+	public UndoableAction undo(String user) throws UndoNotPossibleException {
+		// returns the pointer before the move, with the snapshot of the entry that is undone
+		UndoPointer pointer = template.findAndModify(
+				query(where("user").is(user)
+						.andOperator(Criteria.expr(ComparisonOperators.valueOf("cursor").greaterThan("floor")))),
+				AggregationUpdate.update()
+						.set("cursor").toValueOf(ArithmeticOperators.valueOf("cursor").subtract(1))
+						.set("undone").toValueOf(Fields.field("current"))
+						.unset("current"),
+				UndoPointer.class);
+		if (pointer == null) {
+			throw new UndoNotPossibleException("No action left to undo.");
+		}
+		UndoSnapshot snapshot = pointer.current() != null ? pointer.current() : find(user, pointer.cursor());
+		if (snapshot == null) {
+			// the capped log already dropped it, and everything before it
+			template.updateFirst(query(where("user").is(user).and("cursor").is(pointer.cursor() - 1)),
+					new Update().set("cursor", pointer.cursor()).set("floor", pointer.cursor()),
+					UndoPointer.class);
+			throw new UndoNotPossibleException("No action left to undo.");
+		}
+		return snapshot.toAction(repo);
+	}
+
+	@Override
+	public UndoableAction redo(String user) throws RedoNotPossibleException {
+		UndoPointer pointer = template.findAndModify(
+				query(where("user").is(user)
+						.andOperator(Criteria.expr(ComparisonOperators.valueOf("cursor").lessThan("head")))),
+				AggregationUpdate.update()
+						.set("cursor").toValueOf(ArithmeticOperators.valueOf("cursor").add(1))
+						.set("current").toValueOf(Fields.field("undone"))
+						.unset("undone"),
+				UndoPointer.class);
+		if (pointer == null) {
+			throw new RedoNotPossibleException("No action left to redo.");
+		}
+		long seq = pointer.cursor() + 1;
+		UndoSnapshot snapshot = pointer.undone() != null ? pointer.undone() : find(user, seq);
+		if (snapshot == null) {
+			template.updateFirst(query(where("user").is(user).and("cursor").is(seq)),
+					new Update().set("cursor", seq - 1).set("head", seq - 1),
+					UndoPointer.class);
+			throw new RedoNotPossibleException("No action left to redo.");
+		}
+		return snapshot.toAction(repo);
+	}
+
+	private UndoSnapshot find(String user, long seq) {
+		// of two entries with the same push, the older one was left behind by a failed push
+		Query query = query(where("user").is(user).and("seq").is(seq))
+				.with(Sort.by(Sort.Direction.DESC, "push", "id"))
+				.limit(1);
+		UndoLogEntry entry = template.findOne(query, UndoLogEntry.class);
+		return entry == null ? null : entry.snapshot();
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		// estimated counts come from collection metadata and do not scan the log
+		Gauge.builder("undo.history.users", template, t -> t.estimatedCount(UndoPointer.class))
+				.description("Users with an undo history")
+				.register(registry);
+		Gauge.builder("undo.history.actions", template, t -> t.estimatedCount(UndoLogEntry.COLLECTION))
+				.description("Entries in the shared undo log, including ones that fell below the capacity")
+				.register(registry);
+	}
+}
@@ -0,0 +1,143 @@
+package com.geraldsaccount.neuefische_todo.service;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientException;
+
+import com.geraldsaccount.neuefische_todo.model.openai.OpenAiException;
+import com.geraldsaccount.neuefische_todo.model.openai.OpenAiOutput;
+import com.geraldsaccount.neuefische_todo.model.openai.OpenAiRequest;
+import com.geraldsaccount.neuefische_todo.model.openai.OpenAiResponse;
+import com.geraldsaccount.neuefische_todo.model.openai.OpenAiUnavailableException;
+import com.geraldsaccount.neuefische_todo.model.openai.OpenAiUsage;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+@Service
+public class OpenAiClient implements MeterBinder {
+	private final RestClient client;
+	private final CircuitBreaker circuitBreaker;
+	private final AdaptiveConcurrencyLimiter limiter;
+
+	private final LongAdder inputTokens = new LongAdder();
+	private final LongAdder outputTokens = new LongAdder();
+
+	public static final String REQUEST_URI = "/v1/responses";
+
+	public OpenAiClient(RestClient.Builder builder,
+			CircuitBreaker circuitBreaker,
+			AdaptiveConcurrencyLimiter limiter,
+			@Value("${servers.openai.url}") String baseUrl,
+			@Value("${servers.openai.key}") String key,
+			@Value("${servers.openai.connect-timeout:2s}") Duration connectTimeout,
+			@Value("${servers.openai.read-timeout:10s}") Duration readTimeout) {
+		this.circuitBreaker = circuitBreaker;
+		this.limiter = limiter;
+
+		JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(HttpClient.newBuilder()
+				.connectTimeout(connectTimeout)
+				.build());
+		requestFactory.setReadTimeout(readTimeout);
+
+		client = builder
+				.baseUrl(baseUrl)
+				.defaultHeader("Authorization", "Bearer " + key)
+				.requestFactory(requestFactory)
+				.build();
+	}
+
+	public String respond(OpenAiRequest request) throws OpenAiException {
+		if (!circuitBreaker.tryAcquire()) {
+			throw new OpenAiUnavailableException("OpenAI is currently unavailable.");
+		}
+		if (!limiter.tryAcquire()) {
+			// a half-open breaker has only a few trial permits, this one was not used
+			circuitBreaker.release();
+			throw new OpenAiUnavailableException("Too many concurrent requests to OpenAI.");
+		}
+
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			String text = send(request);
+			failed = false;
+			return text;
+		} finally {
+			limiter.release(System.nanoTime() - start, failed);
+			if (failed) {
+				circuitBreaker.onFailure();
+			} else {
+				circuitBreaker.onSuccess();
+			}
+		}
+	}
+
+	private String send(OpenAiRequest request) throws OpenAiException {
+		OpenAiResponse response;
+		try {
+			response = client.post()
+					.uri(REQUEST_URI)
+					.contentType(MediaType.APPLICATION_JSON)
+					.body(request)
+					.retrieve()
+					.body(new ParameterizedTypeReference<>() {
+					});
+		} catch (RestClientException e) {
+			throw new OpenAiException("Request to OpenAI failed: " + e.getMessage(), e);
+		}
+		if (response != null && response.usage() != null) {
+			OpenAiUsage usage = response.usage();
+			inputTokens.add(usage.inputTokens());
+			outputTokens.add(usage.outputTokens());
+		}
+		return textOf(response);
+	}
+
+	static String textOf(OpenAiResponse response) throws OpenAiException {
+		if (response == null) {
+			throw new OpenAiException("Did not retrieve response from OpenAI");
+		}
+
+		if (!response.status().equals("completed")
+				|| response.output() == null || response.output().isEmpty()) {
+			throw new OpenAiException(response.error());
+		}
+
+		OpenAiOutput output = response.output().getFirst();
+		if (!output.status().equals("completed") ||
+				output.content() == null || output.content().isEmpty()) {
+			throw new OpenAiException("OpenAi response output was not completed.");
+		}
+
+		return output.content().getFirst().text();
+	}
+
+	/**
+	 * Whether calls currently get through the circuit breaker at all.
+	 */
+	public boolean isAvailable() {
+		return circuitBreaker.getState() != CircuitState.OPEN;
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		FunctionCounter.builder("openai.tokens", inputTokens, LongAdder::sum)
+				.description("Tokens billed by OpenAI")
+				.tag("type", "input")
+				.register(registry);
+		FunctionCounter.builder("openai.tokens", outputTokens, LongAdder::sum)
+				.description("Tokens billed by OpenAI")
+				.tag("type", "output")
+				.register(registry);
+	}
+}
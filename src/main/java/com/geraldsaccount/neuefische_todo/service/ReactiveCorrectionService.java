@@ -0,0 +1,32 @@
+package com.geraldsaccount.neuefische_todo.service;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import com.geraldsaccount.neuefische_todo.model.openai.OpenAiRequest;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Corrects texts like {@link CorrectionService}, without blocking a thread
+ * while OpenAI answers. Requests are not batched.
+ */
+@Service
+@Profile("reactive")
+public class ReactiveCorrectionService {
+	private final CorrectionCache cache;
+	private final ReactiveOpenAiClient client;
+
+	public ReactiveCorrectionService(CorrectionCache cache, ReactiveOpenAiClient client) {
+		this.cache = cache;
+		this.client = client;
+	}
+
+	public Mono<String> getCorrectedText(String input) {
+		// cancelling one caller must not cancel the load other callers share
+		return Mono.fromFuture(() -> cache.getAsync(input, CorrectionService.MODEL, CorrectionService.INSTRUCTIONS,
+				normalized -> client.respond(new OpenAiRequest(CorrectionService.MODEL,
+						CorrectionService.INSTRUCTIONS, normalized)).toFuture()),
+				true);
+	}
+}
@@ -0,0 +1,100 @@
+package com.geraldsaccount.neuefische_todo.service;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.JdkClientHttpConnector;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import com.geraldsaccount.neuefische_todo.model.openai.OpenAiException;
+import com.geraldsaccount.neuefische_todo.model.openai.OpenAiRequest;
+import com.geraldsaccount.neuefische_todo.model.openai.OpenAiResponse;
+import com.geraldsaccount.neuefische_todo.model.openai.OpenAiUnavailableException;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * {@link WebClient} counterpart of {@link OpenAiClient}. It shares the circuit
+ * breaker and the concurrency limiter with it, both only take short locks.
+ */
+@Service
+@Profile("reactive")
+public class ReactiveOpenAiClient {
+	private final WebClient client;
+	private final CircuitBreaker circuitBreaker;
+	private final AdaptiveConcurrencyLimiter limiter;
+	private final Duration readTimeout;
+
+	public ReactiveOpenAiClient(WebClient.Builder builder,
+			CircuitBreaker circuitBreaker,
+			AdaptiveConcurrencyLimiter limiter,
+			@Value("${servers.openai.url}") String baseUrl,
+			@Value("${servers.openai.key}") String key,
+			@Value("${servers.openai.connect-timeout:2s}") Duration connectTimeout,
+			@Value("${servers.openai.read-timeout:10s}") Duration readTimeout) {
+		this.circuitBreaker = circuitBreaker;
+		this.limiter = limiter;
+		this.readTimeout = readTimeout;
+
+		client = builder
+				.baseUrl(baseUrl)
+				.defaultHeader("Authorization", "Bearer " + key)
+				.clientConnector(new JdkClientHttpConnector(HttpClient.newBuilder()
+						.connectTimeout(connectTimeout)
+						.build()))
+				.build();
+	}
+
+	public Mono<String> respond(OpenAiRequest request) {
+		return Mono.defer(() -> {
+			if (!circuitBreaker.tryAcquire()) {
+				return Mono.error(new OpenAiUnavailableException("OpenAI is currently unavailable."));
+			}
+			if (!limiter.tryAcquire()) {
+				circuitBreaker.release();
+				return Mono.error(new OpenAiUnavailableException("Too many concurrent requests to OpenAI."));
+			}
+
+			long start = System.nanoTime();
+			AtomicBoolean succeeded = new AtomicBoolean();
+			return send(request)
+					.doOnSuccess(text -> succeeded.set(true))
+					.doFinally(signal -> {
+						limiter.release(System.nanoTime() - start, !succeeded.get());
+						if (succeeded.get()) {
+							circuitBreaker.onSuccess();
+						} else {
+							circuitBreaker.onFailure();
+						}
+					});
+		});
+	}
+
+	private Mono<String> send(OpenAiRequest request) {
+		return client.post()
+				.uri(OpenAiClient.REQUEST_URI)
+				.contentType(MediaType.APPLICATION_JSON)
+				.bodyValue(request)
+				.retrieve()
+				.bodyToMono(OpenAiResponse.class)
+				.timeout(readTimeout)
+				.onErrorMap(e -> !(e instanceof OpenAiException),
+						e -> new OpenAiException("Request to OpenAI failed: " + e.getMessage(), e))
+				.switchIfEmpty(Mono.error(() -> new OpenAiException("Did not retrieve response from OpenAI")))
+				.<String>handle((response, sink) -> {
+					try {
+						String text = OpenAiClient.textOf(response);
+						if (text != null) {
+							sink.next(text);
+						}
+					} catch (OpenAiException e) {
+						sink.error(e);
+					}
+				});
+	}
+}
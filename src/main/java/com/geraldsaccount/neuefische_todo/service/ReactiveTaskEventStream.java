@@ -0,0 +1,78 @@
+package com.geraldsaccount.neuefische_todo.service;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Service;
+
+import com.geraldsaccount.neuefische_todo.model.tasks.dto.TaskEventDTO;
+
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Serves the {@link TaskEventBus} as a Server-Sent Event {@link Flux} for the
+ * reactive profile. The queue of a client is bounded like there; a client
+ * that overflows it gets a {@value TaskEventBus#RESYNC_EVENT} event carrying
+ * the current event id and the stream ends, so that the reconnect resumes from
+ * there.
+ */
+@Service
+@Profile("reactive")
+public class ReactiveTaskEventStream {
+	private final TaskEventBus eventBus;
+	private final int queueCapacity;
+	private final Duration timeout;
+	private final Duration heartbeat;
+
+	public ReactiveTaskEventStream(TaskEventBus eventBus,
+			@Value("${tasks.stream.queue-capacity:256}") int queueCapacity,
+			@Value("${tasks.stream.timeout:30m}") Duration timeout,
+			@Value("${tasks.stream.heartbeat:30s}") Duration heartbeat) {
+		this.eventBus = eventBus;
+		this.queueCapacity = queueCapacity;
+		this.timeout = timeout;
+		this.heartbeat = heartbeat;
+	}
+
+	/**
+	 * Streams the events of {@code tenant}, see {@link TaskEventBus#subscribe}.
+	 */
+	public Flux<ServerSentEvent<Object>> subscribe(String lastEventId, String tenant) {
+		Flux<ServerSentEvent<Object>> events = Flux.<ServerSentEvent<Object>>create(sink -> {
+			Runnable unsubscribe = eventBus.listen(lastEventId, new TaskEventBus.Listener() {
+				@Override
+				public void onEvent(String id, TaskEventDTO event) {
+					if (!TaskEventBus.isVisible(event, tenant)) {
+						return;
+					}
+					sink.next(ServerSentEvent.<Object>builder(event).id(id).event(TaskEventBus.TASK_EVENT).build());
+				}
+
+				@Override
+				public void onResync() {
+					sink.next(resync(null));
+				}
+			});
+			sink.onDispose(unsubscribe::run);
+			// sent once registered, so a client that got it cannot miss an event
+			sink.next(ServerSentEvent.<Object>builder().comment("connected").build());
+		})
+				.onBackpressureBuffer(queueCapacity)
+				.onErrorResume(Exceptions::isOverflow, e -> Mono.just(resync(eventBus.lastEventId())));
+
+		return events.publish(shared -> Flux.merge(shared,
+				Flux.interval(heartbeat, heartbeat)
+						.map(tick -> ServerSentEvent.<Object>builder().comment("heartbeat").build())
+						.takeUntilOther(shared.ignoreElements())))
+				.take(timeout);
+	}
+
+	private static ServerSentEvent<Object> resync(String id) {
+		// an event without a data line would not be dispatched by EventSource
+		return ServerSentEvent.<Object>builder().id(id).event(TaskEventBus.RESYNC_EVENT).data("").build();
+	}
+}
@@ -0,0 +1,104 @@
+package com.geraldsaccount.neuefische_todo.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.geraldsaccount.neuefische_todo.model.tasks.Task;
+import com.geraldsaccount.neuefische_todo.repository.ReactiveTaskRepo;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * {@link TaskExportService} for the reactive profile. Tasks are pulled from
+ * the cursor only as fast as the client reads them.
+ */
+@Service
+@Profile("reactive")
+public class ReactiveTaskExportService {
+	private final ReactiveTaskRepo repo;
+	private final ObjectWriter writer;
+
+	public ReactiveTaskExportService(ReactiveTaskRepo repo, ObjectMapper mapper) {
+		this.repo = repo;
+		writer = mapper.writerFor(Task.class);
+	}
+
+	/**
+	 * Newline delimited JSON of all tasks after {@code afterId}, optionally as
+	 * one gzip stream.
+	 */
+	public Flux<byte[]> export(String tenant, String afterId, boolean gzip) {
+		Flux<byte[]> lines = repo.streamAfter(tenant, afterId, TaskExportService.BATCH_SIZE).map(this::line);
+		if (!gzip) {
+			return lines;
+		}
+		// compressing a whole cursor batch at once keeps the sync flushes from hurting the ratio
+		return Flux.using(GzipChunks::new,
+				chunks -> lines.buffer(TaskExportService.BATCH_SIZE)
+						.map(chunks::compress)
+						.concatWith(Mono.fromCallable(chunks::finish)),
+				GzipChunks::close);
+	}
+
+	private byte[] line(Task task) {
+		try {
+			byte[] json = writer.writeValueAsBytes(task);
+			byte[] line = new byte[json.length + 1];
+			System.arraycopy(json, 0, line, 0, json.length);
+			line[json.length] = '\n';
+			return line;
+		} catch (JsonProcessingException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static final class GzipChunks {
+		private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(8192);
+		private final GZIPOutputStream gzip;
+
+		private GzipChunks() throws IOException {
+			gzip = new GZIPOutputStream(buffer, 8192, true);
+		}
+
+		private byte[] compress(List<byte[]> lines) {
+			try {
+				for (byte[] line : lines) {
+					gzip.write(line);
+				}
+				gzip.flush();
+				return take();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		private byte[] finish() throws IOException {
+			gzip.finish();
+			return take();
+		}
+
+		private byte[] take() {
+			byte[] chunk = buffer.toByteArray();
+			buffer.reset();
+			return chunk;
+		}
+
+		private void close() {
+			try {
+				gzip.close();
+			} catch (IOException e) {
+				// nothing left to write to
+			}
+		}
+	}
+}
@@ -0,0 +1,222 @@
+package com.geraldsaccount.neuefische_todo.service;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import com.geraldsaccount.neuefische_todo.model.corrections.CorrectionStatusDTO;
+import com.geraldsaccount.neuefische_todo.model.openai.OpenAiUnavailableException;
+import com.geraldsaccount.neuefische_todo.model.tasks.Task;
+import com.geraldsaccount.neuefische_todo.model.tasks.TaskStatus;
+import com.geraldsaccount.neuefische_todo.model.tasks.dto.BatchItemResultDTO;
+import com.geraldsaccount.neuefische_todo.model.tasks.dto.BatchOperationDTO;
+import com.geraldsaccount.neuefische_todo.model.tasks.dto.TaskChangesDTO;
+import com.geraldsaccount.neuefische_todo.model.tasks.dto.TaskDTO;
+import com.geraldsaccount.neuefische_todo.model.tasks.dto.TaskPageDTO;
+import com.geraldsaccount.neuefische_todo.model.tasks.dto.TaskSummaryDTO;
+import com.geraldsaccount.neuefische_todo.model.undo.CreateTaskAction;
+import com.geraldsaccount.neuefische_todo.model.undo.DeleteTaskAction;
+import com.geraldsaccount.neuefische_todo.model.undo.UndoableAction;
+import com.geraldsaccount.neuefische_todo.model.undo.UpdateTaskAction;
+import com.geraldsaccount.neuefische_todo.repository.ReactiveTaskRepo;
+import com.geraldsaccount.neuefische_todo.repository.TaskRepo;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * {@link TaskService} for the reactive profile. Reads and single task writes
+ * never block. Undo history, undo/redo and batches keep using the blocking
+ * implementations and run on the bounded elastic scheduler, the undo actions
+ * need the blocking {@link TaskRepo} anyway. So do the change queries of
+ * {@link TaskChangeService} and searches of the {@link TaskSearchService}.
+ * <p>
+ * A create or update completes as soon as the task is stored. Its correction
+ * runs afterwards as a detached pipeline.
+ * <p>
+ * The controller resolves user and tenant from the request headers and passes
+ * them in, there is no request bound to the thread.
+ */
+@Service
+@Profile("reactive")
+public class ReactiveTaskService {
+	private static final Logger log = LoggerFactory.getLogger(ReactiveTaskService.class);
+
+	private final ReactiveTaskRepo repo;
+	private final TaskRepo blockingRepo;
+	private final TaskService taskService;
+	private final IdService idService;
+	private final ReactiveCorrectionService correctionService;
+	private final UndoHistory undoHistory;
+	private final TaskChangeService changeService;
+	private final TaskSearchService searchService;
+
+	// task id -> description that is currently being corrected
+	private final Map<String, String> pending = new ConcurrentHashMap<>();
+
+	public ReactiveTaskService(ReactiveTaskRepo repo, TaskRepo blockingRepo, TaskService taskService,
+			IdService idService, ReactiveCorrectionService correctionService, UndoHistory undoHistory,
+			TaskChangeService changeService, TaskSearchService searchService) {
+		this.repo = repo;
+		this.blockingRepo = blockingRepo;
+		this.taskService = taskService;
+		this.idService = idService;
+		this.correctionService = correctionService;
+		this.undoHistory = undoHistory;
+		this.changeService = changeService;
+		this.searchService = searchService;
+	}
+
+	public Flux<Task> getTasks(String tenant) {
+		return repo.findByTenant(tenant);
+	}
+
+	public String currentChangeToken() {
+		return changeService.currentToken();
+	}
+
+	public Mono<TaskChangesDTO> getChanges(String tenant, String token, Integer limit) {
+		return Mono.fromCallable(() -> changeService.getChanges(tenant, token, limit))
+				.subscribeOn(Schedulers.boundedElastic());
+	}
+
+	public Mono<List<Task>> search(String tenant, String query, Integer limit) {
+		return Mono.fromCallable(() -> searchService.search(tenant, query, limit))
+				.subscribeOn(Schedulers.boundedElastic());
+	}
+
+	public Mono<TaskSummaryDTO> getSummary(String tenant) {
+		return Mono.fromSupplier(() -> TaskService.toSummary(blockingRepo.countByStatus(tenant)));
+	}
+
+	public Mono<TaskPageDTO> getTaskPage(String tenant, String cursor, Integer limit, TaskStatus status,
+			String descriptionPrefix) {
+		return Mono.defer(() -> {
+			int pageSize = TaskService.pageSize(limit);
+			// one extra task tells whether there is a next page
+			return repo.findPage(tenant, TaskService.decodeCursor(cursor), status, descriptionPrefix, pageSize + 1)
+					.collectList()
+					.map(found -> TaskService.toPage(found, pageSize));
+		});
+	}
+
+	public Mono<Task> createTask(TaskDTO template, String user, String tenant) {
+		try {
+			TaskService.checkCreate(template);
+		} catch (IllegalArgumentException e) {
+			return Mono.error(e);
+		}
+
+		return Mono.fromSupplier(() -> Task.of(template).withId(idService.generateId()).withTenant(tenant))
+				.flatMap(repo::save)
+				.flatMap(saved -> pushUndo(user, tenant, new CreateTaskAction(blockingRepo, saved)).thenReturn(saved))
+				.doOnNext(this::correct);
+	}
+
+	public Mono<Task> getById(String id, String tenant) {
+		return repo.findById(id)
+				.filter(task -> task.tenant().equals(tenant))
+				.switchIfEmpty(Mono.error(() -> TaskService.notFound(id)));
+	}
+
+	/**
+	 * @see TaskService#updateTask
+	 */
+	public Mono<Task> updateTask(String id, Task requestedTask, Collection<Long> expectedVersions, String user,
+			String tenant) {
+		try {
+			TaskService.checkUpdate(id, requestedTask);
+		} catch (IllegalArgumentException e) {
+			return Mono.error(e);
+		}
+
+		Task scoped = requestedTask.withTenant(tenant);
+		return repo.updateReturningPrevious(scoped, expectedVersions)
+				.switchIfEmpty(notFoundOrConflict(id, tenant, expectedVersions))
+				.flatMap(beforeTask -> {
+					Task updatedTask = scoped
+							.withVersion(beforeTask.version() == null ? 1 : beforeTask.version() + 1);
+					return pushUndo(user, tenant, new UpdateTaskAction(blockingRepo, updatedTask, beforeTask))
+							.thenReturn(updatedTask);
+				})
+				.doOnNext(this::correct);
+	}
+
+	/**
+	 * @see TaskService#delete
+	 */
+	public Mono<Void> delete(String id, Collection<Long> expectedVersions, String user, String tenant) {
+		if (id == null || id.isEmpty()) {
+			return Mono.error(TaskService.notFound(id));
+		}
+		return repo.deleteReturningPrevious(tenant, id, expectedVersions)
+				.switchIfEmpty(notFoundOrConflict(id, tenant, expectedVersions))
+				.flatMap(deleted -> pushUndo(user, tenant, new DeleteTaskAction(blockingRepo, deleted)));
+	}
+
+	// only subscribed after a conditional write matched nothing
+	private Mono<Task> notFoundOrConflict(String id, String tenant, Collection<Long> expectedVersions) {
+		Mono<Boolean> exists = expectedVersions == null
+				? Mono.just(false)
+				: repo.findById(id).map(task -> task.tenant().equals(tenant)).defaultIfEmpty(false);
+		return exists.flatMap(found -> Mono.<Task>error(found ? TaskService.modified(id) : TaskService.notFound(id)));
+	}
+
+	public Mono<List<BatchItemResultDTO>> applyBatch(List<BatchOperationDTO> operations, String user,
+			String tenant) {
+		return Mono.fromCallable(() -> taskService.applyBatch(operations, user, tenant))
+				.subscribeOn(Schedulers.boundedElastic());
+	}
+
+	public Mono<CorrectionStatusDTO> getCorrectionStatus(String id, String tenant) {
+		return getById(id, tenant).map(task -> new CorrectionStatusDTO(task.id(), pending.containsKey(task.id())));
+	}
+
+	public Mono<Void> undo(String user, String tenant) {
+		return Mono.<Void>fromCallable(() -> {
+			undoHistory.undo(CurrentUser.historyKey(tenant, user)).undo();
+			return null;
+		}).subscribeOn(Schedulers.boundedElastic());
+	}
+
+	public Mono<Void> redo(String user, String tenant) {
+		return Mono.<Void>fromCallable(() -> {
+			undoHistory.redo(CurrentUser.historyKey(tenant, user)).redo();
+			return null;
+		}).subscribeOn(Schedulers.boundedElastic());
+	}
+
+	private Mono<Void> pushUndo(String user, String tenant, UndoableAction action) {
+		return Mono.<Void>fromRunnable(() -> undoHistory.push(CurrentUser.historyKey(tenant, user), action))
+				.subscribeOn(Schedulers.boundedElastic())
+				.then();
+	}
+
+	private void correct(Task task) {
+		String id = task.id();
+		String raw = task.description();
+		pending.put(id, raw);
+		Mono.defer(() -> correctionService.getCorrectedText(raw))
+				.filter(corrected -> !corrected.isBlank() && !corrected.equals(raw))
+				.flatMap(corrected -> repo.updateDescriptionIfUnchanged(id, raw, corrected))
+				.doFinally(signal -> pending.remove(id, raw))
+				.subscribe(updated -> {
+					if (!updated) {
+						log.debug("Task {} changed while being corrected, discarding correction", id);
+					}
+				}, e -> {
+					if (e instanceof OpenAiUnavailableException) {
+						log.debug("Skipping correction of task {}: {}", id, e.getMessage());
+					} else {
+						log.warn("Could not correct task {}: {}", id, e.getMessage());
+					}
+				});
+	}
+}
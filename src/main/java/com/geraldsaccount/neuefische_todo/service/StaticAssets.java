@@ -0,0 +1,161 @@
+package com.geraldsaccount.neuefische_todo.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * The bundled frontend, read once at startup and kept in memory together with
+ * its gzipped variant. Text assets are gzipped here at the highest level, a
+ * gzip file that the frontend build placed next to an asset
+ * ({@code main.js.gz}) is served as it is. Brotli is not served, nothing in
+ * the build produces it.
+ * <p>
+ * Files listed in {@value #MANIFEST} carry a content hash in their name and
+ * never change, every other file is revalidated by its ETag.
+ */
+@Component
+@Profile("!reactive")
+public class StaticAssets {
+	private static final Logger log = LoggerFactory.getLogger(StaticAssets.class);
+
+	public static final String MANIFEST = "asset-manifest.json";
+	// compressing smaller files saves less than the header costs
+	private static final int MIN_COMPRESSIBLE_SIZE = 256;
+
+	private final Map<String, Asset> assets = new HashMap<>();
+
+	/**
+	 * @param gzip    null if gzip would not be smaller
+	 * @param hashed  whether the content hash is part of the file name
+	 */
+	public record Asset(String path, MediaType mediaType, byte[] identity, byte[] gzip, String eTag,
+			boolean hashed) {
+		public boolean compressed() {
+			return gzip != null;
+		}
+	}
+
+	public StaticAssets(ObjectMapper mapper,
+			@Value("${static.assets.location:classpath:/static/}") String location) throws IOException {
+		PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+		String root = resolver.getResource(location).getURL().toString();
+		Map<String, byte[]> files = new HashMap<>();
+		for (Resource resource : resolver.getResources(location + "**")) {
+			String url = resource.getURL().toString();
+			if (resource.isReadable() && !url.endsWith("/") && url.startsWith(root)) {
+				files.put("/" + url.substring(root.length()), resource.getContentAsByteArray());
+			}
+		}
+
+		Set<String> hashed = hashedPaths(mapper, files.get("/" + MANIFEST));
+		long identityBytes = 0;
+		long compressedBytes = 0;
+		for (Map.Entry<String, byte[]> file : files.entrySet()) {
+			String path = file.getKey();
+			if (isVariant(path, files)) {
+				continue;
+			}
+			byte[] identity = file.getValue();
+			MediaType mediaType = mediaTypeOf(path);
+			byte[] gzip = files.get(path + ".gz");
+			if (gzip == null && isCompressible(mediaType, identity)) {
+				gzip = gzip(identity);
+			}
+			if (gzip != null && gzip.length >= identity.length) {
+				gzip = null;
+			}
+			assets.put(path, new Asset(path, mediaType, identity, gzip, eTag(identity),
+					hashed.contains(path) && !path.endsWith(".html")));
+			identityBytes += identity.length;
+			compressedBytes += gzip != null ? gzip.length : identity.length;
+		}
+		log.info("Loaded {} static assets, {} KB, {} KB gzipped", assets.size(), identityBytes / 1024,
+				compressedBytes / 1024);
+	}
+
+	public Optional<Asset> get(String path) {
+		return Optional.ofNullable(assets.get(path));
+	}
+
+	private static Set<String> hashedPaths(ObjectMapper mapper, byte[] manifest) throws IOException {
+		Set<String> paths = new HashSet<>();
+		if (manifest == null) {
+			return paths;
+		}
+		JsonNode files = mapper.readTree(manifest).path("files");
+		files.forEach(file -> paths.add(file.asText()));
+		return paths;
+	}
+
+	private static boolean isVariant(String path, Map<String, byte[]> files) {
+		return path.endsWith(".gz") && files.containsKey(path.substring(0, path.length() - 3));
+	}
+
+	private static MediaType mediaTypeOf(String path) {
+		if (path.endsWith(".map")) {
+			return MediaType.APPLICATION_JSON;
+		}
+		return MediaTypeFactory.getMediaType(path).orElse(MediaType.APPLICATION_OCTET_STREAM);
+	}
+
+	private static boolean isCompressible(MediaType mediaType, byte[] content) {
+		if (content.length < MIN_COMPRESSIBLE_SIZE) {
+			return false;
+		}
+		String subtype = mediaType.getSubtype();
+		return mediaType.getType().equals("text")
+				|| subtype.equals("javascript")
+				|| subtype.equals("json")
+				|| subtype.endsWith("+json")
+				|| subtype.endsWith("+xml")
+				|| subtype.equals("x-icon")
+				|| subtype.equals("vnd.microsoft.icon");
+	}
+
+	private static byte[] gzip(byte[] content) {
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream(content.length / 3);
+		try (GZIPOutputStream out = new GZIPOutputStream(compressed) {
+			{
+				def.setLevel(Deflater.BEST_COMPRESSION);
+			}
+		}) {
+			out.write(content);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return compressed.toByteArray();
+	}
+
+	private static String eTag(byte[] content) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+			return "\"" + HexFormat.of().formatHex(digest, 0, 16) + "\"";
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not available", e);
+		}
+	}
+}
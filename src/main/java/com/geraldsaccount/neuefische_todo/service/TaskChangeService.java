@@ -0,0 +1,124 @@
+package com.geraldsaccount.neuefische_todo.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.geraldsaccount.neuefische_todo.model.tasks.Task;
+import com.geraldsaccount.neuefische_todo.model.tasks.TaskChange;
+import com.geraldsaccount.neuefische_todo.model.tasks.dto.TaskChangesDTO;
+import com.geraldsaccount.neuefische_todo.repository.ChangeSequence;
+import com.geraldsaccount.neuefische_todo.repository.TaskRepo;
+
+/**
+ * Tells reconnecting clients which tasks of their tenant changed since a
+ * change token, so they do not have to load the full list again. A token is
+ * the position up to which the client has seen every change: a change
+ * sequence, followed by a task id if a page ended within that sequence.
+ * Replicas can hand out the same sequence, so changes are ordered by sequence
+ * and id.
+ * <p>
+ * Tokens trail the clock by {@code settleTime}: a write that already has its
+ * sequence but is not yet visible in Mongo when a token is handed out is
+ * delivered with the next call instead of being skipped. This holds as long
+ * as the clocks of the replicas differ by less than {@code settleTime}, and
+ * as long as no write takes longer than that between taking its sequence and
+ * becoming visible. Tombstones are written right after their delete, not
+ * together with it, so this includes the time between the two. Tokens older
+ * than the tombstone retention are rejected with a
+ * {@link ChangeTokenExpiredException}.
+ */
+@Service
+public class TaskChangeService {
+	public static final int DEFAULT_LIMIT = 500;
+	public static final int MAX_LIMIT = 1000;
+	// the token to sync from after GET /api/todo
+	public static final String TOKEN_HEADER = "X-Change-Token";
+	private static final char ID_SEPARATOR = '.';
+
+	private final TaskRepo repo;
+	private final ChangeSequence sequence;
+	private final Duration settleTime;
+
+	public TaskChangeService(TaskRepo repo, ChangeSequence sequence,
+			@Value("${tasks.changes.settle-time:1s}") Duration settleTime) {
+		this.repo = repo;
+		this.sequence = sequence;
+		this.settleTime = settleTime;
+	}
+
+	/**
+	 * A token to sync from after loading all tasks, it has to be taken before
+	 * they are read.
+	 */
+	public String currentToken() {
+		return encode(settled());
+	}
+
+	public TaskChangesDTO getChanges(String tenant, String token, Integer limit) throws ChangeTokenExpiredException {
+		int separator = token.indexOf(ID_SEPARATOR);
+		long since = decode(separator < 0 ? token : token.substring(0, separator));
+		String afterId = separator < 0 ? null : token.substring(separator + 1);
+		if (since < sequence.oldest()) {
+			throw new ChangeTokenExpiredException("Change token has expired, all tasks have to be loaded again.");
+		}
+		int pageSize = limit == null ? DEFAULT_LIMIT : Math.min(limit, MAX_LIMIT);
+		if (pageSize < 1) {
+			throw new IllegalArgumentException("Limit must be at least 1.");
+		}
+		long until = settled();
+		if (since >= until) {
+			return new TaskChangesDTO(List.of(), List.of(), token, false);
+		}
+		// one extra change tells whether there are more
+		return toChanges(repo.findChanges(tenant, since, afterId, until, pageSize + 1), pageSize, until);
+	}
+
+	private long settled() {
+		// sequences of the settling millisecond itself can still be handed out
+		return ChangeSequence.at(Instant.now().minus(settleTime)) - 1;
+	}
+
+	static TaskChangesDTO toChanges(List<TaskChange> found, int limit, long until) {
+		boolean more = found.size() > limit;
+		List<TaskChange> page = more ? found.subList(0, limit) : found;
+		String next = encode(until);
+		if (more) {
+			TaskChange last = page.getLast();
+			next = encode(last.changeSeq()) + ID_SEPARATOR + last.id();
+		}
+
+		// only the last change of a task matters
+		Map<String, TaskChange> latest = new LinkedHashMap<>();
+		for (TaskChange change : page) {
+			latest.remove(change.id());
+			latest.put(change.id(), change);
+		}
+		List<Task> changed = latest.values().stream()
+				.filter(change -> !change.deleted())
+				.map(TaskChange::task)
+				.toList();
+		List<String> deleted = latest.values().stream()
+				.filter(TaskChange::deleted)
+				.map(TaskChange::id)
+				.toList();
+		return new TaskChangesDTO(changed, deleted, next, more);
+	}
+
+	private static String encode(long changeSeq) {
+		return Long.toString(changeSeq, 36);
+	}
+
+	private static long decode(String token) {
+		try {
+			return Long.parseLong(token, 36);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid change token.");
+		}
+	}
+}
@@ -0,0 +1,205 @@
+package com.geraldsaccount.neuefische_todo.service;
+
+import java.util.concurrent.TimeUnit;
+
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import com.geraldsaccount.neuefische_todo.model.tasks.Task;
+import com.geraldsaccount.neuefische_todo.model.tasks.TaskEventType;
+import com.geraldsaccount.neuefische_todo.model.tasks.TaskTombstone;
+import com.geraldsaccount.neuefische_todo.model.tasks.dto.TaskEventDTO;
+import com.mongodb.MongoException;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.changestream.FullDocumentBeforeChange;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Feeds the {@link TaskEventBus} from one Mongo change stream on the tasks
+ * collection, so that subscribers also see writes made by other replicas. The
+ * stream is resumed from the last seen resume token when the cursor fails.
+ * Change streams need a replica set, on a standalone server the bus keeps
+ * using the events of this node's own writes.
+ * <p>
+ * A delete only carries the tenant in its key once the collection is sharded
+ * by it. Otherwise it is taken from the pre-image, which needs pre-images
+ * enabled on the collection (MongoDB 6 and later), or from the tombstone of
+ * the task.
+ */
+@Component
+public class TaskChangeStreamWatcher {
+	private static final Logger log = LoggerFactory.getLogger(TaskChangeStreamWatcher.class);
+
+	// the tombstone is written right after the delete
+	private static final int TOMBSTONE_ATTEMPTS = 3;
+	private static final long TOMBSTONE_RETRY_MILLIS = 20;
+
+	private final MongoTemplate template;
+	private final TaskEventBus bus;
+	private final String source;
+
+	private volatile boolean running;
+	private Thread thread;
+	private BsonDocument resumeToken;
+
+	/**
+	 * @param source {@code auto}, {@code change-stream} or {@code local}
+	 */
+	public TaskChangeStreamWatcher(MongoTemplate template, TaskEventBus bus,
+			@Value("${tasks.stream.source:auto}") String source) {
+		this.template = template;
+		this.bus = bus;
+		this.source = source;
+	}
+
+	// before the listeners that ask the bus whether it has an external source
+	@EventListener(ApplicationReadyEvent.class)
+	@Order(Ordered.HIGHEST_PRECEDENCE)
+	public void start() {
+		if (source.equals("local") || (source.equals("auto") && !changeStreamsSupported())) {
+			log.info("Task events are published from local writes");
+			return;
+		}
+		enablePreImages();
+		running = true;
+		bus.setExternalSource(true);
+		thread = new Thread(this::watch, "task-change-stream");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	private boolean changeStreamsSupported() {
+		try {
+			Document hello = template.executeCommand(new Document("hello", 1));
+			return hello.containsKey("setName") || "isdbgrid".equals(hello.getString("msg"));
+		} catch (DataAccessException | MongoException e) {
+			log.debug("Could not determine the Mongo topology: {}", e.getMessage());
+			return false;
+		}
+	}
+
+	private void enablePreImages() {
+		try {
+			template.executeCommand(new Document("collMod", template.getCollectionName(Task.class))
+					.append("changeStreamPreAndPostImages", new Document("enabled", true)));
+		} catch (DataAccessException | MongoException e) {
+			log.debug("Could not enable pre-images, deleted tasks are looked up by tombstone: {}", e.getMessage());
+		}
+	}
+
+	private void watch() {
+		String collection = template.getCollectionName(Task.class);
+		while (running) {
+			try {
+				ChangeStreamIterable<Document> stream = template.getCollection(collection).watch()
+						.fullDocument(FullDocument.UPDATE_LOOKUP)
+						.fullDocumentBeforeChange(FullDocumentBeforeChange.WHEN_AVAILABLE)
+						.maxAwaitTime(1, TimeUnit.SECONDS);
+				if (resumeToken != null) {
+					stream = stream.resumeAfter(resumeToken);
+				}
+				try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = stream.cursor()) {
+					while (running) {
+						ChangeStreamDocument<Document> change = cursor.tryNext();
+						if (change == null) {
+							continue;
+						}
+						resumeToken = change.getResumeToken();
+						TaskEventDTO event = toEvent(change);
+						if (event != null) {
+							bus.publish(event);
+						}
+					}
+				}
+			} catch (MongoException | IllegalStateException e) {
+				if (!running) {
+					return;
+				}
+				log.warn("Task change stream failed, resuming: {}", e.getMessage());
+				sleepBeforeRetry();
+			}
+		}
+	}
+
+	private TaskEventDTO toEvent(ChangeStreamDocument<Document> change) {
+		BsonValue key = change.getDocumentKey() == null ? null : change.getDocumentKey().get("_id");
+		if (key == null || !key.isString()) {
+			return null;
+		}
+		String id = key.asString().getValue();
+		Task task = change.getFullDocument() == null
+				? null
+				: template.getConverter().read(Task.class, change.getFullDocument());
+		return switch (change.getOperationType()) {
+			case INSERT -> new TaskEventDTO(TaskEventType.CREATED, id, task);
+			case UPDATE, REPLACE -> task == null
+					// deleted again before the lookup
+					? null
+					: new TaskEventDTO(TaskEventType.UPDATED, id, task);
+			case DELETE -> new TaskEventDTO(TaskEventType.DELETED, id, null, tenantOf(id, change));
+			default -> null;
+		};
+	}
+
+	/**
+	 * @return null if neither the key, the pre-image nor a tombstone knows the
+	 *         tenant, the delete then reaches no subscriber
+	 */
+	private String tenantOf(String id, ChangeStreamDocument<Document> change) {
+		BsonValue keyTenant = change.getDocumentKey().get("tenant");
+		if (keyTenant != null && keyTenant.isString()) {
+			return keyTenant.asString().getValue();
+		}
+		Document before = change.getFullDocumentBeforeChange();
+		if (before != null) {
+			String tenant = before.getString("tenant");
+			return tenant == null ? Task.DEFAULT_TENANT : tenant;
+		}
+		for (int attempt = 0; attempt < TOMBSTONE_ATTEMPTS; attempt++) {
+			TaskTombstone tombstone = template.findById(id, TaskTombstone.class);
+			if (tombstone != null) {
+				return tombstone.tenant() == null ? Task.DEFAULT_TENANT : tombstone.tenant();
+			}
+			try {
+				Thread.sleep(TOMBSTONE_RETRY_MILLIS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		log.debug("Could not resolve the tenant of deleted task {}", id);
+		return null;
+	}
+
+	private void sleepBeforeRetry() {
+		try {
+			Thread.sleep(1000);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			running = false;
+		}
+	}
+
+	@PreDestroy
+	void stop() throws InterruptedException {
+		running = false;
+		if (thread != null) {
+			thread.join(TimeUnit.SECONDS.toMillis(5));
+		}
+	}
+}
@@ -0,0 +1,291 @@
+package com.geraldsaccount.neuefische_todo.service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.geraldsaccount.neuefische_todo.model.tasks.dto.TaskEventDTO;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Fans task changes out to Server-Sent Event subscribers. Every subscriber has
+ * a bounded queue that is drained by a small shared sender pool, so a slow
+ * client never holds up publishers or other clients. A client that falls more
+ * than a queue behind gets a {@value #RESYNC_EVENT} event and should reload
+ * the full list.
+ *
+ * Event ids are {@code <epoch>:<sequence>}. A client that reconnects with a
+ * Last-Event-ID still in the replay buffer gets the events it missed, anything
+ * older or from another instance gets a {@value #RESYNC_EVENT}.
+ *
+ * Subscribers only get the events of their tenant. Listeners get every event.
+ */
+@Service
+public class TaskEventBus {
+	private static final Logger log = LoggerFactory.getLogger(TaskEventBus.class);
+
+	public static final String TASK_EVENT = "task";
+	public static final String RESYNC_EVENT = "resync";
+
+	private final int queueCapacity;
+	private final int replaySize;
+	private final Duration timeout;
+	private final ExecutorService senders;
+	private final ScheduledExecutorService heartbeats;
+
+	private final String epoch = UUID.randomUUID().toString().substring(0, 8);
+	private final ReentrantLock lock = new ReentrantLock();
+	private final ArrayDeque<SequencedEvent> replay = new ArrayDeque<>();
+	private long sequence;
+	private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+	private final Set<Listener> listeners = ConcurrentHashMap.newKeySet();
+
+	// set while a Mongo change stream delivers the events instead of this node's writes
+	private volatile boolean externalSource;
+
+	record SequencedEvent(String id, TaskEventDTO event) {
+	}
+
+	/**
+	 * Receives events on the publishing thread, so it must not block.
+	 */
+	public interface Listener {
+		void onEvent(String id, TaskEventDTO event);
+
+		void onResync();
+	}
+
+	public TaskEventBus(@Value("${tasks.stream.queue-capacity:256}") int queueCapacity,
+			@Value("${tasks.stream.replay-size:1024}") int replaySize,
+			@Value("${tasks.stream.timeout:30m}") Duration timeout,
+			@Value("${tasks.stream.heartbeat:30s}") Duration heartbeat,
+			@Value("${tasks.stream.senders:4}") int senders) {
+		this.queueCapacity = queueCapacity;
+		this.replaySize = replaySize;
+		this.timeout = timeout;
+		this.senders = Executors.newFixedThreadPool(senders, new CustomizableThreadFactory("task-events-"));
+		heartbeats = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("task-events-heartbeat-"));
+		heartbeats.scheduleAtFixedRate(this::heartbeat, heartbeat.toMillis(), heartbeat.toMillis(),
+				TimeUnit.MILLISECONDS);
+	}
+
+	public SseEmitter subscribe(String lastEventId, String tenant) {
+		SseEmitter emitter = new SseEmitter(timeout.toMillis());
+		Subscriber subscriber = new Subscriber(emitter, tenant);
+		emitter.onCompletion(() -> subscribers.remove(subscriber));
+		emitter.onTimeout(() -> subscribers.remove(subscriber));
+		emitter.onError(e -> subscribers.remove(subscriber));
+
+		lock.lock();
+		try {
+			List<SequencedEvent> missed = lastEventId == null ? List.of() : missedSince(lastEventId);
+			if (missed != null) {
+				missed = missed.stream().filter(e -> isVisible(e.event(), tenant)).toList();
+			}
+			if (missed == null || missed.size() > queueCapacity) {
+				subscriber.overflowed = true;
+			} else {
+				missed.forEach(subscriber::offer);
+			}
+			// registered under the lock so no event falls between replay and live
+			subscribers.add(subscriber);
+		} finally {
+			lock.unlock();
+		}
+		subscriber.drain();
+		return emitter;
+	}
+
+	/**
+	 * Hands {@code listener} the events it missed since {@code lastEventId} and
+	 * then every new one, until the returned action is run.
+	 */
+	public Runnable listen(String lastEventId, Listener listener) {
+		lock.lock();
+		try {
+			List<SequencedEvent> missed = lastEventId == null ? List.of() : missedSince(lastEventId);
+			if (missed == null) {
+				listener.onResync();
+			} else {
+				missed.forEach(e -> listener.onEvent(e.id(), e.event()));
+			}
+			listeners.add(listener);
+		} finally {
+			lock.unlock();
+		}
+		return () -> listeners.remove(listener);
+	}
+
+	/**
+	 * Events after {@code lastEventId}, null if they cannot be replayed.
+	 */
+	List<SequencedEvent> missedSince(String lastEventId) {
+		int separator = lastEventId.lastIndexOf(':');
+		if (separator < 0 || !lastEventId.substring(0, separator).equals(epoch)) {
+			return null;
+		}
+		long last;
+		try {
+			last = Long.parseLong(lastEventId.substring(separator + 1));
+		} catch (NumberFormatException e) {
+			return null;
+		}
+		long oldest = sequence - replay.size() + 1;
+		if (last < oldest - 1 || last > sequence) {
+			return null;
+		}
+		List<SequencedEvent> missed = new ArrayList<>();
+		replay.stream().skip(last - oldest + 1).forEach(missed::add);
+		return missed;
+	}
+
+	/**
+	 * Whether a subscriber of {@code tenant} gets {@code event}. Events without a
+	 * tenant go to no one, they could belong to any tenant.
+	 */
+	static boolean isVisible(TaskEventDTO event, String tenant) {
+		return event.tenant() != null && event.tenant().equals(tenant);
+	}
+
+	@EventListener
+	public void onTaskChanged(TaskEventDTO event) {
+		if (!externalSource) {
+			publish(event);
+		}
+	}
+
+	public void publish(TaskEventDTO event) {
+		lock.lock();
+		try {
+			sequence++;
+			SequencedEvent sequenced = new SequencedEvent(epoch + ":" + sequence, event);
+			replay.addLast(sequenced);
+			if (replay.size() > replaySize) {
+				replay.removeFirst();
+			}
+			subscribers.forEach(s -> s.offer(sequenced));
+			listeners.forEach(l -> l.onEvent(sequenced.id(), event));
+		} finally {
+			lock.unlock();
+		}
+		subscribers.forEach(Subscriber::drain);
+	}
+
+	public void setExternalSource(boolean externalSource) {
+		this.externalSource = externalSource;
+	}
+
+	/**
+	 * Whether the events include the writes of other replicas.
+	 */
+	public boolean hasExternalSource() {
+		return externalSource;
+	}
+
+	public String lastEventId() {
+		lock.lock();
+		try {
+			return epoch + ":" + sequence;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void heartbeat() {
+		// a comment line keeps proxies from closing idle streams and finds dead clients
+		for (Subscriber subscriber : subscribers) {
+			subscriber.heartbeat.set(true);
+			subscriber.drain();
+		}
+	}
+
+	@PreDestroy
+	void shutdown() {
+		heartbeats.shutdownNow();
+		senders.shutdownNow();
+		subscribers.forEach(s -> s.emitter.complete());
+	}
+
+	private final class Subscriber {
+		private final SseEmitter emitter;
+		private final String tenant;
+		private final BlockingQueue<SequencedEvent> queue = new ArrayBlockingQueue<>(queueCapacity);
+		private final AtomicBoolean draining = new AtomicBoolean();
+		private final AtomicBoolean heartbeat = new AtomicBoolean();
+		private volatile boolean overflowed;
+
+		private Subscriber(SseEmitter emitter, String tenant) {
+			this.emitter = emitter;
+			this.tenant = tenant;
+		}
+
+		private void offer(SequencedEvent event) {
+			if (isVisible(event.event(), tenant) && !queue.offer(event)) {
+				overflowed = true;
+			}
+		}
+
+		private void drain() {
+			if (draining.compareAndSet(false, true)) {
+				try {
+					senders.execute(this::send);
+				} catch (RuntimeException e) {
+					draining.set(false);
+				}
+			}
+		}
+
+		private void send() {
+			try {
+				if (overflowed) {
+					overflowed = false;
+					queue.clear();
+					emitter.send(SseEmitter.event().name(RESYNC_EVENT).data(""));
+				}
+				SequencedEvent event;
+				while ((event = queue.poll()) != null) {
+					emitter.send(SseEmitter.event()
+							.id(event.id())
+							.name(TASK_EVENT)
+							.data(event.event(), MediaType.APPLICATION_JSON));
+				}
+				if (heartbeat.getAndSet(false)) {
+					emitter.send(SseEmitter.event().comment("heartbeat"));
+				}
+			} catch (IOException | IllegalStateException e) {
+				log.debug("Dropping task event subscriber: {}", e.getMessage());
+				subscribers.remove(this);
+				emitter.completeWithError(e);
+				return;
+			} finally {
+				draining.set(false);
+			}
+			if (!queue.isEmpty() || overflowed) {
+				drain();
+			}
+		}
+	}
+}
@@ -0,0 +1,48 @@
+package com.geraldsaccount.neuefische_todo.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.geraldsaccount.neuefische_todo.model.tasks.Task;
+import com.geraldsaccount.neuefische_todo.repository.TaskRepo;
+
+/**
+ * Writes tasks as newline delimited JSON straight from a Mongo cursor, so
+ * memory use does not depend on the number of tasks.
+ */
+@Service
+public class TaskExportService {
+	public static final int BATCH_SIZE = 500;
+
+	private final TaskRepo repo;
+	private final ObjectMapper mapper;
+	private final ObjectWriter writer;
+
+	public TaskExportService(TaskRepo repo, ObjectMapper mapper) {
+		this.repo = repo;
+		this.mapper = mapper;
+		writer = mapper.writerFor(Task.class)
+				.without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+	}
+
+	public void export(String tenant, String afterId, OutputStream out) throws IOException {
+		try (Stream<Task> tasks = repo.streamAfter(tenant, afterId, BATCH_SIZE);
+				JsonGenerator generator = mapper.getFactory().createGenerator(out)) {
+			generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+			generator.setRootValueSeparator(null);
+			Iterator<Task> iterator = tasks.iterator();
+			while (iterator.hasNext()) {
+				writer.writeValue(generator, iterator.next());
+				generator.writeRaw('\n');
+			}
+		}
+	}
+}
@@ -0,0 +1,334 @@
+package com.geraldsaccount.neuefische_todo.service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index over task descriptions. Every task gets a document
+ * number, and every term maps to the sorted document numbers it occurs in with
+ * the number of occurrences, both kept in plain {@code int} arrays. Terms sit
+ * in a sorted map so that a query term also matches every longer term it is a
+ * prefix of.
+ * <p>
+ * Results are ranked with BM25, a prefix match counts half as much as an exact
+ * one. Numbers of removed tasks are reused, so the arrays do not grow with
+ * churn.
+ */
+public class TaskSearchIndex {
+	private static final float K1 = 1.2f;
+	private static final float B = 0.75f;
+	private static final float PREFIX_WEIGHT = 0.5f;
+
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	private final NavigableMap<String, Postings> postings = new TreeMap<>();
+	private final Map<String, Integer> numbers = new HashMap<>();
+
+	// by document number, null for free numbers
+	private String[] ids = new String[64];
+	private String[][] terms = new String[64][];
+	private int[] lengths = new int[64];
+	private int[] free = new int[16];
+	private int freeCount;
+	private int next;
+	private long totalLength;
+
+	/**
+	 * Sorted document numbers of one term with the term's count in each.
+	 */
+	private static final class Postings {
+		private int[] docs = new int[4];
+		private int[] counts = new int[4];
+		private int size;
+
+		private void add(int doc, int count) {
+			int at = Arrays.binarySearch(docs, 0, size, doc);
+			if (at >= 0) {
+				counts[at] = count;
+				return;
+			}
+			at = -at - 1;
+			if (size == docs.length) {
+				docs = Arrays.copyOf(docs, size * 2);
+				counts = Arrays.copyOf(counts, size * 2);
+			}
+			System.arraycopy(docs, at, docs, at + 1, size - at);
+			System.arraycopy(counts, at, counts, at + 1, size - at);
+			docs[at] = doc;
+			counts[at] = count;
+			size++;
+		}
+
+		private void remove(int doc) {
+			int at = Arrays.binarySearch(docs, 0, size, doc);
+			if (at < 0) {
+				return;
+			}
+			System.arraycopy(docs, at + 1, docs, at, size - at - 1);
+			System.arraycopy(counts, at + 1, counts, at, size - at - 1);
+			size--;
+		}
+	}
+
+	/**
+	 * A task id with its relevance for a query.
+	 */
+	public record Hit(String id, float score) {
+	}
+
+	/**
+	 * Splits text into lower-case terms of letters and digits. Accents are
+	 * dropped, so "Café" and "cafe" are the same term.
+	 */
+	public static List<String> tokenize(String text) {
+		List<String> tokens = new ArrayList<>();
+		if (text == null) {
+			return tokens;
+		}
+		String folded = Normalizer.normalize(text, Normalizer.Form.NFKD)
+				.replaceAll("\\p{M}", "")
+				.toLowerCase(Locale.ROOT);
+		StringBuilder token = new StringBuilder();
+		folded.codePoints().forEach(c -> {
+			if (Character.isLetterOrDigit(c)) {
+				token.appendCodePoint(c);
+			} else if (!token.isEmpty()) {
+				tokens.add(token.toString());
+				token.setLength(0);
+			}
+		});
+		if (!token.isEmpty()) {
+			tokens.add(token.toString());
+		}
+		return tokens;
+	}
+
+	/**
+	 * Adds a task or replaces the description indexed for it.
+	 */
+	public void put(String id, String description) {
+		List<String> tokens = tokenize(description);
+		Map<String, Integer> counts = new HashMap<>();
+		tokens.forEach(token -> counts.merge(token, 1, Integer::sum));
+
+		lock.writeLock().lock();
+		try {
+			Integer existing = numbers.get(id);
+			int doc;
+			if (existing != null) {
+				doc = existing;
+				unlink(doc);
+			} else {
+				doc = allocate();
+				ids[doc] = id;
+				numbers.put(id, doc);
+			}
+			for (Map.Entry<String, Integer> count : counts.entrySet()) {
+				postings.computeIfAbsent(count.getKey(), term -> new Postings()).add(doc, count.getValue());
+			}
+			terms[doc] = counts.keySet().toArray(String[]::new);
+			lengths[doc] = tokens.size();
+			totalLength += tokens.size();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	public void remove(String id) {
+		lock.writeLock().lock();
+		try {
+			Integer doc = numbers.remove(id);
+			if (doc == null) {
+				return;
+			}
+			unlink(doc);
+			ids[doc] = null;
+			terms[doc] = null;
+			if (freeCount == free.length) {
+				free = Arrays.copyOf(free, freeCount * 2);
+			}
+			free[freeCount++] = doc;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	public void clear() {
+		lock.writeLock().lock();
+		try {
+			postings.clear();
+			numbers.clear();
+			Arrays.fill(ids, null);
+			Arrays.fill(terms, null);
+			Arrays.fill(lengths, 0);
+			freeCount = 0;
+			next = 0;
+			totalLength = 0;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return numbers.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns up to {@code limit} tasks that match every term of
+	 * {@code query}, exactly or as a prefix, most relevant first.
+	 */
+	public List<Hit> search(String query, int limit) {
+		Set<String> queryTerms = new LinkedHashSet<>(tokenize(query));
+		if (queryTerms.isEmpty()) {
+			return List.of();
+		}
+		lock.readLock().lock();
+		try {
+			int[] docs = null;
+			float[] scores = null;
+			int size = 0;
+			for (String queryTerm : queryTerms) {
+				long[] matches = matches(queryTerm);
+				if (docs == null) {
+					docs = new int[matches.length];
+					scores = new float[matches.length];
+					for (long match : matches) {
+						docs[size] = doc(match);
+						scores[size++] = score(match);
+					}
+				} else {
+					size = intersect(docs, scores, size, matches);
+				}
+				if (size == 0) {
+					return List.of();
+				}
+			}
+
+			Integer[] order = new Integer[size];
+			for (int i = 0; i < size; i++) {
+				order[i] = i;
+			}
+			int[] found = docs;
+			float[] ranked = scores;
+			Arrays.sort(order, (a, b) -> ranked[a] != ranked[b]
+					? Float.compare(ranked[b], ranked[a])
+					: ids[found[a]].compareTo(ids[found[b]]));
+			List<Hit> hits = new ArrayList<>(Math.min(size, limit));
+			for (int i = 0; i < size && i < limit; i++) {
+				hits.add(new Hit(ids[docs[order[i]]], scores[order[i]]));
+			}
+			return hits;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Documents matching one query term with their score, each packed as the
+	 * document number in the upper and the float bits of the score in the lower
+	 * half, sorted by document. A document matching several terms keeps its best
+	 * score.
+	 */
+	private long[] matches(String queryTerm) {
+		NavigableMap<String, Postings> matching = postings.subMap(queryTerm, true,
+				queryTerm + Character.MAX_VALUE, false);
+		int total = 0;
+		for (Postings list : matching.values()) {
+			total += list.size;
+		}
+		long[] matches = new long[total];
+		int size = 0;
+		float averageLength = numbers.isEmpty() ? 1 : Math.max(1, (float) totalLength / numbers.size());
+		for (Map.Entry<String, Postings> entry : matching.entrySet()) {
+			Postings list = entry.getValue();
+			float idf = (float) Math.log(1 + (numbers.size() - list.size + 0.5) / (list.size + 0.5));
+			float weight = entry.getKey().equals(queryTerm) ? 1 : PREFIX_WEIGHT;
+			for (int i = 0; i < list.size; i++) {
+				int doc = list.docs[i];
+				float count = list.counts[i];
+				float norm = K1 * (1 - B + B * lengths[doc] / averageLength);
+				float score = weight * idf * count * (K1 + 1) / (count + norm);
+				// non-negative float bits sort like the floats themselves
+				matches[size++] = (long) doc << 32 | Float.floatToIntBits(score);
+			}
+		}
+		Arrays.sort(matches);
+		// keep the last, best entry of every document
+		int unique = 0;
+		for (int i = 0; i < size; i++) {
+			if (i + 1 < size && doc(matches[i + 1]) == doc(matches[i])) {
+				continue;
+			}
+			matches[unique++] = matches[i];
+		}
+		return Arrays.copyOf(matches, unique);
+	}
+
+	/**
+	 * Keeps the documents that are in {@code matches} as well and adds their
+	 * score.
+	 *
+	 * @return the number of documents kept
+	 */
+	private static int intersect(int[] docs, float[] scores, int size, long[] matches) {
+		int kept = 0;
+		int j = 0;
+		for (int i = 0; i < size && j < matches.length; i++) {
+			while (j < matches.length && doc(matches[j]) < docs[i]) {
+				j++;
+			}
+			if (j < matches.length && doc(matches[j]) == docs[i]) {
+				docs[kept] = docs[i];
+				scores[kept++] = scores[i] + score(matches[j]);
+			}
+		}
+		return kept;
+	}
+
+	private static int doc(long match) {
+		return (int) (match >>> 32);
+	}
+
+	private static float score(long match) {
+		return Float.intBitsToFloat((int) match);
+	}
+
+	private int allocate() {
+		if (freeCount > 0) {
+			return free[--freeCount];
+		}
+		if (next == ids.length) {
+			int capacity = ids.length * 2;
+			ids = Arrays.copyOf(ids, capacity);
+			terms = Arrays.copyOf(terms, capacity);
+			lengths = Arrays.copyOf(lengths, capacity);
+		}
+		return next++;
+	}
+
+	private void unlink(int doc) {
+		for (String term : terms[doc]) {
+			Postings list = postings.get(term);
+			list.remove(doc);
+			if (list.size == 0) {
+				postings.remove(term);
+			}
+		}
+		totalLength -= lengths[doc];
+		lengths[doc] = 0;
+	}
+}
@@ -0,0 +1,229 @@
+package com.geraldsaccount.neuefische_todo.service;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.CompoundIndexDefinition;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import com.geraldsaccount.neuefische_todo.model.tasks.Task;
+import com.geraldsaccount.neuefische_todo.model.tasks.TaskEventType;
+import com.geraldsaccount.neuefische_todo.model.tasks.dto.TaskEventDTO;
+import com.geraldsaccount.neuefische_todo.repository.TaskRepo;
+import com.mongodb.MongoException;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Searches task descriptions within a tenant. In {@code memory} mode every
+ * replica keeps a {@link TaskSearchIndex} per tenant, built with a cursor over
+ * all tasks at startup and kept current from the {@link TaskEventBus}.
+ * <p>
+ * In {@code mongo} mode nothing is held in memory and queries go to a Mongo
+ * text index led by the tenant instead, which matches whole words only.
+ * <p>
+ * The default {@code auto} uses memory only if the bus is fed by a change
+ * stream, without one it would miss the writes of other replicas.
+ */
+@Service
+public class TaskSearchService {
+	private static final Logger log = LoggerFactory.getLogger(TaskSearchService.class);
+
+	public static final int DEFAULT_LIMIT = 20;
+	public static final int MAX_LIMIT = 100;
+	private static final int BATCH_SIZE = 500;
+	static final String TEXT_INDEX = "tenant_description_text";
+
+	private final TaskRepo repo;
+	private final MongoTemplate template;
+	private final TaskEventBus bus;
+	private final String mode;
+	private volatile boolean inMemory;
+	private final ExecutorService loader;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	// tenant -> index
+	private volatile Map<String, TaskSearchIndex> indexes = new ConcurrentHashMap<>();
+	// while rebuilding, the indexes being built and the ids written since it started
+	private Map<String, TaskSearchIndex> building;
+	private final Set<String> touched = new HashSet<>();
+
+	/**
+	 * @param mode {@code auto}, {@code memory} or {@code mongo}
+	 */
+	public TaskSearchService(TaskRepo repo, MongoTemplate template, TaskEventBus bus,
+			@Value("${tasks.search.mode:auto}") String mode) {
+		this.repo = repo;
+		this.template = template;
+		this.bus = bus;
+		this.mode = mode;
+		loader = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("task-search-"));
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void start() {
+		inMemory = mode.equals("memory") || (mode.equals("auto") && bus.hasExternalSource());
+		if (!inMemory) {
+			log.info("Searching tasks with a Mongo text index");
+			template.indexOps(Task.class).ensureIndex(
+					new CompoundIndexDefinition(new Document("tenant", 1).append("description", "text"))
+							.named(TEXT_INDEX));
+			return;
+		}
+		bus.listen(null, new TaskEventBus.Listener() {
+			@Override
+			public void onEvent(String id, TaskEventDTO event) {
+				apply(event);
+			}
+
+			@Override
+			public void onResync() {
+				loader.execute(TaskSearchService.this::rebuild);
+			}
+		});
+		loader.execute(this::rebuild);
+	}
+
+	/**
+	 * Returns up to {@code limit} tasks of {@code tenant} whose description
+	 * matches {@code query}, most relevant first. In memory every word of the
+	 * query has to match the start of a word in the description.
+	 */
+	public List<Task> search(String tenant, String query, Integer limit) {
+		if (query == null || query.isBlank()) {
+			throw new IllegalArgumentException("Search query must not be empty.");
+		}
+		int size = limit == null ? DEFAULT_LIMIT : Math.min(limit, MAX_LIMIT);
+		if (size < 1) {
+			throw new IllegalArgumentException("Limit must be at least 1.");
+		}
+		if (!inMemory) {
+			return repo.searchText(tenant, query, size);
+		}
+
+		TaskSearchIndex index = indexes.get(tenant);
+		if (index == null) {
+			return List.of();
+		}
+		List<String> ids = index.search(query, size).stream().map(TaskSearchIndex.Hit::id).toList();
+		Map<String, Task> tasks = repo.findAllById(ids).stream()
+				.collect(Collectors.toMap(Task::id, Function.identity()));
+		// a task deleted since it was found is left out
+		return ids.stream().map(tasks::get).filter(task -> task != null).toList();
+	}
+
+	/**
+	 * Indexes all tasks again. Searches keep using the previous index until the
+	 * new one is complete, writes during the rebuild go to both.
+	 */
+	public void rebuild() {
+		Map<String, TaskSearchIndex> next = new ConcurrentHashMap<>();
+		lock.lock();
+		try {
+			building = next;
+			touched.clear();
+		} finally {
+			lock.unlock();
+		}
+		try (Stream<Task> tasks = repo.streamAll(BATCH_SIZE)) {
+			tasks.forEach(task -> {
+				lock.lock();
+				try {
+					// a write seen during the rebuild is newer than what the cursor returns
+					if (!touched.contains(task.id())) {
+						next.computeIfAbsent(task.tenant(), t -> new TaskSearchIndex())
+								.put(task.id(), task.description());
+					}
+				} finally {
+					lock.unlock();
+				}
+			});
+			lock.lock();
+			try {
+				indexes = next;
+			} finally {
+				lock.unlock();
+			}
+			log.info("Indexed {} tasks of {} tenants for search",
+					next.values().stream().mapToInt(TaskSearchIndex::size).sum(), next.size());
+		} catch (DataAccessException | MongoException e) {
+			log.warn("Could not rebuild the task search index: {}", e.getMessage());
+		} finally {
+			lock.lock();
+			try {
+				building = null;
+				touched.clear();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	private void apply(TaskEventDTO event) {
+		if (event.type() != TaskEventType.DELETED && event.task() == null) {
+			// bulk updates do not carry the task, it is loaded off the publishing thread
+			loader.execute(() -> reload(event.id(), event.tenant()));
+			return;
+		}
+		index(event.id(), event.tenant(), event.task());
+	}
+
+	private void reload(String id, String tenant) {
+		try {
+			index(id, tenant, repo.findById(id).orElse(null));
+		} catch (DataAccessException | MongoException e) {
+			log.warn("Could not index task {}: {}", id, e.getMessage());
+		}
+	}
+
+	// a null task removes the id, from every tenant if the tenant is not known either
+	private void index(String id, String tenant, Task task) {
+		lock.lock();
+		try {
+			for (Map<String, TaskSearchIndex> target : building == null
+					? List.of(indexes)
+					: List.of(indexes, building)) {
+				if (task != null) {
+					target.computeIfAbsent(task.tenant(), t -> new TaskSearchIndex()).put(id, task.description());
+				} else if (tenant != null) {
+					TaskSearchIndex index = target.get(tenant);
+					if (index != null) {
+						index.remove(id);
+					}
+				} else {
+					target.values().forEach(index -> index.remove(id));
+				}
+			}
+			if (building != null) {
+				touched.add(id);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@PreDestroy
+	void shutdown() throws InterruptedException {
+		loader.shutdownNow();
+		loader.awaitTermination(5, TimeUnit.SECONDS);
+	}
+}
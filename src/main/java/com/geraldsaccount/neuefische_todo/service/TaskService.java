@@ -1,14 +1,33 @@
 package com.geraldsaccount.neuefische_todo.service;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 
-import com.geraldsaccount.neuefische_todo.model.openai.OpenAiException;
+import com.geraldsaccount.neuefische_todo.model.corrections.CorrectionStatusDTO;
+import com.geraldsaccount.neuefische_todo.model.tasks.BatchOperationType;
 import com.geraldsaccount.neuefische_todo.model.tasks.Task;
+import com.geraldsaccount.neuefische_todo.model.tasks.TaskStatus;
+import com.geraldsaccount.neuefische_todo.model.tasks.dto.BatchItemResultDTO;
+import com.geraldsaccount.neuefische_todo.model.tasks.dto.BatchOperationDTO;
 import com.geraldsaccount.neuefische_todo.model.tasks.dto.TaskDTO;
+import com.geraldsaccount.neuefische_todo.model.tasks.dto.TaskPageDTO;
+import com.geraldsaccount.neuefische_todo.model.tasks.dto.TaskSummaryDTO;
+import com.geraldsaccount.neuefische_todo.model.undo.BatchTaskAction;
 import com.geraldsaccount.neuefische_todo.model.undo.CreateTaskAction;
 import com.geraldsaccount.neuefische_todo.model.undo.DeleteTaskAction;
 import com.geraldsaccount.neuefische_todo.model.undo.RedoNotPossibleException;
@@ -17,117 +36,387 @@ import com.geraldsaccount.neuefische_todo.model.undo.UndoableAction;
 import com.geraldsaccount.neuefische_todo.model.undo.UpdateTaskAction;
 import com.geraldsaccount.neuefische_todo.repository.TaskRepo;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Reads and writes the tasks of the tenant of the current request, see
+ * {@link CurrentUser#tenant()}. Tasks of other tenants are reported as not
+ * found.
+ */
 @Service
 public class TaskService {
+	public static final int DEFAULT_PAGE_SIZE = 20;
+	public static final int MAX_PAGE_SIZE = 100;
+	public static final int MAX_BATCH_SIZE = 5000;
+
 	private final TaskRepo repo;
 	private final IdService idService;
-	private final CorrectionService correctionService;
-
-	private List<UndoableAction> commandHistory;
-	private int currentActionIndex;
+	private final CorrectionScheduler correctionScheduler;
+	private final UndoHistory undoHistory;
+	private final CurrentUser currentUser;
+	private final MeterRegistry registry;
+	// operation -> exception -> timer, registered on first use
+	private final Map<String, Map<String, Timer>> timers = new ConcurrentHashMap<>();
 
-	public TaskService(TaskRepo repo, IdService idService, CorrectionService chatService) {
+	public TaskService(TaskRepo repo, IdService idService, CorrectionScheduler correctionScheduler,
+			UndoHistory undoHistory, CurrentUser currentUser, MeterRegistry registry) {
 		this.repo = repo;
 		this.idService = idService;
-		this.correctionService = chatService;
-		commandHistory = new ArrayList<>();
+		this.correctionScheduler = correctionScheduler;
+		this.undoHistory = undoHistory;
+		this.currentUser = currentUser;
+		this.registry = registry;
+	}
+
+	@FunctionalInterface
+	private interface Operation<T, E1 extends Exception, E2 extends Exception> {
+		T run() throws E1, E2;
+	}
+
+	/**
+	 * Records the duration of {@code operation} in the {@code tasks.service}
+	 * timer, tagged with the operation and the exception it ended with.
+	 */
+	private <T, E1 extends Exception, E2 extends Exception> T timed(String name, Operation<T, E1, E2> operation)
+			throws E1, E2 {
+		Timer.Sample sample = Timer.start(registry);
+		String exception = "none";
+		try {
+			return operation.run();
+		} catch (Exception e) {
+			exception = e.getClass().getSimpleName();
+			throw e;
+		} finally {
+			sample.stop(timer(name, exception));
+		}
+	}
+
+	private Timer timer(String name, String exception) {
+		return timers.computeIfAbsent(name, n -> new ConcurrentHashMap<>())
+				.computeIfAbsent(exception, e -> Timer.builder("tasks.service")
+						.description("Duration of task service operations")
+						.tag("operation", name)
+						.tag("exception", e)
+						.register(registry));
 	}
 
 	public List<Task> getTasks() {
-		return repo.findAll();
+		return timed("list", () -> repo.findAllByTenant(currentUser.tenant()));
 	}
 
-	public Task createTask(TaskDTO template) {
-		if (template == null || template.description() == null
-				|| template.description().isEmpty() || template.description().isBlank()) {
-			throw new IllegalArgumentException("Cannot create todo. Missing informations.");
+	public TaskSummaryDTO getSummary() {
+		return timed("summary", () -> toSummary(repo.countByStatus(currentUser.tenant())));
+	}
+
+	static TaskSummaryDTO toSummary(Map<TaskStatus, Long> counts) {
+		Map<TaskStatus, Long> byStatus = new EnumMap<>(TaskStatus.class);
+		long total = 0;
+		for (TaskStatus status : TaskStatus.values()) {
+			long count = counts.getOrDefault(status, 0L);
+			byStatus.put(status, count);
+			total += count;
+		}
+		return new TaskSummaryDTO(total, byStatus);
+	}
+
+	public TaskPageDTO getTaskPage(String cursor, Integer limit, TaskStatus status, String descriptionPrefix) {
+		return timed("page", () -> {
+			int pageSize = pageSize(limit);
+			// one extra task tells whether there is a next page
+			return toPage(repo.findPage(currentUser.tenant(), decodeCursor(cursor), status, descriptionPrefix,
+					pageSize + 1), pageSize);
+		});
+	}
+
+	static int pageSize(Integer limit) {
+		int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+		if (pageSize < 1) {
+			throw new IllegalArgumentException("Page size must be at least 1.");
+		}
+		return pageSize;
+	}
+
+	static TaskPageDTO toPage(List<Task> found, int pageSize) {
+		if (found.size() <= pageSize) {
+			return new TaskPageDTO(found, null);
 		}
+		List<Task> page = found.subList(0, pageSize);
+		return new TaskPageDTO(List.copyOf(page), encodeCursor(page.getLast().id()));
+	}
+
+	private static String encodeCursor(String lastId) {
+		return Base64.getUrlEncoder().withoutPadding()
+				.encodeToString(lastId.getBytes(StandardCharsets.UTF_8));
+	}
+
+	static String decodeCursor(String cursor) {
+		if (cursor == null || cursor.isEmpty()) {
+			return null;
+		}
+		try {
+			return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Invalid cursor.");
+		}
+	}
+
+	public Task createTask(TaskDTO template) {
+		return timed("create", () -> create(template));
+	}
+
+	private Task create(TaskDTO template) {
+		checkCreate(template);
 
 		Task newTask = Task.of(template)
-				.withDescription(getCorrection(template.description()))
-				.withId(idService.generateId());
+				.withId(idService.generateId())
+				.withTenant(currentUser.tenant());
 
-		repo.save(newTask);
+		Task savedTask = repo.save(newTask);
 
-		addCommand(new CreateTaskAction(repo, newTask));
+		addCommand(new CreateTaskAction(repo, savedTask));
+		correctionScheduler.schedule(savedTask);
 
-		return newTask;
+		return savedTask;
 	}
 
 	public Task getById(String id) throws TodoNotFoundException {
-		return repo.findById(id)
-				.orElseThrow(() -> new TodoNotFoundException("Todo with id " + id + "was not found."));
+		return timed("get", () -> find(id, currentUser.tenant())
+				.orElseThrow(() -> notFound(id)));
+	}
+
+	private Optional<Task> find(String id, String tenant) {
+		return repo.findById(id).filter(task -> task.tenant().equals(tenant));
+	}
+
+	/**
+	 * @param expectedVersions versions the client expects the task to be at, null
+	 *                         to update whatever version it is at
+	 */
+	public Task updateTask(String id, Task requestedTask, Collection<Long> expectedVersions)
+			throws TodoNotFoundException, TodoVersionConflictException {
+		return this.<Task, TodoNotFoundException, TodoVersionConflictException>timed("update",
+				() -> update(id, requestedTask, expectedVersions));
+	}
+
+	private Task update(String id, Task requestedTask, Collection<Long> expectedVersions)
+			throws TodoNotFoundException, TodoVersionConflictException {
+		checkUpdate(id, requestedTask);
+
+		String tenant = currentUser.tenant();
+		Task scoped = requestedTask.withTenant(tenant);
+		Task beforeTask = repo.updateReturningPrevious(scoped, expectedVersions).orElse(null);
+		if (beforeTask == null) {
+			throwIfVersionConflict(id, tenant, expectedVersions);
+			throw notFound(id);
+		}
+
+		Task updatedTask = scoped.withVersion(beforeTask.version() == null ? 1 : beforeTask.version() + 1);
+		addCommand(new UpdateTaskAction(repo, updatedTask, beforeTask));
+		correctionScheduler.schedule(updatedTask);
+		return updatedTask;
+	}
+
+	/**
+	 * @param expectedVersions versions the client expects the task to be at, null
+	 *                         to delete whatever version it is at
+	 */
+	public void delete(String id, Collection<Long> expectedVersions)
+			throws TodoNotFoundException, TodoVersionConflictException {
+		this.<Void, TodoNotFoundException, TodoVersionConflictException>timed("delete", () -> {
+			remove(id, expectedVersions);
+			return null;
+		});
 	}
 
-	public Task updateTask(String id, Task requestedTask) throws TodoNotFoundException {
+	private void remove(String id, Collection<Long> expectedVersions)
+			throws TodoNotFoundException, TodoVersionConflictException {
+		if (id == null || id.isEmpty()) {
+			throw notFound(id);
+		}
+		String tenant = currentUser.tenant();
+		Task deleted = repo.deleteReturningPrevious(tenant, id, expectedVersions).orElse(null);
+		if (deleted == null) {
+			throwIfVersionConflict(id, tenant, expectedVersions);
+			throw notFound(id);
+		}
+
+		addCommand(new DeleteTaskAction(repo, deleted));
+	}
+
+	// only called after a conditional write matched nothing, so the happy path
+	// never pays for the extra lookup
+	private void throwIfVersionConflict(String id, String tenant, Collection<Long> expectedVersions)
+			throws TodoVersionConflictException {
+		if (expectedVersions != null && find(id, tenant).isPresent()) {
+			throw modified(id);
+		}
+	}
+
+	static void checkCreate(TaskDTO template) {
+		if (template == null || template.description() == null || template.description().isBlank()) {
+			throw new IllegalArgumentException("Cannot create todo. Missing informations.");
+		}
+	}
+
+	static void checkUpdate(String id, Task requestedTask) {
 		if (id == null || requestedTask == null
 				|| !id.equals(requestedTask.id()) || requestedTask.description() == null
-				|| requestedTask.description().isEmpty() || requestedTask.description().isBlank()) {
+				|| requestedTask.description().isBlank()) {
 			throw new IllegalArgumentException("Cannot update todo. Missing informations.");
 		}
+	}
 
-		Optional<Task> foundTask = repo.findById(id);
-		if (foundTask.isEmpty()) {
-			throw new TodoNotFoundException("Todo with id " + id + "was not found.");
-		}
+	static TodoNotFoundException notFound(String id) {
+		return new TodoNotFoundException("Todo with id " + id + " was not found.");
+	}
+
+	static TodoVersionConflictException modified(String id) {
+		return new TodoVersionConflictException("Todo with id " + id + " has been modified.");
+	}
 
-		Task beforeTask = foundTask.get();
-		addCommand(new UpdateTaskAction(repo, requestedTask, beforeTask));
-		repo.save(requestedTask
-				.withDescription(getCorrection(requestedTask.description())));
-		return requestedTask;
+	/**
+	 * Applies a mixed list of creates, updates and deletes with a single bulk
+	 * write. Invalid operations are reported per item and do not stop the
+	 * others. The whole batch is recorded as one undoable action.
+	 */
+	public List<BatchItemResultDTO> applyBatch(List<BatchOperationDTO> operations) {
+		return applyBatch(operations, currentUser.get(), currentUser.tenant());
 	}
 
-	public void delete(String id) throws TodoNotFoundException {
-		Optional<Task> toDelete = repo.findById(id);
-		if (id == null || id.isEmpty()
-				|| toDelete.isEmpty()) {
-			throw new TodoNotFoundException("Todo with id " + id + "was not found.");
+	/**
+	 * Same as {@link #applyBatch(List)} for callers that resolve the user and
+	 * tenant themselves.
+	 */
+	public List<BatchItemResultDTO> applyBatch(List<BatchOperationDTO> operations, String user, String tenant) {
+		return timed("batch", () -> batch(operations, user, tenant));
+	}
+
+	private List<BatchItemResultDTO> batch(List<BatchOperationDTO> operations, String user, String tenant) {
+		if (operations == null || operations.isEmpty()) {
+			throw new IllegalArgumentException("Cannot apply batch. No operations given.");
+		}
+		if (operations.size() > MAX_BATCH_SIZE) {
+			throw new IllegalArgumentException("Cannot apply batch. At most " + MAX_BATCH_SIZE + " operations allowed.");
 		}
 
-		addCommand(new DeleteTaskAction(repo, toDelete.get()));
+		Set<String> existingIds = operations.stream()
+				.filter(o -> o != null && o.type() != BatchOperationType.CREATE && o.id() != null)
+				.map(BatchOperationDTO::id)
+				.collect(Collectors.toSet());
+		Map<String, Task> existing = existingIds.isEmpty()
+				? Map.of()
+				: repo.findAllById(existingIds).stream()
+						.filter(task -> task.tenant().equals(tenant))
+						.collect(Collectors.toMap(Task::id, Function.identity()));
 
-		repo.deleteById(id);
-	}
+		BatchItemResultDTO[] results = new BatchItemResultDTO[operations.size()];
+		Set<String> touchedIds = new HashSet<>();
+		List<Task> created = new ArrayList<>();
+		List<Task> updatedBefore = new ArrayList<>();
+		List<Task> updatedAfter = new ArrayList<>();
+		List<Task> deleted = new ArrayList<>();
 
-	private String getCorrection(String input) {
-		String correctedDescription = input;
-		try {
-			correctedDescription = correctionService
-					.getCorrectedText(correctedDescription);
+		for (int i = 0; i < operations.size(); i++) {
+			BatchOperationDTO operation = operations.get(i);
+			String invalid = validate(operation);
+			if (invalid != null) {
+				results[i] = new BatchItemResultDTO(i, operation == null ? null : operation.id(),
+						HttpStatus.BAD_REQUEST, invalid);
+				continue;
+			}
+
+			if (operation.type() == BatchOperationType.CREATE) {
+				Task task = Task.of(new TaskDTO(operation.description(), operation.status()))
+						.withId(idService.generateId())
+						.withVersion(0L)
+						.withTenant(tenant);
+				created.add(task);
+				touchedIds.add(task.id());
+				results[i] = new BatchItemResultDTO(i, task.id(), HttpStatus.CREATED);
+				continue;
+			}
 
-		} catch (OpenAiException e) {
+			String id = operation.id();
+			if (!touchedIds.add(id)) {
+				results[i] = new BatchItemResultDTO(i, id, HttpStatus.BAD_REQUEST,
+						"Todo with id " + id + " appears more than once in this batch.");
+				continue;
+			}
+			Task found = existing.get(id);
+			if (found == null) {
+				results[i] = new BatchItemResultDTO(i, id, HttpStatus.NOT_FOUND, notFound(id).getMessage());
+				continue;
+			}
 
+			if (operation.type() == BatchOperationType.UPDATE) {
+				updatedBefore.add(found);
+				updatedAfter.add(new Task(id, operation.description(), operation.status(), null, tenant));
+				results[i] = new BatchItemResultDTO(i, id, HttpStatus.OK);
+			} else {
+				deleted.add(found);
+				results[i] = new BatchItemResultDTO(i, id, HttpStatus.NO_CONTENT);
+			}
+		}
+
+		Map<String, String> failed = repo.bulkWrite(created, updatedAfter,
+				deleted.stream().map(Task::id).toList());
+		for (int i = 0; i < results.length; i++) {
+			String error = results[i].id() == null ? null : failed.get(results[i].id());
+			if (error != null && results[i].status().is2xxSuccessful()) {
+				results[i] = new BatchItemResultDTO(i, results[i].id(), HttpStatus.INTERNAL_SERVER_ERROR, error);
+			}
+		}
+
+		if (!created.isEmpty() || !updatedAfter.isEmpty() || !deleted.isEmpty()) {
+			undoHistory.push(CurrentUser.historyKey(tenant, user),
+					new BatchTaskAction(repo, created, updatedBefore, updatedAfter, deleted));
+		}
+		List<Task> written = Stream.concat(created.stream(), updatedAfter.stream())
+				.filter(task -> !failed.containsKey(task.id()))
+				.toList();
+		if (!written.isEmpty()) {
+			correctionScheduler.scheduleAll(written);
 		}
-		return correctedDescription;
+
+		return List.of(results);
 	}
 
-	public void addCommand(UndoableAction command) {
-		if (currentActionIndex == commandHistory.size()) {
-			commandHistory.add(command);
-			currentActionIndex = commandHistory.size();
-			return;
+	private static String validate(BatchOperationDTO operation) {
+		if (operation == null || operation.type() == null) {
+			return "Missing operation type.";
+		}
+		if (operation.type() != BatchOperationType.CREATE && (operation.id() == null || operation.id().isBlank())) {
+			return "Missing id.";
 		}
+		if (operation.type() != BatchOperationType.DELETE
+				&& (operation.description() == null || operation.description().isBlank())) {
+			return "Missing description.";
+		}
+		return null;
+	}
 
-		commandHistory = new ArrayList<>(commandHistory.stream().limit(currentActionIndex).toList());
-		commandHistory.add(command);
-		currentActionIndex = commandHistory.size();
+	public CorrectionStatusDTO getCorrectionStatus(String id) throws TodoNotFoundException {
+		Task task = getById(id);
+		return new CorrectionStatusDTO(task.id(), correctionScheduler.isPending(task.id()));
+	}
+
+	public void addCommand(UndoableAction command) {
+		undoHistory.push(currentUser.historyKey(), command);
 	}
 
 	public void undo() throws UndoNotPossibleException {
-		if (currentActionIndex == 0) {
-			throw new UndoNotPossibleException("No action left to undo.");
-		}
-		currentActionIndex--;
-		commandHistory.get(currentActionIndex).undo();
+		timed("undo", () -> {
+			undoHistory.undo(currentUser.historyKey()).undo();
+			return null;
+		});
 	}
 
 	public void redo() throws RedoNotPossibleException {
-		if (currentActionIndex >= commandHistory.size()) {
-			throw new RedoNotPossibleException("No action left to redo.");
-		}
-		commandHistory.get(currentActionIndex).redo();
-		currentActionIndex++;
+		timed("redo", () -> {
+			undoHistory.redo(currentUser.historyKey()).redo();
+			return null;
+		});
 	}
 
 }
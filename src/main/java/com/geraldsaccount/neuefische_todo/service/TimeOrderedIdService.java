@@ -0,0 +1,49 @@
+package com.geraldsaccount.neuefische_todo.service;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+/**
+ * UUIDv7 ids: 48 bits of Unix milliseconds, a 12 bit counter and 62 random
+ * bits. Ids of one process are strictly increasing, so new tasks are appended
+ * to the right of the {@code _id} index and paging by id follows creation
+ * order. Replicas only differ in the random bits, ids of different replicas in
+ * the same millisecond are ordered arbitrarily.
+ * <p>
+ * The random bits come from {@link ThreadLocalRandom}, task ids are not meant
+ * to be unguessable.
+ */
+@Service
+@ConditionalOnProperty(name = "ids.generator", havingValue = "time-ordered", matchIfMissing = true)
+public class TimeOrderedIdService implements IdService {
+	private static final int COUNTER_BITS = 12;
+
+	// milliseconds << COUNTER_BITS | counter of the last id
+	private final AtomicLong last = new AtomicLong();
+
+	@Override
+	public String generateId() {
+		long next = nextTimestamp();
+		long mostSigBits = (next >>> COUNTER_BITS) << 16
+				| 0x7000L
+				| (next & ((1L << COUNTER_BITS) - 1));
+		long leastSigBits = ThreadLocalRandom.current().nextLong() >>> 2 | 0x8000000000000000L;
+		return new UUID(mostSigBits, leastSigBits).toString();
+	}
+
+	private long nextTimestamp() {
+		long now = System.currentTimeMillis() << COUNTER_BITS;
+		while (true) {
+			long previous = last.get();
+			// an exhausted counter carries into the milliseconds, the clock catches up again
+			long next = Math.max(now, previous + 1);
+			if (last.compareAndSet(previous, next)) {
+				return next;
+			}
+		}
+	}
+}
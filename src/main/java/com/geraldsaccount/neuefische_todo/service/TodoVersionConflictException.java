@@ -0,0 +1,9 @@
+package com.geraldsaccount.neuefische_todo.service;
+
+public class TodoVersionConflictException extends Exception {
+
+	public TodoVersionConflictException(String message) {
+		super(message);
+	}
+
+}
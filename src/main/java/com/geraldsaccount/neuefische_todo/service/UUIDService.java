@@ -2,9 +2,11 @@ package com.geraldsaccount.neuefische_todo.service;
 
 import java.util.UUID;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
 @Service
+@ConditionalOnProperty(name = "ids.generator", havingValue = "random")
 public class UUIDService implements IdService {
 
 	@Override
@@ -0,0 +1,21 @@
+package com.geraldsaccount.neuefische_todo.service;
+
+import com.geraldsaccount.neuefische_todo.model.undo.RedoNotPossibleException;
+import com.geraldsaccount.neuefische_todo.model.undo.UndoNotPossibleException;
+import com.geraldsaccount.neuefische_todo.model.undo.UndoableAction;
+
+/**
+ * Undo/redo history kept per user. {@link #undo} and {@link #redo} only move
+ * the user's position in the history and return the action to apply, so the
+ * write itself runs outside of any lock.
+ */
+public interface UndoHistory {
+	/**
+	 * Appends an action and drops everything that could have been redone.
+	 */
+	void push(String user, UndoableAction action);
+
+	UndoableAction undo(String user) throws UndoNotPossibleException;
+
+	UndoableAction redo(String user) throws RedoNotPossibleException;
+}
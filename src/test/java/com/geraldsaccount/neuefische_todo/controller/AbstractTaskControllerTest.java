@@ -0,0 +1,562 @@
+package com.geraldsaccount.neuefische_todo.controller;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.contains;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.geraldsaccount.neuefische_todo.model.tasks.BatchOperationType;
+import com.geraldsaccount.neuefische_todo.model.tasks.Task;
+import com.geraldsaccount.neuefische_todo.model.tasks.TaskStatus;
+import com.geraldsaccount.neuefische_todo.model.tasks.dto.BatchOperationDTO;
+import com.geraldsaccount.neuefische_todo.model.tasks.dto.TaskDTO;
+import com.geraldsaccount.neuefische_todo.repository.TaskRepo;
+import com.geraldsaccount.neuefische_todo.service.CurrentUser;
+import com.geraldsaccount.neuefische_todo.service.TaskChangeService;
+
+/**
+ * The task API scenarios, run against the servlet stack by
+ * {@link TaskControllerTest} and against the reactive stack by
+ * {@link ReactiveTaskControllerTest}. Only the event stream differs between
+ * the two and is tested by each of them.
+ */
+@SpringBootTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD) // needed to reset the stack before each test
+abstract class AbstractTaskControllerTest {
+	protected final String uri = "/api/todo";
+
+	@Autowired
+	protected TaskRepo repo;
+
+	@Autowired
+	protected ObjectMapper objectMapper;
+
+	protected WebTestClient client;
+
+	/**
+	 * The client to send the requests of the scenarios with.
+	 */
+	protected abstract WebTestClient client();
+
+	/**
+	 * Makes the mocked correction service return the text it was given.
+	 */
+	protected abstract void correctToSameText() throws Exception;
+
+	@BeforeEach
+	void setUpClient() {
+		client = client();
+	}
+
+	// region getTasks
+	@Test
+	void getTasks_returnsTasks_whenCalled() throws Exception {
+		Task task = new Task("T1", "this should return", TaskStatus.DONE);
+		repo.save(task);
+
+		client.get().uri(uri).exchange()
+				.expectStatus().isOk()
+				.expectBody().json(objectMapper.writeValueAsString(List.of(task)));
+	}
+
+	@Test
+	void getTaskPage_returnsAllTasks_acrossPages() throws Exception {
+		repo.saveAll(List.of(
+				new Task("T1", "first", TaskStatus.OPEN),
+				new Task("T2", "second", TaskStatus.OPEN),
+				new Task("T3", "third", TaskStatus.OPEN)));
+
+		byte[] firstPage = client.get().uri(uri + "/page?limit=2").exchange()
+				.expectStatus().isOk()
+				.expectBody()
+				.jsonPath("$.tasks[*].id").value(contains("T1", "T2"))
+				.jsonPath("$.nextCursor").isNotEmpty()
+				.returnResult().getResponseBodyContent();
+		String cursor = objectMapper.readTree(firstPage).get("nextCursor").asText();
+
+		client.get().uri(b -> b.path(uri + "/page").queryParam("limit", 2).queryParam("cursor", cursor).build())
+				.exchange()
+				.expectStatus().isOk()
+				.expectBody()
+				.jsonPath("$.tasks[*].id").value(contains("T3"))
+				.jsonPath("$.nextCursor").doesNotExist();
+	}
+
+	@Test
+	void getTaskPage_filtersByStatusAndPrefix() throws Exception {
+		repo.saveAll(List.of(
+				new Task("T1", "buy milk", TaskStatus.OPEN),
+				new Task("T2", "buy bread", TaskStatus.DONE),
+				new Task("T3", "deploy", TaskStatus.OPEN),
+				new Task("T4", "buy eggs", TaskStatus.OPEN)));
+
+		client.get().uri(uri + "/page?status=OPEN&prefix=buy").exchange()
+				.expectStatus().isOk()
+				.expectBody()
+				.jsonPath("$.tasks[*].id").value(contains("T1", "T4"));
+	}
+
+	@Test
+	void getTaskPage_returnsBadRequest_withInvalidCursor() throws Exception {
+		client.get().uri(b -> b.path(uri + "/page").queryParam("cursor", "not a cursor!").build())
+				.exchange()
+				.expectStatus().isBadRequest();
+	}
+	// endregion
+
+	// region changes
+	@Test
+	void getChanges_returnsNoChanges_withTokenOfFullList() throws Exception {
+		repo.save(new Task("T1", "buy milk", TaskStatus.OPEN));
+
+		String token = client.get().uri(uri).exchange()
+				.expectStatus().isOk()
+				.expectHeader().exists(TaskChangeService.TOKEN_HEADER)
+				.returnResult(String.class).getResponseHeaders().getFirst(TaskChangeService.TOKEN_HEADER);
+
+		client.get().uri(b -> b.path(uri + "/changes").queryParam("since", token).build())
+				.exchange()
+				.expectStatus().isOk()
+				.expectBody()
+				.jsonPath("$.changed").isEmpty()
+				.jsonPath("$.deleted").isEmpty()
+				.jsonPath("$.more").isEqualTo(false);
+	}
+
+	@Test
+	void getChanges_returnsGone_withExpiredToken() throws Exception {
+		client.get().uri(uri + "/changes?since=0").exchange()
+				.expectStatus().isEqualTo(HttpStatus.GONE);
+	}
+	// endregion
+
+	// region search
+	@Test
+	void search_returnsMatchingTasks_byRelevance() throws Exception {
+		repo.saveAll(List.of(
+				new Task("T1", "buy milk and bread", TaskStatus.OPEN),
+				new Task("T2", "Milk the cows, milk them twice", TaskStatus.OPEN),
+				new Task("T3", "deploy", TaskStatus.OPEN)));
+
+		client.get().uri(uri + "/search?q=mil").exchange()
+				.expectStatus().isOk()
+				.expectBody()
+				.jsonPath("$[*].id").value(contains("T2", "T1"));
+	}
+
+	@Test
+	void search_returnsBadRequest_withBlankQuery() throws Exception {
+		client.get().uri(b -> b.path(uri + "/search").queryParam("q", " ").build())
+				.exchange()
+				.expectStatus().isBadRequest();
+	}
+	// endregion
+
+	// region export
+	@Test
+	void exportTasks_streamsNdjson_inIdOrder() throws Exception {
+		Task second = repo.save(new Task("T2", "second", TaskStatus.DONE));
+		Task first = repo.save(new Task("T1", "first", TaskStatus.OPEN));
+
+		String body = client.get().uri(uri + "/export").exchange()
+				.expectStatus().isOk()
+				.expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+				.expectBody(String.class)
+				.returnResult().getResponseBody();
+
+		assertThat(body.lines().toList())
+				.containsExactly(objectMapper.writeValueAsString(first), objectMapper.writeValueAsString(second));
+	}
+
+	@Test
+	void exportTasks_resumesAfterLastSeenId() throws Exception {
+		repo.save(new Task("T1", "first", TaskStatus.OPEN));
+		Task second = repo.save(new Task("T2", "second", TaskStatus.DONE));
+
+		String body = client.get().uri(uri + "/export?after=T1").exchange()
+				.expectStatus().isOk()
+				.expectBody(String.class)
+				.returnResult().getResponseBody();
+
+		assertThat(body.lines().toList())
+				.containsExactly(objectMapper.writeValueAsString(second));
+	}
+
+	@Test
+	void exportTasks_compressesBody_whenGzipIsAccepted() throws Exception {
+		Task task = repo.save(new Task("T1", "compressed", TaskStatus.OPEN));
+
+		byte[] body = client.get().uri(uri + "/export").header(HttpHeaders.ACCEPT_ENCODING, "gzip").exchange()
+				.expectStatus().isOk()
+				.expectHeader().valueEquals(HttpHeaders.CONTENT_ENCODING, "gzip")
+				.expectBody(byte[].class)
+				.returnResult().getResponseBody();
+
+		try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+			assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8))
+					.isEqualTo(objectMapper.writeValueAsString(task) + "\n");
+		}
+	}
+	// endregion
+
+	// region post
+	@Test
+	void postTask_returnsTask_withValidDto() throws Exception {
+		TaskDTO dto = new TaskDTO("this should become a task", TaskStatus.IN_PROGRESS);
+		correctToSameText();
+
+		client.post().uri(uri)
+				.contentType(MediaType.APPLICATION_JSON)
+				.bodyValue(dto)
+				.exchange()
+				.expectStatus().isCreated()
+				.expectBody()
+				.json(objectMapper.writeValueAsString(dto))
+				.jsonPath("$.id").isNotEmpty();
+	}
+
+	@Test
+	void postTask_returnsBadRequest_withInvalidDto() throws Exception {
+		client.post().uri(uri)
+				.contentType(MediaType.APPLICATION_JSON)
+				.bodyValue(new TaskDTO(null, TaskStatus.IN_PROGRESS))
+				.exchange()
+				.expectStatus().isBadRequest();
+	}
+	// endregion
+
+	// region batch
+	@Test
+	void postBatch_appliesOperations_andUndoRevertsThemTogether() throws Exception {
+		Task toUpdate = new Task("T1", "old text", TaskStatus.OPEN);
+		Task toDelete = new Task("T2", "delete me", TaskStatus.DONE);
+		repo.saveAll(List.of(toUpdate, toDelete));
+
+		List<BatchOperationDTO> operations = List.of(
+				new BatchOperationDTO(BatchOperationType.CREATE, null, "new task", TaskStatus.OPEN),
+				new BatchOperationDTO(BatchOperationType.UPDATE, "T1", "new text", TaskStatus.DONE),
+				new BatchOperationDTO(BatchOperationType.DELETE, "T2", null, null),
+				new BatchOperationDTO(BatchOperationType.DELETE, "T3", null, null));
+
+		client.post().uri(uri + "/batch")
+				.contentType(MediaType.APPLICATION_JSON)
+				.bodyValue(operations)
+				.exchange()
+				.expectStatus().isOk()
+				.expectBody()
+				.jsonPath("$[*].status").value(contains("CREATED", "OK", "NO_CONTENT", "NOT_FOUND"));
+
+		assertThat(repo.findAll())
+				.extracting(Task::description)
+				.containsExactlyInAnyOrder("new task", "new text");
+
+		client.put().uri(uri + "/undo").exchange()
+				.expectStatus().isOk();
+
+		assertThat(repo.findAll())
+				.usingRecursiveFieldByFieldElementComparatorIgnoringFields("version")
+				.containsExactlyInAnyOrder(toUpdate, toDelete);
+	}
+
+	@Test
+	void postBatch_returnsBadRequest_withEmptyBatch() throws Exception {
+		client.post().uri(uri + "/batch")
+				.contentType(MediaType.APPLICATION_JSON)
+				.bodyValue("[]")
+				.exchange()
+				.expectStatus().isBadRequest();
+	}
+	// endregion
+
+	// region getById
+	@Test
+	void getById_returnsNotFound_withInvalidId() throws Exception {
+		repo.save(new Task("T1", "should not be found", TaskStatus.OPEN));
+
+		client.get().uri(uri + "/T2").exchange()
+				.expectStatus().isNotFound();
+	}
+
+	@Test
+	void getById_returnsTask_withValidId() throws Exception {
+		Task task = new Task("T1", "should be found", TaskStatus.OPEN);
+		repo.save(task);
+
+		client.get().uri(uri + "/" + task.id()).exchange()
+				.expectStatus().isOk()
+				.expectHeader().valueEquals(HttpHeaders.ETAG, "\"0\"")
+				.expectBody().json(objectMapper.writeValueAsString(task));
+	}
+
+	@Test
+	void getById_returnsNotModified_withMatchingETag() throws Exception {
+		repo.save(new Task("T1", "unchanged", TaskStatus.OPEN));
+
+		client.get().uri(uri + "/T1").header(HttpHeaders.IF_NONE_MATCH, "\"0\"").exchange()
+				.expectStatus().isNotModified()
+				.expectBody().isEmpty();
+	}
+
+	@Test
+	void getTasks_returnsNotModified_untilATaskChanges() throws Exception {
+		Task task = repo.save(new Task("T1", "polled", TaskStatus.OPEN));
+		String etag = client.get().uri(uri).exchange()
+				.expectStatus().isOk()
+				.returnResult(String.class).getResponseHeaders().getETag();
+
+		client.get().uri(uri).header(HttpHeaders.IF_NONE_MATCH, etag).exchange()
+				.expectStatus().isNotModified();
+
+		repo.updateReturningPrevious(task.withStatus(TaskStatus.DONE), null);
+
+		client.get().uri(uri).header(HttpHeaders.IF_NONE_MATCH, etag).exchange()
+				.expectStatus().isOk()
+				.expectBody().jsonPath("$[0].status").isEqualTo("DONE");
+	}
+	// endregion
+
+	// region tenants
+	@Test
+	void tasks_areOnlyVisibleToTheirTenant() throws Exception {
+		String id = client.post().uri(uri)
+				.header(CurrentUser.TENANT_HEADER, "acme")
+				.contentType(MediaType.APPLICATION_JSON)
+				.bodyValue(new TaskDTO("acme task", TaskStatus.OPEN))
+				.exchange()
+				.expectStatus().isCreated()
+				.expectBody(Task.class)
+				.returnResult().getResponseBody().id();
+
+		client.get().uri(uri).header(CurrentUser.TENANT_HEADER, "acme").exchange()
+				.expectBody().jsonPath("$[0].id").isEqualTo(id);
+		client.get().uri(uri).exchange()
+				.expectStatus().isOk()
+				.expectBody().jsonPath("$").isEmpty();
+		client.get().uri(uri + "/" + id).header(CurrentUser.TENANT_HEADER, "globex").exchange()
+				.expectStatus().isNotFound();
+		client.delete().uri(uri + "/" + id).header(CurrentUser.TENANT_HEADER, "globex").exchange()
+				.expectStatus().isNotFound();
+		assertThat(repo.findById(id)).isPresent();
+	}
+	// endregion
+
+	// region getCorrectionStatus
+	@Test
+	void getCorrectionStatus_returnsNotPending_withoutRunningCorrection() throws Exception {
+		Task task = new Task("T1", "nothing to correct", TaskStatus.OPEN);
+		repo.save(task);
+
+		client.get().uri(uri + "/" + task.id() + "/correction").exchange()
+				.expectStatus().isOk()
+				.expectBody()
+				.jsonPath("$.taskId").isEqualTo(task.id())
+				.jsonPath("$.pending").isEqualTo(false);
+	}
+
+	@Test
+	void getCorrectionStatus_returnsNotFound_withInvalidId() throws Exception {
+		client.get().uri(uri + "/T1/correction").exchange()
+				.expectStatus().isNotFound();
+	}
+	// endregion
+
+	// region updateTask
+	@Test
+	void putTask_updatesTask_withValidData() throws Exception {
+		correctToSameText();
+		Task task = new Task("T1", "text before", TaskStatus.OPEN);
+		repo.save(task);
+
+		Task updatedTask = task
+				.withDescription("updated text")
+				.withStatus(TaskStatus.DONE);
+
+		client.put().uri(uri + "/" + task.id())
+				.contentType(MediaType.APPLICATION_JSON)
+				.bodyValue(updatedTask)
+				.exchange()
+				.expectStatus().isOk()
+				.expectBody().json(objectMapper.writeValueAsString(updatedTask));
+	}
+
+	@Test
+	void putTask_updatesTask_withMatchingIfMatch() throws Exception {
+		Task task = repo.save(new Task("T1", "text before", TaskStatus.OPEN));
+
+		client.put().uri(uri + "/" + task.id())
+				.header(HttpHeaders.IF_MATCH, "\"0\"")
+				.contentType(MediaType.APPLICATION_JSON)
+				.bodyValue(task.withDescription("updated text"))
+				.exchange()
+				.expectStatus().isOk()
+				.expectHeader().valueEquals(HttpHeaders.ETAG, "\"1\"")
+				.expectBody().jsonPath("$.version").isEqualTo(1);
+	}
+
+	@Test
+	void putTask_returnsPreconditionFailed_withStaleIfMatch() throws Exception {
+		Task task = repo.save(new Task("T1", "text before", TaskStatus.OPEN));
+		repo.updateReturningPrevious(task.withDescription("concurrent edit"), null);
+
+		client.put().uri(uri + "/" + task.id())
+				.header(HttpHeaders.IF_MATCH, "\"0\"")
+				.contentType(MediaType.APPLICATION_JSON)
+				.bodyValue(task.withDescription("lost update"))
+				.exchange()
+				.expectStatus().isEqualTo(HttpStatus.PRECONDITION_FAILED);
+
+		assertThat(repo.findById(task.id()).orElseThrow().description()).isEqualTo("concurrent edit");
+	}
+
+	@Test
+	void putTask_returnsBadRequest_withMissingDescription() throws Exception {
+		Task task = new Task("T1", "text before", TaskStatus.OPEN);
+		repo.save(task);
+
+		client.put().uri(uri + "/" + task.id())
+				.contentType(MediaType.APPLICATION_JSON)
+				.bodyValue(task.withDescription(""))
+				.exchange()
+				.expectStatus().isBadRequest();
+	}
+
+	@Test
+	void putTask_returnsBadRequest_withMismatchingIds() throws Exception {
+		String mismatchingId = "T2";
+		Task task = new Task("T1", "text before", TaskStatus.OPEN);
+		repo.save(task);
+		repo.save(task.withId(mismatchingId));
+
+		client.put().uri(uri + "/" + task.id())
+				.contentType(MediaType.APPLICATION_JSON)
+				.bodyValue(task.withId(mismatchingId))
+				.exchange()
+				.expectStatus().isBadRequest();
+	}
+
+	@Test
+	void putTask_returnsBadRequest_withInvalidID() throws Exception {
+		Task task = new Task("T1", "text before", TaskStatus.OPEN);
+		repo.save(task);
+
+		Task invalidTask = task.withId("T2");
+
+		client.put().uri(uri + "/" + invalidTask.id())
+				.contentType(MediaType.APPLICATION_JSON)
+				.bodyValue(invalidTask)
+				.exchange()
+				.expectStatus().isNotFound();
+	}
+	// endregion
+
+	// region delete
+	@Test
+	void deleteTask_returnsOk_withValidId() throws Exception {
+		Task task = new Task("T1", "to be deleted", TaskStatus.OPEN);
+		repo.save(task);
+
+		client.delete().uri(uri + "/" + task.id()).exchange()
+				.expectStatus().isNoContent();
+	}
+
+	@Test
+	void deleteTask_returnsPreconditionFailed_withStaleIfMatch() throws Exception {
+		Task task = repo.save(new Task("T1", "to be deleted", TaskStatus.OPEN));
+		repo.updateReturningPrevious(task.withStatus(TaskStatus.DONE), null);
+
+		client.delete().uri(uri + "/" + task.id()).header(HttpHeaders.IF_MATCH, "\"0\"").exchange()
+				.expectStatus().isEqualTo(HttpStatus.PRECONDITION_FAILED);
+
+		assertThat(repo.existsById(task.id())).isTrue();
+	}
+
+	@Test
+	void deleteTask_returnsNotFound_withInvalidId() throws Exception {
+		client.delete().uri(uri + "/T1").exchange()
+				.expectStatus().isNotFound();
+	}
+	// endregion
+
+	// region undo
+	@Test
+	void undo_resetsState_withActionsToReset() throws Exception {
+		correctToSameText();
+
+		client.post().uri(uri)
+				.contentType(MediaType.APPLICATION_JSON)
+				.bodyValue(new TaskDTO("this task should be deleted", TaskStatus.DONE))
+				.exchange()
+				.expectStatus().isCreated();
+
+		client.put().uri(uri + "/undo").exchange()
+				.expectStatus().isOk();
+
+		assertThat(repo.findAll()).isEmpty();
+	}
+
+	@Test
+	void undo_onlyUndoesActionsOfTheSameUser() throws Exception {
+		client.post().uri(uri)
+				.header(CurrentUser.HEADER, "alice")
+				.contentType(MediaType.APPLICATION_JSON)
+				.bodyValue(new TaskDTO("created by alice", TaskStatus.OPEN))
+				.exchange()
+				.expectStatus().isCreated();
+
+		client.put().uri(uri + "/undo").header(CurrentUser.HEADER, "bob").exchange()
+				.expectStatus().isBadRequest();
+		assertThat(repo.findAll()).hasSize(1);
+
+		client.put().uri(uri + "/undo").header(CurrentUser.HEADER, "alice").exchange()
+				.expectStatus().isOk();
+		assertThat(repo.findAll()).isEmpty();
+	}
+
+	@Test
+	void undo_returnsBadRequest_withEmptyHistory() throws Exception {
+		client.put().uri(uri + "/undo").exchange()
+				.expectStatus().isBadRequest();
+	}
+	// endregion
+
+	// region redo
+	@Test
+	void redo_resetsState_withActionToReset() throws Exception {
+		correctToSameText();
+
+		client.post().uri(uri)
+				.contentType(MediaType.APPLICATION_JSON)
+				.bodyValue(new TaskDTO("this task should be deleted", TaskStatus.DONE))
+				.exchange()
+				.expectStatus().isCreated();
+		List<Task> oldState = repo.findAll();
+
+		client.put().uri(uri + "/undo").exchange()
+				.expectStatus().isOk();
+		client.put().uri(uri + "/redo").exchange()
+				.expectStatus().isOk();
+
+		assertThat(repo.findAll())
+				.containsExactlyInAnyOrderElementsOf(oldState);
+	}
+
+	@Test
+	void redo_returnsBadRequest_withEndOfHistory() throws Exception {
+		client.put().uri(uri + "/redo").exchange()
+				.expectStatus().isBadRequest();
+	}
+	// endregion
+}
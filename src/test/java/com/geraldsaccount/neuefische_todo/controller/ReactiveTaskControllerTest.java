@@ -0,0 +1,76 @@
+package com.geraldsaccount.neuefische_todo.controller;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import com.geraldsaccount.neuefische_todo.model.tasks.TaskStatus;
+import com.geraldsaccount.neuefische_todo.model.tasks.dto.TaskDTO;
+import com.geraldsaccount.neuefische_todo.service.ReactiveCorrectionService;
+import com.geraldsaccount.neuefische_todo.service.TaskEventBus;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * The scenarios of {@link AbstractTaskControllerTest} against the reactive
+ * stack.
+ */
+@ActiveProfiles("reactive")
+@AutoConfigureWebTestClient
+public class ReactiveTaskControllerTest extends AbstractTaskControllerTest {
+	@Autowired
+	private WebTestClient webTestClient;
+
+	@MockitoBean
+	private ReactiveCorrectionService correctionService;
+
+	@Override
+	protected WebTestClient client() {
+		return webTestClient;
+	}
+
+	@Override
+	protected void correctToSameText() {
+		when(correctionService.getCorrectedText(any()))
+				.thenAnswer(a -> Mono.just(a.getArgument(0)));
+	}
+
+	// region stream
+	@Test
+	void streamTaskEvents_pushesCreatedTask() throws Exception {
+		Flux<ServerSentEvent<String>> stream = client.get().uri(uri + "/stream")
+				.accept(MediaType.TEXT_EVENT_STREAM)
+				.exchange()
+				.expectStatus().isOk()
+				.returnResult(new ParameterizedTypeReference<ServerSentEvent<String>>() {
+				})
+				.getResponseBody();
+
+		client.post().uri(uri)
+				.contentType(MediaType.APPLICATION_JSON)
+				.bodyValue(new TaskDTO("pushed", TaskStatus.OPEN))
+				.exchange()
+				.expectStatus().isCreated();
+
+		ServerSentEvent<String> event = stream
+				.filter(e -> TaskEventBus.TASK_EVENT.equals(e.event()))
+				.blockFirst(Duration.ofSeconds(2));
+		assertThat(event).isNotNull();
+		assertThat(event.data())
+				.contains("\"type\":\"CREATED\"")
+				.contains("\"description\":\"pushed\"");
+	}
+	// endregion
+}
@@ -0,0 +1,90 @@
+package com.geraldsaccount.neuefische_todo.controller;
+
+import java.io.ByteArrayInputStream;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.servlet.resource.ResourceHttpRequestHandler;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.handler;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class StaticAssetControllerTest {
+	private static final String MAIN_JS = "/static/js/main.6d85980d.js";
+
+	@Autowired
+	private MockMvc mvc;
+
+	@Test
+	void getAsset_returnsGzip_andImmutable_forHashedFile() throws Exception {
+		MvcResult result = mvc.perform(get(MAIN_JS).header(HttpHeaders.ACCEPT_ENCODING, "br;q=0, gzip, deflate"))
+				.andExpect(status().isOk())
+				.andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+				.andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING))
+				.andExpect(header().string(HttpHeaders.CACHE_CONTROL, containsString("immutable")))
+				.andReturn();
+
+		byte[] expected = new ClassPathResource("static" + MAIN_JS).getContentAsByteArray();
+		byte[] body = result.getResponse().getContentAsByteArray();
+		assertThat(body.length).isLessThan(expected.length);
+		try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+			assertThat(in.readAllBytes()).isEqualTo(expected);
+		}
+	}
+
+	@Test
+	void getAsset_returnsIdentity_withoutAcceptEncoding() throws Exception {
+		mvc.perform(get(MAIN_JS))
+				.andExpect(status().isOk())
+				.andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+				.andExpect(content().bytes(new ClassPathResource("static" + MAIN_JS).getContentAsByteArray()));
+	}
+
+	@Test
+	void getAsset_returnsNotModified_forIndexWithMatchingETag() throws Exception {
+		String eTag = mvc.perform(get("/"))
+				.andExpect(status().isOk())
+				.andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache"))
+				.andExpect(content().string(containsString("<html")))
+				.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+		mvc.perform(get("/index.html").header(HttpHeaders.IF_NONE_MATCH, eTag))
+				.andExpect(status().isNotModified())
+				.andExpect(content().bytes(new byte[0]));
+	}
+
+	@Test
+	void getAsset_returnsNotFound_forUnknownPath() throws Exception {
+		mvc.perform(get("/static/js/missing.js"))
+				.andExpect(status().isNotFound());
+	}
+
+	@Test
+	void getAsset_isNotUsed_forApiPaths() throws Exception {
+		mvc.perform(get("/api/missing"))
+				.andExpect(status().isNotFound())
+				.andExpect(handler().handlerType(ResourceHttpRequestHandler.class));
+	}
+
+	@Test
+	void accepts_ignoresCodingsWithZeroQuality() {
+		assertThat(StaticAssetController.accepts("gzip, br", "br")).isTrue();
+		assertThat(StaticAssetController.accepts("gzip;q=0.8, br; q=0", "br")).isFalse();
+		assertThat(StaticAssetController.accepts("gzip;q=0.0", "gzip")).isFalse();
+		assertThat(StaticAssetController.accepts("x-gzip", "gzip")).isFalse();
+		assertThat(StaticAssetController.accepts(null, "gzip")).isFalse();
+	}
+}
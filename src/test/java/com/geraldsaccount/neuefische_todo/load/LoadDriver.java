@@ -0,0 +1,233 @@
+package com.geraldsaccount.neuefische_todo.load;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Fires requests and records the latency of every request. {@link #run} uses a
+ * fixed number of clients that send as fast as the server answers,
+ * {@link #runAtRate} sends a mix of requests at a fixed rate regardless of how
+ * fast the server answers.
+ * <p>
+ * Transport failures and 5xx answers always count as errors. 4xx answers count
+ * as errors too, unless the scenario expects them and asks for them to be
+ * reported as rejected instead.
+ */
+final class LoadDriver {
+	@FunctionalInterface
+	interface Request {
+		/**
+		 * Sends request number {@code n} and returns the HTTP status.
+		 */
+		int send(int n) throws Exception;
+	}
+
+	/**
+	 * One kind of request of a mixed scenario, sent with a probability of its
+	 * weight over the sum of all weights.
+	 */
+	record Endpoint(String name, int weight, Request request) {
+	}
+
+	record Result(String name, int requests, int errors, int rejected, Duration elapsed, long[] latenciesNanos) {
+		double throughput() {
+			return requests / (elapsed.toNanos() / 1e9);
+		}
+
+		double errorRate() {
+			return requests == 0 ? 0 : (double) errors / requests;
+		}
+
+		double rejectedRate() {
+			return requests == 0 ? 0 : (double) rejected / requests;
+		}
+
+		Duration percentile(double p) {
+			if (latenciesNanos.length == 0) {
+				return Duration.ZERO;
+			}
+			int index = (int) Math.ceil(p / 100 * latenciesNanos.length) - 1;
+			return Duration.ofNanos(latenciesNanos[Math.max(0, index)]);
+		}
+
+		@Override
+		public String toString() {
+			return String.format(
+					"%-24s %6d req %8.1f req/s  err %5.1f %%  4xx %5.1f %%  p50 %7.1f ms  p95 %7.1f ms  p99 %7.1f ms",
+					name, requests, throughput(), errorRate() * 100, rejectedRate() * 100,
+					millis(percentile(50)), millis(percentile(95)), millis(percentile(99)));
+		}
+
+		private static double millis(Duration duration) {
+			return duration.toNanos() / 1e6;
+		}
+	}
+
+	private LoadDriver() {
+	}
+
+	static Result run(String name, int requests, int concurrency, Request request) throws Exception {
+		long[] latencies = new long[requests];
+		AtomicInteger next = new AtomicInteger();
+		AtomicInteger errors = new AtomicInteger();
+
+		ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+		long start = System.nanoTime();
+		try {
+			List<Future<?>> running = new ArrayList<>();
+			for (int c = 0; c < concurrency; c++) {
+				running.add(clients.submit(() -> {
+					for (int n = next.getAndIncrement(); n < requests; n = next.getAndIncrement()) {
+						long sent = System.nanoTime();
+						int status;
+						try {
+							status = request.send(n);
+						} catch (Exception e) {
+							status = -1;
+						}
+						latencies[n] = System.nanoTime() - sent;
+						if (isError(status, false)) {
+							errors.incrementAndGet();
+						}
+					}
+				}));
+			}
+			for (Future<?> client : running) {
+				client.get();
+			}
+		} finally {
+			clients.shutdownNow();
+		}
+		Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+		Arrays.sort(latencies);
+		return new Result(name, requests, errors.get(), 0, elapsed, latencies);
+	}
+
+	/**
+	 * Sends {@code requestsPerSecond} requests for {@code duration}, each one on
+	 * its own virtual thread. Latency is measured from the moment a request was
+	 * due, so a server that falls behind is not hidden by a driver that sends
+	 * less. Requests still running after the duration get {@code drainTimeout}
+	 * to finish, the ones that do not are counted as errors.
+	 *
+	 * @param rejectionsExpected whether 4xx answers are part of the scenario,
+	 *                           such as an undo with nothing to undo, and are
+	 *                           reported as rejected rather than as errors
+	 * @return one result per endpoint, followed by one for all requests
+	 */
+	static List<Result> runAtRate(List<Endpoint> endpoints, int requestsPerSecond, Duration duration,
+			Duration drainTimeout, boolean rejectionsExpected) throws InterruptedException {
+		int totalWeight = endpoints.stream().mapToInt(Endpoint::weight).sum();
+		long intervalNanos = TimeUnit.SECONDS.toNanos(1) / requestsPerSecond;
+		int requests = (int) (duration.toNanos() / intervalNanos);
+		// same sequence of endpoints in every run
+		Random random = new Random(42);
+
+		Map<String, Recorder> recorders = new ConcurrentHashMap<>();
+		endpoints.forEach(endpoint -> recorders.put(endpoint.name(), new Recorder(rejectionsExpected)));
+		AtomicInteger completed = new AtomicInteger();
+
+		ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+		long start = System.nanoTime();
+		for (int n = 0; n < requests; n++) {
+			long due = start + n * intervalNanos;
+			long wait = due - System.nanoTime();
+			if (wait > 0) {
+				LockSupport.parkNanos(wait);
+			}
+			Endpoint endpoint = pick(endpoints, random.nextInt(totalWeight));
+			Recorder recorder = recorders.get(endpoint.name());
+			int number = n;
+			senders.execute(() -> {
+				int status;
+				try {
+					status = endpoint.request().send(number);
+				} catch (Exception e) {
+					status = -1;
+				}
+				recorder.record(status, System.nanoTime() - due);
+				completed.incrementAndGet();
+			});
+		}
+		senders.shutdown();
+		senders.awaitTermination(drainTimeout.toMillis(), TimeUnit.MILLISECONDS);
+		Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+		// interrupted requests record themselves as errors
+		senders.shutdownNow();
+		senders.awaitTermination(5, TimeUnit.SECONDS);
+
+		List<Result> results = new ArrayList<>();
+		for (Endpoint endpoint : endpoints) {
+			results.add(recorders.get(endpoint.name()).result(endpoint.name(), elapsed));
+		}
+		results.add(total(results, requests - completed.get(), elapsed));
+		return results;
+	}
+
+	private static Endpoint pick(List<Endpoint> endpoints, int roll) {
+		for (Endpoint endpoint : endpoints) {
+			roll -= endpoint.weight();
+			if (roll < 0) {
+				return endpoint;
+			}
+		}
+		throw new IllegalStateException("Weights do not add up.");
+	}
+
+	private static Result total(List<Result> results, int unfinished, Duration elapsed) {
+		int requests = unfinished;
+		int errors = unfinished;
+		int rejected = 0;
+		for (Result result : results) {
+			requests += result.requests();
+			errors += result.errors();
+			rejected += result.rejected();
+		}
+		long[] latencies = results.stream()
+				.flatMapToLong(result -> Arrays.stream(result.latenciesNanos()))
+				.sorted()
+				.toArray();
+		return new Result("all", requests, errors, rejected, elapsed, latencies);
+	}
+
+	private static boolean isError(int status, boolean rejectionsExpected) {
+		return status < 200 || status >= (rejectionsExpected ? 500 : 400);
+	}
+
+	private static final class Recorder {
+		private final ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+		private final AtomicInteger errors = new AtomicInteger();
+		private final AtomicInteger rejected = new AtomicInteger();
+		private final boolean rejectionsExpected;
+
+		Recorder(boolean rejectionsExpected) {
+			this.rejectionsExpected = rejectionsExpected;
+		}
+
+		void record(int status, long latencyNanos) {
+			latencies.add(latencyNanos);
+			if (isError(status, rejectionsExpected)) {
+				errors.incrementAndGet();
+			} else if (status >= 400) {
+				rejected.incrementAndGet();
+			}
+		}
+
+		Result result(String name, Duration elapsed) {
+			long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+			return new Result(name, sorted.length, errors.get(), rejected.get(), elapsed, sorted);
+		}
+	}
+}
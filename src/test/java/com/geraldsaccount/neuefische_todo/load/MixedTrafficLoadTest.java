@@ -0,0 +1,213 @@
+package com.geraldsaccount.neuefische_todo.load;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.geraldsaccount.neuefische_todo.NeuefischeTodoApplication;
+import com.geraldsaccount.neuefische_todo.model.openai.OpenAiResponse;
+import com.geraldsaccount.neuefische_todo.service.CurrentUser;
+import com.geraldsaccount.neuefische_todo.service.OpenAiClient;
+import com.github.tomakehurst.wiremock.client.ResponseDefinitionBuilder;
+import com.github.tomakehurst.wiremock.client.WireMock;
+import com.github.tomakehurst.wiremock.junit5.WireMockRuntimeInfo;
+import com.github.tomakehurst.wiremock.junit5.WireMockTest;
+
+/**
+ * Sends a mix of reads, writes and undos to {@code /api/todo} at a fixed rate,
+ * against embedded Mongo and an OpenAI stub, and reports throughput, latency
+ * percentiles and error rates per endpoint.
+ * <p>
+ * Run with {@code mvn test -Dloadtest=true -Dtest=MixedTrafficLoadTest}. The
+ * following system properties change the scenario:
+ * <ul>
+ * <li>{@code loadtest.rps}: requests per second, default 200</li>
+ * <li>{@code loadtest.duration}: how long to send, default 30s</li>
+ * <li>{@code loadtest.openai.latency-ms}: median OpenAI latency, default
+ * 300</li>
+ * <li>{@code loadtest.openai.profile}: {@code healthy}, {@code flaky} (every
+ * tenth correction fails) or {@code down} (every correction fails), default
+ * flaky</li>
+ * </ul>
+ */
+@WireMockTest
+@EnabledIfSystemProperty(named = "loadtest", matches = "true")
+public class MixedTrafficLoadTest {
+	private static final Logger log = LoggerFactory.getLogger(MixedTrafficLoadTest.class);
+
+	private static final int SEED_TASKS = 500;
+	private static final int USERS = 50;
+
+	private final HttpClient http = HttpClient.newHttpClient();
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	// never deleted by the scenario, only vanish through an undo
+	private final List<String> stableIds = new ArrayList<>();
+	private final ConcurrentLinkedDeque<String> deletableIds = new ConcurrentLinkedDeque<>();
+
+	private URI base;
+
+	private enum OpenAiProfile {
+		HEALTHY, FLAKY, DOWN
+	}
+
+	@Test
+	void mixedTraffic_staysWithinBudget(WireMockRuntimeInfo wireMock) throws Exception {
+		int rps = Integer.getInteger("loadtest.rps", 200);
+		Duration duration = Duration.parse("PT" + System.getProperty("loadtest.duration", "30s"));
+		int latencyMillis = Integer.getInteger("loadtest.openai.latency-ms", 300);
+		OpenAiProfile profile = OpenAiProfile.valueOf(
+				System.getProperty("loadtest.openai.profile", "flaky").toUpperCase(Locale.ROOT));
+		stubOpenAi(profile, latencyMillis);
+
+		try (ConfigurableApplicationContext context = new SpringApplicationBuilder(NeuefischeTodoApplication.class)
+				.properties(
+						"server.port=0",
+						"servers.openai.url=" + wireMock.getHttpBaseUrl(),
+						// the stub answers every request with plain text, not a JSON array
+						"corrections.batch.max-size=1")
+				.run()) {
+			int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+			base = URI.create("http://localhost:" + port + "/api/todo");
+			seed();
+
+			List<LoadDriver.Result> results = LoadDriver.runAtRate(List.of(
+					new LoadDriver.Endpoint("POST /api/todo", 20, this::create),
+					new LoadDriver.Endpoint("GET /api/todo/page", 30, this::page),
+					new LoadDriver.Endpoint("GET /api/todo/{id}", 20, this::get),
+					new LoadDriver.Endpoint("PUT /api/todo/{id}", 15, this::update),
+					new LoadDriver.Endpoint("DELETE /api/todo/{id}", 5, this::delete),
+					new LoadDriver.Endpoint("PUT /api/todo/undo", 5, this::undo),
+					new LoadDriver.Endpoint("PUT /api/todo/redo", 5, this::redo)),
+					// undos with an empty history and deletes of undone creates answer 4xx
+					rps, duration, Duration.ofSeconds(30), true);
+
+			log.info("{} req/s for {}, OpenAI {} at {} ms", rps, duration,
+					profile.name().toLowerCase(Locale.ROOT), latencyMillis);
+			results.forEach(result -> log.info("{}", result));
+
+			LoadDriver.Result all = results.getLast();
+			// OpenAI failures must never reach the API, corrections run in the background
+			assertThat(all.errorRate()).isLessThan(0.01);
+			assertThat(all.throughput()).isGreaterThan(rps * 0.9);
+		}
+	}
+
+	private void stubOpenAi(OpenAiProfile profile, int latencyMillis) throws Exception {
+		WireMock.stubFor(WireMock.post(OpenAiClient.REQUEST_URI)
+				.atPriority(2)
+				.willReturn(withLatency(WireMock.ok()
+						.withHeader("Content-Type", "application/json")
+						.withBody(mapper.writeValueAsString(OpenAiResponse.ofResponse("corrected text"))),
+						latencyMillis)));
+		if (profile == OpenAiProfile.FLAKY) {
+			// descriptions end with the request number, so this is every tenth one
+			WireMock.stubFor(WireMock.post(OpenAiClient.REQUEST_URI)
+					.atPriority(1)
+					.withRequestBody(WireMock.matchingJsonPath("$.input", WireMock.matching(".*0")))
+					.willReturn(withLatency(WireMock.serverError(), latencyMillis)));
+		} else if (profile == OpenAiProfile.DOWN) {
+			WireMock.stubFor(WireMock.post(OpenAiClient.REQUEST_URI)
+					.atPriority(1)
+					.willReturn(withLatency(WireMock.serviceUnavailable(), latencyMillis)));
+		}
+	}
+
+	private static ResponseDefinitionBuilder withLatency(ResponseDefinitionBuilder response, int medianMillis) {
+		return response.withLogNormalRandomDelay(medianMillis, 0.4);
+	}
+
+	private void seed() throws Exception {
+		for (int n = 0; n < SEED_TASKS; n++) {
+			String id = createTask(n, "seed");
+			if (n % 2 == 0) {
+				stableIds.add(id);
+			} else {
+				deletableIds.add(id);
+			}
+		}
+	}
+
+	private String createTask(int n, String user) throws Exception {
+		HttpResponse<String> response = http.send(request("", user)
+				.header("Content-Type", "application/json")
+				.POST(HttpRequest.BodyPublishers.ofString(
+						"{\"description\":\"task " + n + "\",\"status\":\"OPEN\"}"))
+				.build(), HttpResponse.BodyHandlers.ofString());
+		if (response.statusCode() != 201) {
+			throw new IllegalStateException("Could not create task: " + response.statusCode());
+		}
+		return mapper.readTree(response.body()).get("id").asText();
+	}
+
+	private int create(int n) throws Exception {
+		deletableIds.add(createTask(n, user(n)));
+		return 201;
+	}
+
+	private int page(int n) throws Exception {
+		return send(request("/page?limit=20&status=" + (n % 2 == 0 ? "OPEN" : "DONE"), user(n)).GET());
+	}
+
+	private int get(int n) throws Exception {
+		return send(request("/" + stableId(), user(n)).GET());
+	}
+
+	private int update(int n) throws Exception {
+		String id = stableId();
+		return send(request("/" + id, user(n))
+				.header("Content-Type", "application/json")
+				.PUT(HttpRequest.BodyPublishers.ofString("{\"id\":\"" + id + "\",\"description\":\"task "
+						+ n + "\",\"status\":\"" + (n % 3 == 0 ? "DONE" : "IN_PROGRESS") + "\"}")));
+	}
+
+	private int delete(int n) throws Exception {
+		String id = deletableIds.poll();
+		if (id == null) {
+			return create(n);
+		}
+		return send(request("/" + id, user(n)).DELETE());
+	}
+
+	private int undo(int n) throws Exception {
+		return send(request("/undo", user(n)).PUT(HttpRequest.BodyPublishers.noBody()));
+	}
+
+	private int redo(int n) throws Exception {
+		return send(request("/redo", user(n)).PUT(HttpRequest.BodyPublishers.noBody()));
+	}
+
+	private String stableId() {
+		return stableIds.get(ThreadLocalRandom.current().nextInt(stableIds.size()));
+	}
+
+	private static String user(int n) {
+		return "user-" + n % USERS;
+	}
+
+	private HttpRequest.Builder request(String path, String user) {
+		return HttpRequest.newBuilder(URI.create(base + path))
+				.header(CurrentUser.HEADER, user);
+	}
+
+	private int send(HttpRequest.Builder request) throws Exception {
+		return http.send(request.build(), HttpResponse.BodyHandlers.discarding()).statusCode();
+	}
+}
@@ -0,0 +1,107 @@
+package com.geraldsaccount.neuefische_todo.load;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.geraldsaccount.neuefische_todo.NeuefischeTodoApplication;
+import com.geraldsaccount.neuefische_todo.model.openai.OpenAiResponse;
+import com.geraldsaccount.neuefische_todo.model.tasks.Task;
+import com.geraldsaccount.neuefische_todo.service.OpenAiClient;
+import com.github.tomakehurst.wiremock.client.WireMock;
+import com.github.tomakehurst.wiremock.junit5.WireMockRuntimeInfo;
+import com.github.tomakehurst.wiremock.junit5.WireMockTest;
+
+/**
+ * Compares platform and virtual threads while OpenAI answers slowly. Writes
+ * should stay fast in both modes; the interesting number is how long it takes
+ * until every created task has been corrected. That number depends on the
+ * machine, so it is logged for comparison rather than asserted; the test only
+ * fails when writes error or corrections do not finish.
+ * <p>
+ * Run with {@code mvn test -Dloadtest=true -Dtest=VirtualThreadsLoadTest}.
+ */
+@Tag("benchmark")
+@WireMockTest
+@EnabledIfSystemProperty(named = "loadtest", matches = "true")
+public class VirtualThreadsLoadTest {
+	private static final Logger log = LoggerFactory.getLogger(VirtualThreadsLoadTest.class);
+
+	private static final int REQUESTS = 1000;
+	private static final int CLIENTS = 64;
+	private static final int OPENAI_DELAY_MS = 250;
+	private static final String CORRECTED = "corrected text";
+
+	private final HttpClient http = HttpClient.newHttpClient();
+
+	private record Run(LoadDriver.Result writes, Duration correctionsDrained) {
+	}
+
+	@Test
+	void compare_platformAndVirtualThreads(WireMockRuntimeInfo wireMock) throws Exception {
+		WireMock.stubFor(WireMock.post(OpenAiClient.REQUEST_URI)
+				.willReturn(WireMock.ok()
+						.withHeader("Content-Type", "application/json")
+						.withBody(new ObjectMapper().writeValueAsString(OpenAiResponse.ofResponse(CORRECTED)))
+						.withFixedDelay(OPENAI_DELAY_MS)));
+
+		Run platform = run(wireMock, false);
+		Run virtual = run(wireMock, true);
+
+		log.info("{}  corrections drained in {}", platform.writes(), platform.correctionsDrained());
+		log.info("{}  corrections drained in {}", virtual.writes(), virtual.correctionsDrained());
+		assertThat(platform.writes().errors()).isZero();
+		assertThat(virtual.writes().errors()).isZero();
+	}
+
+	private Run run(WireMockRuntimeInfo wireMock, boolean virtualThreads) throws Exception {
+		try (ConfigurableApplicationContext context = new SpringApplicationBuilder(NeuefischeTodoApplication.class)
+				.properties(
+						"server.port=0",
+						"spring.threads.virtual.enabled=" + virtualThreads,
+						"servers.openai.url=" + wireMock.getHttpBaseUrl(),
+						"servers.openai.concurrency.initial-limit=1024",
+						"servers.openai.concurrency.max-limit=1024",
+						"servers.openai.concurrency.latency-threshold=5s",
+						// the stub answers every request with plain text, not a JSON array
+						"corrections.batch.max-size=1",
+						"corrections.async.queue-capacity=" + REQUESTS)
+				.run()) {
+			int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+			URI uri = URI.create("http://localhost:" + port + "/api/todo");
+			MongoTemplate mongo = context.getBean(MongoTemplate.class);
+
+			long start = System.nanoTime();
+			LoadDriver.Result writes = LoadDriver.run(virtualThreads ? "virtual threads" : "platform threads",
+					REQUESTS, CLIENTS, n -> http.send(HttpRequest.newBuilder(uri)
+							.header("Content-Type", "application/json")
+							.POST(HttpRequest.BodyPublishers.ofString(
+									"{\"description\":\"task " + n + "\",\"status\":\"OPEN\"}"))
+							.build(), HttpResponse.BodyHandlers.discarding()).statusCode());
+
+			Query corrected = Query.query(Criteria.where("description").is(CORRECTED));
+			long deadline = start + Duration.ofMinutes(2).toNanos();
+			while (mongo.count(corrected, Task.class) < REQUESTS && System.nanoTime() < deadline) {
+				Thread.sleep(50);
+			}
+			assertThat(mongo.count(corrected, Task.class)).isEqualTo(REQUESTS);
+			return new Run(writes, Duration.ofNanos(System.nanoTime() - start));
+		}
+	}
+}
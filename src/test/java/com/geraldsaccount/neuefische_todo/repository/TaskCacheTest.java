@@ -0,0 +1,198 @@
+package com.geraldsaccount.neuefische_todo.repository;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.bson.Document;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.geraldsaccount.neuefische_todo.model.tasks.Task;
+import com.geraldsaccount.neuefische_todo.model.tasks.TaskPatch;
+import com.geraldsaccount.neuefische_todo.model.tasks.TaskStatus;
+
+@SpringBootTest(properties = { "tasks.cache.enabled=true", "tasks.cache.flush-interval=1h" })
+public class TaskCacheTest {
+	@Autowired
+	private TaskRepo repo;
+
+	@Autowired
+	private TaskCache cache;
+
+	@Autowired
+	private MongoTemplate template;
+
+	@BeforeEach
+	@SuppressWarnings("unused")
+	void setUp() {
+		repo.deleteAll();
+		cache.flush();
+	}
+
+	@AfterEach
+	@SuppressWarnings("unused")
+	void tearDown() {
+		setUp();
+	}
+
+	@Test
+	void save_reachesMongo_onlyAfterFlush() {
+		Task task = repo.save(new Task("T1", "buy milk", TaskStatus.OPEN));
+		repo.applyPatch("T1", new TaskPatch(null, TaskStatus.DONE));
+
+		assertThat(repo.findById("T1")).contains(task.withStatus(TaskStatus.DONE).withVersion(1L));
+		assertThat(template.findById("T1", Task.class)).isNull();
+		assertThat(cache.flushLagSeconds()).isPositive();
+
+		cache.flush();
+
+		assertThat(template.findById("T1", Task.class)).isEqualTo(task.withStatus(TaskStatus.DONE).withVersion(1L));
+		assertThat(cache.flushLagSeconds()).isZero();
+	}
+
+	@Test
+	void deleteById_removesTaskFromMongo_onFlush() {
+		repo.save(new Task("T1", "buy milk", TaskStatus.OPEN));
+		cache.flush();
+
+		repo.deleteById("T1");
+		cache.flush();
+
+		assertThat(template.findById("T1", Task.class)).isNull();
+	}
+
+	@Test
+	void save_throws_withStaleVersion() {
+		Task task = repo.save(new Task("T1", "buy milk", TaskStatus.OPEN));
+		repo.save(task.withDescription("buy oat milk"));
+
+		assertThatThrownBy(() -> repo.save(task.withDescription("buy soy milk")))
+				.isInstanceOf(OptimisticLockingFailureException.class);
+	}
+
+	@Test
+	void findPage_returnsOnlyTasksOfTenant() {
+		repo.saveAll(List.of(
+				new Task("T1", "buy milk", TaskStatus.OPEN),
+				new Task("T2", "buy bread", TaskStatus.OPEN, null, "acme"),
+				new Task("T3", "buy eggs", TaskStatus.OPEN, null, "acme")));
+		repo.deleteById("T3");
+
+		assertThat(repo.findPage("acme", null, TaskStatus.OPEN, "buy", 10))
+				.extracting(Task::id)
+				.containsExactly("T2");
+		assertThat(repo.findAllByTenant(Task.DEFAULT_TENANT))
+				.extracting(Task::id)
+				.containsExactly("T1");
+	}
+
+	@Test
+	void findPage_usesStatusIndex() {
+		repo.saveAll(List.of(
+				new Task("T1", "buy milk", TaskStatus.OPEN),
+				new Task("T2", "buy bread", TaskStatus.DONE),
+				new Task("T3", "deploy", TaskStatus.DONE),
+				new Task("T4", "buy eggs", TaskStatus.DONE)));
+		repo.applyPatch("T1", new TaskPatch(null, TaskStatus.DONE));
+
+		assertThat(repo.findPage(Task.DEFAULT_TENANT, "T1", TaskStatus.DONE, "buy", 10))
+				.extracting(Task::id)
+				.containsExactly("T2", "T4");
+		assertThat(repo.findPage(Task.DEFAULT_TENANT, null, TaskStatus.DONE, null, 2))
+				.extracting(Task::id)
+				.containsExactly("T1", "T2");
+	}
+
+	@Test
+	void findPage_loadsEachTenant_onFirstUse() {
+		template.insert(new Task("T1", "buy milk", TaskStatus.OPEN, 0L, "acme"));
+		assertThat(repo.findPage("acme", null, null, null, 10))
+				.extracting(Task::id)
+				.containsExactly("T1");
+
+		// written before this replica needed the tenant
+		template.insert(new Task("T2", "deploy", TaskStatus.OPEN, 0L, "other"));
+
+		assertThat(repo.findPage("other", null, null, null, 10))
+				.extracting(Task::id)
+				.containsExactly("T2");
+	}
+
+	@Test
+	void findPage_readsTaskOfAnotherReplica_afterInvalidation() {
+		repo.save(new Task("T1", "buy milk", TaskStatus.OPEN));
+		cache.flush();
+		assertThat(repo.findPage(Task.DEFAULT_TENANT, null, null, null, 10)).hasSize(1);
+
+		template.insert(new Task("T2", "buy bread", TaskStatus.OPEN, 0L, Task.DEFAULT_TENANT));
+		cache.invalidate(List.of("T2"), List.of(Task.DEFAULT_TENANT));
+
+		assertThat(repo.findPage(Task.DEFAULT_TENANT, null, null, null, 10))
+				.extracting(Task::id)
+				.containsExactly("T1", "T2");
+	}
+
+	@Test
+	void findById_readsMongoAgain_afterInvalidationFromAnotherReplica() throws InterruptedException {
+		Task task = repo.save(new Task("T1", "buy milk", TaskStatus.OPEN));
+		cache.flush();
+
+		// another replica flushes a newer state and announces it
+		template.save(task.withDescription("buy oat milk"));
+		template.getCollection(TaskCache.INVALIDATIONS)
+				.insertOne(new Document("node", "other").append("ids", List.of("T1")));
+
+		long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+		while (!repo.findById("T1").orElseThrow().description().equals("buy oat milk")
+				&& System.nanoTime() < deadline) {
+			Thread.sleep(50);
+		}
+		assertThat(repo.findById("T1").orElseThrow().description()).isEqualTo("buy oat milk");
+	}
+
+	@Test
+	void updateReturningPrevious_returnsEmpty_whenAnotherReplicaWroteTheVersion() {
+		Task task = repo.save(new Task("T1", "buy milk", TaskStatus.OPEN));
+		cache.flush();
+		// another replica's write this replica has not heard of yet
+		template.updateFirst(Query.query(Criteria.where("id").is("T1")),
+				Update.update("description", "buy oat milk").inc("version", 1), Task.class);
+
+		assertThat(repo.updateReturningPrevious(task.withDescription("buy soy milk"), List.of(0L))).isEmpty();
+		assertThat(repo.findById("T1").orElseThrow().description()).isEqualTo("buy oat milk");
+	}
+
+	@Test
+	void flush_dropsWrite_thatAnotherReplicaOvertook() {
+		repo.save(new Task("T1", "buy milk", TaskStatus.OPEN));
+		cache.flush();
+		repo.applyPatch("T1", new TaskPatch(null, TaskStatus.DONE));
+		template.updateFirst(Query.query(Criteria.where("id").is("T1")),
+				Update.update("description", "buy oat milk").inc("version", 1), Task.class);
+
+		cache.flush();
+
+		assertThat(template.findById("T1", Task.class))
+				.isEqualTo(new Task("T1", "buy oat milk", TaskStatus.OPEN, 1L));
+		assertThat(repo.findById("T1").orElseThrow().description()).isEqualTo("buy oat milk");
+	}
+
+	@Test
+	void invalidate_keepsUnflushedWrite() {
+		repo.save(new Task("T1", "buy milk", TaskStatus.OPEN));
+
+		cache.invalidate(List.of("T1"), List.of(Task.DEFAULT_TENANT));
+
+		assertThat(repo.findById("T1").orElseThrow().description()).isEqualTo("buy milk");
+	}
+}
@@ -0,0 +1,140 @@
+package com.geraldsaccount.neuefische_todo.repository;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import com.geraldsaccount.neuefische_todo.model.tasks.Task;
+import com.geraldsaccount.neuefische_todo.model.tasks.TaskPatch;
+import com.geraldsaccount.neuefische_todo.model.tasks.TaskStatus;
+import com.geraldsaccount.neuefische_todo.model.undo.DeleteTaskAction;
+
+@SpringBootTest
+public class TaskCountersTest {
+	@Autowired
+	private TaskRepo repo;
+
+	@Autowired
+	private TaskCounters counters;
+
+	@Autowired
+	private MongoTemplate template;
+
+	@Autowired
+	private TenantBackfill backfill;
+
+	@BeforeEach
+	@SuppressWarnings("unused")
+	void setUp() {
+		repo.deleteAll();
+	}
+
+	@Test
+	void initialize_reconciles_afterLegacyCountersWereRemoved() {
+		repo.save(new Task("T1", "ship", TaskStatus.OPEN).withTenant("acme"));
+		template.insert(new Task("T2", "buy milk", TaskStatus.OPEN, null, Task.DEFAULT_TENANT));
+		template.insert(new Document("_id", TenantBackfill.LEGACY_COUNTERS_ID).append("seq", 3L).append("OPEN", 7L),
+				TaskCounters.COLLECTION);
+
+		backfill.migrate();
+		counters.initialize();
+
+		assertThat(template.findById(TenantBackfill.LEGACY_COUNTERS_ID, Document.class, TaskCounters.COLLECTION))
+				.isNull();
+		assertThat(counters.byStatus(TenantBackfill.LEGACY_COUNTERS_ID)).isEmpty();
+		assertThat(repo.countByStatus(Task.DEFAULT_TENANT)).isEqualTo(Map.of(TaskStatus.OPEN, 1L));
+		assertThat(repo.countByStatus("acme")).isEqualTo(Map.of(TaskStatus.OPEN, 1L));
+	}
+
+	@Test
+	void countByStatus_followsWrites() {
+		repo.save(new Task("T1", "buy milk", TaskStatus.OPEN));
+		Task bread = repo.save(new Task("T2", "buy bread", TaskStatus.OPEN));
+		repo.save(new Task("T3", "deploy", TaskStatus.OPEN));
+
+		repo.applyPatch("T1", new TaskPatch(null, TaskStatus.DONE));
+		repo.updateReturningPrevious(bread.withStatus(TaskStatus.IN_PROGRESS), null);
+		repo.deleteById("T3");
+
+		assertThat(repo.countByStatus(Task.DEFAULT_TENANT)).isEqualTo(Map.of(
+				TaskStatus.DONE, 1L,
+				TaskStatus.IN_PROGRESS, 1L));
+	}
+
+	@Test
+	void countByStatus_followsUndoAndRedo() {
+		Task task = repo.save(new Task("T1", "buy milk", TaskStatus.OPEN));
+		Task deleted = repo.deleteReturningPrevious(Task.DEFAULT_TENANT, "T1", null).orElseThrow();
+		DeleteTaskAction action = new DeleteTaskAction(repo, deleted);
+
+		action.undo();
+		assertThat(repo.countByStatus(Task.DEFAULT_TENANT)).isEqualTo(Map.of(TaskStatus.OPEN, 1L));
+
+		action.redo();
+		assertThat(repo.countByStatus(Task.DEFAULT_TENANT)).isEmpty();
+		assertThat(repo.findById(task.id())).isEmpty();
+	}
+
+	@Test
+	void countByStatus_followsBulkWrite() {
+		repo.save(new Task("T1", "buy milk", TaskStatus.OPEN));
+		repo.save(new Task("T2", "buy bread", TaskStatus.OPEN));
+		repo.save(new Task("T4", "buy eggs", TaskStatus.OPEN));
+
+		repo.bulkWrite(
+				List.of(new Task("T3", "deploy", TaskStatus.OPEN), new Task("T4", "duplicate", TaskStatus.OPEN)),
+				List.of(new Task("T1", "buy milk", TaskStatus.DONE), new Task("T9", "missing", TaskStatus.DONE)),
+				List.of("T2", "T8"));
+
+		assertThat(repo.countByStatus(Task.DEFAULT_TENANT)).isEqualTo(Map.of(
+				TaskStatus.OPEN, 2L,
+				TaskStatus.DONE, 1L));
+	}
+
+	@Test
+	void bulkWrite_updatesCountersOnce_perTenant() {
+		repo.save(new Task("T1", "buy milk", TaskStatus.OPEN));
+		repo.save(new Task("T2", "buy bread", TaskStatus.DONE));
+		repo.save(new Task("T3", "buy eggs", TaskStatus.OPEN));
+		long seq = seqOf(Task.DEFAULT_TENANT);
+
+		repo.bulkWrite(List.of(new Task("T4", "deploy", TaskStatus.OPEN)), List.of(), List.of("T1", "T2", "T3"));
+
+		assertThat(seqOf(Task.DEFAULT_TENANT)).isEqualTo(seq + 1);
+		assertThat(repo.countByStatus(Task.DEFAULT_TENANT)).isEqualTo(Map.of(TaskStatus.OPEN, 1L));
+	}
+
+	@Test
+	void countByStatus_countsTenantsSeparately() {
+		repo.save(new Task("T1", "buy milk", TaskStatus.OPEN));
+		repo.save(new Task("T2", "buy bread", TaskStatus.OPEN, null, "acme"));
+		repo.applyPatch("T2", new TaskPatch(null, TaskStatus.DONE));
+
+		assertThat(repo.countByStatus(Task.DEFAULT_TENANT)).isEqualTo(Map.of(TaskStatus.OPEN, 1L));
+		assertThat(repo.countByStatus("acme")).isEqualTo(Map.of(TaskStatus.DONE, 1L));
+		assertThat(repo.countByStatus("other")).isEmpty();
+	}
+
+	@Test
+	void reconcile_repairsCounts_afterUncountedWrite() {
+		repo.save(new Task("T1", "buy milk", TaskStatus.OPEN));
+		template.save(new Task("T2", "written around the repository", TaskStatus.DONE));
+
+		assertThat(counters.reconcile()).isTrue();
+
+		assertThat(repo.countByStatus(Task.DEFAULT_TENANT)).isEqualTo(Map.of(
+				TaskStatus.OPEN, 1L,
+				TaskStatus.DONE, 1L));
+	}
+
+	private long seqOf(String tenant) {
+		return template.findById(tenant, Document.class, TaskCounters.COLLECTION).get("seq", Number.class).longValue();
+	}
+}
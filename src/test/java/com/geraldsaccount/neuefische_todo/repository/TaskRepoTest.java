@@ -0,0 +1,191 @@
+package com.geraldsaccount.neuefische_todo.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import com.geraldsaccount.neuefische_todo.model.tasks.Task;
+import com.geraldsaccount.neuefische_todo.model.tasks.TaskPatch;
+import com.geraldsaccount.neuefische_todo.model.tasks.TaskStatus;
+
+@SpringBootTest
+public class TaskRepoTest {
+	private static final int THREADS = 8;
+	private static final int UPDATES = 200;
+
+	@Autowired
+	private TaskRepo repo;
+
+	@Autowired
+	private MongoTemplate template;
+
+	@Autowired
+	private TaskVersionBackfill versionBackfill;
+
+	@BeforeEach
+	@SuppressWarnings("unused")
+	void setUp() {
+		repo.deleteAll();
+	}
+
+	@Test
+	void updateReturningPrevious_losesNoUpdate_underConcurrentWrites() throws Exception {
+		Task initial = new Task("T1", "initial", TaskStatus.OPEN);
+		repo.save(initial);
+
+		List<Callable<Optional<Task>>> updates = new ArrayList<>();
+		for (int i = 0; i < UPDATES; i++) {
+			Task update = initial.withDescription("update " + i);
+			updates.add(() -> repo.updateReturningPrevious(update, null));
+		}
+		List<String> previous = runConcurrently(updates).stream()
+				.map(task -> task.orElseThrow().description())
+				.toList();
+
+		// every written description is seen exactly once, either as the
+		// predecessor of another update or as the final state
+		List<String> seen = new ArrayList<>(previous);
+		seen.add(repo.findById(initial.id()).orElseThrow().description());
+		List<String> written = new ArrayList<>(List.of("initial"));
+		for (int i = 0; i < UPDATES; i++) {
+			written.add("update " + i);
+		}
+		assertThat(seen).containsExactlyInAnyOrderElementsOf(written);
+	}
+
+	@Test
+	void deleteReturningPrevious_deletesOnce_underConcurrentDeletes() throws Exception {
+		Task task = repo.save(new Task("T1", "delete me", TaskStatus.OPEN));
+
+		List<Callable<Optional<Task>>> deletes = new ArrayList<>();
+		for (int i = 0; i < THREADS * 4; i++) {
+			deletes.add(() -> repo.deleteReturningPrevious(Task.DEFAULT_TENANT, task.id(), null));
+		}
+
+		assertThat(runConcurrently(deletes))
+				.filteredOn(Optional::isPresent)
+				.containsExactly(Optional.of(task));
+		assertThat(repo.existsById(task.id())).isFalse();
+	}
+
+	@Test
+	void updateReturningPrevious_returnsEmpty_withUnknownTask() {
+		assertThat(repo.updateReturningPrevious(new Task("T1", "missing", TaskStatus.OPEN), null))
+				.isEmpty();
+		assertThat(repo.existsById("T1")).isFalse();
+	}
+
+	@Test
+	void updateReturningPrevious_increasesVersion_withExpectedVersion() {
+		Task task = repo.save(new Task("T1", "initial", TaskStatus.OPEN));
+
+		assertThat(repo.updateReturningPrevious(task.withDescription("updated"), List.of(task.version())))
+				.contains(task);
+		assertThat(repo.findById("T1")).contains(
+				new Task("T1", "updated", TaskStatus.OPEN, task.version() + 1));
+	}
+
+	@Test
+	void updateReturningPrevious_returnsEmpty_withStaleVersion() {
+		Task task = repo.save(new Task("T1", "initial", TaskStatus.OPEN));
+		repo.updateReturningPrevious(task.withDescription("first"), null);
+
+		assertThat(repo.updateReturningPrevious(task.withDescription("second"), List.of(task.version())))
+				.isEmpty();
+		assertThat(repo.findById("T1").orElseThrow().description()).isEqualTo("first");
+	}
+
+	@Test
+	void updateReturningPrevious_matchesVersionZero_forTaskStoredBeforeVersioning() {
+		template.getCollection(template.getCollectionName(Task.class)).insertOne(new Document("_id", "T1")
+				.append("description", "legacy")
+				.append("status", TaskStatus.OPEN.name())
+				.append("tenant", Task.DEFAULT_TENANT));
+
+		versionBackfill.migrate();
+
+		assertThat(repo.findById("T1").orElseThrow().version()).isZero();
+		assertThat(repo.updateReturningPrevious(new Task("T1", "updated", TaskStatus.OPEN), List.of(0L)))
+				.isPresent();
+	}
+
+	@Test
+	void versionBackfill_skipsTasks_onceMigrationRan() {
+		template.getCollection(template.getCollectionName(Task.class)).insertOne(new Document("_id", "T1")
+				.append("description", "legacy")
+				.append("status", TaskStatus.OPEN.name())
+				.append("tenant", Task.DEFAULT_TENANT));
+
+		// the migration already ran when the context started
+		versionBackfill.backfill();
+
+		assertThat(template.exists(Query.query(Criteria.where("_id").is(TaskVersionBackfill.MIGRATION)),
+				Migrations.COLLECTION)).isTrue();
+		assertThat(repo.findById("T1").orElseThrow().version()).isNull();
+	}
+
+	@Test
+	void pageQuery_usesIndexOrder_withStatusAndPrefix() {
+		Query page = TaskRepoCustomImpl.pageQuery(Task.DEFAULT_TENANT, "T1", TaskStatus.OPEN, "buy", 21);
+		MongoPersistentEntity<?> entity = template.getConverter().getMappingContext()
+				.getRequiredPersistentEntity(Task.class);
+		QueryMapper mapper = new QueryMapper(template.getConverter());
+
+		Document explained = template.getCollection(template.getCollectionName(Task.class))
+				.find(mapper.getMappedObject(page.getQueryObject(), entity))
+				.sort(mapper.getMappedSort(page.getSortObject(), entity))
+				.limit(page.getLimit())
+				.explain();
+
+		String winningPlan = explained.get("queryPlanner", Document.class).get("winningPlan", Document.class).toJson();
+		// the page comes out of the index in id order, the limit ends the scan
+		assertThat(winningPlan).contains("IXSCAN").doesNotContain("\"SORT\"");
+	}
+
+	@Test
+	void applyPatch_setsOnlyGivenFields() {
+		Task task = repo.save(new Task("T1", "keep me", TaskStatus.OPEN));
+
+		assertThat(repo.applyPatch("T1", new TaskPatch(null, TaskStatus.DONE)))
+				.contains(new Task("T1", "keep me", TaskStatus.DONE, task.version() + 1));
+	}
+
+	@Test
+	void restore_reinsertsDeletedTask_withItsVersion() {
+		Task task = repo.save(new Task("T1", "initial", TaskStatus.OPEN));
+		repo.deleteReturningPrevious(Task.DEFAULT_TENANT, task.id(), null);
+
+		repo.restore(task);
+
+		assertThat(repo.findById("T1")).contains(task);
+	}
+
+	private static <T> List<T> runConcurrently(List<Callable<T>> calls) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			List<T> results = new ArrayList<>();
+			for (Future<T> future : executor.invokeAll(calls)) {
+				results.add(future.get());
+			}
+			return results;
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
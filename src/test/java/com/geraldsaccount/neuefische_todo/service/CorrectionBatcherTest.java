@@ -0,0 +1,108 @@
+package com.geraldsaccount.neuefische_todo.service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestClient;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.geraldsaccount.neuefische_todo.model.openai.OpenAiResponse;
+import com.github.tomakehurst.wiremock.client.WireMock;
+import com.github.tomakehurst.wiremock.junit5.WireMockRuntimeInfo;
+import com.github.tomakehurst.wiremock.junit5.WireMockTest;
+
+@WireMockTest
+public class CorrectionBatcherTest {
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	private CorrectionBatcher batcher;
+
+	private CorrectionBatcher createBatcher(WireMockRuntimeInfo wireMock, int maxSize, long windowMillis) {
+		OpenAiClient client = new OpenAiClient(RestClient.builder(),
+				new CircuitBreaker("test", 20, 10, 0.5, Duration.ofSeconds(30), 1),
+				new AdaptiveConcurrencyLimiter("test", 8, 1, 8, Duration.ofSeconds(3), 0.9),
+				wireMock.getHttpBaseUrl(), "test-key", Duration.ofSeconds(1), Duration.ofSeconds(2));
+		batcher = new CorrectionBatcher(client, mapper, maxSize, windowMillis, 2, false);
+		return batcher;
+	}
+
+	@AfterEach
+	@SuppressWarnings("unused")
+	void tearDown() {
+		if (batcher != null) {
+			batcher.shutdown();
+		}
+	}
+
+	private void stubAnswer(String instructions, String input, String answer) throws JsonProcessingException {
+		WireMock.stubFor(WireMock.post(OpenAiClient.REQUEST_URI)
+				.withRequestBody(WireMock.matchingJsonPath("$.instructions", WireMock.equalTo(instructions)))
+				.withRequestBody(WireMock.matchingJsonPath("$.input", WireMock.equalTo(input)))
+				.willReturn(WireMock.ok()
+						.withHeader("Content-Type", "application/json")
+						.withBody(mapper.writeValueAsString(OpenAiResponse.ofResponse(answer)))));
+	}
+
+	@Test
+	void submit_sendsOneRequest_forConcurrentCorrections(WireMockRuntimeInfo wireMock) throws Exception {
+		createBatcher(wireMock, 16, 200);
+		stubAnswer(CorrectionBatcher.BATCH_INSTRUCTIONS,
+				mapper.writeValueAsString(List.of("by milk", "standup meting", "deploi")),
+				mapper.writeValueAsString(List.of("buy milk", "standup meeting", "deploy")));
+
+		CompletableFuture<String> first = batcher.submit("by milk");
+		CompletableFuture<String> second = batcher.submit("standup meting");
+		CompletableFuture<String> third = batcher.submit("deploi");
+
+		assertThat(first.get(2, TimeUnit.SECONDS)).isEqualTo("buy milk");
+		assertThat(second.get(2, TimeUnit.SECONDS)).isEqualTo("standup meeting");
+		assertThat(third.get(2, TimeUnit.SECONDS)).isEqualTo("deploy");
+		WireMock.verify(1, WireMock.postRequestedFor(WireMock.urlEqualTo(OpenAiClient.REQUEST_URI)));
+	}
+
+	@Test
+	void submit_sendsImmediately_whenBatchIsFull(WireMockRuntimeInfo wireMock) throws Exception {
+		createBatcher(wireMock, 2, 60_000);
+		stubAnswer(CorrectionBatcher.BATCH_INSTRUCTIONS,
+				mapper.writeValueAsString(List.of("by milk", "deploi")),
+				mapper.writeValueAsString(List.of("buy milk", "deploy")));
+
+		CompletableFuture<String> first = batcher.submit("by milk");
+		CompletableFuture<String> second = batcher.submit("deploi");
+
+		assertThat(first.get(2, TimeUnit.SECONDS)).isEqualTo("buy milk");
+		assertThat(second.get(2, TimeUnit.SECONDS)).isEqualTo("deploy");
+	}
+
+	@Test
+	void submit_fallsBackToSingleRequests_whenBatchAnswerDoesNotParse(WireMockRuntimeInfo wireMock)
+			throws Exception {
+		createBatcher(wireMock, 16, 100);
+		stubAnswer(CorrectionBatcher.BATCH_INSTRUCTIONS,
+				mapper.writeValueAsString(List.of("by milk", "deploi")),
+				"Here are your corrections: buy milk, deploy");
+		stubAnswer(CorrectionService.INSTRUCTIONS, "by milk", "buy milk");
+		stubAnswer(CorrectionService.INSTRUCTIONS, "deploi", "deploy");
+
+		CompletableFuture<String> first = batcher.submit("by milk");
+		CompletableFuture<String> second = batcher.submit("deploi");
+
+		assertThat(first.get(2, TimeUnit.SECONDS)).isEqualTo("buy milk");
+		assertThat(second.get(2, TimeUnit.SECONDS)).isEqualTo("deploy");
+		WireMock.verify(3, WireMock.postRequestedFor(WireMock.urlEqualTo(OpenAiClient.REQUEST_URI)));
+	}
+
+	@Test
+	void correct_sendsSingleRequest_whenBatchingIsDisabled(WireMockRuntimeInfo wireMock) throws Exception {
+		createBatcher(wireMock, 1, 100);
+		stubAnswer(CorrectionService.INSTRUCTIONS, "by milk", "buy milk");
+
+		assertThat(batcher.correct("by milk")).isEqualTo("buy milk");
+	}
+}
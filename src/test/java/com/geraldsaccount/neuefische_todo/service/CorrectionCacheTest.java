@@ -0,0 +1,184 @@
+package com.geraldsaccount.neuefische_todo.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.geraldsaccount.neuefische_todo.model.corrections.CachedCorrection;
+import com.geraldsaccount.neuefische_todo.model.corrections.CorrectionCacheStats;
+import com.geraldsaccount.neuefische_todo.model.openai.OpenAiException;
+import com.geraldsaccount.neuefische_todo.repository.CorrectionCacheRepo;
+
+public class CorrectionCacheTest {
+	private static final String MODEL = "model";
+	private static final String INSTRUCTIONS = "instructions";
+
+	private CorrectionCacheRepo repo;
+
+	@BeforeEach
+	@SuppressWarnings("unused")
+	void setUp() {
+		repo = mock(CorrectionCacheRepo.class);
+	}
+
+	@Test
+	void get_callsLoaderOnce_forRepeatedInput() throws OpenAiException {
+		CorrectionCache cache = new CorrectionCache(repo, 10, Duration.ofHours(1), false);
+		AtomicInteger calls = new AtomicInteger();
+		CorrectionLoader loader = input -> {
+			calls.incrementAndGet();
+			return "buy milk";
+		};
+
+		assertThat(cache.get("by milk", MODEL, INSTRUCTIONS, loader)).isEqualTo("buy milk");
+		assertThat(cache.get("  by   milk ", MODEL, INSTRUCTIONS, loader)).isEqualTo("buy milk");
+
+		assertThat(calls).hasValue(1);
+		assertThat(cache.stats()).isEqualTo(new CorrectionCacheStats(1, 1, 0, 1));
+		verify(repo, never()).save(any());
+	}
+
+	@Test
+	void get_passesInputAsTyped_toLoader() throws OpenAiException {
+		CorrectionCache cache = new CorrectionCache(repo, 10, Duration.ofHours(1), false);
+		List<String> loaded = new ArrayList<>();
+		CorrectionLoader loader = input -> {
+			loaded.add(input);
+			return "Buy milk,\n  then bread";
+		};
+
+		cache.get("by milk,\n  then bred", MODEL, INSTRUCTIONS, loader);
+
+		assertThat(loaded).containsExactly("by milk,\n  then bred");
+	}
+
+	@Test
+	void get_callsLoaderAgain_withDifferentInstructions() throws OpenAiException {
+		CorrectionCache cache = new CorrectionCache(repo, 10, Duration.ofHours(1), false);
+		AtomicInteger calls = new AtomicInteger();
+		CorrectionLoader loader = input -> "call " + calls.incrementAndGet();
+
+		cache.get("standup", MODEL, INSTRUCTIONS, loader);
+		cache.get("standup", MODEL, "other instructions", loader);
+
+		assertThat(calls).hasValue(2);
+	}
+
+	@Test
+	void get_evictsLeastRecentlyUsed_whenFull() throws OpenAiException {
+		CorrectionCache cache = new CorrectionCache(repo, 2, Duration.ofHours(1), false);
+		AtomicInteger calls = new AtomicInteger();
+		CorrectionLoader loader = input -> {
+			calls.incrementAndGet();
+			return input;
+		};
+
+		cache.get("a", MODEL, INSTRUCTIONS, loader);
+		cache.get("b", MODEL, INSTRUCTIONS, loader);
+		cache.get("a", MODEL, INSTRUCTIONS, loader);
+		cache.get("c", MODEL, INSTRUCTIONS, loader);
+		cache.get("a", MODEL, INSTRUCTIONS, loader);
+
+		assertThat(calls).hasValue(3);
+		assertThat(cache.stats().evictions()).isEqualTo(1);
+		assertThat(cache.stats().size()).isEqualTo(2);
+	}
+
+	@Test
+	void get_reloads_afterTtlExpired() throws OpenAiException, InterruptedException {
+		CorrectionCache cache = new CorrectionCache(repo, 10, Duration.ofMillis(20), false);
+		AtomicInteger calls = new AtomicInteger();
+		CorrectionLoader loader = input -> {
+			calls.incrementAndGet();
+			return input;
+		};
+
+		cache.get("deploy", MODEL, INSTRUCTIONS, loader);
+		Thread.sleep(50);
+		cache.get("deploy", MODEL, INSTRUCTIONS, loader);
+
+		assertThat(calls).hasValue(2);
+		assertThat(cache.stats().evictions()).isEqualTo(1);
+	}
+
+	@Test
+	void get_sharesInFlightRequest_betweenConcurrentCallers() throws Exception {
+		CorrectionCache cache = new CorrectionCache(repo, 10, Duration.ofHours(1), false);
+		AtomicInteger calls = new AtomicInteger();
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		CorrectionLoader loader = input -> {
+			calls.incrementAndGet();
+			started.countDown();
+			release.await(1, TimeUnit.SECONDS);
+			return "buy milk";
+		};
+
+		CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> getUnchecked(cache, loader));
+		started.await(1, TimeUnit.SECONDS);
+		CompletableFuture<String> second = CompletableFuture.supplyAsync(() -> getUnchecked(cache, loader));
+		Thread.sleep(50);
+		release.countDown();
+
+		assertThat(first.get(1, TimeUnit.SECONDS)).isEqualTo("buy milk");
+		assertThat(second.get(1, TimeUnit.SECONDS)).isEqualTo("buy milk");
+		assertThat(calls).hasValue(1);
+	}
+
+	@Test
+	void get_doesNotCache_whenLoaderFails() {
+		CorrectionCache cache = new CorrectionCache(repo, 10, Duration.ofHours(1), false);
+
+		assertThatThrownBy(() -> cache.get("by milk", MODEL, INSTRUCTIONS, input -> {
+			throw new OpenAiException("unavailable");
+		})).isExactlyInstanceOf(OpenAiException.class);
+
+		assertThat(cache.stats().size()).isZero();
+	}
+
+	@Test
+	void get_usesPersistedCorrection_whenPersistent() throws OpenAiException {
+		CorrectionCache cache = new CorrectionCache(repo, 10, Duration.ofHours(1), true);
+		String key = CorrectionCache.key("by milk", MODEL, INSTRUCTIONS);
+		when(repo.findById(key)).thenReturn(Optional.of(
+				new CachedCorrection(key, "buy milk", Instant.now().plusSeconds(60))));
+
+		assertThat(cache.get("by milk", MODEL, INSTRUCTIONS, input -> {
+			throw new OpenAiException("should not be called");
+		})).isEqualTo("buy milk");
+	}
+
+	@Test
+	void get_persistsCorrection_whenPersistent() throws OpenAiException {
+		CorrectionCache cache = new CorrectionCache(repo, 10, Duration.ofHours(1), true);
+		when(repo.findById(any())).thenReturn(Optional.empty());
+
+		cache.get("by milk", MODEL, INSTRUCTIONS, input -> "buy milk");
+
+		verify(repo).save(any(CachedCorrection.class));
+	}
+
+	private static String getUnchecked(CorrectionCache cache, CorrectionLoader loader) {
+		try {
+			return cache.get("by milk", MODEL, INSTRUCTIONS, loader);
+		} catch (OpenAiException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,130 @@
+package com.geraldsaccount.neuefische_todo.service;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.geraldsaccount.neuefische_todo.model.openai.OpenAiException;
+import com.geraldsaccount.neuefische_todo.model.tasks.Task;
+import com.geraldsaccount.neuefische_todo.model.tasks.TaskStatus;
+import com.geraldsaccount.neuefische_todo.repository.TaskRepo;
+
+public class CorrectionSchedulerTest {
+	private CorrectionScheduler scheduler;
+
+	private CorrectionService correctionService;
+	private TaskRepo repo;
+
+	@BeforeEach
+	@SuppressWarnings("unused")
+	void setUp() {
+		correctionService = mock(CorrectionService.class);
+		repo = mock(TaskRepo.class);
+		scheduler = new CorrectionScheduler(correctionService, repo, 1, 10, false, 1);
+	}
+
+	@AfterEach
+	@SuppressWarnings("unused")
+	void tearDown() throws InterruptedException {
+		scheduler.shutdown();
+	}
+
+	@Test
+	void schedule_appliesCorrection_whenTaskIsUnchanged() throws OpenAiException {
+		Task task = new Task("T1", "by milk", TaskStatus.OPEN);
+		when(correctionService.getCorrectedText(task.description())).thenReturn("buy milk");
+
+		scheduler.schedule(task);
+
+		verify(repo, timeout(1000)).updateDescriptionIfUnchanged("T1", "by milk", "buy milk");
+	}
+
+	@Test
+	void schedule_doesNotUpdate_whenTextIsAlreadyCorrect() throws OpenAiException {
+		Task task = new Task("T1", "buy milk", TaskStatus.OPEN);
+		when(correctionService.getCorrectedText(task.description())).thenReturn("buy milk");
+
+		scheduler.schedule(task);
+
+		verify(correctionService, timeout(1000)).getCorrectedText("buy milk");
+		verify(repo, after(100).never()).updateDescriptionIfUnchanged(any(), any(), any());
+	}
+
+	@Test
+	void schedule_keepsRawText_whenCorrectionFails() throws OpenAiException {
+		Task task = new Task("T1", "by milk", TaskStatus.OPEN);
+		when(correctionService.getCorrectedText(any())).thenThrow(new OpenAiException("unavailable"));
+
+		scheduler.schedule(task);
+
+		verify(correctionService, timeout(1000)).getCorrectedText("by milk");
+		verify(repo, after(100).never()).updateDescriptionIfUnchanged(any(), any(), any());
+	}
+
+	@Test
+	void isPending_returnsTrue_untilCorrectionFinished() throws OpenAiException, InterruptedException {
+		CountDownLatch release = new CountDownLatch(1);
+		Task task = new Task("T1", "by milk", TaskStatus.OPEN);
+		when(correctionService.getCorrectedText(any())).thenAnswer(a -> {
+			release.await(1, TimeUnit.SECONDS);
+			return "buy milk";
+		});
+
+		scheduler.schedule(task);
+		assertThat(scheduler.isPending(task.id())).isTrue();
+
+		release.countDown();
+		verify(repo, timeout(1000)).updateDescriptionIfUnchanged("T1", "by milk", "buy milk");
+		Thread.sleep(50);
+		assertThat(scheduler.isPending(task.id())).isFalse();
+	}
+
+	@Test
+	void schedule_correctsOnVirtualThread_whenVirtualThreadsAreEnabled() throws Exception {
+		scheduler.shutdown();
+		scheduler = new CorrectionScheduler(correctionService, repo, 1, 10, true, 4);
+		AtomicBoolean virtual = new AtomicBoolean();
+		when(correctionService.getCorrectedText(any())).thenAnswer(a -> {
+			virtual.set(Thread.currentThread().isVirtual());
+			return "buy milk";
+		});
+
+		scheduler.schedule(new Task("T1", "by milk", TaskStatus.OPEN));
+
+		verify(repo, timeout(1000)).updateDescriptionIfUnchanged("T1", "by milk", "buy milk");
+		assertThat(virtual).isTrue();
+	}
+
+	@Test
+	void schedule_skipsCorrection_whenVirtualThreadQueueIsFull() throws Exception {
+		scheduler.shutdown();
+		scheduler = new CorrectionScheduler(correctionService, repo, 1, 1, true, 1);
+		CountDownLatch release = new CountDownLatch(1);
+		when(correctionService.getCorrectedText(any())).thenAnswer(a -> {
+			release.await(1, TimeUnit.SECONDS);
+			return "buy milk";
+		});
+
+		scheduler.schedule(new Task("T1", "by milk", TaskStatus.OPEN));
+		scheduler.schedule(new Task("T2", "by milk", TaskStatus.OPEN));
+		scheduler.schedule(new Task("T3", "by milk", TaskStatus.OPEN));
+
+		assertThat(scheduler.isPending("T1")).isTrue();
+		assertThat(scheduler.isPending("T2")).isTrue();
+		assertThat(scheduler.isPending("T3")).isFalse();
+		release.countDown();
+		verify(repo, timeout(1000)).updateDescriptionIfUnchanged("T2", "by milk", "buy milk");
+	}
+}
@@ -31,7 +31,7 @@ public class CorrectionServiceTest {
 		String correctedText = "I am not hungry. I already ate.";
 		OpenAiResponse response = OpenAiResponse.ofResponse(correctedText);
 
-		WireMock.stubFor(WireMock.post(CorrectionService.REQUEST_URI)
+		WireMock.stubFor(WireMock.post(OpenAiClient.REQUEST_URI)
 				.willReturn(WireMock.ok()
 						.withHeader("Content-Type", "application/json")
 						.withBody(mapper.writeValueAsString(response))));
@@ -39,4 +39,22 @@ public class CorrectionServiceTest {
 		assertThat(service.getCorrectedText(misspelledText))
 				.isEqualTo(correctedText);
 	}
+
+	@Test
+	void getCorrectedText_requestsOnce_withRepeatedInput() throws JsonProcessingException, OpenAiException {
+		String misspelledText = "standup meting";
+		String correctedText = "Standup meeting";
+
+		WireMock.stubFor(WireMock.post(OpenAiClient.REQUEST_URI)
+				.willReturn(WireMock.ok()
+						.withHeader("Content-Type", "application/json")
+						.withBody(mapper.writeValueAsString(OpenAiResponse.ofResponse(correctedText)))));
+
+		assertThat(service.getCorrectedText(misspelledText))
+				.isEqualTo(correctedText);
+		assertThat(service.getCorrectedText(misspelledText))
+				.isEqualTo(correctedText);
+
+		WireMock.verify(1, WireMock.postRequestedFor(WireMock.urlEqualTo(OpenAiClient.REQUEST_URI)));
+	}
 }
@@ -0,0 +1,115 @@
+package com.geraldsaccount.neuefische_todo.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import org.junit.jupiter.api.Test;
+import static org.mockito.Mockito.mock;
+
+import com.geraldsaccount.neuefische_todo.model.undo.RedoNotPossibleException;
+import com.geraldsaccount.neuefische_todo.model.undo.UndoNotPossibleException;
+import com.geraldsaccount.neuefische_todo.model.undo.UndoableAction;
+
+public class InMemoryUndoHistoryTest {
+	private final InMemoryUndoHistory history = new InMemoryUndoHistory(3, Duration.ofMinutes(30));
+
+	@Test
+	void undo_returnsActionsInReverseOrder() throws UndoNotPossibleException {
+		UndoableAction first = mock(UndoableAction.class);
+		UndoableAction second = mock(UndoableAction.class);
+		history.push("alice", first);
+		history.push("alice", second);
+
+		assertThat(history.undo("alice")).isSameAs(second);
+		assertThat(history.undo("alice")).isSameAs(first);
+		assertThatThrownBy(() -> history.undo("alice"))
+				.isInstanceOf(UndoNotPossibleException.class);
+	}
+
+	@Test
+	void push_dropsOldestAction_whenFull() throws UndoNotPossibleException {
+		List<UndoableAction> actions = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			UndoableAction action = mock(UndoableAction.class);
+			actions.add(action);
+			history.push("alice", action);
+		}
+
+		assertThat(history.size("alice")).isEqualTo(3);
+		assertThat(history.actions()).isEqualTo(3);
+		assertThat(history.undo("alice")).isSameAs(actions.get(4));
+		assertThat(history.undo("alice")).isSameAs(actions.get(3));
+		assertThat(history.undo("alice")).isSameAs(actions.get(2));
+		assertThatThrownBy(() -> history.undo("alice"))
+				.isInstanceOf(UndoNotPossibleException.class);
+	}
+
+	@Test
+	void push_dropsRedoTail() throws UndoNotPossibleException, RedoNotPossibleException {
+		UndoableAction first = mock(UndoableAction.class);
+		UndoableAction undone = mock(UndoableAction.class);
+		UndoableAction replacement = mock(UndoableAction.class);
+		history.push("alice", first);
+		history.push("alice", undone);
+		history.undo("alice");
+
+		history.push("alice", replacement);
+
+		assertThatThrownBy(() -> history.redo("alice"))
+				.isInstanceOf(RedoNotPossibleException.class);
+		assertThat(history.undo("alice")).isSameAs(replacement);
+		assertThat(history.undo("alice")).isSameAs(first);
+		assertThat(history.redo("alice")).isSameAs(first);
+	}
+
+	@Test
+	void undo_keepsUsersApart() {
+		history.push("alice", mock(UndoableAction.class));
+
+		assertThatThrownBy(() -> history.undo("bob"))
+				.isInstanceOf(UndoNotPossibleException.class);
+	}
+
+	@Test
+	void evictIdle_dropsUntouchedHistories() throws InterruptedException {
+		InMemoryUndoHistory shortLived = new InMemoryUndoHistory(3, Duration.ofMillis(10));
+		shortLived.push("alice", mock(UndoableAction.class));
+		Thread.sleep(20);
+
+		shortLived.evictIdle();
+
+		assertThat(shortLived.users()).isZero();
+		assertThat(shortLived.actions()).isZero();
+		assertThatThrownBy(() -> shortLived.undo("alice"))
+				.isInstanceOf(UndoNotPossibleException.class);
+	}
+
+	@Test
+	void push_losesNoAction_underConcurrentPushes() throws Exception {
+		InMemoryUndoHistory large = new InMemoryUndoHistory(10_000, Duration.ofMinutes(30));
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Callable<Void>> pushes = new ArrayList<>();
+			for (int i = 0; i < 2_000; i++) {
+				pushes.add(() -> {
+					large.push("alice", mock(UndoableAction.class));
+					return null;
+				});
+			}
+			for (Future<Void> future : executor.invokeAll(pushes)) {
+				future.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		assertThat(large.size("alice")).isEqualTo(2_000);
+	}
+}
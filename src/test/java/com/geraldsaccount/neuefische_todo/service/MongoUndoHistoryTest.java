@@ -0,0 +1,127 @@
+package com.geraldsaccount.neuefische_todo.service;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.geraldsaccount.neuefische_todo.model.tasks.Task;
+import com.geraldsaccount.neuefische_todo.model.tasks.TaskStatus;
+import com.geraldsaccount.neuefische_todo.model.undo.CreateTaskAction;
+import com.geraldsaccount.neuefische_todo.model.undo.RedoNotPossibleException;
+import com.geraldsaccount.neuefische_todo.model.undo.UndoActionType;
+import com.geraldsaccount.neuefische_todo.model.undo.UndoLogEntry;
+import com.geraldsaccount.neuefische_todo.model.undo.UndoNotPossibleException;
+import com.geraldsaccount.neuefische_todo.model.undo.UpdateTaskAction;
+import com.geraldsaccount.neuefische_todo.repository.TaskRepo;
+
+@SpringBootTest(properties = "undo.history.store=mongo")
+public class MongoUndoHistoryTest {
+	@Autowired
+	private UndoHistory history;
+
+	@Autowired
+	private MongoTemplate template;
+
+	@Autowired
+	private TaskRepo repo;
+
+	// users are unique per test, the capped log cannot be cleared
+	private final String user = UUID.randomUUID().toString();
+
+	@Test
+	void undo_revertsAction_pushedOnAnotherReplica() throws UndoNotPossibleException {
+		assertThat(history).isInstanceOf(MongoUndoHistory.class);
+		Task task = repo.save(new Task(user, "created on replica one", TaskStatus.OPEN));
+		history.push(user, new CreateTaskAction(repo, task));
+
+		UndoHistory otherReplica = new MongoUndoHistory(template, repo, 100, 1 << 20);
+		otherReplica.undo(user).undo();
+
+		assertThat(repo.existsById(task.id())).isFalse();
+	}
+
+	@Test
+	void redo_reappliesUndoneUpdate() throws UndoNotPossibleException, RedoNotPossibleException {
+		Task before = repo.save(new Task(user, "before", TaskStatus.OPEN));
+		Task after = before.withDescription("after");
+		repo.updateReturningPrevious(after, null);
+		history.push(user, new UpdateTaskAction(repo, after, before));
+
+		history.undo(user).undo();
+		assertThat(repo.findById(user).orElseThrow().description()).isEqualTo("before");
+
+		history.redo(user).redo();
+		assertThat(repo.findById(user).orElseThrow().description()).isEqualTo("after");
+		assertThatThrownBy(() -> history.redo(user))
+				.isInstanceOf(RedoNotPossibleException.class);
+	}
+
+	@Test
+	void undoAndRedo_takeSnapshotFromPointer() throws UndoNotPossibleException, RedoNotPossibleException {
+		Task task = new Task(user, "created", TaskStatus.OPEN);
+		history.push(user, new CreateTaskAction(repo, task));
+		// only the pointer still knows the action, a lookup in the log finds nothing
+		template.updateFirst(query(where("user").is(user)), new Update().set("seq", -1L), UndoLogEntry.class);
+
+		assertThat(history.undo(user).snapshot().after()).containsExactly(task);
+		assertThat(history.redo(user).snapshot().after()).containsExactly(task);
+	}
+
+	@Test
+	void push_dropsRedoTail() throws UndoNotPossibleException {
+		Task first = new Task(user + "-1", "first", TaskStatus.OPEN);
+		Task second = new Task(user + "-2", "second", TaskStatus.OPEN);
+		Task third = new Task(user + "-3", "third", TaskStatus.OPEN);
+		history.push(user, new CreateTaskAction(repo, first));
+		history.push(user, new CreateTaskAction(repo, second));
+		history.undo(user);
+
+		history.push(user, new CreateTaskAction(repo, third));
+
+		assertThatThrownBy(() -> history.redo(user))
+				.isInstanceOf(RedoNotPossibleException.class);
+		assertThat(history.undo(user).snapshot().after()).containsExactly(third);
+		assertThat(history.undo(user).snapshot().after()).containsExactly(first);
+	}
+
+	@Test
+	void push_takesOverEntryOfFailedPush() throws UndoNotPossibleException {
+		Task first = new Task(user + "-1", "first", TaskStatus.OPEN);
+		Task lost = new Task(user + "-2", "lost", TaskStatus.OPEN);
+		Task second = new Task(user + "-3", "second", TaskStatus.OPEN);
+		history.push(user, new CreateTaskAction(repo, first));
+		// a replica that failed between writing its entry and moving the pointer
+		template.insert(new UndoLogEntry(new ObjectId().toHexString(), user, 2, 2,
+				UndoActionType.CREATE, List.of(), List.of(lost)));
+
+		assertThatThrownBy(() -> history.redo(user))
+				.isInstanceOf(RedoNotPossibleException.class);
+		history.push(user, new CreateTaskAction(repo, second));
+
+		assertThat(history.undo(user).snapshot().after()).containsExactly(second);
+		assertThat(history.undo(user).snapshot().after()).containsExactly(first);
+	}
+
+	@Test
+	void undo_stopsAtCapacity() throws UndoNotPossibleException {
+		UndoHistory small = new MongoUndoHistory(template, repo, 2, 1 << 20);
+		for (int i = 0; i < 3; i++) {
+			small.push(user, new CreateTaskAction(repo, new Task(user + "-" + i, "task " + i, TaskStatus.OPEN)));
+		}
+
+		small.undo(user);
+		small.undo(user);
+		assertThatThrownBy(() -> small.undo(user))
+				.isInstanceOf(UndoNotPossibleException.class);
+	}
+}
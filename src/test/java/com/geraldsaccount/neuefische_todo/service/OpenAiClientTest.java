@@ -0,0 +1,161 @@
+package com.geraldsaccount.neuefische_todo.service;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestClient;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.geraldsaccount.neuefische_todo.model.openai.OpenAiException;
+import com.geraldsaccount.neuefische_todo.model.openai.OpenAiRequest;
+import com.geraldsaccount.neuefische_todo.model.openai.OpenAiResponse;
+import com.geraldsaccount.neuefische_todo.model.openai.OpenAiUnavailableException;
+import com.github.tomakehurst.wiremock.client.WireMock;
+import com.github.tomakehurst.wiremock.http.Fault;
+import com.github.tomakehurst.wiremock.junit5.WireMockRuntimeInfo;
+import com.github.tomakehurst.wiremock.junit5.WireMockTest;
+
+@WireMockTest
+public class OpenAiClientTest {
+	private final ObjectMapper mapper = new ObjectMapper();
+	private final OpenAiRequest request = new OpenAiRequest("model", "instructions", "by milk");
+
+	private CircuitBreaker circuitBreaker = new CircuitBreaker("test", 4, 4, 0.5, Duration.ofMillis(200), 1);
+	private AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 8, 1, 8,
+			Duration.ofSeconds(3), 0.5);
+
+	private OpenAiClient createClient(WireMockRuntimeInfo wireMock) {
+		return new OpenAiClient(RestClient.builder(), circuitBreaker, limiter,
+				wireMock.getHttpBaseUrl(), "test-key", Duration.ofMillis(500), Duration.ofMillis(300));
+	}
+
+	private void stubAnswer(String answer) throws JsonProcessingException {
+		WireMock.stubFor(WireMock.post(OpenAiClient.REQUEST_URI)
+				.willReturn(WireMock.ok()
+						.withHeader("Content-Type", "application/json")
+						.withBody(mapper.writeValueAsString(OpenAiResponse.ofResponse(answer)))));
+	}
+
+	@Test
+	void respond_throwsOpenAiException_whenReadTimesOut(WireMockRuntimeInfo wireMock) throws Exception {
+		OpenAiClient client = createClient(wireMock);
+		WireMock.stubFor(WireMock.post(OpenAiClient.REQUEST_URI)
+				.willReturn(WireMock.ok()
+						.withHeader("Content-Type", "application/json")
+						.withBody(mapper.writeValueAsString(OpenAiResponse.ofResponse("buy milk")))
+						.withFixedDelay(1000)));
+
+		long start = System.nanoTime();
+		assertThatThrownBy(() -> client.respond(request))
+				.isInstanceOf(OpenAiException.class);
+		assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(900));
+	}
+
+	@Test
+	void respond_opensCircuit_afterRepeatedFaults(WireMockRuntimeInfo wireMock) {
+		OpenAiClient client = createClient(wireMock);
+		WireMock.stubFor(WireMock.post(OpenAiClient.REQUEST_URI)
+				.willReturn(WireMock.aResponse().withFault(Fault.CONNECTION_RESET_BY_PEER)));
+
+		for (int i = 0; i < 4; i++) {
+			assertThatThrownBy(() -> client.respond(request))
+					.isExactlyInstanceOf(OpenAiException.class);
+		}
+
+		assertThat(circuitBreaker.getState()).isEqualTo(CircuitState.OPEN);
+		assertThatThrownBy(() -> client.respond(request))
+				.isExactlyInstanceOf(OpenAiUnavailableException.class);
+		assertThat(circuitBreaker.getRejectedCalls()).isEqualTo(1);
+		WireMock.verify(4, WireMock.postRequestedFor(WireMock.urlEqualTo(OpenAiClient.REQUEST_URI)));
+	}
+
+	@Test
+	void respond_closesCircuit_afterSuccessfulTrialCall(WireMockRuntimeInfo wireMock) throws Exception {
+		OpenAiClient client = createClient(wireMock);
+		WireMock.stubFor(WireMock.post(OpenAiClient.REQUEST_URI)
+				.willReturn(WireMock.serverError()));
+		for (int i = 0; i < 4; i++) {
+			assertThatThrownBy(() -> client.respond(request))
+					.isInstanceOf(OpenAiException.class);
+		}
+		assertThat(circuitBreaker.getState()).isEqualTo(CircuitState.OPEN);
+
+		WireMock.reset();
+		stubAnswer("buy milk");
+		Thread.sleep(250);
+
+		assertThat(client.respond(request)).isEqualTo("buy milk");
+		assertThat(circuitBreaker.getState()).isEqualTo(CircuitState.CLOSED);
+	}
+
+	@Test
+	void respond_keepsTrialPermit_whenConcurrencyLimitRejects(WireMockRuntimeInfo wireMock) throws Exception {
+		limiter = new AdaptiveConcurrencyLimiter("test", 1, 1, 1, Duration.ofSeconds(3), 0.5);
+		OpenAiClient client = createClient(wireMock);
+		WireMock.stubFor(WireMock.post(OpenAiClient.REQUEST_URI)
+				.willReturn(WireMock.serverError()));
+		for (int i = 0; i < 4; i++) {
+			assertThatThrownBy(() -> client.respond(request))
+					.isInstanceOf(OpenAiException.class);
+		}
+		WireMock.reset();
+		stubAnswer("buy milk");
+		Thread.sleep(250);
+
+		assertThat(limiter.tryAcquire()).isTrue();
+		for (int i = 0; i < 3; i++) {
+			assertThatThrownBy(() -> client.respond(request))
+					.isExactlyInstanceOf(OpenAiUnavailableException.class);
+		}
+		limiter.release(0, false);
+
+		assertThat(circuitBreaker.getState()).isEqualTo(CircuitState.HALF_OPEN);
+		assertThat(client.respond(request)).isEqualTo("buy milk");
+		assertThat(circuitBreaker.getState()).isEqualTo(CircuitState.CLOSED);
+	}
+
+	@Test
+	void respond_rejectsCalls_aboveConcurrencyLimit(WireMockRuntimeInfo wireMock) throws Exception {
+		limiter = new AdaptiveConcurrencyLimiter("test", 1, 1, 1, Duration.ofSeconds(3), 0.5);
+		OpenAiClient client = createClient(wireMock);
+		WireMock.stubFor(WireMock.post(OpenAiClient.REQUEST_URI)
+				.willReturn(WireMock.ok()
+						.withHeader("Content-Type", "application/json")
+						.withBody(mapper.writeValueAsString(OpenAiResponse.ofResponse("buy milk")))
+						.withFixedDelay(200)));
+
+		CompletableFuture<String> slow = CompletableFuture.supplyAsync(() -> {
+			try {
+				return client.respond(request);
+			} catch (OpenAiException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+		Thread.sleep(50);
+
+		assertThatThrownBy(() -> client.respond(request))
+				.isExactlyInstanceOf(OpenAiUnavailableException.class);
+		assertThat(slow.get(1, TimeUnit.SECONDS)).isEqualTo("buy milk");
+		assertThat(limiter.getRejectedCalls()).isEqualTo(1);
+	}
+
+	@Test
+	void respond_shrinksConcurrencyLimit_onSlowCalls(WireMockRuntimeInfo wireMock) throws Exception {
+		limiter = new AdaptiveConcurrencyLimiter("test", 8, 1, 8, Duration.ofMillis(50), 0.5);
+		OpenAiClient client = createClient(wireMock);
+		WireMock.stubFor(WireMock.post(OpenAiClient.REQUEST_URI)
+				.willReturn(WireMock.ok()
+						.withHeader("Content-Type", "application/json")
+						.withBody(mapper.writeValueAsString(OpenAiResponse.ofResponse("buy milk")))
+						.withFixedDelay(100)));
+
+		client.respond(request);
+
+		assertThat(limiter.getLimit()).isEqualTo(4);
+	}
+}
@@ -0,0 +1,170 @@
+package com.geraldsaccount.neuefische_todo.service;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.geraldsaccount.neuefische_todo.model.tasks.Task;
+import com.geraldsaccount.neuefische_todo.model.tasks.TaskChange;
+import com.geraldsaccount.neuefische_todo.model.tasks.TaskPatch;
+import com.geraldsaccount.neuefische_todo.model.tasks.TaskStatus;
+import com.geraldsaccount.neuefische_todo.model.tasks.dto.TaskChangesDTO;
+import com.geraldsaccount.neuefische_todo.repository.ChangeSequence;
+import com.geraldsaccount.neuefische_todo.repository.TaskRepo;
+
+@SpringBootTest(properties = "tasks.changes.settle-time=0s")
+public class TaskChangeServiceTest {
+	@Autowired
+	private TaskRepo repo;
+
+	@Autowired
+	private TaskChangeService service;
+
+	@Autowired
+	private MongoTemplate template;
+
+	@BeforeEach
+	@SuppressWarnings("unused")
+	void setUp() {
+		repo.deleteAll();
+	}
+
+	@Test
+	void getChanges_returnsWritesAndDeletes_sinceToken() throws Exception {
+		repo.saveAll(List.of(
+				new Task("T1", "buy milk", TaskStatus.OPEN),
+				new Task("T2", "buy bread", TaskStatus.OPEN),
+				new Task("T3", "deploy", TaskStatus.OPEN)));
+		String token = settledToken();
+
+		repo.applyPatch("T1", new TaskPatch(null, TaskStatus.DONE));
+		repo.deleteById("T2");
+		repo.save(new Task("T4", "buy eggs", TaskStatus.OPEN));
+		settle();
+
+		TaskChangesDTO changes = service.getChanges(Task.DEFAULT_TENANT, token, null);
+
+		assertThat(changes.changed())
+				.extracting(Task::id)
+				.containsExactly("T1", "T4");
+		assertThat(changes.changed().getFirst().status()).isEqualTo(TaskStatus.DONE);
+		assertThat(changes.deleted()).containsExactly("T2");
+		assertThat(changes.more()).isFalse();
+		assertThat(service.getChanges(Task.DEFAULT_TENANT, changes.token(), null).changed()).isEmpty();
+	}
+
+	@Test
+	void getChanges_returnsOnlyLastChange_ofRecreatedTask() throws Exception {
+		Task task = repo.save(new Task("T1", "buy milk", TaskStatus.OPEN));
+		String token = settledToken();
+
+		repo.deleteById("T1");
+		repo.restore(task);
+		settle();
+
+		TaskChangesDTO changes = service.getChanges(Task.DEFAULT_TENANT, token, null);
+
+		assertThat(changes.changed()).extracting(Task::id).containsExactly("T1");
+		assertThat(changes.deleted()).isEmpty();
+	}
+
+	@Test
+	void getChanges_pagesWithLimit() throws Exception {
+		String token = settledToken();
+		for (int i = 0; i < 5; i++) {
+			repo.save(new Task("T" + i, "task " + i, TaskStatus.OPEN));
+		}
+		settle();
+
+		TaskChangesDTO first = service.getChanges(Task.DEFAULT_TENANT, token, 3);
+		TaskChangesDTO second = service.getChanges(Task.DEFAULT_TENANT, first.token(), 3);
+
+		assertThat(first.changed()).extracting(Task::id).containsExactly("T0", "T1", "T2");
+		assertThat(first.more()).isTrue();
+		assertThat(second.changed()).extracting(Task::id).containsExactly("T3", "T4");
+		assertThat(second.more()).isFalse();
+	}
+
+	@Test
+	void getChanges_returnsOnlyChangesOfTenant() throws Exception {
+		String token = settledToken();
+		repo.save(new Task("T1", "buy milk", TaskStatus.OPEN));
+		repo.save(new Task("T2", "buy bread", TaskStatus.OPEN, null, "acme"));
+		repo.save(new Task("T3", "buy eggs", TaskStatus.OPEN, null, "acme"));
+		repo.deleteById("T3");
+		settle();
+
+		TaskChangesDTO changes = service.getChanges("acme", token, null);
+
+		assertThat(changes.changed()).extracting(Task::id).containsExactly("T2");
+		assertThat(changes.deleted()).containsExactly("T3");
+	}
+
+	@Test
+	void getChanges_throws_withExpiredToken() {
+		assertThatThrownBy(() -> service.getChanges(Task.DEFAULT_TENANT, "0", null))
+				.isInstanceOf(ChangeTokenExpiredException.class);
+	}
+
+	@Test
+	void getChanges_throws_withInvalidToken() {
+		assertThatThrownBy(() -> service.getChanges(Task.DEFAULT_TENANT, "not a token!", null))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	void getChanges_pagesWithinSameSequence() throws Exception {
+		String token = settledToken();
+		for (int i = 1; i <= 3; i++) {
+			repo.save(new Task("T" + i, "task " + i, TaskStatus.OPEN));
+		}
+		// as if three replicas had written at once
+		long shared = template.findById("T3", Document.class, template.getCollectionName(Task.class))
+				.getLong(ChangeSequence.FIELD);
+		template.updateMulti(new Query(), Update.update(ChangeSequence.FIELD, shared), Task.class);
+		settle();
+
+		TaskChangesDTO first = service.getChanges(Task.DEFAULT_TENANT, token, 2);
+		TaskChangesDTO second = service.getChanges(Task.DEFAULT_TENANT, first.token(), 2);
+
+		assertThat(first.changed()).extracting(Task::id).containsExactly("T1", "T2");
+		assertThat(first.more()).isTrue();
+		assertThat(second.changed()).extracting(Task::id).containsExactly("T3");
+		assertThat(second.more()).isFalse();
+	}
+
+	@Test
+	void toChanges_endsPageWithinSequence_withIdInToken() {
+		Task task = new Task("T", "task", TaskStatus.OPEN);
+		List<TaskChange> found = List.of(
+				new TaskChange(10, "T1", task.withId("T1")),
+				new TaskChange(11, "T2", task.withId("T2")),
+				new TaskChange(11, "T3", null));
+
+		TaskChangesDTO changes = TaskChangeService.toChanges(found, 2, 100);
+
+		assertThat(changes.changed()).extracting(Task::id).containsExactly("T1", "T2");
+		assertThat(changes.deleted()).isEmpty();
+		assertThat(changes.token()).isEqualTo(Long.toString(11, 36) + ".T2");
+		assertThat(changes.more()).isTrue();
+	}
+
+	private String settledToken() throws InterruptedException {
+		settle();
+		return service.currentToken();
+	}
+
+	// tokens stop short of the current millisecond
+	private static void settle() throws InterruptedException {
+		Thread.sleep(5);
+	}
+}
@@ -0,0 +1,78 @@
+package com.geraldsaccount.neuefische_todo.service;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.geraldsaccount.neuefische_todo.model.tasks.Task;
+import com.geraldsaccount.neuefische_todo.model.tasks.TaskEventType;
+import com.geraldsaccount.neuefische_todo.model.tasks.TaskStatus;
+import com.geraldsaccount.neuefische_todo.model.tasks.dto.TaskEventDTO;
+
+public class TaskEventBusTest {
+	private final TaskEventBus bus = new TaskEventBus(16, 3, Duration.ofMinutes(1), Duration.ofMinutes(1), 1);
+
+	@AfterEach
+	@SuppressWarnings("unused")
+	void tearDown() {
+		bus.shutdown();
+	}
+
+	private static TaskEventDTO created(String id) {
+		return new TaskEventDTO(TaskEventType.CREATED, id, new Task(id, "task " + id, TaskStatus.OPEN, 0L));
+	}
+
+	@Test
+	void missedSince_returnsEventsAfterLastSeenId() {
+		bus.publish(created("T1"));
+		String seen = bus.lastEventId();
+		bus.publish(created("T2"));
+		bus.publish(created("T3"));
+
+		assertThat(bus.missedSince(seen))
+				.extracting(TaskEventBus.SequencedEvent::event)
+				.containsExactly(created("T2"), created("T3"));
+		assertThat(bus.missedSince(bus.lastEventId())).isEmpty();
+	}
+
+	@Test
+	void missedSince_returnsNull_whenEventsLeftTheReplayBuffer() {
+		bus.publish(created("T1"));
+		String seen = bus.lastEventId();
+		for (int i = 2; i <= 5; i++) {
+			bus.publish(created("T" + i));
+		}
+
+		assertThat(bus.missedSince(seen)).isNull();
+	}
+
+	@Test
+	void missedSince_returnsNull_withIdOfAnotherInstance() {
+		bus.publish(created("T1"));
+
+		assertThat(bus.missedSince("someone-else:0")).isNull();
+		assertThat(bus.missedSince("not an id")).isNull();
+	}
+
+	@Test
+	void onTaskChanged_isIgnored_whileChangeStreamDeliversEvents() {
+		String before = bus.lastEventId();
+		bus.setExternalSource(true);
+
+		bus.onTaskChanged(created("T1"));
+
+		assertThat(bus.lastEventId()).isEqualTo(before);
+	}
+
+	@Test
+	void isVisible_onlyForSubscribersOfTheEventsTenant() {
+		TaskEventDTO deleted = new TaskEventDTO(TaskEventType.DELETED, "T1", null, "acme");
+		TaskEventDTO unknown = new TaskEventDTO(TaskEventType.DELETED, "T2", null, null);
+
+		assertThat(TaskEventBus.isVisible(deleted, "acme")).isTrue();
+		assertThat(TaskEventBus.isVisible(deleted, Task.DEFAULT_TENANT)).isFalse();
+		assertThat(TaskEventBus.isVisible(unknown, Task.DEFAULT_TENANT)).isFalse();
+	}
+}
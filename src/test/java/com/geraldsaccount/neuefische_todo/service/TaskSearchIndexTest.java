@@ -0,0 +1,84 @@
+package com.geraldsaccount.neuefische_todo.service;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.Test;
+
+public class TaskSearchIndexTest {
+	private final TaskSearchIndex index = new TaskSearchIndex();
+
+	@Test
+	void tokenize_foldsCaseAndAccents() {
+		assertThat(TaskSearchIndex.tokenize("Café-Besuch, 2x ÜBEN!"))
+				.containsExactly("cafe", "besuch", "2x", "uben");
+	}
+
+	@Test
+	void search_matchesEveryQueryTerm_asPrefix() {
+		index.put("T1", "buy milk and bread");
+		index.put("T2", "buy bread");
+		index.put("T3", "milkshake");
+
+		assertThat(ids(index.search("BRE bu", 10))).containsExactlyInAnyOrder("T1", "T2");
+		assertThat(ids(index.search("milk", 10))).containsExactly("T1", "T3");
+		assertThat(index.search("milk cheese", 10)).isEmpty();
+	}
+
+	@Test
+	void search_ranksFrequentMatchesFirst() {
+		index.put("T1", "water the plants");
+		index.put("T2", "water water water");
+
+		assertThat(ids(index.search("water", 10))).containsExactly("T2", "T1");
+	}
+
+	@Test
+	void search_ranksExactMatchesBeforePrefixMatches() {
+		index.put("T1", "milkshake");
+		index.put("T2", "milk");
+
+		assertThat(ids(index.search("milk", 10))).containsExactly("T2", "T1");
+	}
+
+	@Test
+	void clear_leavesIndexLikeNew() {
+		index.put("T1", "water the plants every morning");
+		index.put("T2", "water");
+		index.clear();
+		index.put("T3", "water the plants");
+
+		TaskSearchIndex fresh = new TaskSearchIndex();
+		fresh.put("T3", "water the plants");
+
+		assertThat(index.size()).isEqualTo(1);
+		assertThat(index.search("water", 10)).isEqualTo(fresh.search("water", 10));
+	}
+
+	@Test
+	void put_replacesPreviousDescription() {
+		index.put("T1", "buy milk");
+		index.put("T1", "buy bread");
+
+		assertThat(index.search("milk", 10)).isEmpty();
+		assertThat(ids(index.search("bread", 10))).containsExactly("T1");
+		assertThat(index.size()).isEqualTo(1);
+	}
+
+	@Test
+	void remove_reusesDocumentNumber() {
+		for (int i = 0; i < 100; i++) {
+			index.put("T" + i, "task number " + i);
+		}
+		index.remove("T5");
+		index.put("T100", "task number 100");
+
+		assertThat(ids(index.search("5", 100))).doesNotContain("T5").hasSize(10);
+		assertThat(ids(index.search("task 100", 10))).containsExactly("T100");
+		assertThat(index.size()).isEqualTo(100);
+	}
+
+	private static List<String> ids(List<TaskSearchIndex.Hit> hits) {
+		return hits.stream().map(TaskSearchIndex.Hit::id).toList();
+	}
+}
@@ -1,13 +1,16 @@
 package com.geraldsaccount.neuefische_todo.service;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
@@ -15,29 +18,39 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
-import com.geraldsaccount.neuefische_todo.model.openai.OpenAiException;
+import com.geraldsaccount.neuefische_todo.model.corrections.CorrectionStatusDTO;
+import com.geraldsaccount.neuefische_todo.model.tasks.BatchOperationType;
 import com.geraldsaccount.neuefische_todo.model.tasks.Task;
+import com.geraldsaccount.neuefische_todo.model.tasks.TaskPatch;
 import com.geraldsaccount.neuefische_todo.model.tasks.TaskStatus;
+import com.geraldsaccount.neuefische_todo.model.tasks.dto.BatchItemResultDTO;
+import com.geraldsaccount.neuefische_todo.model.tasks.dto.BatchOperationDTO;
 import com.geraldsaccount.neuefische_todo.model.tasks.dto.TaskDTO;
+import com.geraldsaccount.neuefische_todo.model.tasks.dto.TaskPageDTO;
 import com.geraldsaccount.neuefische_todo.model.undo.RedoNotPossibleException;
 import com.geraldsaccount.neuefische_todo.model.undo.UndoNotPossibleException;
 import com.geraldsaccount.neuefische_todo.model.undo.UndoableAction;
 import com.geraldsaccount.neuefische_todo.repository.TaskRepo;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
 public class TaskServiceTest {
 	private TaskService service;
 
 	private TaskRepo repo;
 	private IdService idService;
-	private CorrectionService correctionService;
+	private CorrectionScheduler correctionScheduler;
+	private SimpleMeterRegistry registry;
 
 	@BeforeEach
 	@SuppressWarnings("unused")
 	void setUp() {
 		repo = mock(TaskRepo.class);
 		idService = mock(IdService.class);
-		correctionService = mock(CorrectionService.class);
-		service = new TaskService(repo, idService, correctionService);
+		correctionScheduler = mock(CorrectionScheduler.class);
+		registry = new SimpleMeterRegistry();
+		service = new TaskService(repo, idService, correctionScheduler,
+				new InMemoryUndoHistory(100, Duration.ofMinutes(30)), new CurrentUser(), registry);
 	}
 
 	@Test
@@ -45,27 +58,68 @@ public class TaskServiceTest {
 		List<Task> tasks = new ArrayList<>(List.of(
 				new Task("T1", "Task 1", TaskStatus.OPEN),
 				new Task("T2", "Task 2", TaskStatus.OPEN)));
-		when(repo.findAll()).thenReturn(tasks);
+		when(repo.findAllByTenant(Task.DEFAULT_TENANT)).thenReturn(tasks);
 
 		assertThat(service.getTasks())
 				.containsExactlyElementsOf(tasks);
 	}
 
 	@Test
-	void createTask_returnsTask_withValidDto() throws OpenAiException {
+	void getTaskPage_returnsCursor_whenMoreTasksExist() {
+		List<Task> tasks = List.of(
+				new Task("T1", "Task 1", TaskStatus.OPEN),
+				new Task("T2", "Task 2", TaskStatus.OPEN),
+				new Task("T3", "Task 3", TaskStatus.OPEN));
+		when(repo.findPage(Task.DEFAULT_TENANT, null, null, null, 3)).thenReturn(tasks);
+
+		TaskPageDTO page = service.getTaskPage(null, 2, null, null);
+
+		assertThat(page.tasks()).containsExactly(tasks.get(0), tasks.get(1));
+		assertThat(page.nextCursor()).isNotNull();
+
+		service.getTaskPage(page.nextCursor(), 2, TaskStatus.DONE, "Task");
+		verify(repo).findPage(Task.DEFAULT_TENANT, "T2", TaskStatus.DONE, "Task", 3);
+	}
+
+	@Test
+	void getTaskPage_returnsNoCursor_onLastPage() {
+		List<Task> tasks = List.of(new Task("T1", "Task 1", TaskStatus.OPEN));
+		when(repo.findPage(Task.DEFAULT_TENANT, null, null, null, TaskService.DEFAULT_PAGE_SIZE + 1))
+				.thenReturn(tasks);
+
+		TaskPageDTO page = service.getTaskPage(null, null, null, null);
+
+		assertThat(page.tasks()).containsExactlyElementsOf(tasks);
+		assertThat(page.nextCursor()).isNull();
+	}
+
+	@Test
+	void getTaskPage_capsPageSize_withTooLargeLimit() {
+		service.getTaskPage(null, 10_000, null, null);
+
+		verify(repo).findPage(Task.DEFAULT_TENANT, null, null, null, TaskService.MAX_PAGE_SIZE + 1);
+	}
+
+	@Test
+	void getTaskPage_throwsIllegalArgument_withInvalidCursor() {
+		assertThatThrownBy(() -> service.getTaskPage("not a cursor!", null, null, null))
+				.isExactlyInstanceOf(IllegalArgumentException.class)
+				.hasMessage("Invalid cursor.");
+	}
+
+	@Test
+	void createTask_returnsTask_withValidDto() {
 		String id = "T1";
 		TaskDTO dto = new TaskDTO("Test postin", TaskStatus.OPEN);
 		when(idService.generateId()).thenReturn(id);
-		when(correctionService.getCorrectedText(any()))
-				.thenAnswer(a -> {
-					return a.getArgument(0);
-				});
+		when(repo.save(any())).thenAnswer(a -> a.<Task>getArgument(0).withVersion(0L));
 
-		Task expected = Task.of(dto).withId(id);
+		Task expected = Task.of(dto).withId(id).withVersion(0L);
 		assertThat(service.createTask(dto))
 				.isEqualTo(expected);
 
-		verify(repo).save(expected);
+		verify(repo).save(Task.of(dto).withId(id));
+		verify(correctionScheduler).schedule(expected);
 	}
 
 	@Test
@@ -78,6 +132,7 @@ public class TaskServiceTest {
 
 		verify(idService, never()).generateId();
 		verify(repo, never()).save(any());
+		verify(correctionScheduler, never()).schedule(any());
 	}
 
 	@Test
@@ -87,7 +142,7 @@ public class TaskServiceTest {
 
 		assertThatThrownBy(() -> service.getById(invalidId))
 				.isExactlyInstanceOf(TodoNotFoundException.class)
-				.hasMessage("Todo with id " + invalidId + "was not found.");
+				.hasMessage("Todo with id " + invalidId + " was not found.");
 	}
 
 	@Test
@@ -100,86 +155,210 @@ public class TaskServiceTest {
 	}
 
 	@Test
-	void updateTask_updates_withValidData() throws TodoNotFoundException, OpenAiException {
-		Task task = new Task("T1", "initial text", TaskStatus.OPEN);
+	void getById_throwsTodoNotFound_withTaskOfOtherTenant() {
+		Task task = new Task("T1", "other tenant", TaskStatus.OPEN, 0L, "acme");
 		when(repo.findById(task.id())).thenReturn(Optional.of(task));
-		when(correctionService.getCorrectedText(any()))
-				.thenAnswer(a -> {
-					return a.getArgument(0);
-				});
 
+		assertThatThrownBy(() -> service.getById(task.id()))
+				.isExactlyInstanceOf(TodoNotFoundException.class);
+	}
+
+	@Test
+	void updateTask_updates_withValidData() throws Exception {
+		Task task = new Task("T1", "initial text", TaskStatus.OPEN, 3L);
 		Task requestedtask = task.withDescription("updated text")
 				.withStatus(TaskStatus.DONE);
+		when(repo.updateReturningPrevious(requestedtask, null)).thenReturn(Optional.of(task));
 
-		assertThat(service.updateTask(task.id(), requestedtask))
-				.isEqualTo(requestedtask);
+		assertThat(service.updateTask(task.id(), requestedtask, null))
+				.isEqualTo(requestedtask.withVersion(4L));
 
 		verify(repo, times(1))
-				.save(requestedtask);
+				.updateReturningPrevious(requestedtask, null);
+		verify(repo, never()).findById(any());
+		verify(correctionScheduler).schedule(requestedtask.withVersion(4L));
 	}
 
 	@Test
-	void updateTask_throwsIllegalArgument_withInvalidId() throws OpenAiException {
+	void undo_setsOnlyChangedFields_afterUpdate() throws Exception {
+		Task task = new Task("T1", "a long description", TaskStatus.OPEN, 0L);
+		Task requestedtask = task.withStatus(TaskStatus.DONE);
+		when(repo.updateReturningPrevious(requestedtask, null)).thenReturn(Optional.of(task));
+		service.updateTask(task.id(), requestedtask, null);
+
+		service.undo();
+
+		verify(repo).applyPatch("T1", new TaskPatch(null, TaskStatus.OPEN));
+		verify(repo, never()).restore(any());
+	}
+
+	@Test
+	void updateTask_throwsVersionConflict_withStaleVersion() {
+		Task requestedtask = new Task("T1", "updated text", TaskStatus.OPEN);
+		when(repo.updateReturningPrevious(requestedtask, List.of(1L))).thenReturn(Optional.empty());
+		when(repo.findById("T1")).thenReturn(Optional.of(requestedtask.withVersion(2L)));
+
+		assertThatThrownBy(() -> service.updateTask("T1", requestedtask, List.of(1L)))
+				.isExactlyInstanceOf(TodoVersionConflictException.class);
+
+		verify(correctionScheduler, never()).schedule(any());
+		assertThatThrownBy(() -> service.undo())
+				.isInstanceOf(UndoNotPossibleException.class);
+		assertThat(registry.get("tasks.service")
+				.tag("operation", "update")
+				.tag("exception", "TodoVersionConflictException")
+				.timer().count()).isEqualTo(1);
+	}
+
+	@Test
+	void updateTask_throwsIllegalArgument_withInvalidId() {
 		String invalidId = "T2";
 		Task nonExistentTask = new Task(invalidId, "initial text", TaskStatus.OPEN);
-		when(repo.findById(invalidId)).thenReturn(Optional.empty());
+		when(repo.updateReturningPrevious(nonExistentTask, null)).thenReturn(Optional.empty());
 
-		assertThatThrownBy(() -> service.updateTask(invalidId, nonExistentTask))
+		assertThatThrownBy(() -> service.updateTask(invalidId, nonExistentTask, null))
 				.isExactlyInstanceOf(TodoNotFoundException.class)
-				.hasMessage("Todo with id " + invalidId + "was not found.");
+				.hasMessage("Todo with id " + invalidId + " was not found.");
 
-		verify(correctionService, never()).getCorrectedText(any());
+		verify(correctionScheduler, never()).schedule(any());
 		verify(repo, never()).save(any());
 	}
 
 	@Test
-	void updateTask_throwsIllegalArgument_withEmptyDescription() throws OpenAiException {
+	void updateTask_throwsIllegalArgument_withEmptyDescription() {
 		Task requestedtask = new Task("T1", "", TaskStatus.OPEN);
 
-		assertThatThrownBy(() -> service.updateTask("T2", requestedtask))
+		assertThatThrownBy(() -> service.updateTask("T2", requestedtask, null))
 				.isExactlyInstanceOf(IllegalArgumentException.class)
 				.hasMessage("Cannot update todo. Missing informations.");
 
-		assertThatThrownBy(() -> service.updateTask("T2", requestedtask));
+		assertThatThrownBy(() -> service.updateTask("T2", requestedtask, null));
 
-		verify(correctionService, never()).getCorrectedText(any());
-		verify(repo, never()).findById(any());
+		verify(correctionScheduler, never()).schedule(any());
+		verify(repo, never()).updateReturningPrevious(any(), any());
 		verify(repo, never()).save(any());
 	}
 
 	@Test
-	void updateTask_throwsIllegalArgument_withMisMatchingId() throws OpenAiException {
+	void updateTask_throwsIllegalArgument_withMisMatchingId() {
 		Task requestedtask = new Task("T1", "initial text", TaskStatus.OPEN);
 
-		assertThatThrownBy(() -> service.updateTask("T2", requestedtask))
+		assertThatThrownBy(() -> service.updateTask("T2", requestedtask, null))
 				.isExactlyInstanceOf(IllegalArgumentException.class)
 				.hasMessage("Cannot update todo. Missing informations.");
 
-		verify(correctionService, never()).getCorrectedText(any());
-		verify(repo, never()).findById(any());
+		verify(correctionScheduler, never()).schedule(any());
+		verify(repo, never()).updateReturningPrevious(any(), any());
 		verify(repo, never()).save(any());
 	}
 
 	@Test
-	void deleteTask_deletes_withValidId() throws TodoNotFoundException {
-		String id = "T1";
-		Task mockTask = mock(Task.class);
-		when(repo.findById(id)).thenReturn(Optional.of(mockTask));
+	void getCorrectionStatus_returnsPending_whileCorrectionRuns() throws TodoNotFoundException {
+		Task task = new Task("T1", "corection pending", TaskStatus.OPEN);
+		when(repo.findById(task.id())).thenReturn(Optional.of(task));
+		when(correctionScheduler.isPending(task.id())).thenReturn(true);
+
+		assertThat(service.getCorrectionStatus(task.id()))
+				.isEqualTo(new CorrectionStatusDTO(task.id(), true));
+	}
+
+	@Test
+	void getCorrectionStatus_throwsTodoNotFound_withInvalidId() {
+		String invalidId = "T1";
+		when(repo.findById(invalidId)).thenReturn(Optional.empty());
+
+		assertThatThrownBy(() -> service.getCorrectionStatus(invalidId))
+				.isExactlyInstanceOf(TodoNotFoundException.class);
+	}
 
-		service.delete(id);
+	@Test
+	void deleteTask_deletes_withValidId() throws Exception {
+		Task task = new Task("T1", "to be deleted", TaskStatus.OPEN);
+		when(repo.deleteReturningPrevious(Task.DEFAULT_TENANT, task.id(), null)).thenReturn(Optional.of(task));
 
-		verify(repo, times(1)).deleteById(id);
+		service.delete(task.id(), null);
+		verify(repo, times(1)).deleteReturningPrevious(Task.DEFAULT_TENANT, task.id(), null);
+		verify(repo, never()).findById(any());
+
+		service.undo();
+		verify(repo).restore(task);
 	}
 
 	@Test
 	void deleteTask_throwsTodoNotFound_withInvalidId() {
 		String invalidId = "T1";
-		when(repo.findById(invalidId)).thenReturn(Optional.empty());
+		when(repo.deleteReturningPrevious(Task.DEFAULT_TENANT, invalidId, null)).thenReturn(Optional.empty());
 
-		assertThatThrownBy(() -> service.delete(invalidId))
+		assertThatThrownBy(() -> service.delete(invalidId, null))
 				.isInstanceOf(TodoNotFoundException.class)
-				.hasMessage("Todo with id " + invalidId + "was not found.");
-		verify(repo, never()).deleteById(any());
+				.hasMessage("Todo with id " + invalidId + " was not found.");
+		assertThatThrownBy(() -> service.undo())
+				.isInstanceOf(UndoNotPossibleException.class);
+	}
+
+	@Test
+	void applyBatch_writesAllValidOperations_inOneBulkWrite() throws UndoNotPossibleException {
+		Task toUpdate = new Task("T1", "old text", TaskStatus.OPEN);
+		Task toDelete = new Task("T2", "delete me", TaskStatus.DONE);
+		when(idService.generateId()).thenReturn("T3");
+		when(repo.findAllById(any())).thenReturn(List.of(toUpdate, toDelete));
+		when(repo.bulkWrite(any(), any(), any())).thenReturn(Map.of());
+
+		List<BatchItemResultDTO> results = service.applyBatch(List.of(
+				new BatchOperationDTO(BatchOperationType.CREATE, null, "new task", TaskStatus.OPEN),
+				new BatchOperationDTO(BatchOperationType.UPDATE, "T1", "new text", TaskStatus.DONE),
+				new BatchOperationDTO(BatchOperationType.DELETE, "T2", null, null),
+				new BatchOperationDTO(BatchOperationType.DELETE, "T4", null, null),
+				new BatchOperationDTO(BatchOperationType.UPDATE, "T1", "", TaskStatus.DONE)));
+
+		assertThat(results).extracting(BatchItemResultDTO::status).containsExactly(
+				HttpStatus.CREATED, HttpStatus.OK, HttpStatus.NO_CONTENT, HttpStatus.NOT_FOUND, HttpStatus.BAD_REQUEST);
+		verify(repo).bulkWrite(
+				List.of(new Task("T3", "new task", TaskStatus.OPEN, 0L)),
+				List.of(new Task("T1", "new text", TaskStatus.DONE)),
+				List.of("T2"));
+		verify(repo, never()).save(any());
+		verify(correctionScheduler).scheduleAll(List.of(
+				new Task("T3", "new task", TaskStatus.OPEN, 0L),
+				new Task("T1", "new text", TaskStatus.DONE)));
+
+		service.undo();
+
+		verify(repo).bulkWrite(List.of(toDelete), List.of(toUpdate), List.of("T3"));
+	}
+
+	@Test
+	void undo_throwsUndoNotPossible_withBatchFromOtherTenant() {
+		when(idService.generateId()).thenReturn("T1");
+		when(repo.bulkWrite(any(), any(), any())).thenReturn(Map.of());
+
+		service.applyBatch(List.of(
+				new BatchOperationDTO(BatchOperationType.CREATE, null, "new task", TaskStatus.OPEN)),
+				CurrentUser.ANONYMOUS, "acme");
+
+		assertThatThrownBy(() -> service.undo())
+				.isInstanceOf(UndoNotPossibleException.class);
+		verify(repo, times(1)).bulkWrite(any(), any(), any());
+	}
+
+	@Test
+	void applyBatch_reportsFailedWrites() {
+		when(idService.generateId()).thenReturn("T1");
+		when(repo.bulkWrite(any(), any(), any())).thenReturn(Map.of("T1", "write failed"));
+
+		List<BatchItemResultDTO> results = service.applyBatch(List.of(
+				new BatchOperationDTO(BatchOperationType.CREATE, null, "new task", TaskStatus.OPEN)));
+
+		assertThat(results).containsExactly(
+				new BatchItemResultDTO(0, "T1", HttpStatus.INTERNAL_SERVER_ERROR, "write failed"));
+		verify(correctionScheduler, never()).scheduleAll(any());
+	}
+
+	@Test
+	void applyBatch_throwsIllegalArgument_withEmptyBatch() {
+		assertThatThrownBy(() -> service.applyBatch(List.of()))
+				.isExactlyInstanceOf(IllegalArgumentException.class)
+				.hasMessage("Cannot apply batch. No operations given.");
 	}
 
 	@Test
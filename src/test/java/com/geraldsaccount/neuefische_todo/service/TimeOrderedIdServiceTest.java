@@ -0,0 +1,65 @@
+package com.geraldsaccount.neuefische_todo.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.Test;
+
+public class TimeOrderedIdServiceTest {
+	private final TimeOrderedIdService idService = new TimeOrderedIdService();
+
+	@Test
+	void generateId_returnsVersion7Uuid() {
+		UUID id = UUID.fromString(idService.generateId());
+
+		assertThat(id.version()).isEqualTo(7);
+		assertThat(id.variant()).isEqualTo(2);
+		assertThat(id.getMostSignificantBits() >>> 16)
+				.isBetween(System.currentTimeMillis() - 1000, System.currentTimeMillis() + 1000);
+	}
+
+	@Test
+	void generateId_increasesStrictly() {
+		String previous = idService.generateId();
+		// far more ids than the counter holds per millisecond
+		for (int i = 0; i < 100_000; i++) {
+			String next = idService.generateId();
+			assertThat(next).isGreaterThan(previous);
+			previous = next;
+		}
+	}
+
+	@Test
+	void generateId_returnsUniqueIds_underConcurrentGeneration() throws Exception {
+		int threads = 8;
+		int idsPerThread = 100_000;
+		Set<String> ids = ConcurrentHashMap.newKeySet();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Callable<Void>> generators = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				generators.add(() -> {
+					for (int i = 0; i < idsPerThread; i++) {
+						ids.add(idService.generateId());
+					}
+					return null;
+				});
+			}
+			for (Future<Void> future : executor.invokeAll(generators)) {
+				future.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		assertThat(ids).hasSize(threads * idsPerThread);
+	}
+}